@@ -11,10 +11,12 @@ import java.util.List;
  */
 public class AstAbstractClafer extends AstClafer {
 
+    private static final long serialVersionUID = 1L;
+
     private final List<AstClafer> subs = new ArrayList<AstClafer>();
 
-    AstAbstractClafer(String name) {
-        super(name);
+    AstAbstractClafer(String name, AstIdFactory idFactory) {
+        super(name, idFactory);
     }
 
     /**
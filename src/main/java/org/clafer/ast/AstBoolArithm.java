@@ -11,6 +11,8 @@ import org.clafer.common.Util;
  */
 public class AstBoolArithm implements AstBoolExpr {
 
+    private static final long serialVersionUID = 1L;
+
     private final Op op;
     private final AstBoolExpr[] operands;
 
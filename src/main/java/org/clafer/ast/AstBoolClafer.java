@@ -7,9 +7,20 @@ package org.clafer.ast;
  */
 public class AstBoolClafer extends AstPrimClafer {
 
+    private static final long serialVersionUID = 1L;
+
     public static final AstBoolClafer Singleton = new AstBoolClafer();
 
     private AstBoolClafer() {
         super("bool");
     }
+
+    /**
+     * Deserialization must not create a second primitive Clafer.
+     *
+     * @return the singleton
+     */
+    private Object readResolve() {
+        return Singleton;
+    }
 }
@@ -1,5 +1,6 @@
 package org.clafer.ast;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -11,17 +12,40 @@ import org.clafer.common.Check;
  *
  * @author jimmy
  */
-public abstract class AstClafer implements AstVar {
+public abstract class AstClafer implements AstVar, Serializable {
+
+    private static final long serialVersionUID = 1L;
 
     private final String name;
+    // Null for the primitive Clafers, which are shared between models.
+    private final AstIdFactory idFactory;
+    private final int id;
     private AstAbstractClafer superClafer;
     private AstRef ref;
     private Card groupCard = new Card();
     private final List<AstConcreteClafer> children = new ArrayList<AstConcreteClafer>();
     private final List<AstConstraint> constraints = new ArrayList<AstConstraint>();
 
-    AstClafer(String name) {
+    AstClafer(String name, AstIdFactory idFactory) {
         this.name = Check.notNull(name);
+        this.idFactory = idFactory;
+        this.id = idFactory == null ? -1 : idFactory.newId();
+    }
+
+    /**
+     * Returns the identifier of the Clafer. Identifiers are dense and unique
+     * within a model, starting at 0 for the root, so they can index arrays of
+     * size {@link AstModel#getClaferIdCount()}. Primitive Clafers have the
+     * identifier -1.
+     *
+     * @return the identifier of the Clafer
+     */
+    public int getId() {
+        return id;
+    }
+
+    AstIdFactory getIdFactory() {
+        return idFactory;
     }
 
     /**
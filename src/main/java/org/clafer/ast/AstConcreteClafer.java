@@ -9,17 +9,19 @@ import org.clafer.common.Check;
  */
 public class AstConcreteClafer extends AstClafer {
 
+    private static final long serialVersionUID = 1L;
+
     private final AstClafer parent;
     private Card card = new Card();
 
-    AstConcreteClafer(String name) {
-        super(name);
+    AstConcreteClafer(String name, AstIdFactory idFactory) {
+        super(name, idFactory);
         this.parent = null;
     }
 
     AstConcreteClafer(String name, AstClafer parent) {
-        super(name);
-        this.parent = Check.notNull(parent);
+        super(name, Check.notNull(parent).getIdFactory());
+        this.parent = parent;
     }
 
     /**
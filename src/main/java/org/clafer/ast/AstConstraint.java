@@ -1,5 +1,8 @@
 package org.clafer.ast;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
 import org.clafer.common.Check;
 
 /**
@@ -7,7 +10,9 @@ import org.clafer.common.Check;
  *
  * @author jimmy
  */
-public class AstConstraint {
+public class AstConstraint implements Serializable {
+
+    private static final long serialVersionUID = 1L;
 
     private static int idFactory = 0;
     private final int id;
@@ -93,6 +98,17 @@ public class AstConstraint {
         return new AstConstraint(id, context, expr, soft);
     }
 
+    /**
+     * Constraints created after reading must not reuse the identifiers of the
+     * constraints read, which may be from another process.
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        if (idFactory <= id) {
+            idFactory = id + 1;
+        }
+    }
+
     @Override
     public String toString() {
         return isHard() ? "[" + expr + "]" : "(" + expr + ")";
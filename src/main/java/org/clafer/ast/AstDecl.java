@@ -1,5 +1,6 @@
 package org.clafer.ast;
 
+import java.io.Serializable;
 import org.clafer.common.Check;
 import org.clafer.common.Util;
 
@@ -7,7 +8,9 @@ import org.clafer.common.Util;
  *
  * @author jimmy
  */
-public class AstDecl {
+public class AstDecl implements Serializable {
+
+    private static final long serialVersionUID = 1L;
 
     private final boolean disjoint;
     private final AstLocal[] locals;
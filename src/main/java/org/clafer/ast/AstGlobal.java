@@ -10,6 +10,8 @@ import org.clafer.common.Check;
  */
 public class AstGlobal implements AstSetExpr {
 
+    private static final long serialVersionUID = 1L;
+
     private final AstClafer type;
 
     AstGlobal(AstClafer type) {
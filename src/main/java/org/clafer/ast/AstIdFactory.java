@@ -1,11 +1,15 @@
 package org.clafer.ast;
 
+import java.io.Serializable;
+
 /**
  * A factory for creating unique identifiers.
  *
  * @author jimmy
  */
-public class AstIdFactory {
+public class AstIdFactory implements Serializable {
+
+    private static final long serialVersionUID = 1L;
 
     protected int count = 0;
 
@@ -17,4 +21,14 @@ public class AstIdFactory {
     public int newId() {
         return count++;
     }
+
+    /**
+     * Returns the number of identifiers created so far. Every identifier is
+     * less than the count.
+     *
+     * @return the number of identifiers created
+     */
+    public int getCount() {
+        return count;
+    }
 }
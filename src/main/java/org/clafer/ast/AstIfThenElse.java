@@ -8,6 +8,8 @@ import org.clafer.common.Check;
  */
 public class AstIfThenElse implements AstBoolExpr {
 
+    private static final long serialVersionUID = 1L;
+
     private final AstBoolExpr antecedent;
     private final AstBoolExpr consequent;
     private final AstBoolExpr alternative;
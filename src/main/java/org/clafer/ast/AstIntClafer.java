@@ -7,9 +7,20 @@ package org.clafer.ast;
  */
 public class AstIntClafer extends AstPrimClafer {
 
+    private static final long serialVersionUID = 1L;
+
     public static final AstIntClafer Singleton = new AstIntClafer();
 
     private AstIntClafer() {
         super("int");
     }
+
+    /**
+     * Deserialization must not create a second primitive Clafer.
+     *
+     * @return the singleton
+     */
+    private Object readResolve() {
+        return Singleton;
+    }
 }
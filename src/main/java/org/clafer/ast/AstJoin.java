@@ -8,6 +8,8 @@ import org.clafer.common.Check;
  */
 public class AstJoin implements AstSetExpr {
 
+    private static final long serialVersionUID = 1L;
+
     private final AstSetExpr left;
     private final AstConcreteClafer right;
 
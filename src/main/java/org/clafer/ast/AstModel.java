@@ -29,14 +29,16 @@ import java.util.List;
  */
 public class AstModel extends AstConcreteClafer {
 
+    private static final long serialVersionUID = 1L;
+
     // The topmost Clafer in the type hierarchy.
     private final AstAbstractClafer claferClafer;
     private final List<AstAbstractClafer> abstracts;
 
     AstModel() {
-        super("#root#");
+        super("#root#", new AstIdFactory());
         super.withCard(new Card(1, 1));
-        this.claferClafer = new AstAbstractClafer("#clafer#");
+        this.claferClafer = new AstAbstractClafer("#clafer#", getIdFactory());
         this.abstracts = new ArrayList<AstAbstractClafer>();
         this.abstracts.add(claferClafer);
     }
@@ -50,6 +52,17 @@ public class AstModel extends AstConcreteClafer {
         return claferClafer;
     }
 
+    /**
+     * Returns the number of Clafers created in this model, including the root
+     * and the type hierarchy root. Every Clafer id is less than the count.
+     *
+     * @return the number of Clafer ids
+     * @see AstClafer#getId()
+     */
+    public int getClaferIdCount() {
+        return getIdFactory().getCount();
+    }
+
     /**
      * Returns all the abstract Clafers
      *
@@ -66,7 +79,7 @@ public class AstModel extends AstConcreteClafer {
      * @return the new abstract Clafer
      */
     public AstAbstractClafer addAbstract(String name) {
-        AstAbstractClafer abstractClafer = new AstAbstractClafer(name).extending(claferClafer);
+        AstAbstractClafer abstractClafer = new AstAbstractClafer(name, getIdFactory()).extending(claferClafer);
         abstracts.add(abstractClafer);
         return abstractClafer;
     }
@@ -9,6 +9,8 @@ import org.clafer.common.Check;
  */
 public class AstNot implements AstBoolExpr {
 
+    private static final long serialVersionUID = 1L;
+
     private final AstBoolExpr expr;
 
     AstNot(AstBoolExpr expr) {
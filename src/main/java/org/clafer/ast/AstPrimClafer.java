@@ -8,8 +8,10 @@ package org.clafer.ast;
  */
 public abstract class AstPrimClafer extends AstClafer {
 
+    private static final long serialVersionUID = 1L;
+
     AstPrimClafer(String name) {
-        super(name);
+        super(name, null);
     }
 
     /**
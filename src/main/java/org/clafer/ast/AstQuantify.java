@@ -9,6 +9,8 @@ import org.clafer.common.Util;
  */
 public class AstQuantify implements AstBoolExpr {
 
+    private static final long serialVersionUID = 1L;
+
     private final Quantifier quantifier;
     private final AstDecl[] decls;
     private final AstBoolExpr body;
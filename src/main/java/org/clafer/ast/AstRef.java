@@ -1,12 +1,15 @@
 package org.clafer.ast;
 
+import java.io.Serializable;
 import org.clafer.common.Check;
 
 /**
  *
  * @author jimmy
  */
-public class AstRef {
+public class AstRef implements Serializable {
+
+    private static final long serialVersionUID = 1L;
 
     private final AstClafer sourceType;
     private final AstClafer targetType;
@@ -18,6 +21,16 @@ public class AstRef {
         this.unique = unique;
     }
 
+    /**
+     * Returns the identifier of the reference. A Clafer has at most one
+     * reference, so the reference shares the identifier of its source.
+     *
+     * @return the identifier of the reference
+     */
+    public int getId() {
+        return sourceType.getId();
+    }
+
     public AstClafer getSourceType() {
         return sourceType;
     }
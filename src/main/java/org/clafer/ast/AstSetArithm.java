@@ -11,6 +11,8 @@ import org.clafer.common.Util;
  */
 public class AstSetArithm implements AstSetExpr {
 
+    private static final long serialVersionUID = 1L;
+
     private final Op op;
     private final AstSetExpr[] operands;
 
@@ -8,6 +8,8 @@ import org.clafer.common.Check;
  */
 public class AstTernary implements AstSetExpr {
 
+    private static final long serialVersionUID = 1L;
+
     private final AstBoolExpr antecedent;
     private final AstSetExpr consequent;
     private final AstSetExpr alternative;
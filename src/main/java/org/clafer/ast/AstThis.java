@@ -7,6 +7,8 @@ package org.clafer.ast;
  */
 public class AstThis implements AstSetExpr {
 
+    private static final long serialVersionUID = 1L;
+
     @Override
     public <A, B> B accept(AstExprVisitor<A, B> visitor, A a) {
         return visitor.visit(this, a);
@@ -8,6 +8,8 @@ import org.clafer.common.Check;
  */
 public class AstUpcast implements AstSetExpr {
 
+    private static final long serialVersionUID = 1L;
+
     private final AstSetExpr base;
     private final AstAbstractClafer target;
 
@@ -1,9 +1,11 @@
 package org.clafer.ast.analysis;
 
 import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import org.clafer.ast.AstAbstractClafer;
 import org.clafer.ast.AstClafer;
 
@@ -13,6 +15,16 @@ import org.clafer.ast.AstClafer;
  */
 public class AbstractOffsetAnalyzer implements Analyzer {
 
+    @Override
+    public Set<AnalysisKey> reads() {
+        return EnumSet.of(AnalysisKey.Clafers, AnalysisKey.GlobalCard, AnalysisKey.Scope);
+    }
+
+    @Override
+    public Set<AnalysisKey> writes() {
+        return EnumSet.of(AnalysisKey.Offsets);
+    }
+
     @Override
     public Analysis analyze(Analysis analysis) {
         Map<AstAbstractClafer, Offsets> offsetsMap = new HashMap<AstAbstractClafer, Offsets>();
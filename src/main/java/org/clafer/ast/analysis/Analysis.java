@@ -1,10 +1,12 @@
 package org.clafer.ast.analysis;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
 import org.clafer.ast.AstAbstractClafer;
 import org.clafer.ast.AstClafer;
 import org.clafer.ast.AstConcreteClafer;
@@ -15,6 +17,7 @@ import org.clafer.ast.AstRef;
 import org.clafer.ast.AstUtil;
 import org.clafer.ast.Card;
 import org.clafer.collection.Pair;
+import org.clafer.common.Profile;
 import org.clafer.common.Util;
 import org.clafer.scope.Scope;
 
@@ -22,7 +25,9 @@ import org.clafer.scope.Scope;
  *
  * @author jimmy
  */
-public class Analysis {
+public class Analysis implements Serializable {
+
+    private static final long serialVersionUID = 1L;
 
     private final AstModel model;
     private Scope scope;
@@ -113,11 +118,49 @@ public class Analysis {
     }
 
     public static Analysis analyze(AstModel model, Scope scope, Analyzer... analyzers) {
-        Analysis analysis = new Analysis(model, scope);
-        for (Analyzer analyzer : analyzers) {
-            analysis = analyzer.analyze(analysis);
-        }
-        return analysis;
+        return new AnalysisScheduler(analyzers).analyze(new Analysis(model, scope));
+    }
+
+    /**
+     * Analyze the model, recording the time spent in each analyzer.
+     *
+     * @param model the model
+     * @param scope the scope
+     * @param profile the profile to record to
+     * @param analyzers the analyzers
+     * @return the analysis
+     */
+    public static Analysis analyze(AstModel model, Scope scope, Profile profile, Analyzer... analyzers) {
+        return new AnalysisScheduler(analyzers, profile).analyze(new Analysis(model, scope));
+    }
+
+    /**
+     * Analyze the model. Analyzers that do not read or write each others
+     * results are run in parallel on the executor.
+     *
+     * @param model the model
+     * @param scope the scope
+     * @param executor the executor to run the analyzers on
+     * @param analyzers the analyzers
+     * @return the analysis
+     */
+    public static Analysis analyze(AstModel model, Scope scope, ExecutorService executor, Analyzer... analyzers) {
+        return new AnalysisScheduler(analyzers).analyze(new Analysis(model, scope), executor);
+    }
+
+    /**
+     * Analyze the model in parallel, recording the time spent in each
+     * analyzer.
+     *
+     * @param model the model
+     * @param scope the scope
+     * @param executor the executor to run the analyzers on
+     * @param profile the profile to record to
+     * @param analyzers the analyzers
+     * @return the analysis
+     */
+    public static Analysis analyze(AstModel model, Scope scope, ExecutorService executor, Profile profile, Analyzer... analyzers) {
+        return new AnalysisScheduler(analyzers, profile).analyze(new Analysis(model, scope), executor);
     }
 
     private <T> T notNull(String analysisName, T t) {
@@ -138,6 +181,114 @@ public class Analysis {
         return notNull(key.getName(), analysisName, t);
     }
 
+    /**
+     * Returns the raw result, or {@code null} if not yet analyzed.
+     *
+     * @param key the result
+     * @return the result
+     */
+    Object get(AnalysisKey key) {
+        switch (key) {
+            case Scope:
+                return scope;
+            case Clafers:
+                return clafers;
+            case Constraints:
+                return constraints;
+            case Card:
+                return cardMap;
+            case GlobalCard:
+                return globalCardMap;
+            case Depth:
+                return depthMap;
+            case Format:
+                return formatMap;
+            case Offsets:
+                return offsetMap;
+            case PartialSolution:
+                return partialSolutionMap;
+            case PartialInts:
+                return partialIntsMap;
+            case BreakableChildren:
+                return breakableChildrenMap;
+            case BreakableRefs:
+                return breakableRefsMap;
+            case BreakableTargets:
+                return breakableTargetsMap;
+            case Type:
+                return typeMap;
+            default:
+                throw new IllegalStateException();
+        }
+    }
+
+    /**
+     * Replace the raw result.
+     *
+     * @param key the result
+     * @param value the new result
+     */
+    @SuppressWarnings("unchecked")
+    void set(AnalysisKey key, Object value) {
+        switch (key) {
+            case Scope:
+                scope = (Scope) value;
+                break;
+            case Clafers:
+                // The Clafers are always the abstract Clafers followed by the
+                // concrete Clafers.
+                clafers = (List<AstClafer>) value;
+                abstractClafers = new ArrayList<AstAbstractClafer>();
+                concreteClafers = new ArrayList<AstConcreteClafer>();
+                for (AstClafer clafer : clafers) {
+                    if (clafer instanceof AstAbstractClafer) {
+                        abstractClafers.add((AstAbstractClafer) clafer);
+                    } else {
+                        concreteClafers.add((AstConcreteClafer) clafer);
+                    }
+                }
+                break;
+            case Constraints:
+                constraints = (List<AstConstraint>) value;
+                break;
+            case Card:
+                cardMap = (Map<AstConcreteClafer, Card>) value;
+                break;
+            case GlobalCard:
+                globalCardMap = (Map<AstClafer, Card>) value;
+                break;
+            case Depth:
+                depthMap = (Map<AstAbstractClafer, Integer>) value;
+                break;
+            case Format:
+                formatMap = (Map<AstClafer, Format>) value;
+                break;
+            case Offsets:
+                offsetMap = (Map<AstAbstractClafer, Offsets>) value;
+                break;
+            case PartialSolution:
+                partialSolutionMap = (Map<AstClafer, PartialSolution>) value;
+                break;
+            case PartialInts:
+                partialIntsMap = (Map<AstRef, int[][]>) value;
+                break;
+            case BreakableChildren:
+                breakableChildrenMap = (Map<AstClafer, AstConcreteClafer[]>) value;
+                break;
+            case BreakableRefs:
+                breakableRefsMap = (Map<AstRef, int[]>) value;
+                break;
+            case BreakableTargets:
+                breakableTargetsMap = (Map<AstClafer, AstRef[]>) value;
+                break;
+            case Type:
+                typeMap = (Map<AstExpr, AstClafer>) value;
+                break;
+            default:
+                throw new IllegalStateException();
+        }
+    }
+
     /**
      * Returns the original model. Analyzers are forbidden to alter the original
      * model.
@@ -0,0 +1,68 @@
+package org.clafer.ast.analysis;
+
+/**
+ * The individual results stored in an {@link Analysis}. Analyzers declare
+ * which results they read and write so that independent analyzers can run at
+ * the same time.
+ *
+ * @author jimmy
+ */
+public enum AnalysisKey {
+
+    /**
+     * The scope of every Clafer.
+     */
+    Scope,
+    /**
+     * The abstract and concrete Clafers, in their analyzed order.
+     */
+    Clafers,
+    /**
+     * The constraints.
+     */
+    Constraints,
+    /**
+     * The cardinality of every concrete Clafer.
+     */
+    Card,
+    /**
+     * The global cardinality of every Clafer.
+     */
+    GlobalCard,
+    /**
+     * The depth of every abstract Clafer in the type hierarchy.
+     */
+    Depth,
+    /**
+     * The format of every Clafer.
+     */
+    Format,
+    /**
+     * The offsets of every abstract Clafer.
+     */
+    Offsets,
+    /**
+     * The partial solution of every Clafer.
+     */
+    PartialSolution,
+    /**
+     * The partial integers of every reference.
+     */
+    PartialInts,
+    /**
+     * The children that need symmetry breaking.
+     */
+    BreakableChildren,
+    /**
+     * The references that need symmetry breaking.
+     */
+    BreakableRefs,
+    /**
+     * The reference targets that need symmetry breaking.
+     */
+    BreakableTargets,
+    /**
+     * The type of every expression.
+     */
+    Type;
+}
@@ -0,0 +1,234 @@
+package org.clafer.ast.analysis;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import org.clafer.common.Profile;
+
+/**
+ * <p>
+ * Runs a sequence of analyzers. The result is always the same as running the
+ * analyzers one after the other. An analyzer only waits for the earlier
+ * analyzers that write what it reads, read what it writes, or write what it
+ * writes.
+ * </p>
+ * <p>
+ * An analyzer is skipped if another analyzer of the same class already ran and
+ * nothing it reads or writes has been replaced since. For example, reanalyzing
+ * the types is skipped if none of the analyzers in between replaced the
+ * constraints.
+ * </p>
+ *
+ * @author jimmy
+ */
+class AnalysisScheduler {
+
+    private final Analyzer[] analyzers;
+    private final Profile profile;
+    private final List<Set<AnalysisKey>> uses;
+    private final int[][] dependents;
+    private final int[] dependencies;
+
+    AnalysisScheduler(Analyzer[] analyzers) {
+        this(analyzers, new Profile());
+    }
+
+    AnalysisScheduler(Analyzer[] analyzers, Profile profile) {
+        this.analyzers = analyzers;
+        this.profile = profile;
+        this.uses = new ArrayList<Set<AnalysisKey>>(analyzers.length);
+        this.dependencies = new int[analyzers.length];
+        List<Set<AnalysisKey>> reads = new ArrayList<Set<AnalysisKey>>(analyzers.length);
+        List<Set<AnalysisKey>> writes = new ArrayList<Set<AnalysisKey>>(analyzers.length);
+        for (Analyzer analyzer : analyzers) {
+            Set<AnalysisKey> read = EnumSet.noneOf(AnalysisKey.class);
+            read.addAll(analyzer.reads());
+            Set<AnalysisKey> write = EnumSet.noneOf(AnalysisKey.class);
+            write.addAll(analyzer.writes());
+            Set<AnalysisKey> use = EnumSet.copyOf(read);
+            use.addAll(write);
+            reads.add(read);
+            writes.add(write);
+            uses.add(use);
+        }
+        List<List<Integer>> dependentList = new ArrayList<List<Integer>>(analyzers.length);
+        for (int i = 0; i < analyzers.length; i++) {
+            List<Integer> dependent = new ArrayList<Integer>();
+            for (int j = i + 1; j < analyzers.length; j++) {
+                if (intersects(writes.get(i), uses.get(j))
+                        || intersects(reads.get(i), writes.get(j))) {
+                    dependent.add(j);
+                    dependencies[j]++;
+                }
+            }
+            dependentList.add(dependent);
+        }
+        this.dependents = new int[analyzers.length][];
+        for (int i = 0; i < analyzers.length; i++) {
+            List<Integer> dependent = dependentList.get(i);
+            dependents[i] = new int[dependent.size()];
+            for (int j = 0; j < dependents[i].length; j++) {
+                dependents[i][j] = dependent.get(j).intValue();
+            }
+        }
+    }
+
+    private static boolean intersects(Set<AnalysisKey> s1, Set<AnalysisKey> s2) {
+        for (AnalysisKey key : s1) {
+            if (s2.contains(key)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Run the analyzers in order on the current thread.
+     *
+     * @param analysis the initial analysis
+     * @return the final analysis
+     */
+    Analysis analyze(Analysis analysis) {
+        Analysis result = analysis;
+        Map<Class<?>, Object[]> history = new HashMap<Class<?>, Object[]>();
+        for (int i = 0; i < analyzers.length; i++) {
+            if (!isUnchanged(i, result, history)) {
+                Profile.Timer timer = profile.start(analyzers[i].getClass().getSimpleName());
+                result = analyzers[i].analyze(result);
+                timer.stop();
+                remember(i, result, history);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Run the analyzers on the executor. Analyzers must update the analysis in
+     * place.
+     *
+     * @param analysis the initial analysis
+     * @param executor the executor to run the analyzers on
+     * @return the final analysis
+     */
+    Analysis analyze(final Analysis analysis, ExecutorService executor) {
+        CompletionService<Integer> completion = new ExecutorCompletionService<Integer>(executor);
+        List<Future<Integer>> running = new ArrayList<Future<Integer>>();
+        Map<Class<?>, Object[]> history = new HashMap<Class<?>, Object[]>();
+        int[] waiting = dependencies.clone();
+        Deque<Integer> ready = new ArrayDeque<Integer>();
+        for (int i = 0; i < analyzers.length; i++) {
+            if (waiting[i] == 0) {
+                ready.add(i);
+            }
+        }
+        int finished = 0;
+        int submitted = 0;
+        try {
+            while (finished < analyzers.length) {
+                while (!ready.isEmpty()) {
+                    int i = ready.poll();
+                    if (isUnchanged(i, analysis, history)) {
+                        finished++;
+                        release(i, waiting, ready);
+                    } else {
+                        running.add(completion.submit(new AnalyzerTask(analyzers[i], analysis, i, profile)));
+                        submitted++;
+                    }
+                }
+                if (finished < analyzers.length) {
+                    assert submitted > 0;
+                    int i = completion.take().get().intValue();
+                    submitted--;
+                    remember(i, analysis, history);
+                    finished++;
+                    release(i, waiting, ready);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AnalysisException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new AnalysisException(cause);
+        } finally {
+            for (Future<Integer> future : running) {
+                future.cancel(true);
+            }
+        }
+        return analysis;
+    }
+
+    private void release(int i, int[] waiting, Deque<Integer> ready) {
+        for (int dependent : dependents[i]) {
+            waiting[dependent]--;
+            if (waiting[dependent] == 0) {
+                ready.add(dependent);
+            }
+        }
+    }
+
+    private boolean isUnchanged(int i, Analysis analysis, Map<Class<?>, Object[]> history) {
+        Object[] previous = history.get(analyzers[i].getClass());
+        if (previous == null) {
+            return false;
+        }
+        for (AnalysisKey key : uses.get(i)) {
+            if (analysis.get(key) != previous[key.ordinal()]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void remember(int i, Analysis analysis, Map<Class<?>, Object[]> history) {
+        Object[] state = new Object[AnalysisKey.values().length];
+        for (AnalysisKey key : uses.get(i)) {
+            state[key.ordinal()] = analysis.get(key);
+        }
+        history.put(analyzers[i].getClass(), state);
+    }
+
+    private static class AnalyzerTask implements Callable<Integer> {
+
+        private final Analyzer analyzer;
+        private final Analysis analysis;
+        private final int index;
+        private final Profile profile;
+
+        AnalyzerTask(Analyzer analyzer, Analysis analysis, int index, Profile profile) {
+            this.analyzer = analyzer;
+            this.analysis = analysis;
+            this.index = index;
+            this.profile = profile;
+        }
+
+        @Override
+        public Integer call() {
+            Profile.Timer timer = profile.start(analyzer.getClass().getSimpleName());
+            Analysis result = analyzer.analyze(analysis);
+            timer.stop();
+            if (result != analysis) {
+                throw new AnalysisException(analyzer.getClass().getSimpleName()
+                        + " must update the analysis in place to run in parallel.");
+            }
+            return index;
+        }
+    }
+}
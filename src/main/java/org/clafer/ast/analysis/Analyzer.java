@@ -1,10 +1,31 @@
 package org.clafer.ast.analysis;
 
+import java.util.Set;
+
 /**
+ * An analyzer updates some of the results in the analysis. Analyzers must
+ * declare every result they read and write, the pipeline uses the declarations
+ * to run independent analyzers in parallel and to skip analyzers when nothing
+ * they depend on has changed since they last ran.
  *
  * @author jimmy
  */
 public interface Analyzer {
 
+    /**
+     * Returns the results this analyzer reads. The original model is immutable
+     * and need not be declared.
+     *
+     * @return the results read
+     */
+    public Set<AnalysisKey> reads();
+
+    /**
+     * Returns the results this analyzer writes.
+     *
+     * @return the results written
+     */
+    public Set<AnalysisKey> writes();
+
     public Analysis analyze(Analysis analysis);
 }
@@ -1,7 +1,9 @@
 package org.clafer.ast.analysis;
 
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 import org.clafer.ast.AstAbstractClafer;
 import org.clafer.ast.AstConcreteClafer;
 import org.clafer.ast.Card;
@@ -14,6 +16,16 @@ import org.clafer.ast.Card;
  */
 public class CardAnalyzer implements Analyzer {
 
+    @Override
+    public Set<AnalysisKey> reads() {
+        return EnumSet.of(AnalysisKey.Clafers, AnalysisKey.Card, AnalysisKey.GlobalCard);
+    }
+
+    @Override
+    public Set<AnalysisKey> writes() {
+        return EnumSet.of(AnalysisKey.Card);
+    }
+
     @Override
     public Analysis analyze(Analysis analysis) {
         Map<AstConcreteClafer, Card> cardMap = new HashMap<AstConcreteClafer, Card>();
@@ -1,7 +1,9 @@
 package org.clafer.ast.analysis;
 
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 import org.clafer.ast.AstAbstractClafer;
 import org.clafer.ast.AstClafer;
 import org.clafer.ast.AstConcreteClafer;
@@ -12,6 +14,16 @@ import org.clafer.ast.AstConcreteClafer;
  */
 public class FormatAnalyzer implements Analyzer {
 
+    @Override
+    public Set<AnalysisKey> reads() {
+        return EnumSet.of(AnalysisKey.Clafers, AnalysisKey.Card, AnalysisKey.Scope);
+    }
+
+    @Override
+    public Set<AnalysisKey> writes() {
+        return EnumSet.of(AnalysisKey.Format);
+    }
+
     @Override
     public Analysis analyze(Analysis analysis) {
         Map<AstClafer, Format> formatMap = new HashMap<AstClafer, Format>();
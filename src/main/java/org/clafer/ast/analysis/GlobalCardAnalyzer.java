@@ -1,5 +1,6 @@
 package org.clafer.ast.analysis;
 
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -20,6 +21,16 @@ import org.clafer.graph.Vertex;
  */
 public class GlobalCardAnalyzer implements Analyzer {
 
+    @Override
+    public Set<AnalysisKey> reads() {
+        return EnumSet.of(AnalysisKey.Clafers, AnalysisKey.Card, AnalysisKey.Scope);
+    }
+
+    @Override
+    public Set<AnalysisKey> writes() {
+        return EnumSet.of(AnalysisKey.GlobalCard);
+    }
+
     @Override
     public Analysis analyze(Analysis analysis) {
         Map<AstClafer, Card> globalCardMap = new HashMap<AstClafer, Card>();
@@ -0,0 +1,150 @@
+package org.clafer.ast.analysis;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import org.clafer.ast.AstModel;
+import org.clafer.common.Check;
+import org.clafer.common.Profile;
+import org.clafer.scope.Scope;
+
+/**
+ * <p>
+ * Analyzes the same model many times under different scopes, for example when
+ * sweeping the scope one step at a time. Every analyzer remembers what it read
+ * and wrote during the previous analysis. If everything it reads is equal to
+ * last time, the previous results are reused instead of running the analyzer
+ * again.
+ * </p>
+ * <p>
+ * Most analyzers read the scope, but the {@link ScopeAnalyzer} tightens the
+ * scope to the global cardinalities early on. Raising the scope of a Clafer
+ * past what its global cardinality allows normalizes to the same scope, so
+ * every analyzer after it is reused.
+ * </p>
+ * <p>
+ * Analyzers must not alter the results they read, and the model must not be
+ * altered in between analyses.
+ * </p>
+ *
+ * @author jimmy
+ */
+public class IncrementalAnalysis {
+
+    private final AstModel model;
+    private final Analyzer[] analyzers;
+    // The i'th element holds the values read and written by the i'th analyzer
+    // during the previous analysis, indexed by key ordinal.
+    private final List<Object[]> reads;
+    private final List<Object[]> writes;
+    private Analysis previous;
+
+    /**
+     * Prepare to analyze the model.
+     *
+     * @param model the model
+     * @param analyzers the analyzers
+     */
+    public IncrementalAnalysis(AstModel model, Analyzer... analyzers) {
+        this.model = Check.notNull(model);
+        this.analyzers = Check.noNulls(analyzers);
+        this.reads = new ArrayList<Object[]>(analyzers.length);
+        this.writes = new ArrayList<Object[]>(analyzers.length);
+    }
+
+    /**
+     * Returns the model being analyzed.
+     *
+     * @return the model
+     */
+    public AstModel getModel() {
+        return model;
+    }
+
+    /**
+     * Analyze the model under the scope, reusing the results of the previous
+     * analysis wherever possible. If the results are equal to the previous
+     * analysis, the previous analysis is returned so callers can reuse anything
+     * they derived from it.
+     *
+     * @param scope the scope
+     * @return the analysis
+     */
+    public Analysis analyze(Scope scope) {
+        return analyze(scope, new Profile());
+    }
+
+    /**
+     * Analyze the model under the scope, recording the time spent in the
+     * analyzers that were rerun.
+     *
+     * @param scope the scope
+     * @param profile the profile to record to
+     * @return the analysis
+     */
+    public Analysis analyze(Scope scope, Profile profile) {
+        Analysis analysis = new Analysis(model, scope);
+        boolean first = reads.isEmpty();
+        for (int i = 0; i < analyzers.length; i++) {
+            Analyzer analyzer = analyzers[i];
+            if (!first && isEqual(analysis, analyzer.reads(), reads.get(i))) {
+                for (AnalysisKey key : analyzer.writes()) {
+                    analysis.set(key, writes.get(i)[key.ordinal()]);
+                }
+            } else {
+                Object[] read = snapshot(analysis, analyzer.reads());
+                Profile.Timer timer = profile.start(analyzer.getClass().getSimpleName());
+                analysis = analyzer.analyze(analysis);
+                timer.stop();
+                Object[] write = snapshot(analysis, analyzer.writes());
+                if (first) {
+                    reads.add(read);
+                    writes.add(write);
+                } else {
+                    reads.set(i, read);
+                    writes.set(i, write);
+                }
+            }
+        }
+        if (previous != null && isEqual(analysis, previous)) {
+            return previous;
+        }
+        previous = analysis;
+        return analysis;
+    }
+
+    private static Object[] snapshot(Analysis analysis, Set<AnalysisKey> keys) {
+        Object[] snapshot = new Object[AnalysisKey.values().length];
+        for (AnalysisKey key : keys) {
+            snapshot[key.ordinal()] = analysis.get(key);
+        }
+        return snapshot;
+    }
+
+    private static boolean isEqual(Analysis analysis, Set<AnalysisKey> keys, Object[] snapshot) {
+        for (AnalysisKey key : keys) {
+            if (!isEqual(analysis.get(key), snapshot[key.ordinal()])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isEqual(Analysis analysis1, Analysis analysis2) {
+        for (AnalysisKey key : AnalysisKey.values()) {
+            if (!isEqual(analysis1.get(key), analysis2.get(key))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Results that do not override equals, for example the maps to arrays, are
+     * only equal if they are the same object. This only costs reuse, never
+     * correctness.
+     */
+    private static boolean isEqual(Object o1, Object o2) {
+        return o1 == o2 || (o1 != null && o1.equals(o2));
+    }
+}
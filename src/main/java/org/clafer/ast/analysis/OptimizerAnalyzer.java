@@ -1,7 +1,9 @@
 package org.clafer.ast.analysis;
 
 import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
 import org.clafer.ast.AstClafer;
 import org.clafer.ast.AstConcreteClafer;
 import org.clafer.ast.AstConstant;
@@ -25,6 +27,16 @@ import org.clafer.common.Util;
  */
 public class OptimizerAnalyzer extends AstExprRewriter<Analysis> implements Analyzer {
 
+    @Override
+    public Set<AnalysisKey> reads() {
+        return EnumSet.of(AnalysisKey.Card, AnalysisKey.Constraints, AnalysisKey.Format, AnalysisKey.Scope, AnalysisKey.Type);
+    }
+
+    @Override
+    public Set<AnalysisKey> writes() {
+        return EnumSet.of(AnalysisKey.Constraints);
+    }
+
     @Override
     public Analysis analyze(Analysis analysis) {
         List<AstConstraint> optimizedConstraint = new ArrayList<AstConstraint>();
@@ -3,10 +3,12 @@ package org.clafer.ast.analysis;
 import gnu.trove.list.array.TIntArrayList;
 import gnu.trove.set.hash.TIntHashSet;
 import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 import org.clafer.ast.AstAbstractClafer;
 import org.clafer.ast.AstBoolExpr;
 import org.clafer.ast.AstClafer;
@@ -33,6 +35,16 @@ import org.clafer.collection.Pair;
  */
 public class PartialIntAnalyzer implements Analyzer {
 
+    @Override
+    public Set<AnalysisKey> reads() {
+        return EnumSet.of(AnalysisKey.Clafers, AnalysisKey.Constraints, AnalysisKey.Offsets, AnalysisKey.PartialSolution, AnalysisKey.Scope);
+    }
+
+    @Override
+    public Set<AnalysisKey> writes() {
+        return EnumSet.of(AnalysisKey.PartialInts);
+    }
+
     @Override
     public Analysis analyze(Analysis analysis) {
         Map<AstRef, int[][]> partialInts = new HashMap<AstRef, int[][]>();
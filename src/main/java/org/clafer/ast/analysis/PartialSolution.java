@@ -1,5 +1,6 @@
 package org.clafer.ast.analysis;
 
+import java.io.Serializable;
 import gnu.trove.list.array.TIntArrayList;
 import gnu.trove.set.TIntSet;
 import gnu.trove.set.hash.TIntHashSet;
@@ -11,7 +12,9 @@ import org.clafer.common.Util;
  *
  * @author jimmy
  */
-public class PartialSolution {
+public class PartialSolution implements Serializable {
+
+    private static final long serialVersionUID = 1L;
 
     // solution[i] = true <=> i exists
     // solution[i] = false <=> i unknown
@@ -2,8 +2,10 @@ package org.clafer.ast.analysis;
 
 import gnu.trove.list.array.TIntArrayList;
 import java.util.Arrays;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 import org.clafer.ast.AstAbstractClafer;
 import org.clafer.ast.AstClafer;
 import org.clafer.ast.AstConcreteClafer;
@@ -15,6 +17,16 @@ import org.clafer.ast.Card;
  */
 public class PartialSolutionAnalyzer implements Analyzer {
 
+    @Override
+    public Set<AnalysisKey> reads() {
+        return EnumSet.of(AnalysisKey.Clafers, AnalysisKey.Card, AnalysisKey.Format, AnalysisKey.GlobalCard, AnalysisKey.Offsets, AnalysisKey.Scope);
+    }
+
+    @Override
+    public Set<AnalysisKey> writes() {
+        return EnumSet.of(AnalysisKey.PartialSolution);
+    }
+
     @Override
     public Analysis analyze(Analysis analysis) {
         Map<AstClafer, PartialSolution> partialSolutionMap = new HashMap<AstClafer, PartialSolution>();
@@ -1,5 +1,6 @@
 package org.clafer.ast.analysis;
 
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -19,6 +20,16 @@ import org.clafer.graph.Vertex;
  */
 public class ScopeAnalyzer implements Analyzer {
 
+    @Override
+    public Set<AnalysisKey> reads() {
+        return EnumSet.of(AnalysisKey.Clafers, AnalysisKey.GlobalCard, AnalysisKey.Scope);
+    }
+
+    @Override
+    public Set<AnalysisKey> writes() {
+        return EnumSet.of(AnalysisKey.Scope);
+    }
+
     /*
      * Shrinks the scope if it's greater than the upper global cardinality.
      * Also set abstract scopes.
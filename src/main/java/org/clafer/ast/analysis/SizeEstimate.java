@@ -0,0 +1,351 @@
+package org.clafer.ast.analysis;
+
+import gnu.trove.map.TIntObjectMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import org.clafer.ast.AstAbstractClafer;
+import org.clafer.ast.AstClafer;
+import org.clafer.ast.AstConcreteClafer;
+import org.clafer.ast.AstConstraint;
+import org.clafer.ast.AstDecl;
+import org.clafer.ast.AstExpr;
+import org.clafer.ast.AstExprRewriter;
+import org.clafer.ast.AstIntClafer;
+import org.clafer.ast.AstQuantify;
+import org.clafer.ast.AstRef;
+import org.clafer.ast.AstUtil;
+import org.clafer.ast.Card;
+import org.clafer.common.Check;
+
+/**
+ * <p>
+ * Estimates how large the compiled model will be, before compiling. The
+ * estimate follows what the {@link org.clafer.ast.compiler.AstCompiler} builds
+ * for each Clafer and each constraint, using only the analysis. It is meant to
+ * catch models that are orders of magnitude too large, not to be exact. The
+ * optimizations on the IR usually shrink the model further.
+ * </p>
+ * <p>
+ * The most common culprits are a large scope on a Clafer deep in the tree and
+ * quantifiers with many locals. For example, {@code all disj a;b;c : X} grounds
+ * its body once for every ordered triple of distinct X's for every instance of
+ * the context.
+ * </p>
+ *
+ * @author jimmy
+ */
+public class SizeEstimate {
+
+    private final List<Cost> costs;
+    private final long variables;
+    private final long setVariables;
+    private final long constraints;
+
+    private SizeEstimate(List<Cost> costs) {
+        long variablesSum = 0;
+        long setVariablesSum = 0;
+        long constraintsSum = 0;
+        for (Cost cost : costs) {
+            variablesSum = add(variablesSum, cost.getVariables());
+            setVariablesSum = add(setVariablesSum, cost.getSetVariables());
+            constraintsSum = add(constraintsSum, cost.getConstraints());
+        }
+        Collections.sort(costs, new Comparator<Cost>() {
+            @Override
+            public int compare(Cost o1, Cost o2) {
+                long size1 = o1.getSize();
+                long size2 = o2.getSize();
+                return (size1 > size2) ? -1 : ((size1 == size2) ? 0 : 1);
+            }
+        });
+        this.costs = Collections.unmodifiableList(costs);
+        this.variables = variablesSum;
+        this.setVariables = setVariablesSum;
+        this.constraints = constraintsSum;
+    }
+
+    /**
+     * Estimate the size of the compiled model.
+     *
+     * @param analysis the analysis of the model
+     * @return the estimate
+     */
+    public static SizeEstimate estimate(Analysis analysis) {
+        List<Cost> costs = new ArrayList<Cost>();
+        for (AstClafer clafer : analysis.getClafers()) {
+            if (clafer instanceof AstConcreteClafer) {
+                if (!AstUtil.isRoot((AstConcreteClafer) clafer)) {
+                    costs.add(estimate((AstConcreteClafer) clafer, analysis));
+                }
+            } else if (clafer instanceof AstAbstractClafer) {
+                costs.add(estimate((AstAbstractClafer) clafer, analysis));
+            }
+        }
+        // Report the original constraints, not the analyzed ones.
+        TIntObjectMap<AstConstraint> constraintMap = AstUtil.getConstraintMap(analysis.getModel());
+        for (AstConstraint constraint : analysis.getConstraints()) {
+            AstConstraint original = constraintMap.get(constraint.getId());
+            costs.add(estimate(constraint, original == null ? constraint : original, analysis));
+        }
+        return new SizeEstimate(costs);
+    }
+
+    private static Cost estimate(AstConcreteClafer clafer, Analysis analysis) {
+        int scope = analysis.getScope(clafer);
+        int parentScope = analysis.getScope(clafer.getParent());
+        Card card = analysis.getCard(clafer);
+        long cardHigh = card.hasHigh() ? Math.min(card.getHigh(), scope) : scope;
+
+        // The child sets, their union, and the unused set.
+        long sets = parentScope;
+        if (parentScope > 1) {
+            sets++;
+        }
+        if (!analysis.getGlobalCard(clafer).isExact()) {
+            sets++;
+        }
+        // The parent pointers.
+        long ints = scope;
+        long bools = 0;
+        long constraints = 1;
+        switch (analysis.getFormat(clafer)) {
+            case LowGroup:
+                bools = scope;
+                constraints = add(constraints, add(mul(2, parentScope), 3));
+                break;
+            case ParentGroup:
+                constraints = add(constraints, mul(2, parentScope));
+                break;
+        }
+        if (clafer.getGroupCard().isBounded()) {
+            constraints = add(constraints, scope);
+        }
+        AstRef ref = AstUtil.getInheritedRef(clafer);
+        if (ref != null) {
+            if (clafer.hasRef()) {
+                ints = add(ints, scope);
+            }
+            constraints = add(constraints, add(mul(3, scope), parentScope));
+        }
+        if (analysis.hasInteritedBreakableChildren(clafer)
+                || (ref != null && analysis.isBreakableRef(ref))
+                || analysis.isInheritedBreakableTarget(clafer)) {
+            // The weights and indices for symmetry breaking.
+            ints = add(ints, add(scope, mul(parentScope, cardHigh)));
+            constraints = add(constraints, add(1, add(parentScope, scope)));
+        }
+        return new Cost(clafer, add(add(ints, bools), sets), sets, constraints);
+    }
+
+    private static Cost estimate(AstAbstractClafer clafer, Analysis analysis) {
+        int scope = analysis.getScope(clafer);
+        long ints = clafer.hasRef() ? scope : 0;
+        return new Cost(clafer, add(ints, 1), 1, 1);
+    }
+
+    private static Cost estimate(AstConstraint constraint, AstConstraint original, Analysis analysis) {
+        int scope = analysis.getScope(constraint.getContext());
+        QuantifierCounter counter = new QuantifierCounter(analysis);
+        counter.rewrite(constraint.getExpr(), 1L);
+        long bools = mul(scope, counter.bools);
+        if (constraint.isSoft()) {
+            bools = add(bools, 1);
+        }
+        return new Cost(original, bools, 0, mul(scope, add(1, counter.groundings)));
+    }
+
+    /**
+     * Counts how many times quantifier bodies are grounded. The parameter is
+     * the number of times the current expression is grounded.
+     */
+    private static class QuantifierCounter extends AstExprRewriter<Long> {
+
+        private final Analysis analysis;
+        private long groundings = 0;
+        private long bools = 0;
+
+        QuantifierCounter(Analysis analysis) {
+            this.analysis = analysis;
+        }
+
+        @Override
+        public AstExpr visit(AstQuantify ast, Long a) {
+            long multiplicity = a.longValue();
+            long combinations = 1;
+            for (AstDecl decl : ast.getDecls()) {
+                rewrite(decl.getBody(), a);
+                long size = size(analysis.getType(decl.getBody()));
+                // One membership variable for each element that might be in the set.
+                bools = add(bools, mul(multiplicity, size));
+                combinations = mul(combinations,
+                        decl.isDisjoint()
+                        ? permutations(size, decl.getLocals().length)
+                        : power(size, decl.getLocals().length));
+            }
+            long grounded = mul(multiplicity, combinations);
+            groundings = add(groundings, grounded);
+            rewrite(ast.getBody(), grounded);
+            return ast;
+        }
+
+        private long size(AstClafer type) {
+            if (type instanceof AstIntClafer) {
+                return (long) analysis.getScope().getIntHigh() - analysis.getScope().getIntLow() + 1;
+            }
+            return analysis.getScope(type);
+        }
+    }
+
+    /**
+     * Returns the cost of each Clafer and constraint, largest first.
+     *
+     * @return the costs
+     */
+    public List<Cost> getCosts() {
+        return costs;
+    }
+
+    /**
+     * Returns the estimated number of IR variables.
+     *
+     * @return the number of variables
+     */
+    public long getVariables() {
+        return variables;
+    }
+
+    /**
+     * Returns the estimated number of IR constraints.
+     *
+     * @return the number of constraints
+     */
+    public long getConstraints() {
+        return constraints;
+    }
+
+    /**
+     * Returns the estimated number of Choco variables. Every set variable also
+     * comes with a variable for its cardinality.
+     *
+     * @return the number of Choco variables
+     */
+    public long getChocoVariables() {
+        return add(variables, setVariables);
+    }
+
+    /**
+     * Returns the estimated number of Choco propagators. Most IR constraints
+     * compile to a single propagator.
+     *
+     * @return the number of propagators
+     */
+    public long getPropagators() {
+        return constraints;
+    }
+
+    /**
+     * Describe the total size and the largest costs.
+     *
+     * @param top the number of costs to list
+     * @return the report
+     */
+    public String report(int top) {
+        StringBuilder result = new StringBuilder();
+        result.append("About ").append(variables).append(" variables and ")
+                .append(constraints).append(" constraints.");
+        for (int i = 0; i < top && i < costs.size(); i++) {
+            result.append("\n  ").append(costs.get(i));
+        }
+        return result.toString();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return report(5);
+    }
+
+    /**
+     * The size of what a single Clafer or constraint compiles to.
+     */
+    public static class Cost {
+
+        private final Object source;
+        private final long variables;
+        private final long setVariables;
+        private final long constraints;
+
+        Cost(Object source, long variables, long setVariables, long constraints) {
+            this.source = Check.notNull(source);
+            this.variables = variables;
+            this.setVariables = setVariables;
+            this.constraints = constraints;
+        }
+
+        /**
+         * Returns the Clafer or constraint responsible for the cost.
+         *
+         * @return either an {@link AstClafer} or {@link AstConstraint}
+         */
+        public Object getSource() {
+            return source;
+        }
+
+        public long getVariables() {
+            return variables;
+        }
+
+        public long getSetVariables() {
+            return setVariables;
+        }
+
+        public long getConstraints() {
+            return constraints;
+        }
+
+        long getSize() {
+            return add(variables, constraints);
+        }
+
+        @Override
+        public String toString() {
+            String name = source instanceof AstConstraint
+                    ? "Constraint " + source + " in " + ((AstConstraint) source).getContext().getName()
+                    : "Clafer " + ((AstClafer) source).getName();
+            return name + ": " + variables + " variables, " + constraints + " constraints";
+        }
+    }
+
+    private static long permutations(long n, int k) {
+        long result = 1;
+        for (int i = 0; i < k; i++) {
+            result = mul(result, Math.max(0, n - i));
+        }
+        return result;
+    }
+
+    private static long power(long n, int k) {
+        long result = 1;
+        for (int i = 0; i < k; i++) {
+            result = mul(result, n);
+        }
+        return result;
+    }
+
+    // Saturating arithmetic, the estimates of absurd models must not overflow.
+    private static long add(long a, long b) {
+        long sum = a + b;
+        return sum < 0 ? Long.MAX_VALUE : sum;
+    }
+
+    private static long mul(long a, long b) {
+        if (a == 0 || b == 0) {
+            return 0;
+        }
+        return a > Long.MAX_VALUE / b ? Long.MAX_VALUE : a * b;
+    }
+}
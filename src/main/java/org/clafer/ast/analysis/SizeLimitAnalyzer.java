@@ -0,0 +1,74 @@
+package org.clafer.ast.analysis;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Aborts before compiling if the model is estimated to compile to too many
+ * variables or constraints. Runs after the other analyzers and changes
+ * nothing.
+ *
+ * @author jimmy
+ * @see SizeEstimate
+ */
+public class SizeLimitAnalyzer implements Analyzer {
+
+    private final long maxVariables;
+    private final long maxConstraints;
+
+    /**
+     * @param maxVariables the most IR variables allowed
+     * @param maxConstraints the most IR constraints allowed
+     */
+    public SizeLimitAnalyzer(long maxVariables, long maxConstraints) {
+        if (maxVariables < 0 || maxConstraints < 0) {
+            throw new IllegalArgumentException("Limits must be nonnegative");
+        }
+        this.maxVariables = maxVariables;
+        this.maxConstraints = maxConstraints;
+    }
+
+    public long getMaxVariables() {
+        return maxVariables;
+    }
+
+    public long getMaxConstraints() {
+        return maxConstraints;
+    }
+
+    @Override
+    public Set<AnalysisKey> reads() {
+        return EnumSet.of(AnalysisKey.Scope, AnalysisKey.Clafers, AnalysisKey.Constraints,
+                AnalysisKey.Card, AnalysisKey.GlobalCard, AnalysisKey.Format,
+                AnalysisKey.BreakableChildren, AnalysisKey.BreakableRefs,
+                AnalysisKey.BreakableTargets, AnalysisKey.Type);
+    }
+
+    @Override
+    public Set<AnalysisKey> writes() {
+        return EnumSet.noneOf(AnalysisKey.class);
+    }
+
+    @Override
+    public Analysis analyze(Analysis analysis) {
+        check(SizeEstimate.estimate(analysis));
+        return analysis;
+    }
+
+    /**
+     * Check an estimate made earlier against the limits.
+     *
+     * @param estimate the estimate
+     * @throws SizeLimitException if the estimate exceeds either limit
+     */
+    public void check(SizeEstimate estimate) throws SizeLimitException {
+        if (estimate.getVariables() > maxVariables) {
+            throw new SizeLimitException("Compiling would exceed the limit of "
+                    + maxVariables + " variables. " + estimate, estimate);
+        }
+        if (estimate.getConstraints() > maxConstraints) {
+            throw new SizeLimitException("Compiling would exceed the limit of "
+                    + maxConstraints + " constraints. " + estimate, estimate);
+        }
+    }
+}
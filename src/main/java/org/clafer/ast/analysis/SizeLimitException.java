@@ -0,0 +1,29 @@
+package org.clafer.ast.analysis;
+
+import org.clafer.common.Check;
+
+/**
+ * Thrown when the model is estimated to compile to more than the limits
+ * allow.
+ *
+ * @author jimmy
+ * @see SizeLimitAnalyzer
+ */
+public class SizeLimitException extends AnalysisException {
+
+    private final transient SizeEstimate estimate;
+
+    public SizeLimitException(String message, SizeEstimate estimate) {
+        super(message);
+        this.estimate = Check.notNull(estimate);
+    }
+
+    /**
+     * Returns the estimate that went over the limit.
+     *
+     * @return the estimate
+     */
+    public SizeEstimate getEstimate() {
+        return estimate;
+    }
+}
@@ -2,11 +2,13 @@ package org.clafer.ast.analysis;
 
 import gnu.trove.list.array.TIntArrayList;
 import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 import org.clafer.ast.AstAbstractClafer;
 import org.clafer.ast.AstClafer;
 import org.clafer.ast.AstConcreteClafer;
@@ -24,6 +26,16 @@ import org.clafer.graph.KeyGraph;
  */
 public class SymmetryAnalyzer implements Analyzer {
 
+    @Override
+    public Set<AnalysisKey> reads() {
+        return EnumSet.of(AnalysisKey.Clafers, AnalysisKey.Card, AnalysisKey.Offsets, AnalysisKey.PartialSolution, AnalysisKey.Scope);
+    }
+
+    @Override
+    public Set<AnalysisKey> writes() {
+        return EnumSet.of(AnalysisKey.BreakableChildren, AnalysisKey.BreakableRefs, AnalysisKey.BreakableTargets);
+    }
+
     @Override
     public Analysis analyze(Analysis analysis) {
         return breakableChildren(breakableRefs(analysis));
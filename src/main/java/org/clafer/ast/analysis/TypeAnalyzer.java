@@ -1,9 +1,11 @@
 package org.clafer.ast.analysis;
 
 import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import org.clafer.common.Check;
 import org.clafer.ast.AstSetTest;
 import org.clafer.ast.AstGlobal;
@@ -48,6 +50,16 @@ import org.clafer.common.Util;
  */
 public class TypeAnalyzer implements Analyzer {
 
+    @Override
+    public Set<AnalysisKey> reads() {
+        return EnumSet.of(AnalysisKey.Constraints);
+    }
+
+    @Override
+    public Set<AnalysisKey> writes() {
+        return EnumSet.of(AnalysisKey.Type, AnalysisKey.Constraints);
+    }
+
     @Override
     public Analysis analyze(Analysis analysis) {
         Map<AstExpr, AstClafer> typeMap = new HashMap<AstExpr, AstClafer>();
@@ -1,9 +1,11 @@
 package org.clafer.ast.analysis;
 
 import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import org.clafer.ast.AstAbstractClafer;
 
 /**
@@ -12,6 +14,16 @@ import org.clafer.ast.AstAbstractClafer;
  */
 public class TypeHierarchyDepthAnalyzer implements Analyzer {
 
+    @Override
+    public Set<AnalysisKey> reads() {
+        return EnumSet.of(AnalysisKey.Clafers);
+    }
+
+    @Override
+    public Set<AnalysisKey> writes() {
+        return EnumSet.of(AnalysisKey.Clafers, AnalysisKey.Depth);
+    }
+
     @Override
     public Analysis analyze(Analysis analysis) {
         Map<AstAbstractClafer, Integer> depthMap = new HashMap<AstAbstractClafer, Integer>();
@@ -1,7 +1,9 @@
 package org.clafer.ast.analysis;
 
 import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
 import org.clafer.ast.AstConstraint;
 
 /**
@@ -11,6 +13,16 @@ import org.clafer.ast.AstConstraint;
  */
 public class UnsatAnalyzer implements Analyzer {
 
+    @Override
+    public Set<AnalysisKey> reads() {
+        return EnumSet.of(AnalysisKey.Constraints);
+    }
+
+    @Override
+    public Set<AnalysisKey> writes() {
+        return EnumSet.of(AnalysisKey.Constraints);
+    }
+
     @Override
     public Analysis analyze(Analysis analysis) {
         List<AstConstraint> constraints = analysis.getConstraints();
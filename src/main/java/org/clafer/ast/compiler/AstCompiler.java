@@ -28,8 +28,13 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.Map;
 import org.clafer.common.Check;
+import org.clafer.common.Profile;
 import org.clafer.scope.Scope;
 import org.clafer.ast.analysis.Analysis;
 import org.clafer.ast.analysis.Format;
@@ -73,6 +78,7 @@ import org.clafer.graph.Vertex;
 import org.clafer.graph.GraphUtil;
 import org.clafer.ir.IrBoolExpr;
 import org.clafer.ir.IrDomain;
+import org.clafer.ir.IrIdFactory;
 import org.clafer.ir.IrIntExpr;
 import org.clafer.ir.IrModule;
 import org.clafer.ir.IrSetVar;
@@ -101,12 +107,32 @@ public class AstCompiler {
         // Reanalyze types
         new TypeAnalyzer()
     };
+    /**
+     * The number of instances of a constraint grounded by one task.
+     */
+    private static final int GroundBatchSize = 16;
     private final Analysis analysis;
     private final IrModule module;
+    private final ExecutorService executor;
+    private final Profile profile;
+
+    private AstCompiler(AstModel model, Scope scope, IrModule module, Analyzer[] analyzers, ExecutorService executor, Profile profile) {
+        this(executor == null
+                ? Analysis.analyze(model, scope, profile, analyzers)
+                : Analysis.analyze(model, scope, executor, profile, analyzers),
+                module, executor, profile);
+    }
 
-    private AstCompiler(AstModel model, Scope scope, IrModule module, Analyzer[] analyzers) {
-        this.analysis = Analysis.analyze(model, scope, analyzers);
+    private AstCompiler(Analysis analysis, IrModule module, ExecutorService executor, Profile profile) {
+        this.analysis = Check.notNull(analysis);
         this.module = Check.notNull(module);
+        this.executor = executor;
+        this.profile = Check.notNull(profile);
+        int claferIdCount = analysis.getModel().getClaferIdCount();
+        this.sets = new IrSetVar[claferIdCount];
+        this.siblingSets = new IrSetVar[claferIdCount][];
+        this.memberships = new IrBoolExpr[claferIdCount][];
+        this.refPointers = new IrIntVar[claferIdCount][];
     }
 
     public static AstSolutionMap compile(AstModel in, Scope scope, IrModule out) {
@@ -114,7 +140,62 @@ public class AstCompiler {
     }
 
     public static AstSolutionMap compile(AstModel in, Scope scope, IrModule out, Analyzer[] analyzers) {
-        AstCompiler compiler = new AstCompiler(in, scope, out, analyzers);
+        return compile(in, scope, out, analyzers, null);
+    }
+
+    /**
+     * Compile the model. Independent analyzers run in parallel on the executor.
+     *
+     * @param in the model
+     * @param scope the scope
+     * @param out the module to add the constraints to
+     * @param analyzers the analyzers
+     * @param executor the executor, or {@code null} to analyze on the current
+     * thread
+     * @return the solution map
+     */
+    public static AstSolutionMap compile(AstModel in, Scope scope, IrModule out, Analyzer[] analyzers, ExecutorService executor) {
+        return compile(in, scope, out, analyzers, executor, new Profile());
+    }
+
+    /**
+     * Compile the model, recording the time spent analyzing and compiling.
+     *
+     * @param in the model
+     * @param scope the scope
+     * @param out the module to add the constraints to
+     * @param analyzers the analyzers
+     * @param executor the executor, or {@code null} to analyze on the current
+     * thread
+     * @param profile the profile to record to
+     * @return the solution map
+     */
+    public static AstSolutionMap compile(AstModel in, Scope scope, IrModule out, Analyzer[] analyzers, ExecutorService executor, Profile profile) {
+        AstCompiler compiler = new AstCompiler(in, scope, out, analyzers, executor, profile);
+        return compiler.compile();
+    }
+
+    /**
+     * Compile an already analyzed model.
+     *
+     * @param analysis the analysis
+     * @param out the module to add the constraints to
+     * @return the solution map
+     */
+    public static AstSolutionMap compile(Analysis analysis, IrModule out) {
+        return compile(analysis, out, new Profile());
+    }
+
+    /**
+     * Compile an already analyzed model, recording the time spent compiling.
+     *
+     * @param analysis the analysis
+     * @param out the module to add the constraints to
+     * @param profile the profile to record to
+     * @return the solution map
+     */
+    public static AstSolutionMap compile(Analysis analysis, IrModule out, Profile profile) {
+        AstCompiler compiler = new AstCompiler(analysis, out, null, profile);
         return compiler.compile();
     }
 
@@ -123,7 +204,7 @@ public class AstCompiler {
     }
 
     public static Triple<AstSolutionMap, IrIntVar[], IrIntVar> compile(AstModel in, Scope scope, AstRef objective, IrModule out, Analyzer[] analyzers) {
-        AstCompiler compiler = new AstCompiler(in, scope, out, analyzers);
+        AstCompiler compiler = new AstCompiler(in, scope, out, analyzers, null, new Profile());
         return compiler.compile(objective);
     }
 
@@ -189,38 +270,67 @@ public class AstCompiler {
         return clafers;
     }
 
-    private AstSolutionMap compile() {
-        Pair<AstConstraint, IrBoolVar>[] softVarPairs = doCompile();
-        return new AstSolutionMap(analysis.getModel(), siblingSets, refPointers, softVarPairs, analysis);
+    /**
+     * Add the objective on top of an already compiled model. The objective is
+     * the sum of the reference values of every instance of the source Clafer.
+     *
+     * @param solution the compiled model
+     * @param objective the reference to optimize
+     * @param out the module to add the objective constraints to
+     * @return the score of each instance and their sum
+     */
+    public static Pair<IrIntVar[], IrIntVar> compileObjective(AstSolutionMap solution, AstRef objective, IrModule out) {
+        IrIdFactory previous = IrIdFactory.bind(out.getIdFactory());
+        try {
+            return doCompileObjective(solution, objective, out);
+        } finally {
+            IrIdFactory.bind(previous);
+        }
     }
 
-    private Triple<AstSolutionMap, IrIntVar[], IrIntVar> compile(AstRef objective) {
-        Pair<AstConstraint, IrBoolVar>[] softVarPairs = doCompile();
-
-        IrBoolExpr[] members = memberships.get(objective.getSourceType());
-        IrIntVar[] refs = refPointers.get(objective);
+    private static Pair<IrIntVar[], IrIntVar> doCompileObjective(AstSolutionMap solution, AstRef objective, IrModule out) {
+        IrBoolExpr[] members = solution.getMemberships(objective.getSourceType());
+        IrIntVar[] refs = solution.getRefVars(objective);
         assert members.length == refs.length;
 
         IrIntVar[] score = new IrIntVar[refs.length];
         for (int i = 0; i < members.length; i++) {
-            score[i] = domainInt("Score@" + refs[i], IrUtil.union(ZeroDomain, refs[i].getDomain()));
-            module.addConstraint(ifThenElse(members[i],
+            score[i] = domainInt("Score@" + refs[i].getName(), IrUtil.union(ZeroDomain, refs[i].getDomain()));
+            out.addConstraint(ifThenElse(members[i],
                     equal(score[i], refs[i]), equal(score[i], 0)));
         }
         IrIntExpr sum = add(score);
         IrIntVar sumScore = domainInt("SumScore@" + objective, sum.getDomain());
-        module.addConstraint(equal(sumScore, sum));
+        out.addConstraint(equal(sumScore, sum));
+
+        return new Pair<IrIntVar[], IrIntVar>(score, sumScore);
+    }
 
-        return new Triple<AstSolutionMap, IrIntVar[], IrIntVar>(
-                new AstSolutionMap(analysis.getModel(), siblingSets, refPointers, softVarPairs, analysis),
-                score, sumScore);
+    private AstSolutionMap compile() {
+        Profile.Timer timer = profile.start("AstCompiler");
+        Pair<AstConstraint, IrBoolVar>[] softVarPairs;
+        IrIdFactory previous = IrIdFactory.bind(module.getIdFactory());
+        try {
+            softVarPairs = doCompile();
+        } finally {
+            IrIdFactory.bind(previous);
+        }
+        timer.stop();
+        profile.count("IR constraints before optimization", module.getConstraints().size());
+        return new AstSolutionMap(analysis.getModel(), siblingSets, memberships, refPointers, softVarPairs, analysis);
+    }
+
+    private Triple<AstSolutionMap, IrIntVar[], IrIntVar> compile(AstRef objective) {
+        AstSolutionMap solution = compile();
+        return new Triple<AstSolutionMap, IrIntVar[], IrIntVar>(solution,
+                compileObjective(solution, objective, module));
     }
 
     private Pair<AstConstraint, IrBoolVar>[] doCompile() {
         IrSetVar rootSet = constant(new int[]{0});
-        sets.put(analysis.getModel(), rootSet);
-        siblingSets.put(analysis.getModel(), new IrSetVar[]{rootSet});
-        memberships.put(analysis.getModel(), new IrBoolExpr[]{True});
+        sets[analysis.getModel().getId()] = rootSet;
+        siblingSets[analysis.getModel().getId()] = new IrSetVar[]{rootSet};
+        memberships[analysis.getModel().getId()] = new IrBoolExpr[]{True};
 
         List<AstClafer> clafers = initOrder();
         for (AstClafer clafer : clafers) {
@@ -249,35 +359,38 @@ public class AstCompiler {
         // Map the identifiers to the ORIGINAL constraints.
         TIntObjectMap<AstConstraint> constraintMap = AstUtil.getConstraintMap(analysis.getModel());
         List<Pair<AstConstraint, IrBoolVar>> softVars = new ArrayList<Pair<AstConstraint, IrBoolVar>>();
+        List<GroundTask> groundTasks = new ArrayList<GroundTask>();
         for (AstConstraint constraint : getConstraints()) {
             AstClafer clafer = constraint.getContext();
             int scope = getScope(clafer);
-            if (constraint.isHard()) {
-                for (int j = 0; j < scope; j++) {
-                    ExpressionCompiler expressionCompiler = new ExpressionCompiler(j);
-                    IrBoolExpr thisConstraint = expressionCompiler.compile(constraint.getExpr());
-                    module.addConstraint(implies(memberships.get(clafer)[j], thisConstraint));
-                }
-            } else {
-                IrBoolVar soft = bool(constraint.toString());
+            IrBoolVar soft = null;
+            if (constraint.isSoft()) {
+                soft = bool(constraint.toString());
                 AstConstraint originalConstraint = constraintMap.get(constraint.getId());
                 softVars.add(new Pair<AstConstraint, IrBoolVar>(originalConstraint, soft));
-                for (int j = 0; j < scope; j++) {
-                    ExpressionCompiler expressionCompiler = new ExpressionCompiler(j);
-                    IrBoolExpr thisConstraint = expressionCompiler.compile(constraint.getExpr());
-                    module.addConstraint(ifOnlyIf(soft, implies(memberships.get(clafer)[j], thisConstraint)));
-                }
-                module.addConstraint(nop(soft));
+            }
+            for (int low = 0; low < scope; low += GroundBatchSize) {
+                groundTasks.add(new GroundTask(constraint, soft, low, Math.min(low + GroundBatchSize, scope)));
+            }
+            if (soft != null) {
+                groundTasks.add(new GroundTask(constraint, soft, scope, scope));
             }
         }
-        for (IrSetVar[] childSet : siblingSets.values()) {
-            for (IrSetVar set : childSet) {
-                module.addConstraint(nop(set));
+        for (IrModule grounded : ground(groundTasks)) {
+            module.addConstraints(grounded.getConstraints());
+        }
+        for (IrSetVar[] childSet : siblingSets) {
+            if (childSet != null) {
+                for (IrSetVar set : childSet) {
+                    module.addConstraint(nop(set));
+                }
             }
         }
-        for (IrIntVar[] refs : refPointers.values()) {
-            for (IrIntVar ref : refs) {
-                module.addConstraint(nop(ref));
+        for (IrIntVar[] refs : refPointers) {
+            if (refs != null) {
+                for (IrIntVar ref : refs) {
+                    module.addConstraint(nop(ref));
+                }
             }
         }
         @SuppressWarnings("unchecked")
@@ -285,10 +398,112 @@ public class AstCompiler {
         return softVarPairs;
     }
 
+    /**
+     * Ground the constraints. Every task compiles into its own module so the
+     * tasks can run on different threads. The modules are returned in the
+     * same order as the tasks, and every task creates its variables from its
+     * own part of the identifiers, so the output does not depend on
+     * scheduling.
+     *
+     * @param tasks the ground instances of the constraints
+     * @return the grounded constraints of each task
+     */
+    private List<IrModule> ground(List<GroundTask> tasks) {
+        List<IrModule> grounded = new ArrayList<IrModule>(tasks.size());
+        if (executor == null || tasks.size() < 2) {
+            for (GroundTask task : tasks) {
+                grounded.add(task.ground(module.getIdFactory()));
+            }
+            return grounded;
+        }
+        IrIdFactory[] idFactories = module.getIdFactory().split(tasks.size());
+        List<Future<IrModule>> futures = new ArrayList<Future<IrModule>>(tasks.size());
+        try {
+            for (int i = 0; i < tasks.size(); i++) {
+                final GroundTask task = tasks.get(i);
+                final IrIdFactory idFactory = idFactories[i];
+                futures.add(executor.submit(new Callable<IrModule>() {
+                    @Override
+                    public IrModule call() {
+                        return task.ground(idFactory);
+                    }
+                }));
+            }
+            for (Future<IrModule> future : futures) {
+                grounded.add(future.get());
+            }
+            module.getIdFactory().join(idFactories);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AstException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new AstException(cause);
+        } finally {
+            for (Future<IrModule> future : futures) {
+                future.cancel(true);
+            }
+        }
+        return grounded;
+    }
+
+    /**
+     * Grounds a constraint for the instances of its context in
+     * {@code [low, high)}. Soft constraints also declare their soft variable
+     * after their last instance.
+     */
+    private class GroundTask {
+
+        private final AstConstraint constraint;
+        private final IrBoolVar soft;
+        private final int low;
+        private final int high;
+
+        GroundTask(AstConstraint constraint, IrBoolVar soft, int low, int high) {
+            this.constraint = constraint;
+            this.soft = soft;
+            this.low = low;
+            this.high = high;
+        }
+
+        IrModule ground(IrIdFactory idFactory) {
+            IrIdFactory previous = IrIdFactory.bind(idFactory);
+            try {
+                return doGround(idFactory);
+            } finally {
+                IrIdFactory.bind(previous);
+            }
+        }
+
+        private IrModule doGround(IrIdFactory idFactory) {
+            IrModule out = new IrModule(idFactory);
+            IrBoolExpr[] members = memberships[constraint.getContext().getId()];
+            for (int j = low; j < high; j++) {
+                ExpressionCompiler expressionCompiler = new ExpressionCompiler(j, out);
+                IrBoolExpr thisConstraint = expressionCompiler.compile(constraint.getExpr());
+                if (soft == null) {
+                    out.addConstraint(implies(members[j], thisConstraint));
+                } else {
+                    out.addConstraint(ifOnlyIf(soft, implies(members[j], thisConstraint)));
+                }
+            }
+            if (soft != null && low == high) {
+                out.addConstraint(nop(soft));
+            }
+            return out;
+        }
+    }
+
     private void initConcrete(AstConcreteClafer clafer) {
         parentPointers.put(clafer, buildParentPointers(clafer));
         if (clafer.hasRef()) {
-            refPointers.put(clafer.getRef(), buildRefPointers(clafer.getRef()));
+            refPointers[clafer.getRef().getId()] = buildRefPointers(clafer.getRef());
         }
         switch (getFormat(clafer)) {
             case LowGroup:
@@ -301,13 +516,13 @@ public class AstCompiler {
                 throw new AstException();
         }
 
-        IrSetVar[] siblingSet = siblingSets.get(clafer);
+        IrSetVar[] siblingSet = siblingSets[clafer.getId()];
         switch (siblingSet.length) {
             case 0:
-                sets.put(clafer, EmptySet);
+                sets[clafer.getId()] = EmptySet;
                 break;
             case 1:
-                sets.put(clafer, siblingSet[0]);
+                sets[clafer.getId()] = siblingSet[0];
                 break;
             default:
                 IrSetExpr union = union(siblingSet);
@@ -318,13 +533,13 @@ public class AstCompiler {
                 IrSetVar set = set(clafer.getName(), union.getEnv(), union.getKer(), union.getCard());
                 module.addConstraint(equal(set, union));
                 module.addConstraint(equal(card(set), add(cards)));
-                sets.put(clafer, set);
+                sets[clafer.getId()] = set;
                 break;
         }
     }
 
     private void initConcreteWeight(AstConcreteClafer clafer) {
-        IrSetVar[] siblings = siblingSets.get(clafer);
+        IrSetVar[] siblings = siblingSets[clafer.getId()];
         int scope = getScope(clafer);
         int parentScope = getScope(clafer.getParent());
         IrIntExpr[] weight;
@@ -349,7 +564,7 @@ public class AstCompiler {
             // Optimize for nonsymmetric nodes. Don't compute the smallest indices, 
             // just use the cardinalities.
             weight = Util.replicate(Zero, scope);
-            IrSetVar[] childSet = siblingSets.get(clafer);
+            IrSetVar[] childSet = siblingSets[clafer.getId()];
             index = new IrIntExpr[childSet.length][];
             for (int i = 0; i < index.length; i++) {
                 index[i] = new IrIntExpr[]{card(childSet[i])};
@@ -360,7 +575,7 @@ public class AstCompiler {
     }
 
     private void constrainConcrete(AstConcreteClafer clafer) {
-        IrSetExpr[] siblingSet = siblingSets.get(clafer);
+        IrSetExpr[] siblingSet = siblingSets[clafer.getId()];
         IrIntExpr[] parents = parentPointers.get(clafer);
         if (!getPartialSolution(clafer).parentSolutionKnown()) {
             if (getGlobalCard(clafer).isExact()) {
@@ -376,10 +591,10 @@ public class AstCompiler {
         AstRef ref = refPair == null ? null : refPair.getFst();
         int refOffset = refPair == null ? 0 : refPair.getSnd().intValue();
 
-        IrBoolExpr[] members = memberships.get(clafer);
+        IrBoolExpr[] members = memberships[clafer.getId()];
         if (ref != null) {
             AstClafer tar = ref.getTargetType();
-            IrIntVar[] refs = Arrays.copyOfRange(refPointers.get(ref),
+            IrIntVar[] refs = Arrays.copyOfRange(refPointers[ref.getId()],
                     refOffset, refOffset + getScope(clafer));
             if (ref.isUnique()) {
                 if (getCard(clafer).getHigh() > 1) {
@@ -398,7 +613,7 @@ public class AstCompiler {
                 IrIntExpr size =
                         ref.getTargetType() instanceof AstIntClafer
                         ? constant(analysis.getScope().getIntHigh() - analysis.getScope().getIntLow() + 1)
-                        : card(sets.get(ref.getTargetType()));
+                        : card(sets[ref.getTargetType().getId()]);
                 for (IrSetExpr sibling : siblingSet) {
                     module.addConstraint(lessThanEqual(card(sibling), size));
                 }
@@ -413,7 +628,7 @@ public class AstCompiler {
                     module.addConstraint(implies(members[i], notEqual(refs[i], getUninitalizedRef(tar))));
                 }
             } else {
-                IrSetVar targetSet = sets.get(ref.getTargetType());
+                IrSetVar targetSet = sets[ref.getTargetType().getId()];
                 for (int i = 0; i < refs.length; i++) {
                     module.addConstraint(implies(members[i], member(refs[i], targetSet)));
                 }
@@ -444,8 +659,8 @@ public class AstCompiler {
                     childIndex.add(new IrIntExpr[]{
                         analysis.isBreakableRefId(ref, i + refOffset)
                         // The id of the target is the weight.
-                        //                        ? sub(mul(asInt(members[i]), refHigh + 1), $(refPointers.get(ref)[i + refOffset]))
-                        ? minus(refPointers.get(ref)[i + refOffset])
+                        //                        ? sub(mul(asInt(members[i]), refHigh + 1), $(refPointers[ref.getId()][i + refOffset]))
+                        ? minus(refPointers[ref.getId()][i + refOffset])
                         // If analysis says that this id does not need breaking
                         // then give it a constant weight. Any constant is fine.
                         : Zero
@@ -454,7 +669,7 @@ public class AstCompiler {
                 if (analysis.isInheritedBreakableTarget(clafer)) {
                     for (Pair<AstClafer, Integer> hierarchy : analysis.getHierarcyIds(clafer, i)) {
                         for (AstRef sourceRef : analysis.getBreakableTarget(hierarchy.getFst())) {
-                            IrIntVar[] sourceRefs = refPointers.get(sourceRef);
+                            IrIntVar[] sourceRefs = refPointers[sourceRef.getId()];
 
                             IrIntExpr[] array = new IrIntExpr[sourceRefs.length];
                             System.arraycopy(sourceRefs, 0, array, 0, array.length);
@@ -497,12 +712,12 @@ public class AstCompiler {
         Card groupCard = clafer.getGroupCard();
         List<AstConcreteClafer> children = clafer.getChildren();
         if (groupCard.isBounded()) {
-            IrBoolExpr[] members = memberships.get(clafer);
+            IrBoolExpr[] members = memberships[clafer.getId()];
             IrSetVar[][] childrenSets = new IrSetVar[children.size()][];
             boolean featureGroup = true;
             for (int i = 0; i < childrenSets.length; i++) {
                 AstConcreteClafer child = children.get(i);
-                childrenSets[i] = siblingSets.get(child);
+                childrenSets[i] = siblingSets[child.getId()];
                 featureGroup &= getCard(child).getHigh() == 1;
             }
             int scope = getScope(clafer);
@@ -539,7 +754,7 @@ public class AstCompiler {
         PartialSolution partialSolution = getPartialSolution(clafer);
 
         IrSetVar[] childSet = buildChildSet(clafer);
-        siblingSets.put(clafer, childSet);
+        siblingSets[clafer.getId()] = childSet;
 
         IrBoolExpr[] members = new IrBoolExpr[getScope(clafer)];
         for (int i = 0; i < members.length; i++) {
@@ -553,19 +768,19 @@ public class AstCompiler {
             }
         }
         Check.noNulls(members);
-        memberships.put(clafer, members);
+        memberships[clafer.getId()] = members;
     }
 
     private void constrainLowGroupConcrete(AstConcreteClafer clafer) {
-        IrBoolExpr[] members = memberships.get(clafer);
-        IrSetVar set = sets.get(clafer);
+        IrBoolExpr[] members = memberships[clafer.getId()];
+        IrSetVar set = sets[clafer.getId()];
 
         module.addConstraint(selectN(members, card(set)));
 
-        IrBoolExpr[] parentMembership = memberships.get(clafer.getParent());
+        IrBoolExpr[] parentMembership = memberships[clafer.getParent().getId()];
         Card card = getCard(clafer);
 
-        IrSetVar[] childSet = siblingSets.get(clafer);
+        IrSetVar[] childSet = siblingSets[clafer.getId()];
         for (int i = 0; i < parentMembership.length; i++) {
             IrBoolExpr parentMember = parentMembership[i];
             if (card.isBounded()) {
@@ -612,10 +827,10 @@ public class AstCompiler {
             }
         }
 
-        siblingSets.put(clafer, children);
+        siblingSets[clafer.getId()] = children;
 
         IrBoolExpr[] members = new IrBoolExpr[getScope(clafer)];
-        IrBoolExpr[] parentMembership = memberships.get(clafer.getParent());
+        IrBoolExpr[] parentMembership = memberships[clafer.getParent().getId()];
         if (lowCard == 1) {
             if (members.length == parentMembership.length) {
                 members = parentMembership;
@@ -632,20 +847,20 @@ public class AstCompiler {
             Arrays.fill(members, parentMembership.length * lowCard, members.length, False);
         }
         Check.noNulls(members);
-        memberships.put(clafer, members);
+        memberships[clafer.getId()] = members;
     }
 
     private void constrainParentGroupConcrete(AstConcreteClafer clafer) {
         PartialSolution partialParentSolution = getPartialParentSolution(clafer);
 
-        IrSetVar[] children = siblingSets.get(clafer);
+        IrSetVar[] children = siblingSets[clafer.getId()];
         assert getCard(clafer).getLow() == getCard(clafer).getHigh();
         int lowCard = getCard(clafer).getLow();
         for (int i = 0; i < children.length; i++) {
             if (!partialParentSolution.hasClafer(i)) {
-                module.addConstraint(implies(memberships.get(clafer.getParent())[i],
+                module.addConstraint(implies(memberships[clafer.getParent().getId()][i],
                         equal(children[i], constant(Util.fromTo(i * lowCard, i * lowCard + lowCard)))));
-                module.addConstraint(implies(not(memberships.get(clafer.getParent())[i]),
+                module.addConstraint(implies(not(memberships[clafer.getParent().getId()][i]),
                         equal(children[i], EmptySet)));
             }
         }
@@ -656,8 +871,8 @@ public class AstCompiler {
         IrBoolExpr[] members = new IrBoolExpr[getScope(clafer)];
         for (int i = 0; i < subSets.length; i++) {
             AstClafer sub = clafer.getSubs().get(i);
-            subSets[i] = sets.get(sub);
-            IrBoolExpr[] subMembers = memberships.get(sub);
+            subSets[i] = sets[sub.getId()];
+            IrBoolExpr[] subMembers = memberships[sub.getId()];
             int offset = getOffset(clafer, sub);
             for (int j = 0; j < subMembers.length; j++) {
                 assert members[offset + j] == null;
@@ -665,7 +880,7 @@ public class AstCompiler {
             }
         }
         if (subSets.length == 1) {
-            sets.put(clafer, sets.get(clafer.getSubs().get(0)));
+            sets[clafer.getId()] = sets[clafer.getSubs().get(0).getId()];
         } else {
             TIntArrayList env = new TIntArrayList();
             TIntArrayList ker = new TIntArrayList();
@@ -681,13 +896,13 @@ public class AstCompiler {
             if (!AstUtil.isTypeRoot(clafer)) {
                 module.addConstraint(boolChannel(members, unionSet));
             }
-            sets.put(clafer, unionSet);
+            sets[clafer.getId()] = unionSet;
         }
         Check.noNulls(members);
-        memberships.put(clafer, members);
+        memberships[clafer.getId()] = members;
 
         if (clafer.hasRef()) {
-            refPointers.put(clafer.getRef(), buildRefPointers(clafer.getRef()));
+            refPointers[clafer.getRef().getId()] = buildRefPointers(clafer.getRef());
         }
     }
 
@@ -701,21 +916,25 @@ public class AstCompiler {
     private void constrainAbstract(AstAbstractClafer clafer) {
         // Do nothing.
     }
-    private final Map<AstClafer, IrSetVar> sets = new HashMap<AstClafer, IrSetVar>();
-    private final Map<AstClafer, IrSetVar[]> siblingSets = new HashMap<AstClafer, IrSetVar[]>();
-    private final Map<AstClafer, IrBoolExpr[]> memberships = new HashMap<AstClafer, IrBoolExpr[]>();
+    // Indexed by Clafer id.
+    private final IrSetVar[] sets;
+    private final IrSetVar[][] siblingSets;
+    private final IrBoolExpr[][] memberships;
     private final Map<AstConcreteClafer, IrIntVar[]> parentPointers = new HashMap<AstConcreteClafer, IrIntVar[]>();
-    private final Map<AstRef, IrIntVar[]> refPointers = new HashMap<AstRef, IrIntVar[]>();
+    // Indexed by reference id.
+    private final IrIntVar[][] refPointers;
     private final Map<AstClafer, IrIntExpr[]> weights = new HashMap<AstClafer, IrIntExpr[]>();
     private final Map<AstClafer, IrIntExpr[][]> indices = new HashMap<AstClafer, IrIntExpr[][]>();
 
     private class ExpressionCompiler implements AstExprVisitor<Void, IrExpr> {
 
         private final int thisId;
+        private final IrModule out;
         private final Map<AstLocal, IrIntExpr> locals = new HashMap<AstLocal, IrIntExpr>();
 
-        private ExpressionCompiler(int thisId) {
+        private ExpressionCompiler(int thisId, IrModule out) {
             this.thisId = thisId;
+            this.out = out;
         }
 
         private IrExpr compile(AstExpr expr) {
@@ -787,7 +1006,7 @@ public class AstCompiler {
 
         @Override
         public IrExpr visit(AstGlobal ast, Void a) {
-            IrSetVar global = sets.get(ast.getType());
+            IrSetVar global = sets[ast.getType().getId()];
             if (global.getEnv().size() == 1) {
                 int[] constant = IrUtil.getConstant(global);
                 if (constant != null) {
@@ -819,11 +1038,11 @@ public class AstCompiler {
                     return $intLeft;
                 }
                 // Why empty set? The "take" var can contain unused.
-                return joinRelation(singleton($intLeft), Util.snoc(siblingSets.get(right), EmptySet), true);
+                return joinRelation(singleton($intLeft), Util.snoc(siblingSets[right.getId()], EmptySet), true);
             } else if (left instanceof IrSetExpr) {
                 IrSetExpr $setLeft = (IrSetExpr) left;
                 // Why empty set? The "take" var can contain unused.
-                return joinRelation($setLeft, Util.snoc(siblingSets.get(right), EmptySet), true);
+                return joinRelation($setLeft, Util.snoc(siblingSets[right.getId()], EmptySet), true);
             }
             throw new AstException();
         }
@@ -877,11 +1096,11 @@ public class AstCompiler {
             if ($deref instanceof IrIntExpr) {
                 IrIntExpr $intDeref = (IrIntExpr) $deref;
                 // Why zero? The "take" var can contain unused.
-                return element(Util.snoc(refPointers.get(derefType.getRef()), Zero), $intDeref);
+                return element(Util.snoc(refPointers[derefType.getRef().getId()], Zero), $intDeref);
             } else if ($deref instanceof IrSetExpr) {
                 IrSetExpr $setDeref = (IrSetExpr) $deref;
                 // Why zero? The "take" var can contain unused.
-                return joinFunction($setDeref, Util.snoc(refPointers.get(derefType.getRef()), Zero), globalCardinality);
+                return joinFunction($setDeref, Util.snoc(refPointers[derefType.getRef().getId()], Zero), globalCardinality);
             }
             throw new AstException();
         }
@@ -1113,7 +1332,7 @@ public class AstCompiler {
                             ker.contains(i) ? True
                             : bool(Util.intercalate("/", AstUtil.getNames(decl.getLocals())) + "#" + i));
                 }
-                module.addConstraint(boolChannel(Util.mapSnd(Arrays.asList(members)), setBody));
+                out.addConstraint(boolChannel(Util.mapSnd(Arrays.asList(members)), setBody));
                 Pair<IrIntExpr, IrBoolExpr>[][] sequence = decl.isDisjoint() ? Util.permutations(members,
                         decl.getLocals().length) : Util.sequence(members, decl.getLocals().length);
 
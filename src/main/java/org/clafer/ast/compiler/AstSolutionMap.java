@@ -1,6 +1,9 @@
 package org.clafer.ast.compiler;
 
-import java.util.Map;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
 import org.clafer.common.Check;
 import org.clafer.ast.analysis.Analysis;
 import org.clafer.ast.AstClafer;
@@ -9,6 +12,7 @@ import org.clafer.ast.AstException;
 import org.clafer.ast.AstModel;
 import org.clafer.ast.AstRef;
 import org.clafer.collection.Pair;
+import org.clafer.ir.IrBoolExpr;
 import org.clafer.ir.IrBoolVar;
 import org.clafer.ir.IrIntVar;
 import org.clafer.ir.IrSetVar;
@@ -17,21 +21,28 @@ import org.clafer.ir.IrSetVar;
  *
  * @author jimmy
  */
-public class AstSolutionMap {
+public class AstSolutionMap implements Serializable {
+
+    private static final long serialVersionUID = 1L;
 
     private final AstModel model;
-    private final Map<AstClafer, IrSetVar[]> siblingVars;
-    private final Map<AstRef, IrIntVar[]> refVars;
+    // Indexed by Clafer id.
+    private final IrSetVar[][] siblingVars;
+    private final IrBoolExpr[][] memberships;
+    // Indexed by reference id.
+    private final IrIntVar[][] refVars;
     private final Pair<AstConstraint, IrBoolVar>[] softVars;
     private final Analysis analysis;
 
     AstSolutionMap(AstModel model,
-            Map<AstClafer, IrSetVar[]> sibling,
-            Map<AstRef, IrIntVar[]> refVars,
+            IrSetVar[][] sibling,
+            IrBoolExpr[][] memberships,
+            IrIntVar[][] refVars,
             Pair<AstConstraint, IrBoolVar>[] softVars,
             Analysis analysis) {
         this.model = Check.notNull(model);
         this.siblingVars = Check.notNull(sibling);
+        this.memberships = Check.notNull(memberships);
         this.refVars = Check.notNull(refVars);
         this.softVars = Check.noNulls(softVars);
         this.analysis = analysis;
@@ -46,11 +57,15 @@ public class AstSolutionMap {
     }
 
     public IrSetVar[] getSiblingVars(AstClafer clafer) {
-        return notNull(clafer + " not part of the AST solution", siblingVars.get(clafer));
+        return notNull(clafer + " not part of the AST solution", get(siblingVars, clafer.getId()));
+    }
+
+    public IrBoolExpr[] getMemberships(AstClafer clafer) {
+        return notNull(clafer + " not part of the AST solution", get(memberships, clafer.getId()));
     }
 
     public IrIntVar[] getRefVars(AstRef ref) {
-        return notNull(ref + " not part of the AST solution", refVars.get(ref));
+        return notNull(ref + " not part of the AST solution", get(refVars, ref.getId()));
     }
 
     /**
@@ -62,6 +77,57 @@ public class AstSolutionMap {
         return softVars;
     }
 
+    /**
+     * Returns the integer variables that are read after solving. These are the
+     * references, the memberships, and the soft variables. Everything else in
+     * the compiled module only matters through its effect on the live
+     * variables.
+     *
+     * @return the live integer variables
+     */
+    public Set<IrIntVar> getLiveIntVars() {
+        Set<IrIntVar> live = new HashSet<IrIntVar>();
+        for (IrIntVar[] refs : refVars) {
+            if (refs != null) {
+                live.addAll(Arrays.asList(refs));
+            }
+        }
+        for (IrBoolExpr[] members : memberships) {
+            if (members != null) {
+                for (IrBoolExpr member : members) {
+                    // Memberships are always variables or constants.
+                    if (member instanceof IrBoolVar) {
+                        live.add((IrBoolVar) member);
+                    }
+                }
+            }
+        }
+        for (Pair<AstConstraint, IrBoolVar> softVar : softVars) {
+            live.add(softVar.getSnd());
+        }
+        return live;
+    }
+
+    /**
+     * Returns the set variables that are read after solving. These are the
+     * sibling sets.
+     *
+     * @return the live set variables
+     */
+    public Set<IrSetVar> getLiveSetVars() {
+        Set<IrSetVar> live = new HashSet<IrSetVar>();
+        for (IrSetVar[] siblings : siblingVars) {
+            if (siblings != null) {
+                live.addAll(Arrays.asList(siblings));
+            }
+        }
+        return live;
+    }
+
+    private static <T> T get(T[] table, int id) {
+        return id >= 0 && id < table.length ? table[id] : null;
+    }
+
     private static <T> T notNull(String message, T t) {
         if (t == null) {
             throw new AstException(message);
@@ -1,6 +1,7 @@
 package org.clafer.choco.constraint;
 
 import java.util.Collection;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.clafer.choco.constraint.propagator.PropAnd;
 import org.clafer.choco.constraint.propagator.PropJoinRelation;
 import org.clafer.choco.constraint.propagator.PropJoinFunction;
@@ -25,6 +26,7 @@ import org.clafer.choco.constraint.propagator.PropSetNotEqual;
 import org.clafer.choco.constraint.propagator.PropSetNotEqualC;
 import org.clafer.choco.constraint.propagator.PropSetSum;
 import org.clafer.choco.constraint.propagator.PropSetUnion;
+import org.clafer.choco.constraint.propagator.PropSharedBound;
 import org.clafer.common.Util;
 import solver.constraints.Constraint;
 import solver.constraints.binary.PropEqualX_Y;
@@ -264,4 +266,19 @@ public class Constraints {
         constraint.setPropagators(new PropLexChainChannel(strings, ints));
         return constraint;
     }
+
+    /**
+     * The objective must strictly improve on the bound. The bound can be
+     * tightened from other threads during search.
+     *
+     * @param objective the objective
+     * @param bound the best objective found so far
+     * @param maximize improve by increasing or decreasing
+     * @return the constraint
+     */
+    public static Constraint sharedBound(IntVar objective, AtomicInteger bound, boolean maximize) {
+        Constraint<IntVar, PropSharedBound> constraint = new Constraint<IntVar, PropSharedBound>(new IntVar[]{objective}, objective.getSolver());
+        constraint.setPropagators(new PropSharedBound(objective, bound, maximize));
+        return constraint;
+    }
 }
@@ -0,0 +1,68 @@
+package org.clafer.choco.constraint.propagator;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import solver.constraints.Propagator;
+import solver.constraints.PropagatorPriority;
+import solver.exception.ContradictionException;
+import solver.variables.EventType;
+import solver.variables.IntVar;
+import util.ESat;
+
+/**
+ * The objective must strictly improve on a bound that other solvers, on other
+ * threads, keep tightening. The bound is read whenever the objective changes.
+ *
+ * @author jimmy
+ */
+public class PropSharedBound extends Propagator<IntVar> {
+
+    private final IntVar objective;
+    private final AtomicInteger bound;
+    private final boolean maximize;
+
+    public PropSharedBound(IntVar objective, AtomicInteger bound, boolean maximize) {
+        super(new IntVar[]{objective}, PropagatorPriority.UNARY, false);
+        this.objective = objective;
+        this.bound = bound;
+        this.maximize = maximize;
+    }
+
+    @Override
+    public int getPropagationConditions(int vIdx) {
+        return EventType.INSTANTIATE.mask + EventType.BOUND.mask;
+    }
+
+    @Override
+    public void propagate(int evtmask) throws ContradictionException {
+        if (maximize) {
+            objective.updateLowerBound(bound.get() + 1, aCause);
+        } else {
+            objective.updateUpperBound(bound.get() - 1, aCause);
+        }
+    }
+
+    @Override
+    public void propagate(int idxVarInProp, int mask) throws ContradictionException {
+        propagate(mask);
+    }
+
+    @Override
+    public ESat isEntailed() {
+        int b = bound.get();
+        if (maximize) {
+            if (objective.getLB() > b) {
+                return ESat.TRUE;
+            }
+            return objective.getUB() <= b ? ESat.FALSE : ESat.UNDEFINED;
+        }
+        if (objective.getUB() < b) {
+            return ESat.TRUE;
+        }
+        return objective.getLB() >= b ? ESat.FALSE : ESat.UNDEFINED;
+    }
+
+    @Override
+    public String toString() {
+        return objective + (maximize ? " > " : " < ") + bound.get();
+    }
+}
@@ -1,5 +1,6 @@
 package org.clafer.collection;
 
+import java.io.Serializable;
 import org.clafer.common.Util;
 
 /**
@@ -10,7 +11,9 @@ import org.clafer.common.Util;
  * @param <B> the type of snd
  * @author jimmy
  */
-public class Pair<A, B> {
+public class Pair<A, B> implements Serializable {
+
+    private static final long serialVersionUID = 1L;
 
     private final A fst;
     private final B snd;
@@ -0,0 +1,209 @@
+package org.clafer.common;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * <p>
+ * The time and allocations spent in each phase of compilation, along with the
+ * size of what was built. Phases are recorded in the order they finish.
+ * </p>
+ * <p>
+ * Allocations are measured per thread when the JVM supports it, otherwise
+ * they are estimated from the change in used heap, which is skewed by garbage
+ * collections. Phases can be recorded from any thread.
+ * </p>
+ *
+ * @author jimmy
+ */
+public class Profile {
+
+    private static final AllocationCounter allocationCounter = newAllocationCounter();
+    private final List<Phase> phases = new ArrayList<Phase>();
+    private final Map<String, Long> counts = new LinkedHashMap<String, Long>();
+
+    public Profile() {
+    }
+
+    /**
+     * Construct a copy of another profile. Used to build on top of a profile
+     * of a shared compilation.
+     *
+     * @param profile the profile to copy
+     */
+    public Profile(Profile profile) {
+        synchronized (profile) {
+            phases.addAll(profile.phases);
+            counts.putAll(profile.counts);
+        }
+    }
+
+    /**
+     * Start timing a phase. The phase is recorded once the timer is stopped.
+     *
+     * @param name the name of the phase
+     * @return the timer
+     */
+    public Timer start(String name) {
+        return new Timer(name);
+    }
+
+    /**
+     * Record the size of something built during compilation, for example the
+     * number of variables. Recording the same name again replaces the count.
+     *
+     * @param name the name of the count
+     * @param count the count
+     */
+    public synchronized void count(String name, long count) {
+        counts.put(name, count);
+    }
+
+    private synchronized void record(Phase phase) {
+        phases.add(phase);
+    }
+
+    /**
+     * Returns the finished phases.
+     *
+     * @return the phases
+     */
+    public synchronized List<Phase> getPhases() {
+        return Collections.unmodifiableList(new ArrayList<Phase>(phases));
+    }
+
+    /**
+     * Returns the counts.
+     *
+     * @return the counts
+     */
+    public synchronized Map<String, Long> getCounts() {
+        return Collections.unmodifiableMap(new LinkedHashMap<String, Long>(counts));
+    }
+
+    /**
+     * Returns the total time spent in the phases.
+     *
+     * @return the total time in nanoseconds
+     */
+    public synchronized long getTotalNanos() {
+        long total = 0;
+        for (Phase phase : phases) {
+            total += phase.getNanos();
+        }
+        return total;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized String toString() {
+        StringBuilder result = new StringBuilder();
+        for (Phase phase : phases) {
+            result.append(phase).append('\n');
+        }
+        for (Entry<String, Long> count : counts.entrySet()) {
+            result.append(count.getKey()).append(": ").append(count.getValue()).append('\n');
+        }
+        return result.append("total: ").append(getTotalNanos() / 1000000).append("ms").toString();
+    }
+
+    public class Timer {
+
+        private final String name;
+        private final long startNanos;
+        private final long startBytes;
+
+        Timer(String name) {
+            this.name = Check.notNull(name);
+            this.startBytes = allocationCounter.allocatedBytes();
+            this.startNanos = System.nanoTime();
+        }
+
+        /**
+         * Stop timing and record the phase.
+         *
+         * @return the recorded phase
+         */
+        public Phase stop() {
+            long nanos = System.nanoTime() - startNanos;
+            long bytes = allocationCounter.allocatedBytes() - startBytes;
+            Phase phase = new Phase(name, nanos, Math.max(0, bytes));
+            record(phase);
+            return phase;
+        }
+    }
+
+    public static class Phase {
+
+        private final String name;
+        private final long nanos;
+        private final long allocatedBytes;
+
+        public Phase(String name, long nanos, long allocatedBytes) {
+            this.name = Check.notNull(name);
+            this.nanos = nanos;
+            this.allocatedBytes = allocatedBytes;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return the time spent in nanoseconds
+         */
+        public long getNanos() {
+            return nanos;
+        }
+
+        /**
+         * @return the estimated bytes allocated
+         */
+        public long getAllocatedBytes() {
+            return allocatedBytes;
+        }
+
+        @Override
+        public String toString() {
+            return name + ": " + (nanos / 1000000) + "ms, " + (allocatedBytes / 1024) + "KiB";
+        }
+    }
+
+    private static AllocationCounter newAllocationCounter() {
+        try {
+            final java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+            if (bean instanceof com.sun.management.ThreadMXBean) {
+                final com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+                if (sunBean.isThreadAllocatedMemorySupported() && sunBean.isThreadAllocatedMemoryEnabled()) {
+                    return new AllocationCounter() {
+                        @Override
+                        long allocatedBytes() {
+                            return sunBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+                        }
+                    };
+                }
+            }
+        } catch (LinkageError e) {
+            // Not a HotSpot JVM. Fall back to the used heap.
+        }
+        return new AllocationCounter() {
+            @Override
+            long allocatedBytes() {
+                Runtime runtime = Runtime.getRuntime();
+                return runtime.totalMemory() - runtime.freeMemory();
+            }
+        };
+    }
+
+    private static abstract class AllocationCounter {
+
+        abstract long allocatedBytes();
+    }
+}
@@ -0,0 +1,161 @@
+package org.clafer.compiler;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import org.clafer.common.Check;
+import solver.Solver;
+import solver.search.loop.monitors.IMonitorDownBranch;
+import solver.search.loop.monitors.IMonitorSolution;
+import solver.search.measure.IMeasures;
+import solver.variables.IntVar;
+
+/**
+ * Interrupts the search once the {@link ClaferBudget} of the current query is
+ * spent. When optimizing, also keeps the best solution found so far, since an
+ * interrupted search leaves the variables wherever it stopped.
+ *
+ * @param <T> the type of best solution
+ * @author jimmy
+ */
+class BudgetMonitor<T> implements IMonitorDownBranch, IMonitorSolution {
+
+    private final Solver solver;
+    // Null if not optimizing.
+    private final IntVar score;
+    private final boolean maximize;
+    // Null if not optimizing.
+    private final Callable<T> payload;
+    // Null if no query is running under a budget.
+    private ClaferBudget budget;
+    private boolean timed;
+    private long deadline;
+    private long startNodes;
+    private long startFails;
+    private long solutions;
+    private boolean limitReached;
+    // The bound after the initial propagation. Null if not yet branched.
+    private Integer bound;
+    private Integer bestScore;
+    private T best;
+
+    BudgetMonitor(Solver solver) {
+        this(solver, null, false, null);
+    }
+
+    BudgetMonitor(Solver solver, IntVar score, boolean maximize, Callable<T> payload) {
+        this.solver = Check.notNull(solver);
+        this.score = score;
+        this.maximize = maximize;
+        this.payload = payload;
+        solver.getSearchLoop().plugSearchMonitor(this);
+    }
+
+    /**
+     * Start spending the budget. Call before the search.
+     *
+     * @param budget the budget for the query
+     */
+    void start(ClaferBudget budget) {
+        IMeasures measures = solver.getMeasures();
+        this.budget = Check.notNull(budget);
+        this.timed = budget.getTimeMillis() != Long.MAX_VALUE;
+        this.deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(budget.getTimeMillis());
+        this.startNodes = measures.getNodeCount();
+        this.startFails = measures.getFailCount();
+        this.solutions = 0;
+        this.limitReached = false;
+        this.bound = null;
+        this.bestScore = null;
+        this.best = null;
+    }
+
+    /**
+     * Stop spending the budget. Call after the search, even if it failed.
+     */
+    void stop() {
+        this.budget = null;
+    }
+
+    boolean isLimitReached() {
+        return limitReached;
+    }
+
+    /**
+     * The result of the last optimization query.
+     *
+     * @return the best solution found, and whether it is optimal
+     */
+    ClaferResult<T> getResult() {
+        if (!limitReached) {
+            return best == null
+                    ? ClaferResult.<T>unsatisfiable()
+                    : ClaferResult.optimal(best, bestScore);
+        }
+        if (best == null) {
+            return ClaferResult.timedOut(bound);
+        }
+        if (bound == null || bound.equals(bestScore)) {
+            // Either the search never branched or the best meets the bound.
+            return ClaferResult.optimal(best, bestScore);
+        }
+        return ClaferResult.bestFound(best, bestScore, bound);
+    }
+
+    @Override
+    public void beforeDownLeftBranch() {
+        checkBudget();
+    }
+
+    @Override
+    public void afterDownLeftBranch() {
+    }
+
+    @Override
+    public void beforeDownRightBranch() {
+        checkBudget();
+    }
+
+    @Override
+    public void afterDownRightBranch() {
+    }
+
+    @Override
+    public void onSolution() {
+        if (budget == null) {
+            return;
+        }
+        solutions++;
+        if (payload != null) {
+            int value = score.getValue();
+            if (bestScore == null || (maximize ? value > bestScore : value < bestScore)) {
+                try {
+                    best = payload.call();
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+                bestScore = value;
+            }
+        }
+    }
+
+    /**
+     * The solution limit is only enforced at the next branch, so that the
+     * solution that reached it is still returned.
+     */
+    private void checkBudget() {
+        if (budget == null) {
+            return;
+        }
+        if (score != null && bound == null) {
+            bound = maximize ? score.getUB() : score.getLB();
+        }
+        IMeasures measures = solver.getMeasures();
+        if (solutions >= budget.getSolutions()
+                || measures.getNodeCount() - startNodes >= budget.getNodes()
+                || measures.getFailCount() - startFails >= budget.getFails()
+                || (timed && System.nanoTime() - deadline >= 0)) {
+            limitReached = true;
+            solver.getSearchLoop().interrupt("Budget of " + budget + " spent.");
+        }
+    }
+}
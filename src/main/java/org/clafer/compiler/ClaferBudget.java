@@ -0,0 +1,134 @@
+package org.clafer.compiler;
+
+/**
+ * <p>
+ * How much search a single query is allowed. Budgets are immutable, each
+ * setter returns a new copy.
+ * </p>
+ * <p>
+ * The limits are checked before every branch, so a query can run over by as
+ * long as it takes to propagate one node. When a limit is hit, the query
+ * returns the best it found so far instead of running to the end.
+ * </p>
+ *
+ * @author jimmy
+ * @see ClaferSolver#find(ClaferBudget)
+ * @see ClaferObjective#optimal(ClaferBudget)
+ * @see ClaferUnsat#minUnsat(ClaferBudget)
+ */
+public class ClaferBudget {
+
+    /**
+     * Search until the query is answered.
+     */
+    public static final ClaferBudget Unlimited = new ClaferBudget(
+            Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE);
+    private final long timeMillis;
+    private final long nodes;
+    private final long fails;
+    private final long solutions;
+
+    private ClaferBudget(long timeMillis, long nodes, long fails, long solutions) {
+        this.timeMillis = timeMillis;
+        this.nodes = nodes;
+        this.fails = fails;
+        this.solutions = solutions;
+    }
+
+    private static long checkLimit(String what, long limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException(what + " limit must be positive, not " + limit + ".");
+        }
+        return limit;
+    }
+
+    /**
+     * Returns {@code true} if none of the limits are set.
+     *
+     * @return {@code true} if unlimited, {@code false} otherwise
+     */
+    public boolean isUnlimited() {
+        return timeMillis == Long.MAX_VALUE && nodes == Long.MAX_VALUE
+                && fails == Long.MAX_VALUE && solutions == Long.MAX_VALUE;
+    }
+
+    public long getTimeMillis() {
+        return timeMillis;
+    }
+
+    /**
+     * Stop searching after the wall-clock time, measured from when the query
+     * starts.
+     *
+     * @param timeMillis the time limit in milliseconds
+     * @return the new budget
+     */
+    public ClaferBudget timeMillis(long timeMillis) {
+        return new ClaferBudget(checkLimit("Time", timeMillis), nodes, fails, solutions);
+    }
+
+    public long getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Stop searching after visiting this many nodes of the search tree.
+     *
+     * @param nodes the node limit
+     * @return the new budget
+     */
+    public ClaferBudget nodes(long nodes) {
+        return new ClaferBudget(timeMillis, checkLimit("Node", nodes), fails, solutions);
+    }
+
+    public long getFails() {
+        return fails;
+    }
+
+    /**
+     * Stop searching after this many failures.
+     *
+     * @param fails the fail limit
+     * @return the new budget
+     */
+    public ClaferBudget fails(long fails) {
+        return new ClaferBudget(timeMillis, nodes, checkLimit("Fail", fails), solutions);
+    }
+
+    public long getSolutions() {
+        return solutions;
+    }
+
+    /**
+     * Stop searching after this many solutions. When optimizing, every
+     * solution is an improvement over the last.
+     *
+     * @param solutions the solution limit
+     * @return the new budget
+     */
+    public ClaferBudget solutions(long solutions) {
+        return new ClaferBudget(timeMillis, nodes, fails, checkLimit("Solution", solutions));
+    }
+
+    @Override
+    public String toString() {
+        if (isUnlimited()) {
+            return "unlimited";
+        }
+        StringBuilder result = new StringBuilder();
+        append(result, "time", timeMillis, "ms");
+        append(result, "nodes", nodes, "");
+        append(result, "fails", fails, "");
+        append(result, "solutions", solutions, "");
+        return result.toString();
+    }
+
+    private static void append(StringBuilder result, String name, long limit, String unit) {
+        if (limit != Long.MAX_VALUE) {
+            if (result.length() > 0) {
+                result.append(", ");
+            }
+            result.append(name).append(' ').append(limit).append(unit);
+        }
+    }
+}
@@ -1,9 +1,11 @@
 package org.clafer.compiler;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
 import org.clafer.ast.AstAbstractClafer;
 import org.clafer.ast.AstClafer;
 import org.clafer.ast.AstConcreteClafer;
@@ -12,12 +14,16 @@ import org.clafer.scope.Scope;
 import org.clafer.ast.AstModel;
 import org.clafer.ast.AstRef;
 import org.clafer.ast.AstUtil;
+import org.clafer.ast.analysis.Analysis;
+import org.clafer.ast.analysis.Analyzer;
+import org.clafer.ast.analysis.SizeEstimate;
+import org.clafer.ast.analysis.SizeLimitAnalyzer;
 import org.clafer.ast.analysis.UnsatAnalyzer;
 import org.clafer.ast.compiler.AstCompiler;
 import org.clafer.ast.compiler.AstSolutionMap;
 import org.clafer.choco.constraint.Constraints;
 import org.clafer.collection.Pair;
-import org.clafer.collection.Triple;
+import org.clafer.common.Profile;
 import org.clafer.common.Util;
 import org.clafer.compiler.ClaferObjective.Objective;
 import org.clafer.graph.GraphUtil;
@@ -30,14 +36,16 @@ import org.clafer.ir.IrModule;
 import org.clafer.ir.IrSetConstant;
 import org.clafer.ir.IrSetVar;
 import org.clafer.ir.compiler.IrCompiler;
+import org.clafer.ir.compiler.IrOptimizedModule;
 import org.clafer.ir.compiler.IrSolutionMap;
 import org.clafer.scope.ScopeBuilder;
 import solver.Solver;
 import solver.constraints.Constraint;
 import solver.constraints.ICF;
+import solver.exception.ContradictionException;
 import solver.search.loop.monitors.IMonitorSolution;
 import solver.search.strategy.IntStrategyFactory;
-import solver.search.strategy.SetStrategyFactory;
+import solver.search.strategy.strategy.AbstractStrategy;
 import solver.search.strategy.strategy.StrategiesSequencer;
 import solver.variables.BoolVar;
 import solver.variables.IntVar;
@@ -51,10 +59,51 @@ import solver.variables.VF;
  */
 public class ClaferCompiler {
 
+    /**
+     * The analyzers used for Min-Unsat and Unsat-Core. Every constraint is
+     * softened.
+     */
+    static final Analyzer[] UnsatAnalyzers = Util.cons(new UnsatAnalyzer(), AstCompiler.DefaultAnalyzers);
+
     private ClaferCompiler() {
     }
 
-    private static SetVar[] getSetVars(AstModel model, ClaferSolutionMap map) {
+    /**
+     * Add the size limits to the end of the analyzers.
+     *
+     * @param analyzers the analyzers
+     * @param option the options
+     * @return the analyzers with the size limits
+     */
+    static Analyzer[] analyzers(Analyzer[] analyzers, ClaferOption option) {
+        if (option.hasSizeLimit()) {
+            return Util.snoc(analyzers,
+                    new SizeLimitAnalyzer(option.getMaxVariables(), option.getMaxConstraints()));
+        }
+        return analyzers;
+    }
+
+    static SetVar[] getSetVars(AstModel model, ClaferSolutionMap map) {
+        List<SetVar> vars = new ArrayList<SetVar>();
+        for (SetVar[] group : getSetVarGroups(model, map)) {
+            vars.addAll(Arrays.asList(group));
+        }
+//        Collections.sort(vars, new Comparator<SetVar>() {
+//            @Override
+//            public int compare(SetVar o1, SetVar o2) {
+//                int a1 = o1.getEnvelopeSize() - o1.getKernelSize();
+//                int a2 = o2.getEnvelopeSize() - o2.getKernelSize();
+//                return (a1 < a2) ? -1 : ((a1 == a2) ? 0 : 1);
+//            }
+//        });
+        return vars.toArray(new SetVar[vars.size()]);
+    }
+
+    /**
+     * @return the sibling sets that are not constants, one group for each
+     * concrete Clafer, the groups of a Clafer's parent and supers first
+     */
+    static SetVar[][] getSetVarGroups(AstModel model, ClaferSolutionMap map) {
         KeyGraph<AstClafer> dependency = new KeyGraph<AstClafer>();
         for (AstAbstractClafer abstractClafer : model.getAbstracts()) {
             Vertex<AstClafer> node = dependency.getVertex(abstractClafer);
@@ -67,33 +116,27 @@ public class ClaferCompiler {
                 dependency.addEdge(concreteClafer, concreteClafer.getParent());
             }
         }
-        List<SetVar> vars = new ArrayList<SetVar>();
+        List<SetVar[]> groups = new ArrayList<SetVar[]>();
         for (Set<AstClafer> component : GraphUtil.computeStronglyConnectedComponents(dependency)) {
             for (AstClafer clafer : component) {
                 if (clafer instanceof AstConcreteClafer) {
+                    List<SetVar> siblings = new ArrayList<SetVar>();
                     for (IrSetVar setVar : map.getAstSolution().getSiblingVars(clafer)) {
                         if (!(setVar instanceof IrSetConstant)) {
                             SetVar var = map.getIrSolution().getSetVar(setVar);
                             if (var != null) {
-                                vars.add(var);
+                                siblings.add(var);
                             }
                         }
                     }
+                    groups.add(siblings.toArray(new SetVar[siblings.size()]));
                 }
             }
         }
-//        Collections.sort(vars, new Comparator<SetVar>() {
-//            @Override
-//            public int compare(SetVar o1, SetVar o2) {
-//                int a1 = o1.getEnvelopeSize() - o1.getKernelSize();
-//                int a2 = o2.getEnvelopeSize() - o2.getKernelSize();
-//                return (a1 < a2) ? -1 : ((a1 == a2) ? 0 : 1);
-//            }
-//        });
-        return vars.toArray(new SetVar[vars.size()]);
+        return groups.toArray(new SetVar[groups.size()][]);
     }
 
-    private static IntVar[] getIntVars(AstModel model, ClaferSolutionMap map) {
+    static IntVar[] getIntVars(AstModel model, ClaferSolutionMap map) {
         List<IntVar> vars = new ArrayList<IntVar>();
         for (AstClafer clafer : AstUtil.getClafers(model)) {
             if (clafer.hasRef()) {
@@ -110,23 +153,253 @@ public class ClaferCompiler {
         return vars.toArray(new IntVar[vars.size()]);
     }
 
+    /**
+     * Estimate how large the model will be once compiled, without compiling.
+     * Only the analysis is run.
+     *
+     * @param in the model
+     * @param scope the scope
+     * @return the estimate
+     * @see ClaferOption#maxVariables(long)
+     */
+    public static SizeEstimate estimate(AstModel in, Scope scope) {
+        return SizeEstimate.estimate(Analysis.analyze(in, scope, AstCompiler.DefaultAnalyzers));
+    }
+
     public static ClaferSolver compile(AstModel in, ScopeBuilder scope) {
         return compile(in, scope.toScope());
     }
 
     public static ClaferSolver compile(AstModel in, Scope scope) {
-        Solver solver = new Solver();
+        return compile(in, scope, ClaferOption.Default);
+    }
+
+    public static ClaferSolver compile(AstModel in, Scope scope, ClaferOption option) {
+        Profile profile = new Profile();
+        IrModule module = new IrModule();
+        AstSolutionMap astSolution = AstCompiler.compile(in, scope, module, analyzers(AstCompiler.DefaultAnalyzers, option), null, profile);
+        return compile(astSolution, optimize(astSolution, module, profile), option, profile);
+    }
+
+    /**
+     * Compile the model, analyzing and grounding the constraints in parallel
+     * on the executor. The solver is the same as compiling on one thread.
+     *
+     * @param in the model
+     * @param scope the scope
+     * @param executor the executor
+     * @return the solver
+     */
+    public static ClaferSolver compile(AstModel in, Scope scope, ExecutorService executor) {
+        return compile(in, scope, ClaferOption.Default, executor);
+    }
+
+    /**
+     * Compile the model with the options, analyzing and grounding the
+     * constraints in parallel on the executor. The solver is the same as
+     * compiling on one thread.
+     *
+     * @param in the model
+     * @param scope the scope
+     * @param option the options
+     * @param executor the executor
+     * @return the solver
+     */
+    public static ClaferSolver compile(AstModel in, Scope scope, ClaferOption option, ExecutorService executor) {
+        Profile profile = new Profile();
         IrModule module = new IrModule();
+        AstSolutionMap astSolution = AstCompiler.compile(in, scope, module, analyzers(AstCompiler.DefaultAnalyzers, option), executor, profile);
+        return compile(astSolution, optimize(astSolution, module, profile), option, profile);
+    }
+
+    /**
+     * Optimize the compiled model. Variables that are not read by the solution
+     * map, the search strategies, or the objectives are removed.
+     *
+     * @param astSolution the compiled model
+     * @param module the compiled module
+     * @return the optimized module
+     */
+    static IrOptimizedModule optimize(AstSolutionMap astSolution, IrModule module) {
+        return optimize(astSolution, module, new Profile());
+    }
+
+    static IrOptimizedModule optimize(AstSolutionMap astSolution, IrModule module, Profile profile) {
+        return IrCompiler.optimize(module, astSolution.getLiveIntVars(), astSolution.getLiveSetVars(), profile);
+    }
 
-        AstSolutionMap astSolution = AstCompiler.compile(in, scope, module);
-        IrSolutionMap irSolution = IrCompiler.compile(module, solver);
+    /**
+     * Post an already compiled and optimized model to a new solver.
+     *
+     * @param astSolution the compiled model
+     * @param module the optimized module
+     * @return the solver
+     */
+    static ClaferSolver compile(AstSolutionMap astSolution, IrOptimizedModule module) {
+        return compile(astSolution, module, ClaferOption.Default, new Profile());
+    }
+
+    static ClaferSolver compile(AstSolutionMap astSolution, IrOptimizedModule module, ClaferOption option, Profile profile) {
+        return compile(astSolution, module, option, profile, null);
+    }
+
+    /**
+     * @param partial only distinguish instances by these Clafers, or
+     * {@code null} to distinguish by every Clafer
+     */
+    private static ClaferSolver compile(AstSolutionMap astSolution, IrOptimizedModule module, ClaferOption option,
+            Profile profile, Set<AstConcreteClafer> partial) {
+        Solver solver = new Solver();
+
+        IrSolutionMap irSolution = IrCompiler.compile(module, new IrModule(module.getIdFactory().fork()), solver, option.isLeanNames(), profile);
         ClaferSolutionMap solution = new ClaferSolutionMap(astSolution, irSolution);
 
-        solver.set(new StrategiesSequencer(solver.getEnvironment(),
-                SetStrategyFactory.setLex(getSetVars(in, solution)),
-                IntStrategyFactory.firstFail_InDomainMin(getIntVars(in, solution))));
+        ClaferSearchStrategy.Context context = new ClaferSearchStrategy.Context(solver, solution);
+        search(context, null, option);
 //                IntStrategyFactory.firstFail_InDomainMax(solution.getIrSolution().getBoolDecisionVars())));
-        return new ClaferSolver(solver, solution);
+        if (option.getRestartPolicy().isRestarting()) {
+            // The search may come back to an instance it already found.
+            excludeSolutions(solver, context.getSetVars(), context.getIntVars());
+        }
+        if (partial != null) {
+            // Read from the context, the solution map may be compacted below.
+            excludeSolutions(solver, getPartialSetVars(context, partial), getPartialIntVars(context, partial));
+        }
+        return new ClaferSolver(solver, compact(solution, option), profile);
+    }
+
+    /**
+     * Compile the model once and post it to several solvers, each searching a
+     * different variant. The first variant is the same search as
+     * {@link #compile(AstModel, Scope)}, the rest shuffle the order of the
+     * sibling sets and the references, randomize the values of the
+     * references, and restart.
+     *
+     * @param in the model
+     * @param scope the scope
+     * @param members the number of solvers, one thread each
+     * @return the portfolio
+     */
+    public static ClaferPortfolio compilePortfolio(AstModel in, Scope scope, int members) {
+        Profile profile = new Profile();
+        IrModule module = new IrModule();
+        AstSolutionMap astSolution = AstCompiler.compile(in, scope, module, AstCompiler.DefaultAnalyzers, null, profile);
+        IrOptimizedModule optimized = optimize(astSolution, module, profile);
+        ClaferSolver[] solvers = new ClaferSolver[checkMembers(members)];
+        for (int i = 0; i < solvers.length; i++) {
+            solvers[i] = compile(astSolution, optimized, variant(i), profile);
+        }
+        return ClaferPortfolio.ofSolvers(solvers, profile);
+    }
+
+    public static ClaferPortfolio compileMaximizePortfolio(AstModel in, Scope scope, AstRef ref, int members) {
+        return compileObjectivePortfolio(in, scope, Objective.Maximize, ref, members);
+    }
+
+    public static ClaferPortfolio compileMinimizePortfolio(AstModel in, Scope scope, AstRef ref, int members) {
+        return compileObjectivePortfolio(in, scope, Objective.Minimize, ref, members);
+    }
+
+    private static ClaferPortfolio compileObjectivePortfolio(AstModel in, Scope scope,
+            Objective objective, AstRef ref, int members) {
+        Profile profile = new Profile();
+        IrModule module = new IrModule();
+        AstSolutionMap astSolution = AstCompiler.compile(in, scope, module, AstCompiler.DefaultAnalyzers, null, profile);
+        IrOptimizedModule optimized = optimize(astSolution, module, profile);
+        ClaferObjective[] objectives = new ClaferObjective[checkMembers(members)];
+        for (int i = 0; i < objectives.length; i++) {
+            objectives[i] = compileObjective(astSolution, optimized, objective, ref, variant(i), profile);
+        }
+        return ClaferPortfolio.ofObjectives(objectives, profile);
+    }
+
+    public static ClaferPortfolio compileUnsatPortfolio(AstModel in, Scope scope, int members) {
+        Profile profile = new Profile();
+        IrModule module = new IrModule();
+        AstSolutionMap astSolution = AstCompiler.compile(in, scope, module, UnsatAnalyzers, null, profile);
+        IrOptimizedModule optimized = optimize(astSolution, module, profile);
+        ClaferUnsat[] unsats = new ClaferUnsat[checkMembers(members)];
+        for (int i = 0; i < unsats.length; i++) {
+            unsats[i] = compileUnsat(astSolution, optimized, variant(i), profile);
+        }
+        return ClaferPortfolio.ofUnsats(unsats, profile);
+    }
+
+    /**
+     * The 0th member never restarts. The rest alternate between Luby and
+     * geometric restarts, each breaking ties with its own seed.
+     */
+    private static ClaferOption variant(int i) {
+        ClaferOption option = ClaferOption.Default.searchStrategy(SearchVariant.variant(i, i));
+        if (i == 0) {
+            return option;
+        }
+        ClaferRestartPolicy policy = i % 2 == 1
+                ? ClaferRestartPolicy.luby(100)
+                : ClaferRestartPolicy.geometric(100, 1.5);
+        return option.restartPolicy(policy.seed(i));
+    }
+
+    private static int checkMembers(int members) {
+        if (members < 1) {
+            throw new IllegalArgumentException("A portfolio needs at least one member, not " + members + ".");
+        }
+        return members;
+    }
+
+    public static ClaferParallelSolver compileParallel(AstModel in, Scope scope, int threads) {
+        return compileParallel(in, scope, threads, ClaferParallelSolver.DefaultSplitDepth);
+    }
+
+    /**
+     * Compile the model once for enumerating on several threads. The search
+     * space is split into {@code 2^splitDepth} disjoint cubes by deciding
+     * whether the first undecided elements of the sibling sets are in or out.
+     * The sibling sets are split in the same order as the search, so the top
+     * Clafers are split first. Fewer cubes are used if there are not enough
+     * undecided elements.
+     *
+     * @param in the model
+     * @param scope the scope
+     * @param threads the number of threads
+     * @param splitDepth the number of elements to decide
+     * @return the parallel solver
+     */
+    public static ClaferParallelSolver compileParallel(AstModel in, Scope scope, int threads, int splitDepth) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Need at least one thread, not " + threads + ".");
+        }
+        if (splitDepth < 0 || splitDepth > 20) {
+            throw new IllegalArgumentException("Split depth " + splitDepth + " is not between 0 and 20.");
+        }
+        Profile profile = new Profile();
+        IrModule module = new IrModule();
+        AstSolutionMap astSolution = AstCompiler.compile(in, scope, module, AstCompiler.DefaultAnalyzers, null, profile);
+        IrOptimizedModule optimized = optimize(astSolution, module, profile);
+
+        // Choose the splits after the initial propagation, so that none of
+        // them are already decided.
+        ClaferSolver reference = compile(astSolution, optimized, ClaferOption.Default, new Profile());
+        SetVar[] vars = getSetVars(in, reference.getSolutionMap());
+        try {
+            reference.getInternalSolver().propagate();
+        } catch (ContradictionException e) {
+            return new ClaferParallelSolver(astSolution, optimized, threads, null, null, profile);
+        }
+        int[] splitVars = new int[splitDepth];
+        int[] splitValues = new int[splitDepth];
+        int splits = 0;
+        for (int i = 0; i < vars.length && splits < splitDepth; i++) {
+            for (int j = vars[i].getEnvelopeFirst(); j != SetVar.END && splits < splitDepth; j = vars[i].getEnvelopeNext()) {
+                if (!vars[i].kernelContains(j)) {
+                    splitVars[splits] = i;
+                    splitValues[splits] = j;
+                    splits++;
+                }
+            }
+        }
+        return new ClaferParallelSolver(astSolution, optimized, threads,
+                Arrays.copyOf(splitVars, splits), Arrays.copyOf(splitValues, splits), profile);
     }
 
     public static ClaferObjective compileMaximize(AstModel in, ScopeBuilder scope, AstRef ref) {
@@ -134,20 +407,14 @@ public class ClaferCompiler {
     }
 
     public static ClaferObjective compileMaximize(AstModel in, Scope scope, AstRef ref) {
-        Solver solver = new Solver();
-        IrModule module = new IrModule();
-
-        Triple<AstSolutionMap, IrIntVar[], IrIntVar> triple = AstCompiler.compile(in, scope, ref, module);
-        AstSolutionMap astSolution = triple.getFst();
-        IrSolutionMap irSolution = IrCompiler.compile(module, solver);
-        ClaferSolutionMap solution = new ClaferSolutionMap(astSolution, irSolution);
+        return compileMaximize(in, scope, ref, ClaferOption.Default);
+    }
 
-        solver.set(new StrategiesSequencer(solver.getEnvironment(),
-                SetStrategyFactory.setLex(getSetVars(in, solution)),
-                IntStrategyFactory.firstFail_InDomainMax(irSolution.getIntVars(triple.getSnd())),
-                IntStrategyFactory.firstFail_InDomainMin(getIntVars(in, solution))));
-//                IntStrategyFactory.firstFail_InDomainMax(irSolution.getBoolDecisionVars())));
-        return new ClaferObjective(solver, solution, Objective.Maximize, irSolution.getIntVar(triple.getThd()));
+    public static ClaferObjective compileMaximize(AstModel in, Scope scope, AstRef ref, ClaferOption option) {
+        Profile profile = new Profile();
+        IrModule module = new IrModule();
+        AstSolutionMap astSolution = AstCompiler.compile(in, scope, module, analyzers(AstCompiler.DefaultAnalyzers, option), null, profile);
+        return compileObjective(astSolution, optimize(astSolution, module, profile), Objective.Maximize, ref, option, profile);
     }
 
     public static ClaferObjective compileMinimize(AstModel in, ScopeBuilder scope, AstRef ref) {
@@ -155,20 +422,46 @@ public class ClaferCompiler {
     }
 
     public static ClaferObjective compileMinimize(AstModel in, Scope scope, AstRef ref) {
-        Solver solver = new Solver();
+        return compileMinimize(in, scope, ref, ClaferOption.Default);
+    }
+
+    public static ClaferObjective compileMinimize(AstModel in, Scope scope, AstRef ref, ClaferOption option) {
+        Profile profile = new Profile();
         IrModule module = new IrModule();
+        AstSolutionMap astSolution = AstCompiler.compile(in, scope, module, analyzers(AstCompiler.DefaultAnalyzers, option), null, profile);
+        return compileObjective(astSolution, optimize(astSolution, module, profile), Objective.Minimize, ref, option, profile);
+    }
 
-        Triple<AstSolutionMap, IrIntVar[], IrIntVar> triple = AstCompiler.compile(in, scope, ref, module);
-        AstSolutionMap astSolution = triple.getFst();
-        IrSolutionMap irSolution = IrCompiler.compile(module, solver);
+    /**
+     * Post an already compiled and optimized model to a new solver along with
+     * the objective.
+     *
+     * @param astSolution the compiled model
+     * @param module the optimized module
+     * @param objective maximize or minimize
+     * @param ref the reference to optimize
+     * @return the solver
+     */
+    static ClaferObjective compileObjective(AstSolutionMap astSolution, IrOptimizedModule module,
+            Objective objective, AstRef ref) {
+        return compileObjective(astSolution, module, objective, ref, ClaferOption.Default, new Profile());
+    }
+
+    static ClaferObjective compileObjective(AstSolutionMap astSolution, IrOptimizedModule module,
+            Objective objective, AstRef ref, ClaferOption option, Profile profile) {
+        Solver solver = new Solver();
+
+        IrModule objectiveModule = new IrModule(module.getIdFactory().fork());
+        Pair<IrIntVar[], IrIntVar> score = AstCompiler.compileObjective(astSolution, ref, objectiveModule);
+        IrSolutionMap irSolution = IrCompiler.compile(module, objectiveModule, solver, option.isLeanNames(), profile);
         ClaferSolutionMap solution = new ClaferSolutionMap(astSolution, irSolution);
 
-        solver.set(new StrategiesSequencer(solver.getEnvironment(),
-                SetStrategyFactory.setLex(getSetVars(in, solution)),
-                IntStrategyFactory.firstFail_InDomainMin(irSolution.getIntVars(triple.getSnd())),
-                IntStrategyFactory.firstFail_InDomainMin(getIntVars(in, solution))));
+        IntVar[] scoreVars = irSolution.getIntVars(score.getFst());
+        search(new ClaferSearchStrategy.Context(solver, solution, ref, Objective.Maximize.equals(objective), scoreVars),
+                null, option);
 //                IntStrategyFactory.firstFail_InDomainMax(irSolution.getBoolDecisionVars())));
-        return new ClaferObjective(solver, solution, Objective.Minimize, irSolution.getIntVar(triple.getThd()));
+        IntVar scoreVar = irSolution.getIntVar(score.getSnd());
+        return new ClaferObjective(solver, compact(solution, option), objective, scoreVar, profile);
     }
 
     public static ClaferUnsat compileUnsat(AstModel in, ScopeBuilder scope) {
@@ -176,12 +469,32 @@ public class ClaferCompiler {
     }
 
     public static ClaferUnsat compileUnsat(AstModel in, Scope scope) {
-        Solver solver = new Solver();
+        return compileUnsat(in, scope, ClaferOption.Default);
+    }
+
+    public static ClaferUnsat compileUnsat(AstModel in, Scope scope, ClaferOption option) {
+        Profile profile = new Profile();
         IrModule module = new IrModule();
+        AstSolutionMap astSolution = AstCompiler.compile(in, scope, module, analyzers(UnsatAnalyzers, option), null, profile);
+        return compileUnsat(astSolution, optimize(astSolution, module, profile), option, profile);
+    }
+
+    /**
+     * Post an already compiled and optimized model to a new solver. The model
+     * must have been compiled with the {@link #UnsatAnalyzers}.
+     *
+     * @param astSolution the compiled model
+     * @param module the optimized module
+     * @return the solver
+     */
+    static ClaferUnsat compileUnsat(AstSolutionMap astSolution, IrOptimizedModule module) {
+        return compileUnsat(astSolution, module, ClaferOption.Default, new Profile());
+    }
+
+    static ClaferUnsat compileUnsat(AstSolutionMap astSolution, IrOptimizedModule module, ClaferOption option, Profile profile) {
+        Solver solver = new Solver();
 
-        AstSolutionMap astSolution = AstCompiler.compile(in, scope, module,
-                Util.cons(new UnsatAnalyzer(), AstCompiler.DefaultAnalyzers));
-        IrSolutionMap irSolution = IrCompiler.compile(module, solver);
+        IrSolutionMap irSolution = IrCompiler.compile(module, new IrModule(module.getIdFactory().fork()), solver, option.isLeanNames(), profile);
         ClaferSolutionMap solution = new ClaferSolutionMap(astSolution, irSolution);
 
         Pair<AstConstraint, IrBoolVar>[] irSoftVarPairs = astSolution.getSoftVars();
@@ -196,12 +509,57 @@ public class ClaferCompiler {
         IntVar sum = VF.bounded("Score", bounds[0], bounds[1], solver);
         solver.post(ICF.sum(softVars, sum));
 
-        solver.set(new StrategiesSequencer(solver.getEnvironment(),
-                IntStrategyFactory.firstFail_InDomainMax(softVars),
-                SetStrategyFactory.setLex(getSetVars(in, solution)),
-                IntStrategyFactory.firstFail_InDomainMin(getIntVars(in, solution))));
+        search(new ClaferSearchStrategy.Context(solver, solution),
+                IntStrategyFactory.firstFail_InDomainMax(softVars), option);
 //                IntStrategyFactory.firstFail_InDomainMax(solution.getIrSolution().getBoolDecisionVars())));
-        return new ClaferUnsat(solver, solution, softVarPairs, sum);
+        return new ClaferUnsat(solver, compact(solution, option), softVarPairs, sum, profile);
+    }
+
+    /**
+     * Branch with the search strategy of the options, restarting if the
+     * options say to.
+     *
+     * @param context the variables of the query
+     * @param first branched on before the search strategy, or {@code null}
+     * @param option the options
+     */
+    private static void search(ClaferSearchStrategy.Context context, AbstractStrategy<?> first, ClaferOption option) {
+        Solver solver = context.getSolver();
+        ClaferSearchStrategy strategy = option.getSearchStrategy();
+        if (option.getRestartPolicy().isRestarting()) {
+            solver.set(new RestartingStrategy(context, strategy, first, option.getRestartPolicy()));
+        } else {
+            AbstractStrategy<?>[] strategies = strategy.strategies(context);
+            solver.set(new StrategiesSequencer(solver.getEnvironment(),
+                    first == null ? strategies : Util.cons(first, strategies)));
+        }
+    }
+
+    /**
+     * Forbid every solution as soon as it is found.
+     *
+     * @param solver the solver
+     * @param setVars the set variables that distinguish solutions
+     * @param intVars the integer variables that distinguish solutions
+     */
+    private static void excludeSolutions(final Solver solver, final SetVar[] setVars, final IntVar[] intVars) {
+        solver.getSearchLoop().plugSearchMonitor(new IMonitorSolution() {
+            @Override
+            public void onSolution() {
+                List<Constraint> constraints = new ArrayList<Constraint>();
+                for (IntVar var : intVars) {
+                    constraints.add(ICF.arithm(var, "!=", var.getValue()));
+                }
+                for (SetVar var : setVars) {
+                    constraints.add(Constraints.notEqual(var, var.getValue()));
+                }
+                solver.postCut(Constraints.or(constraints));
+            }
+        });
+    }
+
+    private static ClaferSolutionMap compact(ClaferSolutionMap solution, ClaferOption option) {
+        return option.isCompactSolutionMap() ? solution.compact() : solution;
     }
 
     private static int[] getSumBounds(IntVar... vars) {
@@ -219,44 +577,48 @@ public class ClaferCompiler {
     }
 
     public static ClaferSolver compilePartial(AstModel in, Scope scope, AstConcreteClafer... concretize) {
-        final Set<AstConcreteClafer> transitiveConcretize = new HashSet<AstConcreteClafer>();
+        return compilePartial(in, scope, ClaferOption.Default, concretize);
+    }
+
+    public static ClaferSolver compilePartial(AstModel in, Scope scope, ClaferOption option, AstConcreteClafer... concretize) {
+        Set<AstConcreteClafer> transitiveConcretize = new HashSet<AstConcreteClafer>();
         for (AstConcreteClafer clafer : concretize) {
             concretize(clafer, transitiveConcretize);
         }
-        final ClaferSolver solver = compile(in, scope);
-        final List<IntVar> intVars = new ArrayList<IntVar>();
-        final List<SetVar> setVars = new ArrayList<SetVar>();
-        for (AstConcreteClafer clafer : transitiveConcretize) {
-            IrSetVar[] siblingVars = solver.getSolutionMap().getAstSolution().getSiblingVars(clafer);
-            for (IrSetVar var : siblingVars) {
-                if (!(var instanceof IrSetConstant)) {
-                    setVars.add(solver.getSolutionMap().getIrSolution().getSetVar(var));
+        Profile profile = new Profile();
+        IrModule module = new IrModule();
+        AstSolutionMap astSolution = AstCompiler.compile(in, scope, module, analyzers(AstCompiler.DefaultAnalyzers, option), null, profile);
+        return compile(astSolution, optimize(astSolution, module, profile), option, profile, transitiveConcretize);
+    }
+
+    /**
+     * @return the sibling sets of the Clafers that are still variables
+     */
+    private static SetVar[] getPartialSetVars(ClaferSearchStrategy.Context context, Set<AstConcreteClafer> clafers) {
+        List<SetVar> setVars = new ArrayList<SetVar>();
+        for (AstConcreteClafer clafer : clafers) {
+            for (SetVar var : context.getSiblingVars(clafer)) {
+                // Null if the set is a constant or was optimized away.
+                if (var != null) {
+                    setVars.add(var);
                 }
             }
+        }
+        return setVars.toArray(new SetVar[setVars.size()]);
+    }
+
+    /**
+     * @return the references of the Clafers that are still variables
+     */
+    private static IntVar[] getPartialIntVars(ClaferSearchStrategy.Context context, Set<AstConcreteClafer> clafers) {
+        List<IntVar> intVars = new ArrayList<IntVar>();
+        for (AstConcreteClafer clafer : clafers) {
             AstRef ref = AstUtil.getInheritedRef(clafer);
             if (ref != null) {
-                IrIntVar[] refVars = solver.getSolutionMap().getAstSolution().getRefVars(ref);
-                for (IrIntVar var : refVars) {
-                    if (!(var instanceof IrIntConstant)) {
-                        intVars.add(solver.getSolutionMap().getIrSolution().getIntVar(var));
-                    }
-                }
+                intVars.addAll(Arrays.asList(context.getRefVars(ref)));
             }
         }
-        solver.getInternalSolver().getSearchLoop().plugSearchMonitor(new IMonitorSolution() {
-            @Override
-            public void onSolution() {
-                List<Constraint> constraints = new ArrayList<Constraint>();
-                for (IntVar var : intVars) {
-                    constraints.add(ICF.arithm(var, "!=", var.getValue()));
-                }
-                for (SetVar var : setVars) {
-                    constraints.add(Constraints.notEqual(var, var.getValue()));
-                }
-                solver.getInternalSolver().postCut(Constraints.or(constraints));
-            }
-        });
-        return solver;
+        return intVars.toArray(new IntVar[intVars.size()]);
     }
 
     private static void concretize(AstClafer clafer, Set<AstConcreteClafer> concretize) {
@@ -0,0 +1,295 @@
+package org.clafer.compiler;
+
+import java.io.UnsupportedEncodingException;
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.clafer.ast.AstAbstractClafer;
+import org.clafer.ast.AstClafer;
+import org.clafer.ast.AstConcreteClafer;
+import org.clafer.ast.AstConstraint;
+import org.clafer.ast.AstModel;
+import org.clafer.ast.AstRef;
+import org.clafer.ast.AstUtil;
+import org.clafer.ast.analysis.Analysis;
+import org.clafer.ast.analysis.Analyzer;
+import org.clafer.ast.analysis.IncrementalAnalysis;
+import org.clafer.ast.analysis.SizeEstimate;
+import org.clafer.ast.analysis.SizeLimitAnalyzer;
+import org.clafer.ast.compiler.AstCompiler;
+import org.clafer.ast.compiler.AstSolutionMap;
+import org.clafer.common.Check;
+import org.clafer.common.Profile;
+import org.clafer.compiler.ClaferObjective.Objective;
+import org.clafer.ir.IrModule;
+import org.clafer.ir.compiler.IrOptimizedModule;
+import org.clafer.scope.Scope;
+import org.clafer.scope.ScopeBuilder;
+
+/**
+ * <p>
+ * Remembers compiled models so that different queries on the same model and
+ * scope only pay for the analysis and IR optimization once. Every query still
+ * gets its own fresh solver, only the objective or soft constraints are added
+ * on top of the cached module.
+ * </p>
+ * <p>
+ * Models are mutable, so the cache is keyed by a structural fingerprint of the
+ * model and the scope. Altering the model after a query is safe, the next query
+ * will recompile.
+ * </p>
+ * <p>
+ * Querying the same model under a new scope only reruns the analyzers whose
+ * inputs changed. If the analysis ends up the same, for example because the
+ * new scope is larger than the Clafer can ever use, the previous compilation
+ * is reused.
+ * </p>
+ * <p>
+ * The profile of every query starts with the phases of the compilation it
+ * shares, followed by the phases of posting to its own solver.
+ * </p>
+ *
+ * @author jimmy
+ */
+public class ClaferCompilerCache {
+
+    private final Map<String, CompiledModel> cache;
+    // The last model compiled for each kind of query.
+    private final Map<String, Recompiler> recompilers = new HashMap<String, Recompiler>();
+
+    /**
+     * Construct a cache that remembers the last 8 compiled models.
+     */
+    public ClaferCompilerCache() {
+        this(8);
+    }
+
+    /**
+     * Construct a cache that remembers the last few compiled models.
+     *
+     * @param capacity the number of compiled models to remember
+     */
+    public ClaferCompilerCache(final int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        this.cache = new LinkedHashMap<String, CompiledModel>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CompiledModel> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    public ClaferSolver compile(AstModel in, ScopeBuilder scope) {
+        return compile(in, scope.toScope());
+    }
+
+    public ClaferSolver compile(AstModel in, Scope scope) {
+        return compile(in, scope, ClaferOption.Default);
+    }
+
+    /**
+     * Compile with the options. The compilation is shared with queries under
+     * different options, so the size limits are checked against the estimate
+     * of the shared analysis before posting.
+     *
+     * @param in the model
+     * @param scope the scope
+     * @param option the options
+     * @return the solver
+     * @throws org.clafer.ast.analysis.SizeLimitException if the model exceeds the size limits
+     */
+    public ClaferSolver compile(AstModel in, Scope scope, ClaferOption option) {
+        CompiledModel compiled = lookup(in, scope, AstCompiler.DefaultAnalyzers);
+        compiled.checkSize(option);
+        return ClaferCompiler.compile(compiled.astSolution, compiled.module, option, new Profile(compiled.profile));
+    }
+
+    public ClaferObjective compileMaximize(AstModel in, ScopeBuilder scope, AstRef ref) {
+        return compileMaximize(in, scope.toScope(), ref);
+    }
+
+    public ClaferObjective compileMaximize(AstModel in, Scope scope, AstRef ref) {
+        return compileMaximize(in, scope, ref, ClaferOption.Default);
+    }
+
+    public ClaferObjective compileMaximize(AstModel in, Scope scope, AstRef ref, ClaferOption option) {
+        CompiledModel compiled = lookup(in, scope, AstCompiler.DefaultAnalyzers);
+        compiled.checkSize(option);
+        return ClaferCompiler.compileObjective(compiled.astSolution, compiled.module, Objective.Maximize, ref,
+                option, new Profile(compiled.profile));
+    }
+
+    public ClaferObjective compileMinimize(AstModel in, ScopeBuilder scope, AstRef ref) {
+        return compileMinimize(in, scope.toScope(), ref);
+    }
+
+    public ClaferObjective compileMinimize(AstModel in, Scope scope, AstRef ref) {
+        return compileMinimize(in, scope, ref, ClaferOption.Default);
+    }
+
+    public ClaferObjective compileMinimize(AstModel in, Scope scope, AstRef ref, ClaferOption option) {
+        CompiledModel compiled = lookup(in, scope, AstCompiler.DefaultAnalyzers);
+        compiled.checkSize(option);
+        return ClaferCompiler.compileObjective(compiled.astSolution, compiled.module, Objective.Minimize, ref,
+                option, new Profile(compiled.profile));
+    }
+
+    public ClaferUnsat compileUnsat(AstModel in, ScopeBuilder scope) {
+        return compileUnsat(in, scope.toScope());
+    }
+
+    public ClaferUnsat compileUnsat(AstModel in, Scope scope) {
+        return compileUnsat(in, scope, ClaferOption.Default);
+    }
+
+    public ClaferUnsat compileUnsat(AstModel in, Scope scope, ClaferOption option) {
+        CompiledModel compiled = lookup(in, scope, ClaferCompiler.UnsatAnalyzers);
+        compiled.checkSize(option);
+        return ClaferCompiler.compileUnsat(compiled.astSolution, compiled.module, option, new Profile(compiled.profile));
+    }
+
+    /**
+     * Forget every compiled model.
+     */
+    public synchronized void clear() {
+        cache.clear();
+        recompilers.clear();
+    }
+
+    /**
+     * Returns the number of compiled models currently remembered.
+     *
+     * @return the size of the cache
+     */
+    public synchronized int size() {
+        return cache.size();
+    }
+
+    private synchronized CompiledModel lookup(AstModel in, Scope scope, Analyzer[] analyzers) {
+        // Unsat softens the constraints, so it cannot share with the other queries.
+        String kind = analyzers == AstCompiler.DefaultAnalyzers ? "sat" : "unsat";
+        String key = kind + ":" + fingerprint(in, scope);
+        CompiledModel compiled = cache.get(key);
+        // The solution maps are keyed by the Clafers themselves, so an equivalent
+        // but different model cannot reuse the compilation.
+        if (compiled == null || compiled.astSolution.getModel() != in) {
+            compiled = recompile(kind, in, scope, analyzers);
+            cache.put(key, compiled);
+        }
+        return compiled;
+    }
+
+    private CompiledModel recompile(String kind, AstModel in, Scope scope, Analyzer[] analyzers) {
+        String structure = fingerprint(in, null);
+        Recompiler recompiler = recompilers.get(kind);
+        if (recompiler == null
+                || recompiler.analysis.getModel() != in
+                || !recompiler.structure.equals(structure)) {
+            recompiler = new Recompiler(new IncrementalAnalysis(in, analyzers), structure);
+            recompilers.put(kind, recompiler);
+        }
+        Profile profile = new Profile();
+        Analysis analysis = recompiler.analysis.analyze(scope, profile);
+        if (recompiler.last == null || recompiler.last.astSolution.getAnalysis() != analysis) {
+            IrModule module = new IrModule();
+            AstSolutionMap astSolution = AstCompiler.compile(analysis, module, profile);
+            recompiler.last = new CompiledModel(astSolution, ClaferCompiler.optimize(astSolution, module, profile), profile);
+        }
+        return recompiler.last;
+    }
+
+    /**
+     * Compute a digest of everything in the model and scope that affects the
+     * compilation.
+     *
+     * @param model the model
+     * @param scope the scope, or {@code null} to only digest the model
+     * @return the fingerprint
+     */
+    static String fingerprint(AstModel model, Scope scope) {
+        StringBuilder structure = new StringBuilder();
+        if (scope != null) {
+            structure.append(scope.getDefaultScope()).append(',')
+                    .append(scope.getIntLow()).append(',')
+                    .append(scope.getIntHigh()).append('\n');
+        }
+        for (AstClafer clafer : AstUtil.getClafers(model)) {
+            structure.append(clafer instanceof AstAbstractClafer ? "abstract " : "")
+                    .append(clafer.getName());
+            if (scope != null) {
+                structure.append(" scope:").append(scope.getScope(clafer));
+            }
+            structure.append(" group:").append(clafer.getGroupCard());
+            if (clafer instanceof AstConcreteClafer) {
+                AstConcreteClafer concreteClafer = (AstConcreteClafer) clafer;
+                structure.append(" card:").append(concreteClafer.getCard());
+                if (concreteClafer.hasParent()) {
+                    structure.append(" parent:").append(concreteClafer.getParent().getName());
+                }
+            }
+            if (clafer.hasSuperClafer()) {
+                structure.append(" super:").append(clafer.getSuperClafer().getName());
+            }
+            if (clafer.hasRef()) {
+                structure.append(clafer.getRef().isUnique() ? " ->> " : " -> ")
+                        .append(clafer.getRef().getTargetType().getName());
+            }
+            structure.append('\n');
+            for (AstConstraint constraint : clafer.getConstraints()) {
+                structure.append(constraint.getId()).append(constraint).append('\n');
+            }
+        }
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return new BigInteger(1, digest.digest(structure.toString().getBytes("UTF-8"))).toString(16);
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-256.
+            throw new IllegalStateException(e);
+        } catch (UnsupportedEncodingException e) {
+            // Every Java platform is required to support UTF-8.
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static class Recompiler {
+
+        private final IncrementalAnalysis analysis;
+        // The fingerprint of the model without the scope.
+        private final String structure;
+        private CompiledModel last;
+
+        Recompiler(IncrementalAnalysis analysis, String structure) {
+            this.analysis = Check.notNull(analysis);
+            this.structure = Check.notNull(structure);
+        }
+    }
+
+    private static class CompiledModel {
+
+        private final AstSolutionMap astSolution;
+        private final IrOptimizedModule module;
+        private final Profile profile;
+        // Estimated on the first query with size limits.
+        private SizeEstimate estimate;
+
+        CompiledModel(AstSolutionMap astSolution, IrOptimizedModule module, Profile profile) {
+            this.astSolution = Check.notNull(astSolution);
+            this.module = Check.notNull(module);
+            this.profile = Check.notNull(profile);
+        }
+
+        synchronized void checkSize(ClaferOption option) {
+            if (option.hasSizeLimit()) {
+                if (estimate == null) {
+                    estimate = SizeEstimate.estimate(astSolution.getAnalysis());
+                }
+                new SizeLimitAnalyzer(option.getMaxVariables(), option.getMaxConstraints()).check(estimate);
+            }
+        }
+    }
+}
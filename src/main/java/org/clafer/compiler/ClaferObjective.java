@@ -1,6 +1,8 @@
 package org.clafer.compiler;
 
+import java.util.concurrent.Callable;
 import org.clafer.common.Check;
+import org.clafer.common.Profile;
 import org.clafer.collection.Pair;
 import org.clafer.instance.InstanceModel;
 import solver.ResolutionPolicy;
@@ -19,12 +21,22 @@ public class ClaferObjective {
     private final ClaferSolutionMap solutionMap;
     private final Objective objective;
     private final IntVar score;
+    private final Profile profile;
+    private final BudgetMonitor<InstanceModel> budgetMonitor;
 
-    ClaferObjective(Solver solver, ClaferSolutionMap solutionMap, Objective objective, IntVar score) {
+    ClaferObjective(Solver solver, ClaferSolutionMap solutionMap, Objective objective, IntVar score, Profile profile) {
         this.solver = Check.notNull(solver);
         this.solutionMap = Check.notNull(solutionMap);
         this.objective = Check.notNull(objective);
         this.score = Check.notNull(score);
+        this.profile = Check.notNull(profile);
+        this.budgetMonitor = new BudgetMonitor<InstanceModel>(solver, score, Objective.Maximize.equals(objective),
+                new Callable<InstanceModel>() {
+                    @Override
+                    public InstanceModel call() {
+                        return solutionMap.getInstance();
+                    }
+                });
     }
 
     public Solver getInternalSolver() {
@@ -39,6 +51,23 @@ public class ClaferObjective {
         return objective;
     }
 
+    ClaferSolutionMap getSolutionMap() {
+        return solutionMap;
+    }
+
+    IntVar getScore() {
+        return score;
+    }
+
+    /**
+     * Returns the time spent in each phase of compiling this query.
+     *
+     * @return the compilation profile
+     */
+    public Profile getProfile() {
+        return profile;
+    }
+
     public Pair<Integer, InstanceModel> optimal() {
         solver.findOptimalSolution(objective.getPolicy(), score);
         return ESat.TRUE.equals(solver.isFeasible())
@@ -46,6 +75,24 @@ public class ClaferObjective {
                 : null;
     }
 
+    /**
+     * Find the optimal instance within the budget. If the budget runs out
+     * first, returns the best instance found so far and how far its score
+     * could be from the optimum. Call at most once, like {@link #optimal()}.
+     *
+     * @param budget the budget for this call
+     * @return the optimal or best found instance and its score
+     */
+    public ClaferResult<InstanceModel> optimal(ClaferBudget budget) {
+        budgetMonitor.start(budget);
+        try {
+            solver.findOptimalSolution(objective.getPolicy(), score);
+        } finally {
+            budgetMonitor.stop();
+        }
+        return budgetMonitor.getResult();
+    }
+
     public static enum Objective {
 
         Maximize(ResolutionPolicy.MAXIMIZE),
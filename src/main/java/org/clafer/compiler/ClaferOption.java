@@ -0,0 +1,180 @@
+package org.clafer.compiler;
+
+import org.clafer.common.Check;
+
+/**
+ * Options for compiling a model. Options are immutable, each setter returns a
+ * new copy.
+ *
+ * @author jimmy
+ */
+public class ClaferOption {
+
+    /**
+     * The options used when none are given.
+     */
+    public static final ClaferOption Default = new ClaferOption(false, Long.MAX_VALUE, Long.MAX_VALUE, false,
+            ClaferSearchStrategy.Default, ClaferRestartPolicy.None);
+    private final boolean leanNames;
+    private final long maxVariables;
+    private final long maxConstraints;
+    private final boolean compactSolutionMap;
+    private final ClaferSearchStrategy searchStrategy;
+    private final ClaferRestartPolicy restartPolicy;
+
+    private ClaferOption(boolean leanNames, long maxVariables, long maxConstraints, boolean compactSolutionMap,
+            ClaferSearchStrategy searchStrategy, ClaferRestartPolicy restartPolicy) {
+        this.leanNames = leanNames;
+        this.maxVariables = maxVariables;
+        this.maxConstraints = maxConstraints;
+        this.compactSolutionMap = compactSolutionMap;
+        this.searchStrategy = Check.notNull(searchStrategy);
+        this.restartPolicy = Check.notNull(restartPolicy);
+    }
+
+    /**
+     * Returns {@code true} if the Choco variables are named by number instead
+     * of by the IR variables they were compiled from.
+     *
+     * @return {@code true} if lean names are used, {@code false} otherwise
+     * @see #leanNames(boolean)
+     */
+    public boolean isLeanNames() {
+        return leanNames;
+    }
+
+    /**
+     * Name the Choco variables by a dense number instead of a readable name.
+     * Building readable names for large models costs a noticeable amount of
+     * memory and compile time. The readable name of a variable is still
+     * available on demand through
+     * {@link org.clafer.ir.compiler.IrSolutionMap#getDebugName}.
+     *
+     * @param leanNames use lean names or readable names
+     * @return the new options
+     */
+    public ClaferOption leanNames(boolean leanNames) {
+        return new ClaferOption(leanNames, maxVariables, maxConstraints, compactSolutionMap, searchStrategy, restartPolicy);
+    }
+
+    /**
+     * Returns the most variables the model is allowed to compile to.
+     *
+     * @return the limit on variables
+     * @see #maxVariables(long)
+     */
+    public long getMaxVariables() {
+        return maxVariables;
+    }
+
+    /**
+     * Abort compiling if the model is estimated to compile to more variables
+     * than the limit. The estimate is made after the analysis, before anything
+     * is built, and the
+     * {@link org.clafer.ast.analysis.SizeLimitException} reports the Clafers
+     * and constraints responsible.
+     *
+     * @param maxVariables the limit on variables
+     * @return the new options
+     * @see org.clafer.ast.analysis.SizeEstimate
+     */
+    public ClaferOption maxVariables(long maxVariables) {
+        return new ClaferOption(leanNames, maxVariables, maxConstraints, compactSolutionMap, searchStrategy, restartPolicy);
+    }
+
+    /**
+     * Returns the most constraints the model is allowed to compile to.
+     *
+     * @return the limit on constraints
+     * @see #maxConstraints(long)
+     */
+    public long getMaxConstraints() {
+        return maxConstraints;
+    }
+
+    /**
+     * Abort compiling if the model is estimated to compile to more constraints
+     * than the limit.
+     *
+     * @param maxConstraints the limit on constraints
+     * @return the new options
+     * @see #maxVariables(long)
+     */
+    public ClaferOption maxConstraints(long maxConstraints) {
+        return new ClaferOption(leanNames, maxVariables, maxConstraints, compactSolutionMap, searchStrategy, restartPolicy);
+    }
+
+    /**
+     * Checks if either size limit is set.
+     *
+     * @return {@code true} if the size is limited, {@code false} otherwise
+     */
+    public boolean hasSizeLimit() {
+        return maxVariables != Long.MAX_VALUE || maxConstraints != Long.MAX_VALUE;
+    }
+
+    /**
+     * Returns {@code true} if the solution map is compacted after compiling.
+     *
+     * @return {@code true} if compacted, {@code false} otherwise
+     * @see #compactSolutionMap(boolean)
+     */
+    public boolean isCompactSolutionMap() {
+        return compactSolutionMap;
+    }
+
+    /**
+     * Release the analysis and the IR once the model is posted, keeping only
+     * what is needed to read instances. Useful when many solvers are kept
+     * alive at once. The AST and IR solution maps are no longer available
+     * afterwards.
+     *
+     * @param compactSolutionMap compact the solution map or keep everything
+     * @return the new options
+     */
+    public ClaferOption compactSolutionMap(boolean compactSolutionMap) {
+        return new ClaferOption(leanNames, maxVariables, maxConstraints, compactSolutionMap, searchStrategy, restartPolicy);
+    }
+
+    /**
+     * Returns how the solver branches.
+     *
+     * @return the search strategy
+     * @see #searchStrategy(ClaferSearchStrategy)
+     */
+    public ClaferSearchStrategy getSearchStrategy() {
+        return searchStrategy;
+    }
+
+    /**
+     * Branch with a different strategy. Only changes the order instances are
+     * found in, and how long it takes to find them.
+     *
+     * @param searchStrategy the search strategy
+     * @return the new options
+     */
+    public ClaferOption searchStrategy(ClaferSearchStrategy searchStrategy) {
+        return new ClaferOption(leanNames, maxVariables, maxConstraints, compactSolutionMap, searchStrategy, restartPolicy);
+    }
+
+    /**
+     * Returns when the search restarts.
+     *
+     * @return the restart policy
+     * @see #restartPolicy(ClaferRestartPolicy)
+     */
+    public ClaferRestartPolicy getRestartPolicy() {
+        return restartPolicy;
+    }
+
+    /**
+     * Restart the search according to the policy. Works with every search
+     * strategy, and with {@link ClaferCompiler#compilePartial}.
+     *
+     * @param restartPolicy the restart policy
+     * @return the new options
+     */
+    public ClaferOption restartPolicy(ClaferRestartPolicy restartPolicy) {
+        return new ClaferOption(leanNames, maxVariables, maxConstraints, compactSolutionMap, searchStrategy, restartPolicy);
+    }
+}
@@ -0,0 +1,324 @@
+package org.clafer.compiler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.clafer.ast.compiler.AstSolutionMap;
+import org.clafer.common.Check;
+import org.clafer.common.Profile;
+import org.clafer.instance.FlatInstance;
+import org.clafer.instance.InstanceModel;
+import org.clafer.instance.InstanceVisitor;
+import org.clafer.ir.compiler.IrOptimizedModule;
+import solver.Cause;
+import solver.Solver;
+import solver.exception.ContradictionException;
+import solver.search.loop.monitors.IMonitorDownBranch;
+import solver.variables.SetVar;
+
+/**
+ * <p>
+ * Enumerates every instance on several threads. The search space is split
+ * into disjoint cubes, each deciding whether a few elements are in or out of
+ * their sibling sets. Every instance is in exactly one cube, so searching
+ * every cube finds every instance exactly once.
+ * </p>
+ * <p>
+ * The model is compiled once. The threads take cubes from a shared queue and
+ * post each cube to a new solver, so a thread that finishes an easy cube moves
+ * on to the next instead of waiting for the others. The visitor is only called
+ * by one thread at a time.
+ * </p>
+ * <p>
+ * Unordered, instances are visited as soon as they are found. Ordered,
+ * instances are visited cube by cube, in the same order regardless of the
+ * number of threads. Instances found in a later cube are copied and held until
+ * the earlier cubes finish. A later cube stops searching once it holds enough
+ * instances to reach the limit.
+ * </p>
+ *
+ * @author jimmy
+ * @see ClaferCompiler#compileParallel
+ */
+public class ClaferParallelSolver {
+
+    /**
+     * Split into 64 cubes, enough for the threads to stay busy.
+     */
+    public static final int DefaultSplitDepth = 6;
+    private final AstSolutionMap astSolution;
+    private final IrOptimizedModule module;
+    private final int threads;
+    // Each split decides an element, by position in the search order of the
+    // sibling sets. Null if the model has no instances.
+    private final int[] splitVars;
+    private final int[] splitValues;
+    private final Profile profile;
+
+    ClaferParallelSolver(AstSolutionMap astSolution, IrOptimizedModule module, int threads,
+            int[] splitVars, int[] splitValues, Profile profile) {
+        this.astSolution = Check.notNull(astSolution);
+        this.module = Check.notNull(module);
+        this.threads = threads;
+        this.splitVars = splitVars;
+        this.splitValues = splitValues;
+        this.profile = Check.notNull(profile);
+    }
+
+    /**
+     * Returns the time spent compiling the model once and choosing the splits.
+     *
+     * @return the compilation profile
+     */
+    public Profile getProfile() {
+        return profile;
+    }
+
+    /**
+     * Returns the number of cubes the search is split into.
+     *
+     * @return the number of cubes
+     */
+    public int getCubeCount() {
+        return splitVars == null ? 0 : 1 << splitVars.length;
+    }
+
+    /**
+     * Find every instance, in order.
+     *
+     * @return every instance
+     */
+    public InstanceModel[] allInstances() {
+        final List<InstanceModel> instances = new ArrayList<InstanceModel>();
+        allInstances(Integer.MAX_VALUE, true, new InstanceVisitor() {
+            @Override
+            public boolean visit(FlatInstance instance) {
+                instances.add(new InstanceModel(instance.copy()));
+                return true;
+            }
+        });
+        return instances.toArray(new InstanceModel[instances.size()]);
+    }
+
+    /**
+     * Stream every instance to the visitor, in the order they are found.
+     *
+     * @param visitor the visitor
+     * @return the number of instances visited
+     * @see #allInstances(int, boolean, InstanceVisitor)
+     */
+    public int allInstances(InstanceVisitor visitor) {
+        return allInstances(Integer.MAX_VALUE, false, visitor);
+    }
+
+    /**
+     * Stream the instances to the visitor. The visitor is called by one thread
+     * at a time, and must copy the buffer to keep an instance. Stops after the
+     * limit or as soon as the visitor returns {@code false}. Every call
+     * searches from the beginning.
+     *
+     * @param limit the most instances to visit
+     * @param ordered visit cube by cube, in the same order every call
+     * @param visitor the visitor
+     * @return the number of instances visited
+     */
+    public int allInstances(int limit, boolean ordered, InstanceVisitor visitor) {
+        Check.notNull(visitor);
+        if (limit < 0) {
+            throw new IllegalArgumentException("Negative limit " + limit + ".");
+        }
+        if (limit == 0 || getCubeCount() == 0) {
+            return 0;
+        }
+        return new Enumeration(limit, ordered, visitor).run();
+    }
+
+    /**
+     * Post the model to a new solver, restricted to the cube. Cubes that add
+     * an element come before cubes that remove it.
+     *
+     * @param cube the cube
+     * @return the solver, or {@code null} if the cube has no instances
+     */
+    private ClaferSolver post(int cube) {
+        ClaferSolver solver;
+        SetVar[] vars;
+        // Posting reads the shared compilation, so one thread at a time.
+        synchronized (this) {
+            solver = ClaferCompiler.compile(astSolution, module, ClaferOption.Default, new Profile());
+            vars = ClaferCompiler.getSetVars(astSolution.getModel(), solver.getSolutionMap());
+        }
+        try {
+            for (int i = 0; i < splitVars.length; i++) {
+                if (((cube >>> (splitVars.length - 1 - i)) & 1) == 0) {
+                    vars[splitVars[i]].addToKernel(splitValues[i], Cause.Null);
+                } else {
+                    vars[splitVars[i]].removeFromEnvelope(splitValues[i], Cause.Null);
+                }
+            }
+        } catch (ContradictionException e) {
+            return null;
+        }
+        return solver;
+    }
+
+    /**
+     * One call to {@link #allInstances(int, boolean, InstanceVisitor)}.
+     */
+    private class Enumeration {
+
+        private final int limit;
+        private final boolean ordered;
+        private final InstanceVisitor visitor;
+        private final AtomicInteger nextCube = new AtomicInteger();
+        private volatile boolean stopped = false;
+        // The rest are guarded by this.
+        private int count = 0;
+        // Ordered only. The cube being visited, and the instances held for
+        // each later cube.
+        private int current = 0;
+        private final boolean[] done;
+        private final List<List<FlatInstance>> held;
+
+        Enumeration(int limit, boolean ordered, InstanceVisitor visitor) {
+            this.limit = limit;
+            this.ordered = ordered;
+            this.visitor = visitor;
+            this.done = new boolean[getCubeCount()];
+            this.held = new ArrayList<List<FlatInstance>>(done.length);
+            for (int i = 0; i < done.length; i++) {
+                held.add(ordered ? new ArrayList<FlatInstance>() : null);
+            }
+        }
+
+        int run() {
+            ExecutorService pool = Executors.newFixedThreadPool(threads, ClaferPortfolio.DaemonThreads);
+            try {
+                List<Future<?>> workers = new ArrayList<Future<?>>();
+                for (int i = 0; i < Math.min(threads, done.length); i++) {
+                    workers.add(pool.submit(new Runnable() {
+                        @Override
+                        public void run() {
+                            work();
+                        }
+                    }));
+                }
+                for (Future<?> worker : workers) {
+                    worker.get();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while enumerating.", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw new IllegalStateException(e.getCause());
+            } finally {
+                stopped = true;
+                pool.shutdown();
+            }
+            synchronized (this) {
+                return count;
+            }
+        }
+
+        private void work() {
+            try {
+                FlatInstance buffer = new FlatInstance();
+                int cube;
+                while (!stopped && (cube = nextCube.getAndIncrement()) < done.length) {
+                    ClaferSolver solver = post(cube);
+                    if (solver != null) {
+                        plugStop(solver.getInternalSolver());
+                        while (!stopped && solver.find()) {
+                            if (!offer(cube, solver.instance(buffer))) {
+                                break;
+                            }
+                        }
+                    }
+                    finish(cube);
+                }
+            } catch (RuntimeException e) {
+                // Do not leave the other threads searching for nobody.
+                stopped = true;
+                throw e;
+            }
+        }
+
+        private synchronized boolean offer(int cube, FlatInstance instance) {
+            if (stopped) {
+                return false;
+            }
+            if (ordered && cube != current) {
+                List<FlatInstance> cubeHeld = held.get(cube);
+                cubeHeld.add(instance.copy());
+                // The held instances are visited before any found after them,
+                // and are already enough to reach the limit. Nothing else in
+                // this cube can be visited.
+                return cubeHeld.size() < limit - count;
+            }
+            return visit(instance);
+        }
+
+        private synchronized void finish(int cube) {
+            if (ordered) {
+                done[cube] = true;
+                // Catch up on the cubes that finished while waiting their turn.
+                while (!stopped && current < done.length && done[current]) {
+                    held.set(current, null);
+                    current++;
+                    if (current < done.length) {
+                        for (FlatInstance instance : held.get(current)) {
+                            if (!visit(instance)) {
+                                break;
+                            }
+                        }
+                        held.get(current).clear();
+                    }
+                }
+            }
+        }
+
+        private boolean visit(FlatInstance instance) {
+            count++;
+            if (!visitor.visit(instance) || count >= limit) {
+                stopped = true;
+                return false;
+            }
+            return true;
+        }
+
+        private void plugStop(final Solver solver) {
+            solver.getSearchLoop().plugSearchMonitor(new IMonitorDownBranch() {
+                @Override
+                public void beforeDownLeftBranch() {
+                    checkStopped();
+                }
+
+                @Override
+                public void afterDownLeftBranch() {
+                }
+
+                @Override
+                public void beforeDownRightBranch() {
+                    checkStopped();
+                }
+
+                @Override
+                public void afterDownRightBranch() {
+                }
+
+                private void checkStopped() {
+                    if (stopped) {
+                        solver.getSearchLoop().interrupt("Enumeration stopped.");
+                    }
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,309 @@
+package org.clafer.compiler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.clafer.ast.AstConstraint;
+import org.clafer.choco.constraint.Constraints;
+import org.clafer.collection.Pair;
+import org.clafer.common.Check;
+import org.clafer.common.Profile;
+import org.clafer.instance.InstanceModel;
+import solver.Solver;
+import solver.search.loop.monitors.IMonitorDownBranch;
+import solver.search.loop.monitors.IMonitorSolution;
+import solver.variables.IntVar;
+
+/**
+ * <p>
+ * Several solvers for the same query, each searching a different variant on
+ * its own thread. The model is compiled once and posted to every member. The
+ * first member to finish answers the query and the rest are stopped.
+ * </p>
+ * <p>
+ * When optimizing, the members share the best score found so far. Every member
+ * only looks for strictly better scores than any member has found, so the
+ * first member to finish its search has proven the best score optimal.
+ * </p>
+ * <p>
+ * Each query can only be asked once. Use a new portfolio for each query.
+ * </p>
+ *
+ * @author jimmy
+ * @see ClaferCompiler#compilePortfolio
+ */
+public class ClaferPortfolio {
+
+    // Exactly one of the three is not null.
+    private final ClaferSolver[] solvers;
+    private final ClaferObjective[] objectives;
+    private final ClaferUnsat[] unsats;
+    private final Profile profile;
+    private volatile boolean stopped = false;
+    private boolean used = false;
+
+    private ClaferPortfolio(ClaferSolver[] solvers, ClaferObjective[] objectives, ClaferUnsat[] unsats,
+            Solver[] members, Profile profile) {
+        this.solvers = solvers;
+        this.objectives = objectives;
+        this.unsats = unsats;
+        this.profile = Check.notNull(profile);
+        for (Solver member : members) {
+            plugStop(member);
+        }
+    }
+
+    static ClaferPortfolio ofSolvers(ClaferSolver[] solvers, Profile profile) {
+        Solver[] members = new Solver[solvers.length];
+        for (int i = 0; i < members.length; i++) {
+            members[i] = solvers[i].getInternalSolver();
+        }
+        return new ClaferPortfolio(Check.noNulls(solvers), null, null, members, profile);
+    }
+
+    static ClaferPortfolio ofObjectives(ClaferObjective[] objectives, Profile profile) {
+        Solver[] members = new Solver[objectives.length];
+        for (int i = 0; i < members.length; i++) {
+            members[i] = objectives[i].getInternalSolver();
+        }
+        return new ClaferPortfolio(null, Check.noNulls(objectives), null, members, profile);
+    }
+
+    static ClaferPortfolio ofUnsats(ClaferUnsat[] unsats, Profile profile) {
+        Solver[] members = new Solver[unsats.length];
+        for (int i = 0; i < members.length; i++) {
+            members[i] = unsats[i].getInternalSolver();
+        }
+        return new ClaferPortfolio(null, null, Check.noNulls(unsats), members, profile);
+    }
+
+    /**
+     * Returns the time spent compiling the model once and posting it to every
+     * member.
+     *
+     * @return the compilation profile
+     */
+    public Profile getProfile() {
+        return profile;
+    }
+
+    /**
+     * Find an instance.
+     *
+     * @return an instance, or {@code null} if there are none
+     */
+    public InstanceModel find() {
+        if (solvers == null) {
+            throw new IllegalStateException("Portfolio was compiled for "
+                    + (objectives == null ? "unsat" : "optimizing") + ".");
+        }
+        List<Callable<InstanceModel>> tasks = new ArrayList<Callable<InstanceModel>>();
+        for (final ClaferSolver solver : solvers) {
+            tasks.add(new Callable<InstanceModel>() {
+                @Override
+                public InstanceModel call() {
+                    return solver.find() ? solver.instance() : null;
+                }
+            });
+        }
+        // Every member searches the entire space, so the first to finish
+        // without an instance proves there are none.
+        return race(tasks);
+    }
+
+    /**
+     * Find an instance where the objective is optimal.
+     *
+     * @return the optimal value and the optimal instance, or {@code null} if
+     * there are no instances
+     */
+    public Pair<Integer, InstanceModel> optimal() {
+        if (objectives == null) {
+            throw new IllegalStateException("Portfolio was not compiled for optimizing.");
+        }
+        boolean maximize = ClaferObjective.Objective.Maximize.equals(objectives[0].getObjective());
+        final Incumbent<InstanceModel> incumbent = new Incumbent<InstanceModel>(maximize);
+        List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+        for (final ClaferObjective objective : objectives) {
+            final ClaferSolutionMap solutionMap = objective.getSolutionMap();
+            final IntVar score = objective.getScore();
+            share(objective.getInternalSolver(), score, incumbent, new Callable<InstanceModel>() {
+                @Override
+                public InstanceModel call() {
+                    return solutionMap.getInstance();
+                }
+            });
+            tasks.add(new Callable<Object>() {
+                @Override
+                public Object call() {
+                    return objective.optimal();
+                }
+            });
+        }
+        race(tasks);
+        return incumbent.getBest();
+    }
+
+    /**
+     * Find the Min-Unsat and near-miss example.
+     *
+     * @return the Min-Unsat and near-miss example
+     * @see ClaferUnsat#minUnsat()
+     */
+    public Pair<Set<AstConstraint>, InstanceModel> minUnsat() {
+        if (unsats == null) {
+            throw new IllegalStateException("Portfolio was not compiled for unsat.");
+        }
+        final Incumbent<Pair<Set<AstConstraint>, InstanceModel>> incumbent =
+                new Incumbent<Pair<Set<AstConstraint>, InstanceModel>>(true);
+        List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+        for (final ClaferUnsat unsat : unsats) {
+            final ClaferSolutionMap solutionMap = unsat.getSolutionMap();
+            share(unsat.getInternalSolver(), unsat.getScore(), incumbent,
+                    new Callable<Pair<Set<AstConstraint>, InstanceModel>>() {
+                        @Override
+                        public Pair<Set<AstConstraint>, InstanceModel> call() {
+                            return new Pair<Set<AstConstraint>, InstanceModel>(
+                                    unsat.getUnsat(), solutionMap.getInstance());
+                        }
+                    });
+            tasks.add(new Callable<Object>() {
+                @Override
+                public Object call() {
+                    return unsat.minUnsat();
+                }
+            });
+        }
+        race(tasks);
+        Pair<Integer, Pair<Set<AstConstraint>, InstanceModel>> best = incumbent.getBest();
+        return best == null ? null : best.getSnd();
+    }
+
+    /**
+     * Only search for better scores than the incumbent, and offer every
+     * solution to the incumbent.
+     */
+    private static <T> void share(Solver solver, final IntVar score, final Incumbent<T> incumbent,
+            final Callable<T> payload) {
+        solver.post(Constraints.sharedBound(score, incumbent.bound, incumbent.maximize));
+        solver.getSearchLoop().plugSearchMonitor(new IMonitorSolution() {
+            @Override
+            public void onSolution() {
+                incumbent.offer(score.getValue(), payload);
+            }
+        });
+    }
+
+    private void plugStop(final Solver solver) {
+        solver.getSearchLoop().plugSearchMonitor(new IMonitorDownBranch() {
+            @Override
+            public void beforeDownLeftBranch() {
+                checkStopped();
+            }
+
+            @Override
+            public void afterDownLeftBranch() {
+            }
+
+            @Override
+            public void beforeDownRightBranch() {
+                checkStopped();
+            }
+
+            @Override
+            public void afterDownRightBranch() {
+            }
+
+            private void checkStopped() {
+                if (stopped) {
+                    solver.getSearchLoop().interrupt("Another member of the portfolio finished first.");
+                }
+            }
+        });
+    }
+
+    /**
+     * Run every task on its own thread and return the result of the first to
+     * finish. The rest are stopped.
+     */
+    private <T> T race(List<Callable<T>> tasks) {
+        if (used) {
+            throw new IllegalStateException("Portfolio already solved. Compile a new portfolio for each query.");
+        }
+        used = true;
+        ExecutorService pool = Executors.newFixedThreadPool(tasks.size(), DaemonThreads);
+        try {
+            CompletionService<T> done = new ExecutorCompletionService<T>(pool);
+            for (Callable<T> task : tasks) {
+                done.submit(task);
+            }
+            return done.take().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the portfolio.", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            stopped = true;
+            pool.shutdown();
+        }
+    }
+    static final ThreadFactory DaemonThreads = new ThreadFactory() {
+        private final ThreadFactory threads = Executors.defaultThreadFactory();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = threads.newThread(r);
+            thread.setDaemon(true);
+            return thread;
+        }
+    };
+
+    /**
+     * The best score found by any member, along with what it scored.
+     */
+    private static class Incumbent<T> {
+
+        private final boolean maximize;
+        // Read by the shared bound propagators of every member.
+        private final AtomicInteger bound;
+        private Pair<Integer, T> best;
+
+        Incumbent(boolean maximize) {
+            this.maximize = maximize;
+            this.bound = new AtomicInteger(maximize ? Integer.MIN_VALUE : Integer.MAX_VALUE);
+        }
+
+        void offer(int score, Callable<T> payload) {
+            // Cheap check first, most solutions are not improvements.
+            if (maximize ? score <= bound.get() : score >= bound.get()) {
+                return;
+            }
+            synchronized (this) {
+                if (best == null || (maximize ? score > best.getFst() : score < best.getFst())) {
+                    try {
+                        best = new Pair<Integer, T>(score, payload.call());
+                    } catch (Exception e) {
+                        throw new IllegalStateException(e);
+                    }
+                    bound.set(score);
+                }
+            }
+        }
+
+        synchronized Pair<Integer, T> getBest() {
+            return best;
+        }
+    }
+}
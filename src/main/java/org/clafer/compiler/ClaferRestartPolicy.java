@@ -0,0 +1,172 @@
+package org.clafer.compiler;
+
+import solver.Solver;
+import solver.search.limits.FailCounter;
+import solver.search.loop.monitors.SearchMonitorFactory;
+
+/**
+ * <p>
+ * When to abandon the search and start over from the root. Policies are
+ * immutable, each setter returns a new copy.
+ * </p>
+ * <p>
+ * A search that makes a bad choice high in the tree can spend minutes proving
+ * the subtree below it is empty. Restarting after a number of failures gives
+ * the search another chance at the top of the tree. Each restart breaks the
+ * ties of the {@link ClaferSearchStrategy search strategy} differently, and
+ * records the subtrees already proven empty as nogoods so that no work is
+ * repeated.
+ * </p>
+ * <p>
+ * Restarting never loses or repeats instances. Instances found before a
+ * restart are forbidden afterwards.
+ * </p>
+ *
+ * @author jimmy
+ * @see ClaferOption#restartPolicy(ClaferRestartPolicy)
+ */
+public class ClaferRestartPolicy {
+
+    /**
+     * Never restart.
+     */
+    public static final ClaferRestartPolicy None = new ClaferRestartPolicy(Kind.None, 0, 0, false, false, 0);
+    private final Kind kind;
+    private final int scale;
+    private final double growth;
+    private final boolean nogoods;
+    private final boolean randomize;
+    private final long seed;
+
+    private ClaferRestartPolicy(Kind kind, int scale, double growth, boolean nogoods, boolean randomize, long seed) {
+        this.kind = kind;
+        this.scale = scale;
+        this.growth = growth;
+        this.nogoods = nogoods;
+        this.randomize = randomize;
+        this.seed = seed;
+    }
+
+    /**
+     * Restart after {@code scale * luby(i)} failures, where {@code luby} is
+     * the sequence 1, 1, 2, 1, 1, 2, 4, 1, ... Within a constant factor of the
+     * best fixed cutoff, without knowing it up front. Records nogoods and
+     * breaks ties randomly.
+     *
+     * @param scale the number of failures of the shortest run
+     * @return the Luby policy
+     */
+    public static ClaferRestartPolicy luby(int scale) {
+        return new ClaferRestartPolicy(Kind.Luby, checkScale(scale), 2, true, true, 0);
+    }
+
+    /**
+     * Restart after {@code scale * growth^i} failures. Records nogoods and
+     * breaks ties randomly.
+     *
+     * @param scale the number of failures of the first run
+     * @param growth how much longer each run is than the last
+     * @return the geometric policy
+     */
+    public static ClaferRestartPolicy geometric(int scale, double growth) {
+        if (!(growth > 1)) {
+            throw new IllegalArgumentException("Growth must be greater than 1, not " + growth + ".");
+        }
+        return new ClaferRestartPolicy(Kind.Geometric, checkScale(scale), growth, true, true, 0);
+    }
+
+    private static int checkScale(int scale) {
+        if (scale < 1) {
+            throw new IllegalArgumentException("Scale must be positive, not " + scale + ".");
+        }
+        return scale;
+    }
+
+    /**
+     * Returns {@code true} if the search ever restarts.
+     *
+     * @return {@code true} if restarting, {@code false} otherwise
+     */
+    public boolean isRestarting() {
+        return kind != Kind.None;
+    }
+
+    public boolean isNogoods() {
+        return nogoods;
+    }
+
+    /**
+     * Record the subtrees proven empty before each restart, so that the search
+     * does not enter them again.
+     *
+     * @param nogoods record nogoods or not
+     * @return the new policy
+     */
+    public ClaferRestartPolicy nogoods(boolean nogoods) {
+        return new ClaferRestartPolicy(kind, scale, growth, nogoods, randomize, seed);
+    }
+
+    public boolean isRandomize() {
+        return randomize;
+    }
+
+    /**
+     * Break the ties of the search strategy randomly after each restart. The
+     * first run always uses the strategy as is.
+     *
+     * @param randomize break ties randomly or not
+     * @return the new policy
+     */
+    public ClaferRestartPolicy randomize(boolean randomize) {
+        return new ClaferRestartPolicy(kind, scale, growth, nogoods, randomize, seed);
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Break ties with a different sequence of random numbers.
+     *
+     * @param seed the seed
+     * @return the new policy
+     */
+    public ClaferRestartPolicy seed(long seed) {
+        return new ClaferRestartPolicy(kind, scale, growth, nogoods, randomize, seed);
+    }
+
+    /**
+     * Plug the restarts into the solver.
+     *
+     * @param solver the solver
+     */
+    void plug(Solver solver) {
+        switch (kind) {
+            case Luby:
+                SearchMonitorFactory.luby(solver, scale, (int) growth, new FailCounter(scale), Integer.MAX_VALUE);
+                break;
+            case Geometric:
+                SearchMonitorFactory.geometrical(solver, scale, growth, new FailCounter(scale), Integer.MAX_VALUE);
+                break;
+        }
+    }
+
+    @Override
+    public String toString() {
+        switch (kind) {
+            case Luby:
+                return "luby(" + scale + ")";
+            case Geometric:
+                return "geometric(" + scale + ", " + growth + ")";
+            default:
+                return "none";
+        }
+    }
+
+    private static enum Kind {
+
+        None,
+        Luby,
+        Geometric;
+    }
+}
@@ -0,0 +1,149 @@
+package org.clafer.compiler;
+
+/**
+ * The answer to a query searched within a {@link ClaferBudget}. Says whether
+ * the search finished and, if a limit stopped it, how far the best value found
+ * so far could be from the optimum.
+ *
+ * @param <T> the type of value
+ * @author jimmy
+ */
+public class ClaferResult<T> {
+
+    private final Status status;
+    // Null if the status is TimedOut or Unsatisfiable.
+    private final T value;
+    // Null if the query does not optimize or nothing was found.
+    private final Integer score;
+    // Null if the query does not optimize or the bound is unknown.
+    private final Integer bound;
+
+    private ClaferResult(Status status, T value, Integer score, Integer bound) {
+        this.status = status;
+        this.value = value;
+        this.score = score;
+        this.bound = bound;
+    }
+
+    static <T> ClaferResult<T> optimal(T value) {
+        return new ClaferResult<T>(Status.Optimal, value, null, null);
+    }
+
+    static <T> ClaferResult<T> optimal(T value, int score) {
+        return new ClaferResult<T>(Status.Optimal, value, score, score);
+    }
+
+    static <T> ClaferResult<T> bestFound(T value, int score, int bound) {
+        return new ClaferResult<T>(Status.BestFound, value, score, bound);
+    }
+
+    static <T> ClaferResult<T> timedOut(Integer bound) {
+        return new ClaferResult<T>(Status.TimedOut, null, null, bound);
+    }
+
+    static <T> ClaferResult<T> unsatisfiable() {
+        return new ClaferResult<T>(Status.Unsatisfiable, null, null, null);
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * Returns {@code true} if the search finished, whether or not it found
+     * anything.
+     *
+     * @return {@code true} if proven, {@code false} if a limit stopped the
+     * search
+     */
+    public boolean isProven() {
+        return Status.Optimal.equals(status) || Status.Unsatisfiable.equals(status);
+    }
+
+    public boolean hasValue() {
+        return value != null;
+    }
+
+    /**
+     * Returns the optimal value, or the best found before a limit stopped the
+     * search.
+     *
+     * @return the value, or {@code null} if none was found
+     */
+    public T getValue() {
+        return value;
+    }
+
+    /**
+     * Returns the score of the value.
+     *
+     * @return the score, or {@code null} if the query does not optimize or no
+     * value was found
+     */
+    public Integer getScore() {
+        return score;
+    }
+
+    /**
+     * Returns the best score that could still be possible. No instance scores
+     * better than the bound.
+     *
+     * @return the bound, or {@code null} if the query does not optimize or the
+     * bound is unknown
+     */
+    public Integer getBound() {
+        return bound;
+    }
+
+    /**
+     * Returns how much better than the value the optimum could be. The gap is
+     * zero for proven optimal values.
+     *
+     * @return the distance between the score and the bound, or {@code null} if
+     * either is unknown
+     */
+    public Integer getGap() {
+        if (score == null || bound == null) {
+            return null;
+        }
+        return Math.abs(bound - score);
+    }
+
+    @Override
+    public String toString() {
+        switch (status) {
+            case Optimal:
+                return score == null
+                        ? "Optimal " + value
+                        : "Optimal score " + score + " " + value;
+            case BestFound:
+                return "Best found score " + score + " within " + getGap() + " of optimal " + value;
+            case TimedOut:
+                return "Timed out before finding an instance";
+            default:
+                return "Unsatisfiable";
+        }
+    }
+
+    public static enum Status {
+
+        /**
+         * The search finished and the value is optimal. Any instance is
+         * optimal for queries that do not optimize.
+         */
+        Optimal,
+        /**
+         * A limit stopped the search after it found a value, which may not be
+         * optimal.
+         */
+        BestFound,
+        /**
+         * A limit stopped the search before it found anything.
+         */
+        TimedOut,
+        /**
+         * The search finished without finding anything.
+         */
+        Unsatisfiable;
+    }
+}
@@ -0,0 +1,531 @@
+package org.clafer.compiler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import org.clafer.ast.AstClafer;
+import org.clafer.ast.AstConcreteClafer;
+import org.clafer.ast.AstModel;
+import org.clafer.ast.AstRef;
+import org.clafer.ast.AstUtil;
+import org.clafer.ast.compiler.AstSolutionMap;
+import org.clafer.common.Check;
+import org.clafer.ir.IrIntConstant;
+import org.clafer.ir.IrIntVar;
+import org.clafer.ir.IrSetConstant;
+import org.clafer.ir.IrSetVar;
+import org.clafer.ir.compiler.IrSolutionMap;
+import solver.Solver;
+import solver.search.strategy.IntStrategyFactory;
+import solver.search.strategy.SetStrategyFactory;
+import solver.search.strategy.strategy.AbstractStrategy;
+import solver.variables.IntVar;
+import solver.variables.SetVar;
+
+/**
+ * <p>
+ * How the solver branches, in terms of Clafers. A strategy is given the
+ * sibling sets and references of every Clafer, along with the objective if
+ * there is one, and returns the Choco strategies in the order they branch.
+ * </p>
+ * <p>
+ * The strategy is part of the {@link ClaferOption options} of a query.
+ * Strategies only change the order instances are found in, never which
+ * instances are found.
+ * </p>
+ *
+ * @author jimmy
+ * @see ClaferOption#searchStrategy(ClaferSearchStrategy)
+ */
+public abstract class ClaferSearchStrategy {
+
+    /**
+     * The sibling sets lexicographically, Clafers above their children, then
+     * the references from the smallest value. When optimizing, the objective
+     * is branched on right after the sibling sets.
+     */
+    public static final ClaferSearchStrategy Default = new ClaferSearchStrategy("default") {
+        @Override
+        public AbstractStrategy<?>[] strategies(Context context) {
+            return sequence(
+                    SetStrategyFactory.setLex(context.getSetVars()),
+                    context.getObjectiveStrategy(),
+                    IntStrategyFactory.firstFail_InDomainMin(context.getIntVars()));
+        }
+    };
+    private final String name;
+
+    protected ClaferSearchStrategy(String name) {
+        this.name = Check.notNull(name);
+    }
+
+    /**
+     * Returns the name of the strategy.
+     *
+     * @return the name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Build the strategies in the order they branch. Every sibling set and
+     * reference in the context must be branched on by one of them.
+     *
+     * @param context the variables of the query
+     * @return the strategies
+     */
+    public abstract AbstractStrategy<?>[] strategies(Context context);
+
+    /**
+     * Build the strategies again after a restart. By default they are built
+     * from scratch, from a context that breaks ties differently if the
+     * {@link ClaferRestartPolicy restart policy} randomizes. Strategies that
+     * learn as they search override this to keep what they learned.
+     *
+     * @param context the variables of the query
+     * @param previous the strategies before the restart
+     * @return the strategies
+     */
+    public AbstractStrategy<?>[] restart(Context context, AbstractStrategy<?>[] previous) {
+        return strategies(context);
+    }
+
+    /**
+     * Decide the children of each Clafer instance right after the instance
+     * itself, depth-first, rather than every Clafer at one level before the
+     * next. On deep hierarchies, a bad choice high in the tree fails as soon as
+     * its children are tried instead of after the rest of the level. The
+     * children of abstract Clafers are decided after the concrete hierarchy.
+     *
+     * @return the top-down strategy
+     */
+    public static ClaferSearchStrategy topDown() {
+        return new ClaferSearchStrategy("topDown") {
+            @Override
+            public AbstractStrategy<?>[] strategies(Context context) {
+                return sequence(
+                        SetStrategyFactory.setLex(context.getTopDownSetVars()),
+                        context.getObjectiveStrategy(),
+                        IntStrategyFactory.firstFail_InDomainMin(context.getIntVars()));
+            }
+        };
+    }
+
+    /**
+     * Decide how many children each sibling set has, choosing the set with the
+     * smallest domain over the number of failures it was involved in, then
+     * the children themselves. Learns which parts of the model are hard as the
+     * search goes.
+     *
+     * @param seed the seed for breaking ties
+     * @return the dom/wdeg strategy
+     */
+    public static ClaferSearchStrategy domOverWDeg(final long seed) {
+        return new ClaferSearchStrategy("domOverWDeg") {
+            @Override
+            public AbstractStrategy<?>[] strategies(Context context) {
+                return sequence(
+                        domOverWDeg(context.getCardVars(), seed),
+                        SetStrategyFactory.setLex(context.getSetVars()),
+                        context.getObjectiveStrategy(),
+                        domOverWDeg(context.getIntVars(), seed));
+            }
+
+            @Override
+            public AbstractStrategy<?>[] restart(Context context, AbstractStrategy<?>[] previous) {
+                return previous;
+            }
+        };
+    }
+
+    /**
+     * Decide how many children each sibling set has, choosing the set whose
+     * decisions have recently reduced the most domains, then the children
+     * themselves.
+     *
+     * @param seed the seed for sampling the initial activities
+     * @return the activity-based strategy
+     */
+    public static ClaferSearchStrategy activity(final long seed) {
+        return new ClaferSearchStrategy("activity") {
+            @Override
+            public AbstractStrategy<?>[] strategies(Context context) {
+                return sequence(
+                        activity(context.getCardVars(), seed),
+                        SetStrategyFactory.setLex(context.getSetVars()),
+                        context.getObjectiveStrategy(),
+                        activity(context.getIntVars(), seed));
+            }
+
+            @Override
+            public AbstractStrategy<?>[] restart(Context context, AbstractStrategy<?>[] previous) {
+                return previous;
+            }
+        };
+    }
+
+    // Both learn from the variables they are given, so they need at least one.
+    private static AbstractStrategy<IntVar> domOverWDeg(IntVar[] vars, long seed) {
+        return vars.length == 0 ? null : IntStrategyFactory.domOverWDeg(vars, seed);
+    }
+
+    private static AbstractStrategy<IntVar> activity(IntVar[] vars, long seed) {
+        return vars.length == 0 ? null : IntStrategyFactory.activity(vars, seed);
+    }
+
+    /**
+     * When optimizing, branch on the references of the objective first,
+     * towards the best value, then the objective, then the rest of the model.
+     * Good scores are found early, so the bound prunes more of the search.
+     * Otherwise the same as the {@link #Default default}.
+     *
+     * @return the objective-driven strategy
+     */
+    public static ClaferSearchStrategy objectiveFirst() {
+        return new ClaferSearchStrategy("objectiveFirst") {
+            @Override
+            public AbstractStrategy<?>[] strategies(Context context) {
+                if (!context.hasObjective()) {
+                    return Default.strategies(context);
+                }
+                IntVar[] refs = context.getRefVars(context.getObjective());
+                return sequence(
+                        context.isMaximize()
+                        ? IntStrategyFactory.firstFail_InDomainMax(refs)
+                        : IntStrategyFactory.firstFail_InDomainMin(refs),
+                        context.getObjectiveStrategy(),
+                        SetStrategyFactory.setLex(context.getSetVars()),
+                        IntStrategyFactory.firstFail_InDomainMin(context.getIntVars()));
+            }
+        };
+    }
+
+    /**
+     * Look up a built-in strategy by name. The randomized strategies use a
+     * seed of 0.
+     *
+     * @param name one of "default", "topDown", "domOverWDeg", "activity", or
+     * "objectiveFirst"
+     * @return the strategy
+     */
+    public static ClaferSearchStrategy forName(String name) {
+        if ("default".equals(name)) {
+            return Default;
+        }
+        if ("topDown".equals(name)) {
+            return topDown();
+        }
+        if ("domOverWDeg".equals(name)) {
+            return domOverWDeg(0);
+        }
+        if ("activity".equals(name)) {
+            return activity(0);
+        }
+        if ("objectiveFirst".equals(name)) {
+            return objectiveFirst();
+        }
+        throw new IllegalArgumentException("Unknown search strategy \"" + name + "\".");
+    }
+
+    /**
+     * Drop the missing strategies.
+     *
+     * @param strategies the strategies, some possibly {@code null}
+     * @return the strategies that are not {@code null}
+     */
+    protected static AbstractStrategy<?>[] sequence(AbstractStrategy<?>... strategies) {
+        List<AbstractStrategy<?>> sequence = new ArrayList<AbstractStrategy<?>>(strategies.length);
+        for (AbstractStrategy<?> strategy : strategies) {
+            if (strategy != null) {
+                sequence.add(strategy);
+            }
+        }
+        return sequence.toArray(new AbstractStrategy<?>[sequence.size()]);
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+
+    /**
+     * The variables of a query, by Clafer. The variables are looked up once,
+     * when the context is built, so the context does not keep the compile-time
+     * structures alive.
+     */
+    public static class Context {
+
+        private final Solver solver;
+        private final AstModel model;
+        // Null if not optimizing.
+        private final AstRef objective;
+        private final boolean maximize;
+        private final IntVar[] scoreVars;
+        // The sibling sets that are not constants, one group for each Clafer.
+        private final SetVar[][] setGroups;
+        // The references that are not constants.
+        private final IntVar[] refs;
+        // Null where the set is a constant.
+        private final Map<AstClafer, SetVar[]> siblingVars;
+        private final Map<AstRef, IntVar[]> refVars;
+        private final Map<SetVar, IntVar> cardVars;
+        // The sibling sets reachable through the concrete hierarchy.
+        private final SetVar[] topDownSetVars;
+        // Null if ties are broken in order.
+        private final Random random;
+        private SetVar[] setVars;
+        private IntVar[] intVars;
+
+        Context(Solver solver, ClaferSolutionMap solution) {
+            this(solver, solution, null, false, new IntVar[0]);
+        }
+
+        Context(Solver solver, ClaferSolutionMap solution, AstRef objective, boolean maximize, IntVar[] scoreVars) {
+            this.solver = Check.notNull(solver);
+            this.model = solution.getAstSolution().getModel();
+            this.objective = objective;
+            this.maximize = maximize;
+            this.scoreVars = Check.noNulls(scoreVars);
+            this.setGroups = ClaferCompiler.getSetVarGroups(model, solution);
+            this.refs = ClaferCompiler.getIntVars(model, solution);
+            this.siblingVars = new HashMap<AstClafer, SetVar[]>();
+            this.refVars = new HashMap<AstRef, IntVar[]>();
+            this.cardVars = new HashMap<SetVar, IntVar>();
+            IrSolutionMap irSolution = solution.getIrSolution();
+            for (AstConcreteClafer clafer : AstUtil.getConcreteClafers(model)) {
+                IrSetVar[] irSiblingVars = solution.getAstSolution().getSiblingVars(clafer);
+                SetVar[] vars = new SetVar[irSiblingVars.length];
+                for (int i = 0; i < vars.length; i++) {
+                    if (!(irSiblingVars[i] instanceof IrSetConstant)) {
+                        vars[i] = irSolution.getSetVar(irSiblingVars[i]);
+                        IntVar card = vars[i] == null ? null : irSolution.getSetCardVar(vars[i]);
+                        if (card != null) {
+                            cardVars.put(vars[i], card);
+                        }
+                    }
+                }
+                siblingVars.put(clafer, vars);
+            }
+            for (AstClafer clafer : AstUtil.getClafers(model)) {
+                if (clafer.hasRef()) {
+                    IrIntVar[] irRefVars = solution.getAstSolution().getRefVars(clafer.getRef());
+                    IntVar[] vars = new IntVar[irRefVars.length];
+                    for (int i = 0; i < vars.length; i++) {
+                        if (!(irRefVars[i] instanceof IrIntConstant)) {
+                            vars[i] = irSolution.getIntVar(irRefVars[i]);
+                        }
+                    }
+                    refVars.put(clafer.getRef(), removeNulls(vars));
+                }
+            }
+            Set<SetVar> order = new LinkedHashSet<SetVar>();
+            for (AstConcreteClafer top : model.getChildren()) {
+                topDown(solution.getAstSolution(), top, 0, order);
+            }
+            this.topDownSetVars = order.toArray(new SetVar[order.size()]);
+            this.random = null;
+        }
+
+        private Context(Context context, Random random) {
+            this.solver = context.solver;
+            this.model = context.model;
+            this.objective = context.objective;
+            this.maximize = context.maximize;
+            this.scoreVars = context.scoreVars;
+            this.setGroups = context.setGroups;
+            this.refs = context.refs;
+            this.siblingVars = context.siblingVars;
+            this.refVars = context.refVars;
+            this.cardVars = context.cardVars;
+            this.topDownSetVars = context.topDownSetVars;
+            this.random = random;
+        }
+
+        private void topDown(AstSolutionMap astSolution, AstConcreteClafer clafer, int parent, Set<SetVar> order) {
+            IrSetVar[] irSiblingVars = astSolution.getSiblingVars(clafer);
+            if (parent >= irSiblingVars.length) {
+                return;
+            }
+            IrSetVar siblingVar = irSiblingVars[parent];
+            SetVar var = siblingVars.get(clafer)[parent];
+            if (var != null) {
+                order.add(var);
+            }
+            for (int id : siblingVar.getEnv().getValues()) {
+                for (AstConcreteClafer child : clafer.getChildren()) {
+                    topDown(astSolution, child, id, order);
+                }
+            }
+        }
+
+        /**
+         * The same variables, with the ties broken randomly. The sibling sets
+         * of each Clafer are shuffled among themselves, so Clafers still come
+         * before their children. The references are shuffled.
+         *
+         * @param random the source of the new ties
+         * @return the shuffled context
+         */
+        Context shuffle(Random random) {
+            return new Context(this, Check.notNull(random));
+        }
+
+        public Solver getSolver() {
+            return solver;
+        }
+
+        public AstModel getModel() {
+            return model;
+        }
+
+        /**
+         * Returns every sibling set that is not a constant. A Clafer's sets
+         * come after the sets of its parent and its supers.
+         *
+         * @return the sibling sets
+         */
+        public SetVar[] getSetVars() {
+            if (setVars == null) {
+                List<SetVar> vars = new ArrayList<SetVar>();
+                for (SetVar[] group : setGroups) {
+                    List<SetVar> siblings = Arrays.asList(group.clone());
+                    if (random != null) {
+                        Collections.shuffle(siblings, random);
+                    }
+                    vars.addAll(siblings);
+                }
+                setVars = vars.toArray(new SetVar[vars.size()]);
+            }
+            return setVars;
+        }
+
+        /**
+         * Returns every reference that is not a constant.
+         *
+         * @return the references
+         */
+        public IntVar[] getIntVars() {
+            if (intVars == null) {
+                intVars = refs.clone();
+                if (random != null) {
+                    Collections.shuffle(Arrays.asList(intVars), random);
+                }
+            }
+            return intVars;
+        }
+
+        /**
+         * Returns the sibling sets of the Clafer, one for each instance of its
+         * parent.
+         *
+         * @param clafer the Clafer
+         * @return the sibling sets, {@code null} where the set is a constant
+         */
+        public SetVar[] getSiblingVars(AstClafer clafer) {
+            SetVar[] vars = siblingVars.get(clafer);
+            if (vars == null) {
+                throw new IllegalArgumentException(clafer + " has no sibling sets.");
+            }
+            return vars.clone();
+        }
+
+        /**
+         * Returns the references, one for each instance of the Clafer with the
+         * reference.
+         *
+         * @param ref the reference
+         * @return the references that are not constants
+         */
+        public IntVar[] getRefVars(AstRef ref) {
+            IntVar[] vars = refVars.get(ref);
+            if (vars == null) {
+                throw new IllegalArgumentException(ref + " is not part of the model.");
+            }
+            return vars.clone();
+        }
+
+        /**
+         * Returns the cardinalities of the sibling sets that have one.
+         *
+         * @return the cardinalities
+         */
+        public IntVar[] getCardVars() {
+            SetVar[] sets = getSetVars();
+            IntVar[] cards = new IntVar[sets.length];
+            for (int i = 0; i < cards.length; i++) {
+                cards[i] = cardVars.get(sets[i]);
+            }
+            return removeNulls(cards);
+        }
+
+        /**
+         * Returns the sibling sets ordered depth-first. The sets of the
+         * children of an instance come right after the set the instance is
+         * in.
+         *
+         * @return the sibling sets
+         * @see ClaferSearchStrategy#topDown()
+         */
+        public SetVar[] getTopDownSetVars() {
+            Set<SetVar> order = new LinkedHashSet<SetVar>(Arrays.asList(topDownSetVars));
+            // The sets not reachable through the concrete hierarchy.
+            order.addAll(Arrays.asList(getSetVars()));
+            return order.toArray(new SetVar[order.size()]);
+        }
+
+        /**
+         * Checks if the query has an objective.
+         *
+         * @return {@code true} if and only if optimizing, {@code false}
+         * otherwise
+         */
+        public boolean hasObjective() {
+            return objective != null;
+        }
+
+        /**
+         * Returns the reference being optimized.
+         *
+         * @return the objective, or {@code null} if not optimizing
+         */
+        public AstRef getObjective() {
+            return objective;
+        }
+
+        public boolean isMaximize() {
+            return maximize;
+        }
+
+        /**
+         * Returns the strategy that branches on the objective towards better
+         * scores.
+         *
+         * @return the objective strategy, or {@code null} if not optimizing
+         */
+        public AbstractStrategy<IntVar> getObjectiveStrategy() {
+            if (objective == null) {
+                return null;
+            }
+            return maximize
+                    ? IntStrategyFactory.firstFail_InDomainMax(scoreVars)
+                    : IntStrategyFactory.firstFail_InDomainMin(scoreVars);
+        }
+
+        private static IntVar[] removeNulls(IntVar[] vars) {
+            List<IntVar> nonNulls = new ArrayList<IntVar>(vars.length);
+            for (IntVar var : vars) {
+                if (var != null) {
+                    nonNulls.add(var);
+                }
+            }
+            return nonNulls.toArray(new IntVar[nonNulls.size()]);
+        }
+    }
+}
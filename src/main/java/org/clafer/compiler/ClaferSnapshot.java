@@ -0,0 +1,233 @@
+package org.clafer.compiler;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import org.clafer.ast.AstModel;
+import org.clafer.ast.AstRef;
+import org.clafer.ast.compiler.AstCompiler;
+import org.clafer.ast.compiler.AstSolutionMap;
+import org.clafer.common.Check;
+import org.clafer.compiler.ClaferObjective.Objective;
+import org.clafer.ir.IrModule;
+import org.clafer.ir.compiler.IrOptimizedModule;
+import org.clafer.scope.Scope;
+import org.clafer.scope.ScopeBuilder;
+
+/**
+ * <p>
+ * A compiled and optimized model that can be saved to disk and loaded back in a
+ * different process. Loading a snapshot skips the Javascript model, the
+ * analysis, and the IR optimizations. The loaded snapshot is posted straight to
+ * new solvers.
+ * </p>
+ * <p>
+ * Example:
+ * <pre>
+ * ClaferSnapshot.snapshot(model, scope).write(new File("model.snapshot"));
+ * ...
+ * ClaferSolver solver = ClaferSnapshot.read(new File("model.snapshot")).compile();
+ * </pre>
+ * </p>
+ * <p>
+ * The snapshot contains its own copy of the model. Objectives must be expressed
+ * using the Clafers from {@link #getModel()}.
+ * </p>
+ *
+ * @author jimmy
+ */
+public class ClaferSnapshot implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    // "CLSN"
+    private static final int Magic = 0x434c534e;
+    private static final int Version = 4;
+    private final AstSolutionMap astSolution;
+    private final IrOptimizedModule module;
+    private final boolean unsat;
+
+    private ClaferSnapshot(AstSolutionMap astSolution, IrOptimizedModule module, boolean unsat) {
+        this.astSolution = Check.notNull(astSolution);
+        this.module = Check.notNull(module);
+        this.unsat = unsat;
+    }
+
+    public static ClaferSnapshot snapshot(AstModel in, ScopeBuilder scope) {
+        return snapshot(in, scope.toScope());
+    }
+
+    /**
+     * Compile the model for finding instances and optimizing.
+     *
+     * @param in the model
+     * @param scope the scope
+     * @return the snapshot
+     */
+    public static ClaferSnapshot snapshot(AstModel in, Scope scope) {
+        IrModule module = new IrModule();
+        AstSolutionMap astSolution = AstCompiler.compile(in, scope, module);
+        return new ClaferSnapshot(astSolution, ClaferCompiler.optimize(astSolution, module), false);
+    }
+
+    public static ClaferSnapshot snapshotUnsat(AstModel in, ScopeBuilder scope) {
+        return snapshotUnsat(in, scope.toScope());
+    }
+
+    /**
+     * Compile the model for Min-Unsat and Unsat-Core.
+     *
+     * @param in the model
+     * @param scope the scope
+     * @return the snapshot
+     */
+    public static ClaferSnapshot snapshotUnsat(AstModel in, Scope scope) {
+        IrModule module = new IrModule();
+        AstSolutionMap astSolution = AstCompiler.compile(in, scope, module, ClaferCompiler.UnsatAnalyzers);
+        return new ClaferSnapshot(astSolution, ClaferCompiler.optimize(astSolution, module), true);
+    }
+
+    /**
+     * Returns the model the snapshot was compiled from.
+     *
+     * @return the model
+     */
+    public AstModel getModel() {
+        return astSolution.getModel();
+    }
+
+    /**
+     * Returns the scope the snapshot was compiled with.
+     *
+     * @return the scope
+     */
+    public Scope getScope() {
+        return astSolution.getAnalysis().getScope();
+    }
+
+    /**
+     * Checks if this snapshot was compiled for Min-Unsat and Unsat-Core.
+     *
+     * @return {@code true} if and only if compiled for unsat queries,
+     * {@code false} otherwise
+     */
+    public boolean isUnsat() {
+        return unsat;
+    }
+
+    public ClaferSolver compile() {
+        checkSat();
+        return ClaferCompiler.compile(astSolution, module);
+    }
+
+    public ClaferObjective compileMaximize(AstRef ref) {
+        checkSat();
+        return ClaferCompiler.compileObjective(astSolution, module, Objective.Maximize, ref);
+    }
+
+    public ClaferObjective compileMinimize(AstRef ref) {
+        checkSat();
+        return ClaferCompiler.compileObjective(astSolution, module, Objective.Minimize, ref);
+    }
+
+    public ClaferUnsat compileUnsat() {
+        if (!unsat) {
+            throw new IllegalStateException("Snapshot was not compiled for unsat. Use snapshotUnsat.");
+        }
+        return ClaferCompiler.compileUnsat(astSolution, module);
+    }
+
+    private void checkSat() {
+        if (unsat) {
+            throw new IllegalStateException("Snapshot was compiled for unsat. Use snapshot.");
+        }
+    }
+
+    /**
+     * Write the snapshot. The stream is not closed.
+     *
+     * @param out the stream to write to
+     * @throws IOException an I/O error occurred
+     */
+    public void write(OutputStream out) throws IOException {
+        DataOutputStream header = new DataOutputStream(out);
+        header.writeInt(Magic);
+        header.writeInt(Version);
+        header.flush();
+        GZIPOutputStream gzip = new GZIPOutputStream(out);
+        ObjectOutputStream body = new ObjectOutputStream(gzip);
+        body.writeObject(this);
+        body.flush();
+        gzip.finish();
+    }
+
+    /**
+     * Write the snapshot to a file.
+     *
+     * @param out the file to write to
+     * @throws IOException an I/O error occurred
+     */
+    public void write(File out) throws IOException {
+        OutputStream stream = new BufferedOutputStream(new FileOutputStream(out));
+        try {
+            write(stream);
+        } finally {
+            stream.close();
+        }
+    }
+
+    /**
+     * Read a snapshot written by {@link #write(OutputStream)}. The stream is
+     * not closed.
+     *
+     * @param in the stream to read from
+     * @return the snapshot
+     * @throws IOException an I/O error occurred or the stream is not a snapshot
+     */
+    public static ClaferSnapshot read(InputStream in) throws IOException {
+        DataInputStream header = new DataInputStream(in);
+        if (header.readInt() != Magic) {
+            throw new IOException("Not a snapshot.");
+        }
+        int version = header.readInt();
+        if (version != Version) {
+            throw new IOException("Unsupported snapshot version " + version + ", expected " + Version + ".");
+        }
+        ObjectInputStream body = new ObjectInputStream(new GZIPInputStream(in));
+        try {
+            return (ClaferSnapshot) body.readObject();
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Snapshot is from an incompatible version.", e);
+        } catch (ClassCastException e) {
+            throw new IOException("Not a snapshot.", e);
+        }
+    }
+
+    /**
+     * Read a snapshot from a file.
+     *
+     * @param in the file to read from
+     * @return the snapshot
+     * @throws IOException an I/O error occurred or the file is not a snapshot
+     */
+    public static ClaferSnapshot read(File in) throws IOException {
+        InputStream stream = new BufferedInputStream(new FileInputStream(in));
+        try {
+            return read(stream);
+        } finally {
+            stream.close();
+        }
+    }
+}
@@ -1,18 +1,9 @@
 package org.clafer.compiler;
 
-import java.util.ArrayList;
-import java.util.List;
-import org.clafer.ast.AstAbstractClafer;
 import org.clafer.common.Check;
-import org.clafer.ast.AstClafer;
-import org.clafer.ast.AstConcreteClafer;
 import org.clafer.ast.compiler.AstSolutionMap;
-import org.clafer.collection.Pair;
-import org.clafer.instance.InstanceClafer;
+import org.clafer.instance.FlatInstance;
 import org.clafer.instance.InstanceModel;
-import org.clafer.instance.InstanceRef;
-import org.clafer.ir.IrIntVar;
-import org.clafer.ir.IrSetVar;
 import org.clafer.ir.compiler.IrSolutionMap;
 
 /**
@@ -21,67 +12,86 @@ import org.clafer.ir.compiler.IrSolutionMap;
  */
 public class ClaferSolutionMap {
 
+    // Null if compacted.
     private final AstSolutionMap astSolution;
     private final IrSolutionMap irSolution;
+    // Built on the first instance. Resolves everything an instance reads up
+    // front so that reading instances is only array lookups.
+    private CompactSolutionMap compact;
 
     ClaferSolutionMap(AstSolutionMap astSolution, IrSolutionMap irSolution) {
         this.astSolution = Check.notNull(astSolution);
         this.irSolution = Check.notNull(irSolution);
     }
 
-    public InstanceModel getInstance() {
-        List<InstanceClafer> topInstances = new ArrayList<InstanceClafer>();
-        for (AstConcreteClafer child : astSolution.getModel().getChildren()) {
-            // [0] because top clafers only have exactly one children set
-            IrSetVar topSetIrVar = astSolution.getSiblingVars(child)[0];
-            int[] topIds = irSolution.getSetValue(topSetIrVar);
-            for (int topId : topIds) {
-                topInstances.add(getInstanceClafer(child, topId));
-            }
+    private ClaferSolutionMap(CompactSolutionMap compact) {
+        this.astSolution = null;
+        this.irSolution = null;
+        this.compact = Check.notNull(compact);
+    }
+
+    /**
+     * Keep only what is needed to read instances and release the rest of the
+     * compile-time structures. Must be called after the search strategies are
+     * chosen.
+     *
+     * @return the compacted solution map
+     * @see ClaferOption#compactSolutionMap(boolean)
+     */
+    ClaferSolutionMap compact() {
+        if (isCompact()) {
+            return this;
         }
-        return new InstanceModel(topInstances.toArray(new InstanceClafer[topInstances.size()]));
+        return new ClaferSolutionMap(getCompact());
     }
 
-    private InstanceClafer getInstanceClafer(AstConcreteClafer clafer, int id) {
-        List<InstanceClafer> children = new ArrayList<InstanceClafer>();
-        InstanceRef ref = getInstanceClafer(clafer, id, children);
-        return new InstanceClafer(clafer, id, ref, children.toArray(new InstanceClafer[children.size()]));
+    /**
+     * Checks if the compile-time structures were released. A compacted map
+     * can still read instances, but has no AST or IR solution maps.
+     *
+     * @return {@code true} if and only if compacted, {@code false} otherwise
+     */
+    public boolean isCompact() {
+        return astSolution == null;
     }
 
-    private InstanceRef getInstanceClafer(AstClafer clafer, int id, List<InstanceClafer> children) {
-        for (AstConcreteClafer child : clafer.getChildren()) {
-            IrSetVar childSetIrVar = astSolution.getSiblingVars(child)[id];
-            int[] childIds = irSolution.getSetValue(childSetIrVar);
-            for (int childId : childIds) {
-                children.add(getInstanceClafer(child, childId));
-            }
-        }
-        InstanceRef ref = null;
-        if (clafer.hasSuperClafer()) {
-            ref = getInstanceClafer(clafer.getSuperClafer(),
-                    id + astSolution.getAnalysis().getOffsets(clafer.getSuperClafer()).getOffset(clafer),
-                    children);
+    private CompactSolutionMap getCompact() {
+        if (compact == null) {
+            compact = new CompactSolutionMap(astSolution, irSolution);
         }
-        if (clafer.hasRef()) {
-            IrIntVar refIrVar = astSolution.getRefVars(clafer.getRef())[id];
-            AstClafer targetType = clafer.getRef().getTargetType();
-            int value = irSolution.getIntValue(refIrVar);
-            if (targetType instanceof AstAbstractClafer) {
-                Pair<AstConcreteClafer, Integer> concreteRef = astSolution.getAnalysis().getConcreteId(
-                        targetType, value);
-                targetType = concreteRef.getFst();
-                value = concreteRef.getSnd().intValue();
-            }
-            ref = new InstanceRef(targetType, value);
-        }
-        return ref;
+        return compact;
+    }
+
+    public InstanceModel getInstance() {
+        return getCompact().getInstance();
+    }
+
+    /**
+     * Write the current solution into a flat buffer, reusing its arrays.
+     * Cheaper than {@link #getInstance()} when the instances are consumed one
+     * at a time, for example when serializing each solution while enumerating.
+     *
+     * @param buffer the buffer to write to, its old contents are cleared
+     * @return the buffer
+     */
+    public FlatInstance getInstance(FlatInstance buffer) {
+        getCompact().getInstance(buffer);
+        return buffer;
     }
 
     public AstSolutionMap getAstSolution() {
+        checkNotCompact();
         return astSolution;
     }
 
     public IrSolutionMap getIrSolution() {
+        checkNotCompact();
         return irSolution;
     }
+
+    private void checkNotCompact() {
+        if (isCompact()) {
+            throw new IllegalStateException("Solution map was compacted. Compile without compactSolutionMap.");
+        }
+    }
 }
@@ -1,9 +1,14 @@
 package org.clafer.compiler;
 
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 import org.clafer.common.Check;
+import org.clafer.common.Profile;
+import org.clafer.instance.FlatInstance;
 import org.clafer.instance.InstanceModel;
+import org.clafer.instance.InstanceVisitor;
 import solver.Solver;
 import solver.search.measure.IMeasures;
 
@@ -15,12 +20,18 @@ public class ClaferSolver {
 
     private final Solver solver;
     private final ClaferSolutionMap solutionMap;
+    private final Profile profile;
+    private final BudgetMonitor<Void> budgetMonitor;
     private boolean first = true;
     private boolean more = true;
+    // A limit stopped the search, so whatever is left is unknown.
+    private boolean cutOff = false;
 
-    ClaferSolver(Solver solver, ClaferSolutionMap solutionMap) {
+    ClaferSolver(Solver solver, ClaferSolutionMap solutionMap, Profile profile) {
         this.solver = Check.notNull(solver);
         this.solutionMap = Check.notNull(solutionMap);
+        this.profile = Check.notNull(profile);
+        this.budgetMonitor = new BudgetMonitor<Void>(solver);
     }
 
     public IMeasures getMeasures() {
@@ -35,6 +46,15 @@ public class ClaferSolver {
         return solutionMap;
     }
 
+    /**
+     * Returns the time spent in each phase of compiling this query.
+     *
+     * @return the compilation profile
+     */
+    public Profile getProfile() {
+        return profile;
+    }
+
     public boolean find() {
         if (!more) {
             return false;
@@ -48,10 +68,50 @@ public class ClaferSolver {
         return more;
     }
 
+    /**
+     * Find the next instance within the budget. A search stopped by a limit
+     * cannot be resumed, so every later call times out as well.
+     *
+     * @param budget the budget for this call
+     * @return the instance if found, whether there are no more instances, or
+     * whether the budget ran out first
+     */
+    public ClaferResult<InstanceModel> find(ClaferBudget budget) {
+        if (cutOff) {
+            return ClaferResult.timedOut(null);
+        }
+        boolean found;
+        budgetMonitor.start(budget);
+        try {
+            found = find();
+        } finally {
+            budgetMonitor.stop();
+        }
+        if (budgetMonitor.isLimitReached()) {
+            more = false;
+            cutOff = true;
+            return ClaferResult.timedOut(null);
+        }
+        return found
+                ? ClaferResult.optimal(instance())
+                : ClaferResult.<InstanceModel>unsatisfiable();
+    }
+
     public InstanceModel instance() {
         return solutionMap.getInstance();
     }
 
+    /**
+     * Write the current solution into a flat buffer, reusing its arrays.
+     *
+     * @param buffer the buffer to write to
+     * @return the buffer
+     * @see ClaferSolutionMap#getInstance(FlatInstance)
+     */
+    public FlatInstance instance(FlatInstance buffer) {
+        return solutionMap.getInstance(buffer);
+    }
+
     public InstanceModel[] allInstances() {
         List<InstanceModel> instances = new ArrayList<InstanceModel>();
         while (find()) {
@@ -60,6 +120,79 @@ public class ClaferSolver {
         return instances.toArray(new InstanceModel[instances.size()]);
     }
 
+    /**
+     * Stream every remaining instance to the visitor.
+     *
+     * @param visitor the visitor
+     * @return the number of instances visited
+     * @see #allInstances(int, InstanceVisitor)
+     */
+    public int allInstances(InstanceVisitor visitor) {
+        return allInstances(Integer.MAX_VALUE, visitor);
+    }
+
+    /**
+     * Stream the remaining instances to the visitor, one at a time, without
+     * keeping them. The same buffer is reused for every instance. Stops after
+     * the limit or as soon as the visitor returns {@code false}. The search is
+     * not closed, so calling {@link #find()} or this method again continues
+     * where it stopped.
+     *
+     * @param limit the most instances to visit
+     * @param visitor the visitor
+     * @return the number of instances visited
+     */
+    public int allInstances(int limit, InstanceVisitor visitor) {
+        Check.notNull(visitor);
+        if (limit < 0) {
+            throw new IllegalArgumentException("Negative limit " + limit + ".");
+        }
+        FlatInstance buffer = new FlatInstance();
+        int count = 0;
+        while (count < limit && find()) {
+            count++;
+            if (!visitor.visit(instance(buffer))) {
+                break;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Iterate over the remaining instances. Each instance is solved when
+     * {@link Iterator#hasNext()} is called, not up front.
+     *
+     * @return the remaining instances
+     */
+    public Iterator<InstanceModel> instances() {
+        return new Iterator<InstanceModel>() {
+            // Null if the next instance is not yet solved.
+            private Boolean hasNext;
+
+            @Override
+            public boolean hasNext() {
+                if (hasNext == null) {
+                    hasNext = find();
+                }
+                return hasNext.booleanValue();
+            }
+
+            @Override
+            public InstanceModel next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                hasNext = null;
+                return instance();
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
     @Override
     public String toString() {
         return solver.toString();
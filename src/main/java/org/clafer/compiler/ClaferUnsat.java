@@ -4,8 +4,10 @@ import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
 import org.clafer.ast.AstConstraint;
 import org.clafer.common.Check;
+import org.clafer.common.Profile;
 import org.clafer.collection.Pair;
 import org.clafer.instance.InstanceModel;
 import solver.ResolutionPolicy;
@@ -16,8 +18,9 @@ import solver.variables.IntVar;
 import util.ESat;
 
 /**
- * Either call {@link #minUnsat()} xor {@link #unsatCore()} at most once. If you
- * need to invoke both, you need to two ClaferUnsat objects.
+ * Either call {@link #minUnsat()}, {@link #minUnsat(ClaferBudget)} or
+ * {@link #unsatCore()} at most once. If you need to invoke more than one, you
+ * need more ClaferUnsat objects.
  *
  * @author jimmy
  */
@@ -27,18 +30,59 @@ public class ClaferUnsat {
     private final ClaferSolutionMap solutionMap;
     private final Pair<AstConstraint, BoolVar>[] softVars;
     private final IntVar score;
+    private final Profile profile;
+    private final BudgetMonitor<Pair<Set<AstConstraint>, InstanceModel>> budgetMonitor;
 
-    ClaferUnsat(Solver solver, ClaferSolutionMap solutionMap, Pair<AstConstraint, BoolVar>[] softVars, IntVar score) {
+    ClaferUnsat(Solver solver, ClaferSolutionMap solutionMap, Pair<AstConstraint, BoolVar>[] softVars, IntVar score, Profile profile) {
         this.solver = Check.notNull(solver);
         this.solutionMap = Check.notNull(solutionMap);
         this.softVars = Check.noNulls(softVars);
         this.score = Check.notNull(score);
+        this.profile = Check.notNull(profile);
+        this.budgetMonitor = new BudgetMonitor<Pair<Set<AstConstraint>, InstanceModel>>(solver, score, true,
+                new Callable<Pair<Set<AstConstraint>, InstanceModel>>() {
+                    @Override
+                    public Pair<Set<AstConstraint>, InstanceModel> call() {
+                        return new Pair<Set<AstConstraint>, InstanceModel>(getUnsat(), solutionMap.getInstance());
+                    }
+                });
     }
 
     public Solver getInternalSolver() {
         return solver;
     }
 
+    /**
+     * Returns the time spent in each phase of compiling this query.
+     *
+     * @return the compilation profile
+     */
+    public Profile getProfile() {
+        return profile;
+    }
+
+    ClaferSolutionMap getSolutionMap() {
+        return solutionMap;
+    }
+
+    IntVar getScore() {
+        return score;
+    }
+
+    /**
+     * Returns the constraints that are currently unsatisfied. Only valid when
+     * the solver is on a solution.
+     */
+    Set<AstConstraint> getUnsat() {
+        Set<AstConstraint> unsat = new HashSet<AstConstraint>();
+        for (Pair<AstConstraint, BoolVar> softVar : softVars) {
+            if (softVar.getSnd().instantiatedTo(0)) {
+                unsat.add(softVar.getFst());
+            }
+        }
+        return unsat;
+    }
+
     /**
      * Compute the minimal set of constraints that need to be removed before the
      * model is satisfiable. If the model is already satisfiable, then the set
@@ -48,17 +92,32 @@ public class ClaferUnsat {
      */
     public Pair<Set<AstConstraint>, InstanceModel> minUnsat() {
         if (ESat.TRUE.equals(maximize())) {
-            Set<AstConstraint> unsat = new HashSet<AstConstraint>();
-            for (Pair<AstConstraint, BoolVar> softVar : softVars) {
-                if (softVar.getSnd().instantiatedTo(0)) {
-                    unsat.add(softVar.getFst());
-                }
-            }
-            return new Pair<Set<AstConstraint>, InstanceModel>(unsat, solutionMap.getInstance());
+            return new Pair<Set<AstConstraint>, InstanceModel>(getUnsat(), solutionMap.getInstance());
         }
         return null;
     }
 
+    /**
+     * Compute the Min-Unsat within the budget. If the budget runs out first,
+     * returns the smallest set of constraints found so far that can be removed,
+     * along with its near-miss example. The score is the number of constraints
+     * satisfied, so the gap bounds how many fewer constraints the Min-Unsat
+     * could have.
+     *
+     * @param budget the budget for this call
+     * @return the Min-Unsat or best found, and the corresponding near-miss
+     * example
+     */
+    public ClaferResult<Pair<Set<AstConstraint>, InstanceModel>> minUnsat(ClaferBudget budget) {
+        budgetMonitor.start(budget);
+        try {
+            maximize();
+        } finally {
+            budgetMonitor.stop();
+        }
+        return budgetMonitor.getResult();
+    }
+
     /**
      * Compute a small set of constraints that are mutually unsatisfiable.
      * Undefined behaviour if the model is satisfiable. This method is always
@@ -0,0 +1,211 @@
+package org.clafer.compiler;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.clafer.ast.AstAbstractClafer;
+import org.clafer.ast.AstClafer;
+import org.clafer.ast.AstConcreteClafer;
+import org.clafer.ast.AstModel;
+import org.clafer.ast.AstUtil;
+import org.clafer.ast.analysis.Analysis;
+import org.clafer.ast.compiler.AstSolutionMap;
+import org.clafer.collection.Pair;
+import org.clafer.instance.FlatInstance;
+import org.clafer.instance.InstanceModel;
+import org.clafer.ir.IrIntVar;
+import org.clafer.ir.IrSetVar;
+import org.clafer.ir.compiler.IrSolutionMap;
+import solver.variables.IntVar;
+import solver.variables.SetVar;
+
+/**
+ * <p>
+ * Only what is needed to read instances, flattened into arrays indexed by
+ * {@link AstClafer#getId() Clafer id} and instance id. Reading an instance
+ * does not need a single hash lookup, and writing it into a reused
+ * {@link FlatInstance} barely allocates.
+ * </p>
+ * <p>
+ * The AST and IR solution maps hold on to the analysis, every IR variable, and
+ * the coalescing maps. None of it is needed once the model is posted and the
+ * search strategies are chosen. Variables that ended up constant are stored
+ * as their value.
+ * </p>
+ *
+ * @author jimmy
+ */
+class CompactSolutionMap {
+
+    private final AstModel model;
+    private final AstClafer[] clafers;
+    // The ids of the concrete children of each Clafer.
+    private final int[][] children;
+    // The id of the super Clafer, or -1 if none, and the offset into it.
+    private final int[] supers;
+    private final int[] superOffsets;
+    // The sibling set of each instance of the parent. The constant value is
+    // used where the variable is null.
+    private final SetVar[][] siblingVars;
+    private final int[][][] siblingValues;
+    // The reference of each instance, only for Clafers that declare a reference.
+    private final IntVar[][] refVars;
+    private final int[][] refValues;
+    // The concrete target and concrete id of each id of an abstract target.
+    private final AstConcreteClafer[][] refTargets;
+    private final int[][] refTargetIds;
+
+    CompactSolutionMap(AstSolutionMap astSolution, IrSolutionMap irSolution) {
+        Analysis analysis = astSolution.getAnalysis();
+        this.model = astSolution.getModel();
+        int size = model.getClaferIdCount();
+        this.clafers = new AstClafer[size];
+        this.children = new int[size][];
+        this.supers = new int[size];
+        this.superOffsets = new int[size];
+        this.siblingVars = new SetVar[size][];
+        this.siblingValues = new int[size][][];
+        this.refVars = new IntVar[size][];
+        this.refValues = new int[size][];
+        this.refTargets = new AstConcreteClafer[size][];
+        this.refTargetIds = new int[size][];
+
+        // Abstract targets are shared between references, so are their arrays.
+        Map<AstAbstractClafer, Pair<AstConcreteClafer[], int[]>> targets =
+                new HashMap<AstAbstractClafer, Pair<AstConcreteClafer[], int[]>>();
+        for (AstClafer clafer : AstUtil.getClafers(model)) {
+            int i = clafer.getId();
+            clafers[i] = clafer;
+            List<AstConcreteClafer> childClafers = clafer.getChildren();
+            children[i] = new int[childClafers.size()];
+            for (int j = 0; j < children[i].length; j++) {
+                children[i][j] = childClafers.get(j).getId();
+            }
+            if (clafer.hasSuperClafer()) {
+                supers[i] = clafer.getSuperClafer().getId();
+                superOffsets[i] = analysis.getOffsets(clafer.getSuperClafer()).getOffset(clafer);
+            } else {
+                supers[i] = -1;
+            }
+            if (clafer instanceof AstConcreteClafer && !AstUtil.isRoot((AstConcreteClafer) clafer)) {
+                IrSetVar[] sets = astSolution.getSiblingVars(clafer);
+                siblingVars[i] = new SetVar[sets.length];
+                siblingValues[i] = new int[sets.length][];
+                for (int j = 0; j < sets.length; j++) {
+                    siblingVars[i][j] = irSolution.getSetVar(sets[j]);
+                    if (siblingVars[i][j] == null) {
+                        siblingValues[i][j] = irSolution.getSetValue(sets[j]);
+                    }
+                }
+            }
+            if (clafer.hasRef()) {
+                IrIntVar[] ints = astSolution.getRefVars(clafer.getRef());
+                refVars[i] = new IntVar[ints.length];
+                refValues[i] = new int[ints.length];
+                for (int j = 0; j < ints.length; j++) {
+                    refVars[i][j] = irSolution.getIntVar(ints[j]);
+                    if (refVars[i][j] == null) {
+                        refValues[i][j] = irSolution.getIntValue(ints[j]);
+                    }
+                }
+                AstClafer targetType = clafer.getRef().getTargetType();
+                if (targetType instanceof AstAbstractClafer) {
+                    AstAbstractClafer target = (AstAbstractClafer) targetType;
+                    Pair<AstConcreteClafer[], int[]> concrete = targets.get(target);
+                    if (concrete == null) {
+                        int scope = analysis.getScope(target);
+                        AstConcreteClafer[] concreteTargets = new AstConcreteClafer[scope];
+                        int[] concreteIds = new int[scope];
+                        for (int j = 0; j < scope; j++) {
+                            Pair<AstConcreteClafer, Integer> concreteId = analysis.getConcreteId(target, j);
+                            concreteTargets[j] = concreteId.getFst();
+                            concreteIds[j] = concreteId.getSnd().intValue();
+                        }
+                        concrete = new Pair<AstConcreteClafer[], int[]>(concreteTargets, concreteIds);
+                        targets.put(target, concrete);
+                    }
+                    refTargets[i] = concrete.getFst();
+                    refTargetIds[i] = concrete.getSnd();
+                }
+            }
+        }
+    }
+
+    InstanceModel getInstance() {
+        FlatInstance flat = new FlatInstance();
+        getInstance(flat);
+        return new InstanceModel(flat);
+    }
+
+    /**
+     * Write the current solution into the buffer. Sibling sets are read
+     * straight from the kernels instead of copying them to arrays.
+     *
+     * @param flat the buffer, cleared first
+     */
+    void getInstance(FlatInstance flat) {
+        flat.clear();
+        IntStack stack = new IntStack();
+        for (int child : children[model.getId()]) {
+            // 0 because top clafers only have exactly one children set
+            writeSiblings(flat, stack, child, 0, -1);
+        }
+    }
+
+    private void writeSiblings(FlatInstance flat, IntStack stack, int clafer, int parentId, int parent) {
+        // The kernel iterator of the set is not reentrant, so copy the ids
+        // to the stack before descending.
+        int start = stack.size;
+        SetVar var = siblingVars[clafer][parentId];
+        if (var == null) {
+            for (int id : siblingValues[clafer][parentId]) {
+                stack.push(id);
+            }
+        } else {
+            for (int id = var.getKernelFirst(); id != SetVar.END; id = var.getKernelNext()) {
+                stack.push(id);
+            }
+        }
+        int end = stack.size;
+        for (int i = start; i < end; i++) {
+            int id = stack.array[i];
+            int index = flat.add(clafers[clafer], id, parent);
+            writeChildren(flat, stack, clafer, id, index);
+            flat.end(index);
+        }
+        stack.size = start;
+    }
+
+    private void writeChildren(FlatInstance flat, IntStack stack, int clafer, int id, int index) {
+        for (int child : children[clafer]) {
+            writeSiblings(flat, stack, child, id, index);
+        }
+        if (supers[clafer] != -1) {
+            writeChildren(flat, stack, supers[clafer], id + superOffsets[clafer], index);
+        }
+        // Set after the super Clafer so that the most specific reference wins.
+        if (refVars[clafer] != null) {
+            IntVar var = refVars[clafer][id];
+            int value = var == null ? refValues[clafer][id] : var.getValue();
+            if (refTargets[clafer] == null) {
+                flat.setRef(index, clafers[clafer].getRef().getTargetType(), value);
+            } else {
+                flat.setRef(index, refTargets[clafer][value], refTargetIds[clafer][value]);
+            }
+        }
+    }
+
+    private static class IntStack {
+
+        int[] array = new int[16];
+        int size = 0;
+
+        void push(int value) {
+            if (size == array.length) {
+                array = Arrays.copyOf(array, size * 2);
+            }
+            array[size++] = value;
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package org.clafer.compiler;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import org.clafer.choco.constraint.Constraints;
+import org.clafer.common.Util;
+import solver.Solver;
+import solver.constraints.Constraint;
+import solver.constraints.ICF;
+import solver.constraints.set.SCF;
+import solver.exception.ContradictionException;
+import solver.search.loop.monitors.IMonitorRestart;
+import solver.search.strategy.decision.Decision;
+import solver.search.strategy.strategy.AbstractStrategy;
+import solver.search.strategy.strategy.StrategiesSequencer;
+import solver.variables.IntVar;
+import solver.variables.SetVar;
+import solver.variables.VF;
+import solver.variables.Variable;
+
+/**
+ * Branches with a {@link ClaferSearchStrategy}, rebuilding it after every
+ * restart. Before each restart, the subtrees already proven empty are recorded
+ * as nogoods.
+ *
+ * @author jimmy
+ */
+class RestartingStrategy extends AbstractStrategy<Variable> implements IMonitorRestart {
+
+    private final Solver solver;
+    private final ClaferSearchStrategy strategy;
+    // Branched on before the strategy and never rebuilt. Null if none.
+    private final AbstractStrategy<?> first;
+    // Null if ties are not broken randomly.
+    private final Random random;
+    private final boolean nogoods;
+    // Only the variables, so the solution map can still be compacted. Every
+    // restart shuffles a copy.
+    private final ClaferSearchStrategy.Context context;
+    private AbstractStrategy<?>[] strategies;
+    private AbstractStrategy<Variable> current;
+
+    RestartingStrategy(ClaferSearchStrategy.Context context, ClaferSearchStrategy strategy,
+            AbstractStrategy<?> first, ClaferRestartPolicy policy) {
+        super(context.getSolver().getVars());
+        this.solver = context.getSolver();
+        this.strategy = strategy;
+        this.first = first;
+        this.random = policy.isRandomize() ? new Random(policy.getSeed()) : null;
+        this.nogoods = policy.isNogoods();
+        this.context = context;
+        this.strategies = strategy.strategies(context);
+        this.current = sequence();
+        solver.getSearchLoop().plugSearchMonitor(this);
+        policy.plug(solver);
+    }
+
+    private AbstractStrategy<Variable> sequence() {
+        return new StrategiesSequencer(solver.getEnvironment(),
+                first == null ? strategies : Util.cons(first, strategies));
+    }
+
+    @Override
+    public void init() throws ContradictionException {
+        current.init();
+    }
+
+    @Override
+    public Decision<Variable> getDecision() {
+        return current.getDecision();
+    }
+
+    @Override
+    public void beforeRestart() {
+        if (nogoods) {
+            recordNogoods();
+        }
+    }
+
+    @Override
+    public void afterRestart() {
+        strategies = strategy.restart(random == null ? context : context.shuffle(random), strategies);
+        current = sequence();
+        try {
+            current.init();
+        } catch (ContradictionException e) {
+            // The strategies do not filter when initialized.
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Every decision on the path that was refuted had its left branch
+     * explored completely. That branch, under the positive decisions above
+     * it, is a nogood.
+     */
+    private void recordNogoods() {
+        List<Decision<?>> path = new ArrayList<Decision<?>>();
+        for (Decision<?> decision = solver.getSearchLoop().getLastDecision();
+                decision != null; decision = decision.getPrevious()) {
+            // The root decision has no variable.
+            if (decision.getDecisionVariable() != null) {
+                path.add(decision);
+            }
+        }
+        Collections.reverse(path);
+        List<Constraint> negatedPositives = new ArrayList<Constraint>();
+        for (Decision<?> decision : path) {
+            Constraint negated = negateLeftBranch(decision);
+            if (negated == null) {
+                // Not a decision the strategies make, so nothing below it can
+                // be expressed either.
+                return;
+            }
+            if (decision.hasNext()) {
+                negatedPositives.add(negated);
+            } else {
+                List<Constraint> nogood = new ArrayList<Constraint>(negatedPositives);
+                nogood.add(negated);
+                solver.postCut(Constraints.or(nogood));
+            }
+        }
+    }
+
+    /**
+     * The strategies assign integers, and add or remove an element from a
+     * set. Which one was decided is read off the current domain, since the
+     * decision or its refutation still holds.
+     *
+     * @param decision the decision
+     * @return the negation of the left branch of the decision, or
+     * {@code null} if the decision is of another kind
+     */
+    private Constraint negateLeftBranch(Decision<?> decision) {
+        Variable var = decision.getDecisionVariable();
+        Object decisionValue = decision.getDecisionValue();
+        if (!(decisionValue instanceof Integer)) {
+            return null;
+        }
+        int value = ((Integer) decisionValue).intValue();
+        boolean left = decision.hasNext();
+        if (var instanceof SetVar) {
+            SetVar set = (SetVar) var;
+            boolean in = set.kernelContains(value);
+            if (!in && set.envelopeContains(value)) {
+                return null;
+            }
+            // The left branch added the element if and only if the element is
+            // in now and the left branch holds, or out now and refuted.
+            return in == left
+                    ? Constraints.notMember(VF.fixed(value, solver), set)
+                    : SCF.member(VF.fixed(value, solver), set);
+        }
+        if (var instanceof IntVar) {
+            IntVar integer = (IntVar) var;
+            if (left ? !integer.instantiatedTo(value) : integer.contains(value)) {
+                return null;
+            }
+            return ICF.arithm(integer, "!=", value);
+        }
+        return null;
+    }
+}
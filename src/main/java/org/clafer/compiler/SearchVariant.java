@@ -0,0 +1,64 @@
+package org.clafer.compiler;
+
+import java.util.Random;
+import solver.search.strategy.IntStrategyFactory;
+import solver.search.strategy.SetStrategyFactory;
+import solver.search.strategy.strategy.AbstractStrategy;
+import solver.variables.IntVar;
+import solver.variables.SetVar;
+
+/**
+ * How to branch on the sibling sets and the references. Every member of a
+ * portfolio searches a different variant so that they do not all get stuck in
+ * the same place. The sibling sets of each Clafer are shuffled among
+ * themselves, so Clafers are still branched on before their children.
+ *
+ * @author jimmy
+ */
+class SearchVariant extends ClaferSearchStrategy {
+
+    private final int variant;
+    private final long seed;
+
+    SearchVariant(int variant, long seed) {
+        super("variant" + variant);
+        this.variant = variant;
+        this.seed = seed;
+    }
+
+    /**
+     * Returns the {@code i}th variant. The 0th is the
+     * {@link ClaferSearchStrategy#Default default}.
+     *
+     * @param i the index of the variant
+     * @param seed the seed for the randomized variants
+     * @return the variant
+     */
+    static ClaferSearchStrategy variant(int i, long seed) {
+        return i == 0 ? Default : new SearchVariant(i, seed);
+    }
+
+    @Override
+    public AbstractStrategy<?>[] strategies(Context context) {
+        Context shuffled = context.shuffle(new Random(seed));
+        SetVar[] sets = shuffled.getSetVars();
+        IntVar[] ints = shuffled.getIntVars();
+        switch (variant % 3) {
+            case 0:
+                return sequence(
+                        SetStrategyFactory.setLex(sets),
+                        context.getObjectiveStrategy(),
+                        IntStrategyFactory.firstFail_InDomainMax(ints));
+            case 1:
+                return sequence(
+                        IntStrategyFactory.random(ints, seed),
+                        context.getObjectiveStrategy(),
+                        SetStrategyFactory.setLex(sets));
+            default:
+                return sequence(
+                        SetStrategyFactory.setLex(sets),
+                        context.getObjectiveStrategy(),
+                        IntStrategyFactory.random(ints, seed));
+        }
+    }
+}
@@ -0,0 +1,271 @@
+package org.clafer.instance;
+
+import java.io.IOException;
+import java.util.Arrays;
+import org.clafer.ast.AstClafer;
+import org.clafer.ast.AstIntClafer;
+
+/**
+ * <p>
+ * A whole instance written into flat arrays, one record per Clafer instance.
+ * The buffer can be cleared and reused for the next solution, so enumerating
+ * does not allocate once the arrays have grown large enough.
+ * </p>
+ * <p>
+ * Records are in preorder. The children of a record follow it, and
+ * {@link #getEnd(int)} is the index after its last descendant. The children of
+ * record {@code i} are visited with
+ * </p>
+ * <pre>
+ * for (int j = i + 1; j &lt; flat.getEnd(i); j = flat.getEnd(j)) {
+ *     ...
+ * }
+ * </pre>
+ * <p>
+ * Top Clafers have parent {@code -1}. Within the same parent, the instances of
+ * a Clafer are contiguous and ordered by id.
+ * </p>
+ *
+ * @author jimmy
+ */
+public class FlatInstance {
+
+    private int size = 0;
+    private AstClafer[] types;
+    private int[] ids;
+    private int[] parents;
+    private int[] ends;
+    // Null if the record has no reference.
+    private AstClafer[] refTypes;
+    private int[] refValues;
+    // The number of instances of each Clafer, indexed by Clafer id.
+    private int[] counts = new int[0];
+
+    public FlatInstance() {
+        this(16);
+    }
+
+    /**
+     * @param capacity the number of records to allocate space for up front
+     */
+    public FlatInstance(int capacity) {
+        this.types = new AstClafer[capacity];
+        this.ids = new int[capacity];
+        this.parents = new int[capacity];
+        this.ends = new int[capacity];
+        this.refTypes = new AstClafer[capacity];
+        this.refValues = new int[capacity];
+    }
+
+    /**
+     * Remove every record, keeping the arrays.
+     */
+    public void clear() {
+        Arrays.fill(refTypes, 0, size, null);
+        Arrays.fill(counts, 0);
+        size = 0;
+    }
+
+    /**
+     * Append a record. The record stays open until {@link #end(int)} is called
+     * after its descendants are added.
+     *
+     * @param type the type of the Clafer
+     * @param id the id of the instance
+     * @param parent the index of the parent record, or {@code -1} if top
+     * @return the index of the new record
+     */
+    public int add(AstClafer type, int id, int parent) {
+        if (size == ids.length) {
+            grow();
+        }
+        int index = size++;
+        types[index] = type;
+        ids[index] = id;
+        parents[index] = parent;
+        ends[index] = size;
+        int claferId = type.getId();
+        if (claferId >= 0) {
+            if (claferId >= counts.length) {
+                counts = Arrays.copyOf(counts, Math.max(claferId + 1, counts.length * 2));
+            }
+            counts[claferId]++;
+        }
+        return index;
+    }
+
+    /**
+     * Close a record after all its descendants are added.
+     *
+     * @param index the index of the record
+     */
+    public void end(int index) {
+        ends[index] = size;
+    }
+
+    /**
+     * Set the reference of a record.
+     *
+     * @param index the index of the record
+     * @param refType the type of the reference
+     * @param refValue the value of the reference
+     */
+    public void setRef(int index, AstClafer refType, int refValue) {
+        refTypes[index] = refType;
+        refValues[index] = refValue;
+    }
+
+    private void grow() {
+        int capacity = Math.max(16, ids.length * 2);
+        types = Arrays.copyOf(types, capacity);
+        ids = Arrays.copyOf(ids, capacity);
+        parents = Arrays.copyOf(parents, capacity);
+        ends = Arrays.copyOf(ends, capacity);
+        refTypes = Arrays.copyOf(refTypes, capacity);
+        refValues = Arrays.copyOf(refValues, capacity);
+    }
+
+    /**
+     * Returns the number of records.
+     *
+     * @return the number of Clafer instances
+     */
+    public int size() {
+        return size;
+    }
+
+    public AstClafer getType(int index) {
+        return types[index];
+    }
+
+    public int getId(int index) {
+        return ids[index];
+    }
+
+    /**
+     * @param index the index of the record
+     * @return the index of the parent record, or {@code -1} if top
+     */
+    public int getParent(int index) {
+        return parents[index];
+    }
+
+    /**
+     * @param index the index of the record
+     * @return the index after the last descendant of the record
+     */
+    public int getEnd(int index) {
+        return ends[index];
+    }
+
+    public boolean hasRef(int index) {
+        return refTypes[index] != null;
+    }
+
+    public AstClafer getRefType(int index) {
+        return refTypes[index];
+    }
+
+    public int getRefValue(int index) {
+        return refValues[index];
+    }
+
+    /**
+     * Returns the number of instances of the Clafer. Only counts instances
+     * of the Clafer itself, not of its subclafers.
+     *
+     * @param clafer the Clafer
+     * @return the number of instances
+     */
+    public int getCount(AstClafer clafer) {
+        int claferId = clafer.getId();
+        return claferId >= 0 && claferId < counts.length ? counts[claferId] : 0;
+    }
+
+    /**
+     * Copy the records into a new buffer sized to fit.
+     *
+     * @return the copy
+     */
+    public FlatInstance copy() {
+        FlatInstance copy = new FlatInstance(size);
+        System.arraycopy(types, 0, copy.types, 0, size);
+        System.arraycopy(ids, 0, copy.ids, 0, size);
+        System.arraycopy(parents, 0, copy.parents, 0, size);
+        System.arraycopy(ends, 0, copy.ends, 0, size);
+        System.arraycopy(refTypes, 0, copy.refTypes, 0, size);
+        System.arraycopy(refValues, 0, copy.refValues, 0, size);
+        copy.counts = counts.clone();
+        copy.size = size;
+        return copy;
+    }
+
+    /**
+     * Build the instance trees of the top Clafers.
+     *
+     * @return the top Clafer instances
+     */
+    public InstanceClafer[] toTopClafers() {
+        int tops = 0;
+        for (int i = 0; i < size; i = ends[i]) {
+            tops++;
+        }
+        InstanceClafer[] topClafers = new InstanceClafer[tops];
+        int top = 0;
+        for (int i = 0; i < size; i = ends[i]) {
+            topClafers[top++] = toInstanceClafer(i);
+        }
+        return topClafers;
+    }
+
+    private InstanceClafer toInstanceClafer(int index) {
+        int end = ends[index];
+        int length = 0;
+        for (int i = index + 1; i < end; i = ends[i]) {
+            length++;
+        }
+        InstanceClafer[] children = new InstanceClafer[length];
+        int child = 0;
+        for (int i = index + 1; i < end; i = ends[i]) {
+            children[child++] = toInstanceClafer(i);
+        }
+        InstanceRef ref = hasRef(index) ? new InstanceRef(refTypes[index], refValues[index]) : null;
+        return new InstanceClafer(types[index], ids[index], ref, children);
+    }
+
+    /**
+     * Print the records in the same format as {@link InstanceModel}, without
+     * building the instance trees.
+     *
+     * @param out the stream to print to
+     * @throws IOException an IO error occurred
+     */
+    public void print(Appendable out) throws IOException {
+        for (int i = 0; i < size; i++) {
+            for (int parent = parents[i]; parent != -1; parent = parents[parent]) {
+                out.append("    ");
+            }
+            out.append(types[i].getName()).append("#").append(Integer.toString(ids[i]));
+            if (hasRef(i)) {
+                out.append(" = ");
+                if (!(refTypes[i] instanceof AstIntClafer)) {
+                    out.append(refTypes[i].getName()).append("#");
+                }
+                out.append(Integer.toString(refValues[i]));
+            }
+            out.append('\n');
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder();
+        try {
+            print(result);
+        } catch (IOException e) {
+            // StringBuilder should not throw an IOException.
+            throw new Error(e);
+        }
+        return result.toString();
+    }
+}
@@ -0,0 +1,33 @@
+package org.clafer.instance;
+
+/**
+ * Constants shared by {@link InstanceWriter} and {@link InstanceReader}.
+ *
+ * @author jimmy
+ */
+class InstanceFormat {
+
+    // "CLIN"
+    static final int Magic = 0x434c494e;
+    static final int Version = 1;
+    static final int FlagDelta = 1;
+    static final int KeyframeInterval = 64;
+    // The reference codes. Clafer targets are offset by their id.
+    static final int RefNone = 0;
+    static final int RefInt = 1;
+    static final int RefBool = 2;
+    static final int RefClafer = 3;
+    // The footer after the keyframes: count, keyframes position, and magic.
+    static final int FooterLength = 8 + 8 + 4;
+
+    private InstanceFormat() {
+    }
+
+    static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
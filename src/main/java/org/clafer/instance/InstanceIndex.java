@@ -0,0 +1,367 @@
+package org.clafer.instance;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import org.clafer.ast.AstClafer;
+import org.clafer.ast.AstRef;
+import org.clafer.ast.AstUtil;
+import org.clafer.common.Check;
+
+/**
+ * <p>
+ * A columnar store of many instances of the same model, for asking questions
+ * about all of them at once without solving again.
+ * </p>
+ * <p>
+ * Each Clafer has a presence bitset with a bit for every instance that
+ * contains at least one of it. A subclafer also sets the bits of its supers.
+ * Each reference has a column of its values across every instance. Presence
+ * queries are bitwise operations over the bitsets. Aggregates scan the value
+ * columns of the selected instances.
+ * </p>
+ * <p>
+ * Example, the distribution of costs over the instances with a firewall and
+ * without a backup:
+ * <pre>
+ * InstanceIndex index = new InstanceIndex();
+ * solver.allInstances(index);
+ * index.select().with(firewall).without(backup).histogram(cost.getRef());
+ * </pre>
+ * </p>
+ *
+ * @author jimmy
+ */
+public class InstanceIndex implements InstanceVisitor {
+
+    private int size = 0;
+    // Indexed by Clafer id. Null until the Clafer first appears.
+    private BitSet[] presence = new BitSet[0];
+    // Indexed by reference id. Null until the reference first appears.
+    private Column[] columns = new Column[0];
+    // The inherited reference of each Clafer, indexed by Clafer id.
+    private AstRef[] refs = new AstRef[0];
+    private boolean[] resolvedRefs = new boolean[0];
+
+    /**
+     * Add an instance.
+     *
+     * @param instance the instance
+     * @return {@code true}, so that every instance is added when used as a
+     * visitor
+     */
+    @Override
+    public boolean visit(FlatInstance instance) {
+        add(instance);
+        return true;
+    }
+
+    /**
+     * Add an instance.
+     *
+     * @param instance the instance
+     */
+    public void add(InstanceModel instance) {
+        if (instance.hasFlatInstance()) {
+            add(instance.getFlatInstance());
+        } else {
+            for (InstanceClafer top : instance.getTopClafers()) {
+                add(top);
+            }
+            size++;
+        }
+    }
+
+    private void add(InstanceClafer instance) {
+        add(instance.getType(), instance.hasRef() ? instance.getRef().getValue() : 0);
+        for (InstanceClafer child : instance.getChildren()) {
+            add(child);
+        }
+    }
+
+    /**
+     * Add an instance.
+     *
+     * @param instance the instance
+     */
+    public void add(FlatInstance instance) {
+        for (int i = 0; i < instance.size(); i++) {
+            add(instance.getType(i), instance.getRefValue(i));
+        }
+        size++;
+    }
+
+    private void add(AstClafer type, int refValue) {
+        for (AstClafer clafer = type; clafer != null; clafer = clafer.getSuperClafer()) {
+            getPresence(clafer).set(size);
+        }
+        AstRef ref = getRef(type);
+        if (ref != null) {
+            getColumn(ref).add(size, refValue);
+        }
+    }
+
+    private BitSet getPresence(AstClafer clafer) {
+        int id = clafer.getId();
+        if (id >= presence.length) {
+            presence = Arrays.copyOf(presence, Math.max(id + 1, presence.length * 2));
+        }
+        if (presence[id] == null) {
+            presence[id] = new BitSet();
+        }
+        return presence[id];
+    }
+
+    private Column getColumn(AstRef ref) {
+        int id = ref.getId();
+        if (id >= columns.length) {
+            columns = Arrays.copyOf(columns, Math.max(id + 1, columns.length * 2));
+        }
+        if (columns[id] == null) {
+            columns[id] = new Column();
+        }
+        return columns[id];
+    }
+
+    private AstRef getRef(AstClafer clafer) {
+        int id = clafer.getId();
+        if (id >= refs.length) {
+            int length = Math.max(id + 1, refs.length * 2);
+            refs = Arrays.copyOf(refs, length);
+            resolvedRefs = Arrays.copyOf(resolvedRefs, length);
+        }
+        if (!resolvedRefs[id]) {
+            refs[id] = AstUtil.getInheritedRef(clafer);
+            resolvedRefs[id] = true;
+        }
+        return refs[id];
+    }
+
+    /**
+     * Returns the number of instances added.
+     *
+     * @return the number of instances
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Select every instance added so far.
+     *
+     * @return the selection
+     */
+    public Selection select() {
+        BitSet rows = new BitSet(size);
+        rows.set(0, size);
+        return new Selection(rows);
+    }
+
+    /**
+     * A subset of the instances. Selections are immutable, narrowing one
+     * returns a new selection.
+     */
+    public class Selection {
+
+        private final BitSet rows;
+
+        Selection(BitSet rows) {
+            this.rows = rows;
+        }
+
+        /**
+         * Narrow to the instances that contain at least one of the Clafer.
+         *
+         * @param clafer the Clafer
+         * @return the narrower selection
+         */
+        public Selection with(AstClafer clafer) {
+            BitSet result = (BitSet) rows.clone();
+            int id = clafer.getId();
+            if (id >= 0 && id < presence.length && presence[id] != null) {
+                result.and(presence[id]);
+            } else {
+                result.clear();
+            }
+            return new Selection(result);
+        }
+
+        /**
+         * Narrow to the instances that do not contain any of the Clafer.
+         *
+         * @param clafer the Clafer
+         * @return the narrower selection
+         */
+        public Selection without(AstClafer clafer) {
+            BitSet result = (BitSet) rows.clone();
+            int id = clafer.getId();
+            if (id >= 0 && id < presence.length && presence[id] != null) {
+                result.andNot(presence[id]);
+            }
+            return new Selection(result);
+        }
+
+        /**
+         * Widen to the instances in either selection.
+         *
+         * @param selection the other selection
+         * @return the wider selection
+         */
+        public Selection or(Selection selection) {
+            BitSet result = (BitSet) rows.clone();
+            result.or(selection.rows);
+            return new Selection(result);
+        }
+
+        /**
+         * Returns the number of selected instances.
+         *
+         * @return the number of instances
+         */
+        public int count() {
+            return rows.cardinality();
+        }
+
+        /**
+         * Returns the positions of the selected instances, in the order they
+         * were added.
+         *
+         * @return the positions
+         */
+        public BitSet getInstances() {
+            return (BitSet) rows.clone();
+        }
+
+        /**
+         * Returns the number of values of the reference across the selected
+         * instances.
+         *
+         * @param ref the reference
+         * @return the number of values
+         */
+        public int count(AstRef ref) {
+            Column column = column(ref);
+            if (column == null) {
+                return 0;
+            }
+            int count = 0;
+            for (int i = 0; i < column.size; i++) {
+                if (rows.get(column.rows[i])) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        /**
+         * Returns the sum of the values of the reference across the selected
+         * instances.
+         *
+         * @param ref the reference
+         * @return the sum
+         */
+        public long sum(AstRef ref) {
+            Column column = column(ref);
+            if (column == null) {
+                return 0;
+            }
+            long sum = 0;
+            for (int i = 0; i < column.size; i++) {
+                if (rows.get(column.rows[i])) {
+                    sum += column.values[i];
+                }
+            }
+            return sum;
+        }
+
+        /**
+         * Returns the smallest value of the reference across the selected
+         * instances.
+         *
+         * @param ref the reference
+         * @return the smallest value, or {@link Integer#MAX_VALUE} if there
+         * are none
+         */
+        public int min(AstRef ref) {
+            Column column = column(ref);
+            int min = Integer.MAX_VALUE;
+            if (column != null) {
+                for (int i = 0; i < column.size; i++) {
+                    if (rows.get(column.rows[i])) {
+                        min = Math.min(min, column.values[i]);
+                    }
+                }
+            }
+            return min;
+        }
+
+        /**
+         * Returns the largest value of the reference across the selected
+         * instances.
+         *
+         * @param ref the reference
+         * @return the largest value, or {@link Integer#MIN_VALUE} if there are
+         * none
+         */
+        public int max(AstRef ref) {
+            Column column = column(ref);
+            int max = Integer.MIN_VALUE;
+            if (column != null) {
+                for (int i = 0; i < column.size; i++) {
+                    if (rows.get(column.rows[i])) {
+                        max = Math.max(max, column.values[i]);
+                    }
+                }
+            }
+            return max;
+        }
+
+        /**
+         * Returns how many times each value of the reference occurs across the
+         * selected instances.
+         *
+         * @param ref the reference
+         * @return the number of occurrences of each value, ordered by value
+         */
+        public SortedMap<Integer, Integer> histogram(AstRef ref) {
+            Column column = column(ref);
+            SortedMap<Integer, Integer> histogram = new TreeMap<Integer, Integer>();
+            if (column != null) {
+                for (int i = 0; i < column.size; i++) {
+                    if (rows.get(column.rows[i])) {
+                        Integer count = histogram.get(column.values[i]);
+                        histogram.put(column.values[i], count == null ? 1 : count + 1);
+                    }
+                }
+            }
+            return histogram;
+        }
+
+        private Column column(AstRef ref) {
+            int id = Check.notNull(ref).getId();
+            return id >= 0 && id < columns.length ? columns[id] : null;
+        }
+    }
+
+    /**
+     * The values of a reference, along with the position of the instance
+     * each value is from. Positions are ascending.
+     */
+    private static class Column {
+
+        int[] rows = new int[16];
+        int[] values = new int[16];
+        int size = 0;
+
+        void add(int row, int value) {
+            if (size == rows.length) {
+                rows = Arrays.copyOf(rows, size * 2);
+                values = Arrays.copyOf(values, size * 2);
+            }
+            rows[size] = row;
+            values[size] = value;
+            size++;
+        }
+    }
+}
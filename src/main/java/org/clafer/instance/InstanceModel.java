@@ -4,21 +4,58 @@ import java.io.IOException;
 import org.clafer.common.Check;
 
 /**
+ * An instance of a model. Either built from its instance trees, or a view over
+ * a {@link FlatInstance} that only builds the trees when they are asked for.
  *
  * @author jimmy
  */
 public class InstanceModel {
 
-    private final InstanceClafer[] topClafers;
+    // Null until built if this is a view.
+    private InstanceClafer[] topClafers;
+    // Null if not a view.
+    private final FlatInstance flat;
 
     public InstanceModel(InstanceClafer... topClafers) {
         this.topClafers = Check.noNulls(topClafers);
+        this.flat = null;
+    }
+
+    /**
+     * Construct a view over a flat instance. The flat instance must not be
+     * modified afterwards.
+     *
+     * @param flat the flat instance
+     */
+    public InstanceModel(FlatInstance flat) {
+        this.flat = Check.notNull(flat);
     }
 
     public InstanceClafer[] getTopClafers() {
+        if (topClafers == null) {
+            topClafers = flat.toTopClafers();
+        }
         return topClafers;
     }
 
+    /**
+     * Checks if this instance is a view over a flat instance.
+     *
+     * @return {@code true} if and only if a view, {@code false} otherwise
+     */
+    public boolean hasFlatInstance() {
+        return flat != null;
+    }
+
+    /**
+     * Returns the flat instance this is a view over.
+     *
+     * @return the flat instance, or {@code null} if not a view
+     */
+    public FlatInstance getFlatInstance() {
+        return flat;
+    }
+
     /**
      * Print solution to stdout.
      */
@@ -30,6 +67,10 @@ public class InstanceModel {
      * Print solution.
      */
     public void print(Appendable out) throws IOException {
+        if (topClafers == null) {
+            flat.print(out);
+            return;
+        }
         for (InstanceClafer top : topClafers) {
             top.print(out);
         }
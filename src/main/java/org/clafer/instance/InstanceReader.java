@@ -0,0 +1,359 @@
+package org.clafer.instance;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import org.clafer.ast.AstClafer;
+import org.clafer.ast.AstModel;
+import org.clafer.ast.AstUtil;
+import org.clafer.ast.Asts;
+import org.clafer.common.Check;
+
+/**
+ * <p>
+ * Reads instances written by {@link InstanceWriter}. The file is memory mapped
+ * a window at a time, so files larger than memory are fine. Only the header
+ * and footer are read up front. Instances are decoded as they are asked for,
+ * either in order or by position.
+ * </p>
+ * <p>
+ * Reading by position jumps to the closest keyframe before it and skips
+ * forward. Skipped instances are only decoded if the stream is delta encoded.
+ * </p>
+ * <p>
+ * A reader is not thread-safe.
+ * </p>
+ *
+ * @author jimmy
+ */
+public class InstanceReader implements Closeable {
+
+    // Large enough that sequential reads rarely remap.
+    private static final long WindowSize = 64 * 1024 * 1024;
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    // Indexed by Clafer id.
+    private final AstClafer[] clafers;
+    private final boolean delta;
+    private final int keyframeInterval;
+    private final long[] keyframes;
+    private final long count;
+    private final long dataEnd;
+    private ByteBuffer window;
+    private long windowStart;
+    // The offset into the window being decoded.
+    private int cursor;
+    // The instance decoded next and where it starts.
+    private long next = 0;
+    private long position;
+    // The fields of the previously decoded instance.
+    private int prevSize = 0;
+    private int[] prevTypes = new int[16];
+    private int[] prevIds = new int[16];
+    private int[] prevParents = new int[16];
+    private int[] prevRefCodes = new int[16];
+    private int[] prevRefValues = new int[16];
+    // The open records while decoding.
+    private int[] stack = new int[16];
+
+    /**
+     * Open a file of instances of the model. The model must have the same
+     * Clafers, created in the same order, as the model written with.
+     *
+     * @param in the file to read from
+     * @param model the model of the instances
+     * @throws IOException an I/O error occurred or the file is not a complete
+     * stream of instances of the model
+     */
+    public InstanceReader(File in, AstModel model) throws IOException {
+        this.file = new RandomAccessFile(in, "r");
+        try {
+            this.channel = file.getChannel();
+            if (file.readInt() != InstanceFormat.Magic) {
+                throw new IOException("Not an instance file.");
+            }
+            int version = file.readInt();
+            if (version != InstanceFormat.Version) {
+                throw new IOException("Unsupported instance file version " + version
+                        + ", expected " + InstanceFormat.Version + ".");
+            }
+            int headerLength = file.readInt();
+            byte[] headerBytes = new byte[headerLength];
+            file.readFully(headerBytes);
+            DataInputStream header = new DataInputStream(new ByteArrayInputStream(headerBytes));
+            this.delta = (header.readByte() & InstanceFormat.FlagDelta) != 0;
+            this.keyframeInterval = header.readInt();
+            if (keyframeInterval <= 0) {
+                throw new IOException("Instance file is corrupt.");
+            }
+            int claferCount = header.readInt();
+            this.clafers = new AstClafer[claferCount];
+            for (AstClafer clafer : AstUtil.getClafers(model)) {
+                if (clafer.getId() < claferCount) {
+                    clafers[clafer.getId()] = clafer;
+                }
+            }
+            for (int i = 0; i < claferCount; i++) {
+                String name = header.readUTF();
+                if (clafers[i] == null ? name.length() > 0 : !clafers[i].getName().equals(name)) {
+                    throw new IOException("Instances are of a different model, expected "
+                            + name + " but got " + (clafers[i] == null ? "nothing" : clafers[i].getName()) + ".");
+                }
+            }
+            this.position = 12 + headerLength;
+
+            long length = file.length();
+            if (length < position + InstanceFormat.FooterLength) {
+                throw new IOException("Instance file is incomplete, the writer was not closed.");
+            }
+            file.seek(length - InstanceFormat.FooterLength);
+            this.count = file.readLong();
+            this.dataEnd = file.readLong();
+            if (file.readInt() != InstanceFormat.Magic) {
+                throw new IOException("Instance file is incomplete, the writer was not closed.");
+            }
+            long keyframeCount = (count + keyframeInterval - 1) / keyframeInterval;
+            if (dataEnd + keyframeCount * 8 + InstanceFormat.FooterLength != length) {
+                throw new IOException("Instance file is corrupt.");
+            }
+            this.keyframes = new long[(int) keyframeCount];
+            file.seek(dataEnd);
+            for (int i = 0; i < keyframes.length; i++) {
+                keyframes[i] = file.readLong();
+            }
+        } catch (IOException e) {
+            file.close();
+            throw e;
+        } catch (RuntimeException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the number of instances in the file.
+     *
+     * @return the number of instances
+     */
+    public long size() {
+        return count;
+    }
+
+    /**
+     * Checks if the instances are delta encoded.
+     *
+     * @return {@code true} if and only if delta encoded, {@code false}
+     * otherwise
+     */
+    public boolean isDelta() {
+        return delta;
+    }
+
+    /**
+     * Read the instance at the position.
+     *
+     * @param index the position of the instance
+     * @return the instance
+     * @throws IOException an I/O error occurred
+     */
+    public InstanceModel get(long index) throws IOException {
+        return new InstanceModel(read(index, new FlatInstance()));
+    }
+
+    /**
+     * Read the instance at the position into the buffer.
+     *
+     * @param index the position of the instance
+     * @param buffer the buffer to write to
+     * @return the buffer
+     * @throws IOException an I/O error occurred
+     */
+    public FlatInstance read(long index, FlatInstance buffer) throws IOException {
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException("Instance " + index + " of " + count + ".");
+        }
+        long keyframe = index / keyframeInterval;
+        if (index < next || keyframe > next / keyframeInterval) {
+            // Jump to the closest keyframe.
+            next = keyframe * keyframeInterval;
+            position = keyframes[(int) keyframe];
+            prevSize = 0;
+        }
+        while (next < index) {
+            if (delta) {
+                decode(null);
+            } else {
+                skip();
+            }
+        }
+        decode(Check.notNull(buffer));
+        return buffer;
+    }
+
+    /**
+     * Stream every instance to the visitor, in order. The same buffer is
+     * reused for every instance.
+     *
+     * @param visitor the visitor
+     * @return the number of instances visited
+     * @throws IOException an I/O error occurred
+     */
+    public long readAll(InstanceVisitor visitor) throws IOException {
+        FlatInstance buffer = new FlatInstance();
+        for (long i = 0; i < count; i++) {
+            if (!visitor.visit(read(i, buffer))) {
+                return i + 1;
+            }
+        }
+        return count;
+    }
+
+    private void skip() throws IOException {
+        cursor = map(position, 5);
+        int length = getVarint();
+        position += varintLength(length) + length;
+        next++;
+    }
+
+    /**
+     * Decode the next instance.
+     *
+     * @param buffer the buffer to decode to, or {@code null} to only update
+     * the previous instance
+     */
+    private void decode(FlatInstance buffer) throws IOException {
+        cursor = map(position, 5);
+        int length = getVarint();
+        int headerLength = varintLength(length);
+        cursor = map(position + headerLength, length);
+        int end = cursor + length;
+
+        if (!delta || next % keyframeInterval == 0) {
+            prevSize = 0;
+        }
+        int size = getVarint();
+        if (size > prevTypes.length) {
+            int capacity = Math.max(size, prevTypes.length * 2);
+            prevTypes = Arrays.copyOf(prevTypes, capacity);
+            prevIds = Arrays.copyOf(prevIds, capacity);
+            prevParents = Arrays.copyOf(prevParents, capacity);
+            prevRefCodes = Arrays.copyOf(prevRefCodes, capacity);
+            prevRefValues = Arrays.copyOf(prevRefValues, capacity);
+            stack = Arrays.copyOf(stack, capacity);
+        }
+        if (buffer != null) {
+            buffer.clear();
+        }
+        int top = 0;
+        for (int i = 0; i < size; i++) {
+            boolean hasPrev = i < prevSize;
+            int type = InstanceFormat.unzigzag(getVarint()) + (hasPrev ? prevTypes[i] : 0);
+            int id = InstanceFormat.unzigzag(getVarint()) + (hasPrev ? prevIds[i] : 0);
+            int parent = InstanceFormat.unzigzag(getVarint()) + (hasPrev ? prevParents[i] : 0);
+            int refCode = InstanceFormat.unzigzag(getVarint()) + (hasPrev ? prevRefCodes[i] : 0);
+            int refValue = 0;
+            if (refCode != InstanceFormat.RefNone) {
+                refValue = InstanceFormat.unzigzag(getVarint()) + (hasPrev ? prevRefValues[i] : 0);
+            }
+            prevTypes[i] = type;
+            prevIds[i] = id;
+            prevParents[i] = parent;
+            prevRefCodes[i] = refCode;
+            prevRefValues[i] = refValue;
+
+            if (buffer != null) {
+                int parentIndex = i - parent;
+                while (top > 0 && stack[top - 1] != parentIndex) {
+                    buffer.end(stack[--top]);
+                }
+                int index = buffer.add(clafer(type), id, parentIndex);
+                if (refCode != InstanceFormat.RefNone) {
+                    buffer.setRef(index, refType(refCode), refValue);
+                }
+                stack[top++] = index;
+            }
+        }
+        if (buffer != null) {
+            while (top > 0) {
+                buffer.end(stack[--top]);
+            }
+        }
+        if (cursor != end) {
+            throw new IOException("Instance " + next + " is corrupt.");
+        }
+        prevSize = size;
+        position += headerLength + length;
+        next++;
+    }
+
+    private AstClafer clafer(int id) throws IOException {
+        if (id < 0 || id >= clafers.length || clafers[id] == null) {
+            throw new IOException("Instance " + next + " is corrupt, unknown Clafer " + id + ".");
+        }
+        return clafers[id];
+    }
+
+    private AstClafer refType(int refCode) throws IOException {
+        switch (refCode) {
+            case InstanceFormat.RefInt:
+                return Asts.IntType;
+            case InstanceFormat.RefBool:
+                return Asts.BoolType;
+            default:
+                return clafer(refCode - InstanceFormat.RefClafer);
+        }
+    }
+
+    /**
+     * Map the window so that it covers the bytes.
+     *
+     * @param start the position in the file
+     * @param length the number of bytes needed, fewer if the data ends first
+     * @return the offset of the position in the window
+     */
+    private int map(long start, int length) throws IOException {
+        long end = Math.min(start + length, dataEnd);
+        if (window == null || start < windowStart || end > windowStart + window.limit()) {
+            long size = Math.min(Math.max(WindowSize, length), dataEnd - start);
+            window = channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+            windowStart = start;
+        }
+        return (int) (start - windowStart);
+    }
+
+    private int getVarint() throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            if (cursor >= window.limit()) {
+                throw new IOException("Instance " + next + " is corrupt.");
+            }
+            byte b = window.get(cursor++);
+            value |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Instance " + next + " is corrupt.");
+    }
+
+    private static int varintLength(int value) {
+        int length = 1;
+        while ((value & ~0x7f) != 0) {
+            value >>>= 7;
+            length++;
+        }
+        return length;
+    }
+
+    @Override
+    public void close() throws IOException {
+        window = null;
+        file.close();
+    }
+}
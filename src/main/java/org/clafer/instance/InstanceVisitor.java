@@ -0,0 +1,19 @@
+package org.clafer.instance;
+
+/**
+ * Receives instances one at a time while enumerating.
+ *
+ * @author jimmy
+ * @see org.clafer.compiler.ClaferSolver#allInstances(int, InstanceVisitor)
+ */
+public interface InstanceVisitor {
+
+    /**
+     * Visit the next instance. The buffer is reused for the next instance, so
+     * {@link FlatInstance#copy() copy} it to keep it.
+     *
+     * @param instance the instance
+     * @return {@code true} to continue enumerating, {@code false} to stop
+     */
+    public boolean visit(FlatInstance instance);
+}
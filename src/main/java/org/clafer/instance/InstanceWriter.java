@@ -0,0 +1,260 @@
+package org.clafer.instance;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import org.clafer.ast.AstBoolClafer;
+import org.clafer.ast.AstClafer;
+import org.clafer.ast.AstIntClafer;
+import org.clafer.ast.AstModel;
+import org.clafer.ast.AstUtil;
+import org.clafer.common.Check;
+
+/**
+ * <p>
+ * Writes a stream of instances in a compact binary format, read back by
+ * {@link InstanceReader}.
+ * </p>
+ * <p>
+ * The header holds the names of the Clafers in the model, indexed by
+ * {@link AstClafer#getId() Clafer id}. Each instance is then its records in
+ * preorder: Clafer id, instance id, distance to the parent record, and the
+ * reference, all as varints. With delta encoding, each field is written as the
+ * difference from the same field of the same record in the previous instance.
+ * Consecutive instances of an enumeration tend to differ in few places, so
+ * most fields take a single byte. Every 64th instance is written in full so
+ * that readers can jump into the middle of the stream. The footer indexes
+ * these keyframes.
+ * </p>
+ * <p>
+ * The stream is incomplete until {@link #close()} writes the footer.
+ * </p>
+ *
+ * @author jimmy
+ */
+public class InstanceWriter implements Closeable {
+
+    private final OutputStream out;
+    private final boolean delta;
+    private long position = 0;
+    private long count = 0;
+    private long[] keyframes = new long[16];
+    private int keyframeCount = 0;
+    // The encoded instance.
+    private byte[] bytes = new byte[256];
+    private int length = 0;
+    // The fields of the previous instance.
+    private int prevSize = 0;
+    private int[] prevTypes = new int[16];
+    private int[] prevIds = new int[16];
+    private int[] prevParents = new int[16];
+    private int[] prevRefCodes = new int[16];
+    private int[] prevRefValues = new int[16];
+    // Scratch space for instances that are not flat yet.
+    private FlatInstance flatten;
+
+    /**
+     * Start writing a stream of instances of the model. The stream is closed
+     * when the writer is closed.
+     *
+     * @param out the stream to write to
+     * @param model the model of the instances
+     * @param delta delta encode each instance against the previous
+     * @throws IOException an I/O error occurred
+     */
+    public InstanceWriter(OutputStream out, AstModel model, boolean delta) throws IOException {
+        this.out = Check.notNull(out);
+        this.delta = delta;
+
+        String[] names = new String[model.getClaferIdCount()];
+        for (AstClafer clafer : AstUtil.getClafers(model)) {
+            names[clafer.getId()] = clafer.getName();
+        }
+        ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+        DataOutputStream header = new DataOutputStream(headerBytes);
+        header.writeByte(delta ? InstanceFormat.FlagDelta : 0);
+        header.writeInt(InstanceFormat.KeyframeInterval);
+        header.writeInt(names.length);
+        for (String name : names) {
+            header.writeUTF(name == null ? "" : name);
+        }
+        header.flush();
+
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(InstanceFormat.Magic);
+        data.writeInt(InstanceFormat.Version);
+        data.writeInt(headerBytes.size());
+        headerBytes.writeTo(data);
+        data.flush();
+        position = 12 + headerBytes.size();
+    }
+
+    public InstanceWriter(File out, AstModel model, boolean delta) throws IOException {
+        this(new BufferedOutputStream(new FileOutputStream(out)), model, delta);
+    }
+
+    /**
+     * Returns the number of instances written so far.
+     *
+     * @return the number of instances
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Append an instance.
+     *
+     * @param instance the instance
+     * @throws IOException an I/O error occurred
+     */
+    public void write(InstanceModel instance) throws IOException {
+        if (instance.hasFlatInstance()) {
+            write(instance.getFlatInstance());
+        } else {
+            if (flatten == null) {
+                flatten = new FlatInstance();
+            }
+            flatten.clear();
+            for (InstanceClafer top : instance.getTopClafers()) {
+                flatten(top, -1);
+            }
+            write(flatten);
+        }
+    }
+
+    private void flatten(InstanceClafer instance, int parent) {
+        int index = flatten.add(instance.getType(), instance.getId(), parent);
+        for (InstanceClafer child : instance.getChildren()) {
+            flatten(child, index);
+        }
+        flatten.end(index);
+        if (instance.hasRef()) {
+            flatten.setRef(index, instance.getRef().getType(), instance.getRef().getValue());
+        }
+    }
+
+    /**
+     * Append an instance.
+     *
+     * @param instance the instance
+     * @throws IOException an I/O error occurred
+     */
+    public void write(FlatInstance instance) throws IOException {
+        if (count % InstanceFormat.KeyframeInterval == 0) {
+            if (keyframeCount == keyframes.length) {
+                keyframes = Arrays.copyOf(keyframes, keyframeCount * 2);
+            }
+            keyframes[keyframeCount++] = position;
+            // Keyframes do not depend on the previous instance.
+            prevSize = 0;
+        } else if (!delta) {
+            prevSize = 0;
+        }
+
+        int size = instance.size();
+        ensurePrev(size);
+        length = 0;
+        putVarint(size);
+        for (int i = 0; i < size; i++) {
+            int type = instance.getType(i).getId();
+            int id = instance.getId(i);
+            int parent = i - instance.getParent(i);
+            int refCode = refCode(instance.getRefType(i));
+            int refValue = refCode == InstanceFormat.RefNone ? 0 : instance.getRefValue(i);
+            boolean hasPrev = i < prevSize;
+            putDelta(type, hasPrev ? prevTypes[i] : 0);
+            putDelta(id, hasPrev ? prevIds[i] : 0);
+            putDelta(parent, hasPrev ? prevParents[i] : 0);
+            putDelta(refCode, hasPrev ? prevRefCodes[i] : 0);
+            if (refCode != InstanceFormat.RefNone) {
+                putDelta(refValue, hasPrev ? prevRefValues[i] : 0);
+            }
+            prevTypes[i] = type;
+            prevIds[i] = id;
+            prevParents[i] = parent;
+            prevRefCodes[i] = refCode;
+            prevRefValues[i] = refValue;
+        }
+        prevSize = size;
+
+        // The length prefix lets readers skip instances without decoding.
+        int prefix = 1;
+        int value = length;
+        while ((value & ~0x7f) != 0) {
+            out.write((value & 0x7f) | 0x80);
+            value >>>= 7;
+            prefix++;
+        }
+        out.write(value);
+        out.write(bytes, 0, length);
+        position += prefix + length;
+        count++;
+    }
+
+    private static int refCode(AstClafer refType) {
+        if (refType == null) {
+            return InstanceFormat.RefNone;
+        }
+        if (refType instanceof AstIntClafer) {
+            return InstanceFormat.RefInt;
+        }
+        if (refType instanceof AstBoolClafer) {
+            return InstanceFormat.RefBool;
+        }
+        return InstanceFormat.RefClafer + refType.getId();
+    }
+
+    private void ensurePrev(int size) {
+        if (size > prevTypes.length) {
+            int capacity = Math.max(size, prevTypes.length * 2);
+            prevTypes = Arrays.copyOf(prevTypes, capacity);
+            prevIds = Arrays.copyOf(prevIds, capacity);
+            prevParents = Arrays.copyOf(prevParents, capacity);
+            prevRefCodes = Arrays.copyOf(prevRefCodes, capacity);
+            prevRefValues = Arrays.copyOf(prevRefValues, capacity);
+        }
+    }
+
+    private void putDelta(int value, int previous) {
+        putVarint(InstanceFormat.zigzag(value - previous));
+    }
+
+    private void putVarint(int value) {
+        if (length + 5 > bytes.length) {
+            bytes = Arrays.copyOf(bytes, bytes.length * 2);
+        }
+        while ((value & ~0x7f) != 0) {
+            bytes[length++] = (byte) ((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        bytes[length++] = (byte) value;
+    }
+
+    /**
+     * Write the footer and close the stream.
+     *
+     * @throws IOException an I/O error occurred
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            DataOutputStream footer = new DataOutputStream(out);
+            for (int i = 0; i < keyframeCount; i++) {
+                footer.writeLong(keyframes[i]);
+            }
+            footer.writeLong(count);
+            footer.writeLong(position);
+            footer.writeInt(InstanceFormat.Magic);
+            footer.flush();
+        } finally {
+            out.close();
+        }
+    }
+}
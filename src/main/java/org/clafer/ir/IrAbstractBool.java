@@ -1,12 +1,15 @@
 package org.clafer.ir;
 
+import java.io.Serializable;
 import org.clafer.common.Check;
 
 /**
  *
  * @author jimmy
  */
-public abstract class IrAbstractBool {
+public abstract class IrAbstractBool implements Serializable {
+
+    private static final long serialVersionUID = 1L;
 
     private final IrBoolDomain domain;
 
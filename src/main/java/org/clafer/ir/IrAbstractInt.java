@@ -1,12 +1,15 @@
 package org.clafer.ir;
 
+import java.io.Serializable;
 import org.clafer.common.Check;
 
 /**
  *
  * @author jimmy
  */
-public abstract class IrAbstractInt implements IrInt {
+public abstract class IrAbstractInt implements IrInt, Serializable {
+
+    private static final long serialVersionUID = 1L;
 
     private final IrDomain domain;
 
@@ -1,12 +1,15 @@
 package org.clafer.ir;
 
+import java.io.Serializable;
 import org.clafer.common.Check;
 
 /**
  *
  * @author jimmy
  */
-public abstract class IrAbstractSet implements IrSet {
+public abstract class IrAbstractSet implements IrSet, Serializable {
+
+    private static final long serialVersionUID = 1L;
 
     private final IrDomain env, ker, card;
 
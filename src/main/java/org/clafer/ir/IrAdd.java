@@ -11,6 +11,8 @@ import org.clafer.common.Util;
  */
 public class IrAdd extends IrAbstractInt implements IrIntExpr {
 
+    private static final long serialVersionUID = 1L;
+
     private final IrIntExpr[] addends;
 
     IrAdd(IrIntExpr[] addends, IrDomain domain) {
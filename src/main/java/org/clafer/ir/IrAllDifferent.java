@@ -10,6 +10,8 @@ import org.clafer.common.Util;
  */
 public class IrAllDifferent extends IrAbstractBool implements IrBoolExpr {
 
+    private static final long serialVersionUID = 1L;
+
     private final IrIntExpr[] operands;
 
     IrAllDifferent(IrIntExpr[] operands, IrBoolDomain domain) {
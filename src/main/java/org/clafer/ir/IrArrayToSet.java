@@ -10,6 +10,8 @@ import org.clafer.common.Util;
  */
 public class IrArrayToSet extends IrAbstractSet implements IrSetExpr {
 
+    private static final long serialVersionUID = 1L;
+
     private final IrIntExpr[] array;
     private final Integer globalCardinality;
 
@@ -9,6 +9,8 @@ import org.clafer.common.Check;
  */
 public class IrBoolChannel extends IrAbstractBool implements IrBoolExpr {
 
+    private static final long serialVersionUID = 1L;
+
     private final IrBoolExpr[] bools;
     private final IrSetExpr set;
 
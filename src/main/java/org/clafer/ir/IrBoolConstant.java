@@ -6,6 +6,8 @@ package org.clafer.ir;
  */
 public class IrBoolConstant extends IrBoolVar {
 
+    private static final long serialVersionUID = 1L;
+
     private final boolean value;
 
     IrBoolConstant(boolean value) {
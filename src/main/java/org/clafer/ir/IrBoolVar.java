@@ -6,6 +6,8 @@ package org.clafer.ir;
  */
 public class IrBoolVar extends IrIntVar implements IrBoolExpr, IrVar {
 
+    private static final long serialVersionUID = 1L;
+
     IrBoolVar(String name, IrBoolDomain domain) {
         super(name, domain);
     }
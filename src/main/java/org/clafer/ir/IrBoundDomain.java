@@ -11,6 +11,8 @@ import org.clafer.collection.ReverseBoundIntIterator;
  */
 public class IrBoundDomain implements IrDomain {
 
+    private static final long serialVersionUID = 1L;
+
     private final int low;
     private final int high;
 
@@ -8,6 +8,8 @@ import org.clafer.common.Check;
  */
 public class IrCard extends IrAbstractInt implements IrIntExpr {
 
+    private static final long serialVersionUID = 1L;
+
     private final IrSetExpr set;
 
     IrCard(IrSetExpr set, IrDomain domain) {
@@ -9,6 +9,8 @@ import org.clafer.common.Check;
  */
 public class IrCompare extends IrAbstractBool implements IrBoolExpr {
 
+    private static final long serialVersionUID = 1L;
+
     private final IrIntExpr left;
     private final Op op;
     private final IrIntExpr right;
@@ -65,7 +67,7 @@ public class IrCompare extends IrAbstractBool implements IrBoolExpr {
     public int hashCode() {
         // op.hashCode() can change between runs which makes the output change
         // every time.
-        return left.hashCode() ^ op.ordinal() ^ right.hashCode();
+        return 31 * (31 * left.hashCode() + op.ordinal()) + right.hashCode();
     }
 
     @Override
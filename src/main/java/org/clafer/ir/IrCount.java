@@ -9,6 +9,8 @@ import org.clafer.common.Check;
  */
 public class IrCount extends IrAbstractInt implements IrIntExpr {
 
+    private static final long serialVersionUID = 1L;
+
     private final int value;
     private final IrIntExpr[] array;
 
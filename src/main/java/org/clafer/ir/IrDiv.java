@@ -9,6 +9,8 @@ import org.clafer.common.Check;
  */
 public class IrDiv extends IrAbstractInt implements IrIntExpr {
 
+    private static final long serialVersionUID = 1L;
+
     /**
      * Division is internally represented as a binary operation unlike
      * addition and subtraction. The reason is that this makes optimizing for
@@ -46,7 +48,7 @@ public class IrDiv extends IrAbstractInt implements IrIntExpr {
 
     @Override
     public int hashCode() {
-        return dividend.hashCode() ^ divisor.hashCode();
+        return 31 * dividend.hashCode() + divisor.hashCode();
     }
 
     @Override
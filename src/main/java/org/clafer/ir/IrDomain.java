@@ -1,5 +1,6 @@
 package org.clafer.ir;
 
+import java.io.Serializable;
 import gnu.trove.iterator.TIntIterator;
 
 /**
@@ -7,7 +8,7 @@ import gnu.trove.iterator.TIntIterator;
  *
  * @author jimmy
  */
-public interface IrDomain {
+public interface IrDomain extends Serializable {
 
     /**
      * Checks if this domain is defined as a lower and upper bound. If the
@@ -10,6 +10,8 @@ import org.clafer.common.Check;
  */
 public class IrElement extends IrAbstractInt implements IrIntExpr {
 
+    private static final long serialVersionUID = 1L;
+
     private final IrIntExpr[] array;
     private final IrIntExpr index;
 
@@ -10,6 +10,8 @@ import org.clafer.collection.EmptyIntIterator;
  */
 public class IrEmptyDomain implements IrDomain {
 
+    private static final long serialVersionUID = 1L;
+
     /**
      * {@inheritDoc}
      */
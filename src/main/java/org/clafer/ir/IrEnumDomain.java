@@ -12,6 +12,8 @@ import org.clafer.collection.ReverseArrayIntIterator;
  */
 public class IrEnumDomain implements IrDomain {
 
+    private static final long serialVersionUID = 1L;
+
     private final int[] values;
 
     /**
@@ -1,9 +1,11 @@
 package org.clafer.ir;
 
+import java.io.Serializable;
+
 /**
  * An immutable expression.
  * 
  * @author jimmy
  */
-public interface IrExpr {
+public interface IrExpr extends Serializable {
 }
@@ -9,6 +9,8 @@ import org.clafer.common.Check;
  */
 public class IrFilterString extends IrAbstractBool implements IrBoolExpr {
 
+    private static final long serialVersionUID = 1L;
+
     private final IrSetExpr set;
     private final int offset;
     private final IrIntExpr[] string;
@@ -0,0 +1,143 @@
+package org.clafer.ir;
+
+import java.io.Serializable;
+
+/**
+ * <p>
+ * A factory for the identifiers of the variables of one compilation. Every
+ * {@link IrModule} has its own factory, so the variables of a compilation have
+ * dense identifiers no matter what else the process is compiling at the same
+ * time.
+ * </p>
+ * <p>
+ * Variables are created through the static methods of {@link Irs}, so the
+ * factory is bound to the thread doing the compiling rather than passed
+ * around. Variables created while no factory is bound share one process-wide
+ * factory.
+ * </p>
+ *
+ * @author jimmy
+ */
+public class IrIdFactory implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final IrIdFactory Unbound = new IrIdFactory();
+    private static final ThreadLocal<IrIdFactory> bound = new ThreadLocal<IrIdFactory>();
+    // The size of the blocks the parts of a split take turns on.
+    private static final int BlockSize = 8;
+    private int count;
+    // The end of the current block. Only a part of a split ever reaches it.
+    private int blockEnd;
+    // Where the next block of a part starts, relative to the current one.
+    private final int stride;
+
+    public IrIdFactory() {
+        this(0);
+    }
+
+    private IrIdFactory(int count) {
+        this(count, Integer.MAX_VALUE, 0);
+    }
+
+    private IrIdFactory(int count, int blockEnd, int stride) {
+        this.count = count;
+        this.blockEnd = blockEnd;
+        this.stride = stride;
+    }
+
+    /**
+     * Create a new unique identifier.
+     *
+     * @return a unique identifier
+     */
+    public synchronized int newId() {
+        if (count == blockEnd) {
+            count += stride - BlockSize;
+            blockEnd = count + BlockSize;
+        }
+        return count++;
+    }
+
+    /**
+     * Returns the number of identifiers created so far. Every identifier is
+     * less than the count.
+     *
+     * @return the number of identifiers created
+     */
+    public synchronized int getCount() {
+        return count;
+    }
+
+    /**
+     * Returns a factory that continues where this one is now. Forks of the
+     * same factory create the same identifiers, so each fork is for a
+     * separate compilation on top of a shared one.
+     *
+     * @return the fork
+     */
+    public synchronized IrIdFactory fork() {
+        return new IrIdFactory(count);
+    }
+
+    /**
+     * Split the identifiers that come next into parts for compilations that
+     * run at the same time. The parts take turns on small blocks of
+     * identifiers, the first block for the first part, the second block for
+     * the second part, and so on. The identifiers a part creates depend only
+     * on its index and on how many identifiers it created before, so the
+     * identifiers do not depend on how the parts are scheduled. This factory
+     * must not be used until the parts are joined back.
+     *
+     * @param parts the number of parts
+     * @return the parts
+     * @see #join(IrIdFactory[])
+     */
+    public synchronized IrIdFactory[] split(int parts) {
+        IrIdFactory[] split = new IrIdFactory[parts];
+        for (int i = 0; i < parts; i++) {
+            int start = count + i * BlockSize;
+            split[i] = new IrIdFactory(start, start + BlockSize, parts * BlockSize);
+        }
+        return split;
+    }
+
+    /**
+     * Continue after every identifier the parts created.
+     *
+     * @param parts the parts of this factory
+     * @see #split(int)
+     */
+    public synchronized void join(IrIdFactory[] parts) {
+        int base = count;
+        for (int i = 0; i < parts.length; i++) {
+            int partCount = parts[i].getCount();
+            // Skip the parts that did not create any identifiers.
+            if (partCount != base + i * BlockSize) {
+                count = Math.max(count, partCount);
+            }
+        }
+    }
+
+    /**
+     * Bind a factory to the current thread. The variables the thread creates
+     * take their identifiers from the factory until another is bound.
+     *
+     * @param factory the factory, or {@code null} to unbind
+     * @return the factory bound before, to restore afterwards
+     */
+    public static IrIdFactory bind(IrIdFactory factory) {
+        IrIdFactory previous = bound.get();
+        if (factory == null) {
+            bound.remove();
+        } else {
+            bound.set(factory);
+        }
+        return previous;
+    }
+
+    static int nextId() {
+        IrIdFactory factory = bound.get();
+        return (factory == null ? Unbound : factory).newId();
+    }
+}
@@ -8,6 +8,8 @@ import org.clafer.common.Check;
  */
 public class IrIfThenElse extends IrAbstractBool implements IrBoolExpr {
 
+    private static final long serialVersionUID = 1L;
+
     private final IrBoolExpr antecedent;
     private final IrBoolExpr consequent;
     private final IrBoolExpr alternative;
@@ -65,7 +67,7 @@ public class IrIfThenElse extends IrAbstractBool implements IrBoolExpr {
 
     @Override
     public int hashCode() {
-        return antecedent.hashCode() ^ consequent.hashCode() ^ alternative.hashCode();
+        return 31 * (31 * antecedent.hashCode() + consequent.hashCode()) + alternative.hashCode();
     }
 
     @Override
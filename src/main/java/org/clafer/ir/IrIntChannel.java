@@ -9,6 +9,8 @@ import org.clafer.common.Check;
  */
 public class IrIntChannel extends IrAbstractBool implements IrBoolExpr {
 
+    private static final long serialVersionUID = 1L;
+
     private final IrIntExpr[] ints;
     private final IrSetExpr[] sets;
 
@@ -6,6 +6,8 @@ package org.clafer.ir;
  */
 public class IrIntConstant extends IrIntVar {
 
+    private static final long serialVersionUID = 1L;
+
     private final int value;
 
     IrIntConstant(int value) {
@@ -8,6 +8,8 @@ import org.clafer.common.Check;
  */
 public class IrIntNop extends IrAbstractBool implements IrBoolExpr, IrNop {
 
+    private static final long serialVersionUID = 1L;
+
     private final IrIntExpr expr;
 
     public IrIntNop(IrIntExpr expr) {
@@ -8,11 +8,27 @@ import org.clafer.common.Check;
  */
 public class IrIntVar extends IrAbstractInt implements IrIntExpr, IrVar {
 
+    private static final long serialVersionUID = 1L;
+
+    private final int id;
     private final String name;
 
     IrIntVar(String name, IrDomain domain) {
         super(domain);
         this.name = Check.notNull(name);
+        this.id = IrIdFactory.nextId();
+    }
+
+    /**
+     * Returns the identifier of the variable. Variables created in the same
+     * compilation have dense identifiers, so they can index arrays.
+     * Identifiers are only unique within a compilation.
+     *
+     * @return the identifier of the variable
+     */
+    @Override
+    public int getId() {
+        return id;
     }
 
     @Override
@@ -10,6 +10,8 @@ import org.clafer.common.Util;
  */
 public class IrJoinFunction extends IrAbstractSet implements IrSetExpr {
 
+    private static final long serialVersionUID = 1L;
+
     private final IrSetExpr take;
     private final IrIntExpr[] refs;
     private final Integer globalCardinality;
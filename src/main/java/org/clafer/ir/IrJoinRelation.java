@@ -9,6 +9,8 @@ import org.clafer.common.Check;
  */
 public class IrJoinRelation extends IrAbstractSet implements IrSetExpr {
 
+    private static final long serialVersionUID = 1L;
+
     private final IrSetExpr take;
     private final IrSetExpr[] children;
     private final boolean injective;
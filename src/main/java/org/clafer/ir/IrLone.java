@@ -10,6 +10,8 @@ import org.clafer.common.Util;
  */
 public class IrLone extends IrAbstractBool implements IrBoolExpr {
 
+    private static final long serialVersionUID = 1L;
+
     private final IrBoolExpr[] operands;
 
     IrLone(IrBoolExpr[] operands, IrBoolDomain domain) {
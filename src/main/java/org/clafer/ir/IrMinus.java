@@ -8,6 +8,8 @@ import org.clafer.common.Check;
  */
 public class IrMinus extends IrAbstractInt implements IrIntExpr {
 
+    private static final long serialVersionUID = 1L;
+
     private final IrIntExpr expr;
 
     public IrMinus(IrIntExpr expr, IrDomain domain) {
@@ -1,5 +1,6 @@
 package org.clafer.ir;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -12,16 +13,40 @@ import org.clafer.common.Check;
  *
  * @author jimmy
  */
-public class IrModule {
+public class IrModule implements Serializable {
+
+    private static final long serialVersionUID = 1L;
 
     private final List<IrBoolExpr> constraints;
+    private final IrIdFactory idFactory;
 
-    private IrModule(List<IrBoolExpr> constraints) {
+    private IrModule(List<IrBoolExpr> constraints, IrIdFactory idFactory) {
         this.constraints = constraints;
+        this.idFactory = Check.notNull(idFactory);
     }
 
     public IrModule() {
-        this(new ArrayList<IrBoolExpr>());
+        this(new IrIdFactory());
+    }
+
+    /**
+     * @param idFactory the identifiers of the variables compiled into the
+     * module
+     */
+    public IrModule(IrIdFactory idFactory) {
+        this(new ArrayList<IrBoolExpr>(), idFactory);
+    }
+
+    /**
+     * Returns the factory for the identifiers of the variables compiled into
+     * this module. Compilers bind it to their thread while they create the
+     * variables of this module.
+     *
+     * @return the identifier factory
+     * @see IrIdFactory#bind(IrIdFactory)
+     */
+    public IrIdFactory getIdFactory() {
+        return idFactory;
     }
 
     public IrModule addConstraint(IrBoolExpr expr) {
@@ -50,7 +75,7 @@ public class IrModule {
 
     @Deprecated
     public IrModule withConstraints(IrBoolExpr... constraints) {
-        IrModule module = new IrModule(new ArrayList<IrBoolExpr>());
+        IrModule module = new IrModule(new ArrayList<IrBoolExpr>(), idFactory);
         for (IrBoolExpr constraint : constraints) {
             module.addConstraint(constraint);
         }
@@ -59,7 +84,7 @@ public class IrModule {
 
     @Deprecated
     public IrModule withConstraints(Collection<IrBoolExpr> constraints) {
-        IrModule module = new IrModule(new ArrayList<IrBoolExpr>());
+        IrModule module = new IrModule(new ArrayList<IrBoolExpr>(), idFactory);
         for (IrBoolExpr constraint : constraints) {
             module.addConstraint(constraint);
         }
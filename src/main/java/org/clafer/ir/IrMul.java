@@ -9,6 +9,8 @@ import org.clafer.common.Check;
  */
 public class IrMul extends IrAbstractInt implements IrIntExpr {
 
+    private static final long serialVersionUID = 1L;
+
     /**
      * Multiplication is internally represented as a binary operation unlike
      * addition and subtraction. The reason is that this makes optimizing for
@@ -46,7 +48,7 @@ public class IrMul extends IrAbstractInt implements IrIntExpr {
 
     @Override
     public int hashCode() {
-        return multiplicand.hashCode() ^ multiplier.hashCode();
+        return 31 * multiplicand.hashCode() + multiplier.hashCode();
     }
 
     @Override
@@ -8,6 +8,8 @@ import org.clafer.common.Check;
  */
 public class IrNot extends IrAbstractBool implements IrBoolExpr {
 
+    private static final long serialVersionUID = 1L;
+
     private final IrBoolExpr expr;
 
     public IrNot(IrBoolExpr expr, IrBoolDomain domain) {
@@ -8,6 +8,8 @@ import org.clafer.common.Check;
  */
 public class IrNotImplies extends IrAbstractBool implements IrBoolExpr {
 
+    private static final long serialVersionUID = 1L;
+
     private final IrBoolExpr antecedent;
     private final IrBoolExpr consequent;
 
@@ -56,7 +58,7 @@ public class IrNotImplies extends IrAbstractBool implements IrBoolExpr {
 
     @Override
     public int hashCode() {
-        return ~(antecedent.hashCode() ^ consequent.hashCode());
+        return ~(31 * antecedent.hashCode() + consequent.hashCode());
     }
 
     @Override
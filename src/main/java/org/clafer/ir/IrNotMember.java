@@ -8,6 +8,8 @@ import org.clafer.common.Check;
  */
 public class IrNotMember extends IrAbstractBool implements IrBoolExpr {
 
+    private static final long serialVersionUID = 1L;
+
     private final IrIntExpr element;
     private final IrSetExpr set;
 
@@ -56,7 +58,7 @@ public class IrNotMember extends IrAbstractBool implements IrBoolExpr {
 
     @Override
     public int hashCode() {
-        return ~(element.hashCode() ^ set.hashCode());
+        return ~(31 * element.hashCode() + set.hashCode());
     }
 
     @Override
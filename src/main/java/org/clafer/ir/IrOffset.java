@@ -8,6 +8,8 @@ import org.clafer.common.Check;
  */
 public class IrOffset extends IrAbstractSet implements IrSetExpr {
 
+    private static final long serialVersionUID = 1L;
+
     private final IrSetExpr set;
     private final int offset;
 
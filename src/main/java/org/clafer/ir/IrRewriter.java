@@ -1,11 +1,31 @@
 package org.clafer.ir;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import org.clafer.collection.Pair;
 import static org.clafer.ir.Irs.*;
 
 /**
+ * <p>
+ * Rewrites the IR bottom up. An expression whose children are all rewritten to
+ * themselves is returned as is, likewise for arrays and modules. Nothing is
+ * allocated unless something changed, so passes can check whether anything
+ * changed by comparing the result with the input by reference.
+ * </p>
+ * <p>
+ * Example:
+ * <pre>
+ * IrModule rewritten = rewriter.rewrite(module, null);
+ * if (rewritten == module) {
+ *     // Fixpoint.
+ * }
+ * </pre>
+ * </p>
+ * <p>
+ * Modules are mutable, so passes that add constraints to the result need to
+ * copy it first if it is the input module.
+ * </p>
  *
  * @param <T> the parameter type
  * @author jimmy
@@ -17,41 +37,62 @@ public abstract class IrRewriter<T>
         return t1 != t2;
     }
 
+    /**
+     * Checks if any expression changed. Since unchanged arrays are returned as
+     * is, this only needs to compare the arrays.
+     */
     private static <T> boolean changed(T[] t1, T[] t2) {
-        if (t1.length != t2.length) {
-            return true;
-        }
-        for (int i = 0; i < t1.length; i++) {
-            if (changed(t1[i], t2[i])) {
-                return true;
-            }
-        }
-        return false;
+        return t1 != t2;
     }
 
     private static <T> boolean changed(T[][] t1, T[][] t2) {
-        if (t1.length != t2.length) {
-            return true;
-        }
-        for (int i = 0; i < t1.length; i++) {
-            if (changed(t1[i], t2[i])) {
-                return true;
-            }
-        }
-        return false;
+        return t1 != t2;
     }
 
+    /**
+     * Rewrite every constraint in the module.
+     *
+     * @param module the module
+     * @param t the parameter
+     * @return the rewritten module, or the same module if no constraint
+     * changed
+     */
     public IrModule rewrite(IrModule module, T t) {
-        List<IrBoolExpr> rewrittenConstraints = new ArrayList<IrBoolExpr>(module.getConstraints().size());
-        for (IrBoolExpr constraint : module.getConstraints()) {
-            rewrittenConstraints.add(rewrite(constraint, t));
+        List<IrBoolExpr> constraints = module.getConstraints();
+        List<IrBoolExpr> rewrittenConstraints = null;
+        for (int i = 0; i < constraints.size(); i++) {
+            IrBoolExpr constraint = constraints.get(i);
+            IrBoolExpr rewritten = rewrite(constraint, t);
+            if (rewrittenConstraints == null && changed(constraint, rewritten)) {
+                rewrittenConstraints = new ArrayList<IrBoolExpr>(constraints.size());
+                rewrittenConstraints.addAll(constraints.subList(0, i));
+            }
+            if (rewrittenConstraints != null) {
+                rewrittenConstraints.add(rewritten);
+            }
         }
-        return module.withConstraints(rewrittenConstraints);
-    }
-
+        return rewrittenConstraints == null
+                ? module
+                : new IrModule().addConstraints(rewrittenConstraints);
+    }
+
+    /**
+     * Rewrite the conjunction of the constraints in the module, except for the
+     * nops which are added back afterwards.
+     *
+     * @param module the module
+     * @param t the parameter
+     * @return the rewritten module, or the same module if no constraint
+     * changed
+     */
     public IrModule rewriteAndNonNops(IrModule module, T t) {
         Pair<List<IrNop>, List<IrBoolExpr>> pair = partitionNops(module.getConstraints());
-        IrModule rewritten = module.withConstraints(rewrite(and(pair.getSnd()), t));
+        IrBoolExpr nonNops = and(pair.getSnd());
+        IrBoolExpr rewrittenNonNops = rewrite(nonNops, t);
+        if (!changed(nonNops, rewrittenNonNops)) {
+            return module;
+        }
+        IrModule rewritten = new IrModule().addConstraint(rewrittenNonNops);
         rewritten.addConstraints(pair.getFst());
         return rewritten;
     }
@@ -75,11 +116,17 @@ public abstract class IrRewriter<T>
     }
 
     public IrBoolExpr[] rewrite(IrBoolExpr[] exprs, T t) {
-        IrBoolExpr[] rewritten = new IrBoolExpr[exprs.length];
-        for (int i = 0; i < rewritten.length; i++) {
-            rewritten[i] = rewrite(exprs[i], t);
+        IrBoolExpr[] rewritten = null;
+        for (int i = 0; i < exprs.length; i++) {
+            IrBoolExpr expr = rewrite(exprs[i], t);
+            if (rewritten == null && changed(exprs[i], expr)) {
+                rewritten = Arrays.copyOf(exprs, exprs.length);
+            }
+            if (rewritten != null) {
+                rewritten[i] = expr;
+            }
         }
-        return rewritten;
+        return rewritten == null ? exprs : rewritten;
     }
 
     public IrIntExpr rewrite(IrIntExpr expr, T t) {
@@ -87,19 +134,31 @@ public abstract class IrRewriter<T>
     }
 
     public IrIntExpr[] rewrite(IrIntExpr[] exprs, T t) {
-        IrIntExpr[] rewritten = new IrIntExpr[exprs.length];
-        for (int i = 0; i < rewritten.length; i++) {
-            rewritten[i] = rewrite(exprs[i], t);
+        IrIntExpr[] rewritten = null;
+        for (int i = 0; i < exprs.length; i++) {
+            IrIntExpr expr = rewrite(exprs[i], t);
+            if (rewritten == null && changed(exprs[i], expr)) {
+                rewritten = Arrays.copyOf(exprs, exprs.length);
+            }
+            if (rewritten != null) {
+                rewritten[i] = expr;
+            }
         }
-        return rewritten;
+        return rewritten == null ? exprs : rewritten;
     }
 
     public IrIntExpr[][] rewrite(IrIntExpr[][] exprs, T t) {
-        IrIntExpr[][] rewritten = new IrIntExpr[exprs.length][];
-        for (int i = 0; i < rewritten.length; i++) {
-            rewritten[i] = rewrite(exprs[i], t);
+        IrIntExpr[][] rewritten = null;
+        for (int i = 0; i < exprs.length; i++) {
+            IrIntExpr[] expr = rewrite(exprs[i], t);
+            if (rewritten == null && changed(exprs[i], expr)) {
+                rewritten = Arrays.copyOf(exprs, exprs.length);
+            }
+            if (rewritten != null) {
+                rewritten[i] = expr;
+            }
         }
-        return rewritten;
+        return rewritten == null ? exprs : rewritten;
     }
 
     public IrSetExpr rewrite(IrSetExpr expr, T t) {
@@ -107,19 +166,31 @@ public abstract class IrRewriter<T>
     }
 
     public IrSetExpr[] rewrite(IrSetExpr[] exprs, T t) {
-        IrSetExpr[] rewritten = new IrSetExpr[exprs.length];
-        for (int i = 0; i < rewritten.length; i++) {
-            rewritten[i] = rewrite(exprs[i], t);
+        IrSetExpr[] rewritten = null;
+        for (int i = 0; i < exprs.length; i++) {
+            IrSetExpr expr = rewrite(exprs[i], t);
+            if (rewritten == null && changed(exprs[i], expr)) {
+                rewritten = Arrays.copyOf(exprs, exprs.length);
+            }
+            if (rewritten != null) {
+                rewritten[i] = expr;
+            }
         }
-        return rewritten;
+        return rewritten == null ? exprs : rewritten;
     }
 
     public IrSetExpr[][] rewrite(IrSetExpr[][] exprs, T t) {
-        IrSetExpr[][] rewritten = new IrSetExpr[exprs.length][];
-        for (int i = 0; i < rewritten.length; i++) {
-            rewritten[i] = rewrite(exprs[i], t);
+        IrSetExpr[][] rewritten = null;
+        for (int i = 0; i < exprs.length; i++) {
+            IrSetExpr[] expr = rewrite(exprs[i], t);
+            if (rewritten == null && changed(exprs[i], expr)) {
+                rewritten = Arrays.copyOf(exprs, exprs.length);
+            }
+            if (rewritten != null) {
+                rewritten[i] = expr;
+            }
         }
-        return rewritten;
+        return rewritten == null ? exprs : rewritten;
     }
 
     @Override
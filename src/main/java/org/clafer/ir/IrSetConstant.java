@@ -8,6 +8,8 @@ import java.util.Arrays;
  */
 public class IrSetConstant extends IrSetVar {
 
+    private static final long serialVersionUID = 1L;
+
     private final int[] value;
 
     IrSetConstant(IrDomain value) {
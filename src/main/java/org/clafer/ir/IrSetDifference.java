@@ -8,6 +8,8 @@ import org.clafer.common.Check;
  */
 public class IrSetDifference extends IrAbstractSet implements IrSetExpr {
 
+    private static final long serialVersionUID = 1L;
+
     private final IrSetExpr minuend, subtrahend;
 
     IrSetDifference(IrSetExpr minuend, IrSetExpr subtrahend,
@@ -41,7 +43,7 @@ public class IrSetDifference extends IrAbstractSet implements IrSetExpr {
 
     @Override
     public int hashCode() {
-        return 7 * minuend.hashCode() * subtrahend.hashCode();
+        return 31 * minuend.hashCode() + subtrahend.hashCode();
     }
 
     @Override
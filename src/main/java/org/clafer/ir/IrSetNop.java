@@ -8,6 +8,8 @@ import org.clafer.common.Check;
  */
 public class IrSetNop extends IrAbstractBool implements IrBoolExpr, IrNop {
 
+    private static final long serialVersionUID = 1L;
+
     private final IrSetExpr expr;
 
     public IrSetNop(IrSetExpr expr) {
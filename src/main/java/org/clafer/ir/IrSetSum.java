@@ -8,6 +8,8 @@ import org.clafer.common.Check;
  */
 public class IrSetSum extends IrAbstractInt implements IrIntExpr {
 
+    private static final long serialVersionUID = 1L;
+
     private final IrSetExpr set;
 
     public IrSetSum(IrSetExpr set, IrDomain domain) {
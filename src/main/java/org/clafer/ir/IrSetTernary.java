@@ -8,6 +8,8 @@ import org.clafer.common.Check;
  */
 public class IrSetTernary extends IrAbstractSet implements IrSetExpr {
 
+    private static final long serialVersionUID = 1L;
+
     private final IrBoolExpr antecedent;
     private final IrSetExpr consequent;
     private final IrSetExpr alternative;
@@ -50,7 +52,7 @@ public class IrSetTernary extends IrAbstractSet implements IrSetExpr {
 
     @Override
     public int hashCode() {
-        return antecedent.hashCode() ^ consequent.hashCode() ^ alternative.hashCode();
+        return 31 * (31 * antecedent.hashCode() + consequent.hashCode()) + alternative.hashCode();
     }
 
     @Override
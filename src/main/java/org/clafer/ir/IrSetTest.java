@@ -8,6 +8,8 @@ import org.clafer.common.Check;
  */
 public class IrSetTest extends IrAbstractBool implements IrBoolExpr {
 
+    private static final long serialVersionUID = 1L;
+
     private final IrSetExpr left;
     private final Op op;
     private final IrSetExpr right;
@@ -64,7 +66,7 @@ public class IrSetTest extends IrAbstractBool implements IrBoolExpr {
     public int hashCode() {
         // op.hashCode() can change between runs which makes the output change
         // every time.
-        return left.hashCode() ^ op.ordinal() ^ right.hashCode();
+        return 31 * (31 * left.hashCode() + op.ordinal()) + right.hashCode();
     }
 
     @Override
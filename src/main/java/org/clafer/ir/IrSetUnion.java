@@ -10,6 +10,8 @@ import org.clafer.common.Util;
  */
 public class IrSetUnion extends IrAbstractSet implements IrSetExpr {
 
+    private static final long serialVersionUID = 1L;
+
     private final IrSetExpr[] operands;
 
     IrSetUnion(IrSetExpr[] operands, IrDomain env, IrDomain ker, IrDomain card) {
@@ -8,11 +8,27 @@ import org.clafer.common.Check;
  */
 public class IrSetVar extends IrAbstractSet implements IrSetExpr, IrVar {
 
+    private static final long serialVersionUID = 1L;
+
+    private final int id;
     private final String name;
 
     IrSetVar(String name, IrDomain env, IrDomain ker, IrDomain card) {
         super(env, ker, card);
         this.name = Check.notNull(name);
+        this.id = IrIdFactory.nextId();
+    }
+
+    /**
+     * Returns the identifier of the variable. Variables created in the same
+     * compilation have dense identifiers, so they can index arrays.
+     * Identifiers are only unique within a compilation.
+     *
+     * @return the identifier of the variable
+     */
+    @Override
+    public int getId() {
+        return id;
     }
 
     @Override
@@ -8,6 +8,8 @@ import org.clafer.common.Check;
  */
 public class IrSingleton extends IrAbstractSet implements IrSetExpr {
 
+    private static final long serialVersionUID = 1L;
+
     private final IrIntExpr value;
 
     IrSingleton(IrIntExpr value, IrDomain env, IrDomain ker) {
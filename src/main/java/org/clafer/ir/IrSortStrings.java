@@ -10,6 +10,8 @@ import org.clafer.common.Util;
  */
 public class IrSortStrings extends IrAbstractBool implements IrBoolExpr {
 
+    private static final long serialVersionUID = 1L;
+
     private final IrIntExpr[][] strings;
 
     IrSortStrings(IrIntExpr[][] strings, IrBoolDomain domain) {
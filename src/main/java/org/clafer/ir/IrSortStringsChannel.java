@@ -9,6 +9,8 @@ import org.clafer.common.Check;
  */
 public class IrSortStringsChannel extends IrAbstractBool implements IrBoolExpr {
 
+    private static final long serialVersionUID = 1L;
+
     private final IrIntExpr[][] strings;
     private final IrIntExpr[] ints;
 
@@ -11,6 +11,8 @@ import org.clafer.common.Util;
  */
 public class IrSub extends IrAbstractInt implements IrIntExpr {
 
+    private static final long serialVersionUID = 1L;
+
     private final IrIntExpr[] subtrahends;
 
     IrSub(IrIntExpr[] subtrahends, IrDomain domain) {
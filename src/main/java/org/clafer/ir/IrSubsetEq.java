@@ -8,6 +8,8 @@ import org.clafer.common.Check;
  */
 public class IrSubsetEq extends IrAbstractBool implements IrBoolExpr {
 
+    private static final long serialVersionUID = 1L;
+
     private final IrSetExpr subset, superset;
 
     public IrSubsetEq(IrSetExpr subset, IrSetExpr superset, IrBoolDomain domain) {
@@ -55,7 +57,7 @@ public class IrSubsetEq extends IrAbstractBool implements IrBoolExpr {
 
     @Override
     public int hashCode() {
-        return subset.hashCode() ^ superset.hashCode();
+        return 31 * subset.hashCode() + superset.hashCode();
     }
 
     @Override
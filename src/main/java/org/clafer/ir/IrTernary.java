@@ -8,6 +8,8 @@ import org.clafer.common.Check;
  */
 public class IrTernary extends IrAbstractInt implements IrIntExpr {
 
+    private static final long serialVersionUID = 1L;
+
     private final IrBoolExpr antecedent;
     private final IrIntExpr consequent;
     private final IrIntExpr alternative;
@@ -50,7 +52,7 @@ public class IrTernary extends IrAbstractInt implements IrIntExpr {
 
     @Override
     public int hashCode() {
-        return antecedent.hashCode() ^ consequent.hashCode() ^ alternative.hashCode();
+        return 31 * (31 * antecedent.hashCode() + consequent.hashCode()) + alternative.hashCode();
     }
 
     @Override
@@ -9,6 +9,11 @@ package org.clafer.ir;
  */
 public interface IrVar {
 
+    /**
+     * @return the identifier of this variable
+     */
+    public int getId();
+
     /**
      * @return the name of this variable
      */
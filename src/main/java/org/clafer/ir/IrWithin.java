@@ -8,6 +8,8 @@ import org.clafer.common.Check;
  */
 public class IrWithin extends IrAbstractBool implements IrBoolExpr {
 
+    private static final long serialVersionUID = 1L;
+
     private final IrIntExpr value;
     private final IrDomain range;
 
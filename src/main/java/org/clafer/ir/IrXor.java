@@ -8,6 +8,8 @@ import org.clafer.common.Check;
  */
 public class IrXor extends IrAbstractBool implements IrBoolExpr {
 
+    private static final long serialVersionUID = 1L;
+
     private final IrBoolExpr left, right;
 
     public IrXor(IrBoolExpr left, IrBoolExpr right, IrBoolDomain domain) {
@@ -55,7 +57,7 @@ public class IrXor extends IrAbstractBool implements IrBoolExpr {
 
     @Override
     public int hashCode() {
-        return left.hashCode() ^ right.hashCode();
+        return 31 * left.hashCode() + right.hashCode();
     }
 
     @Override
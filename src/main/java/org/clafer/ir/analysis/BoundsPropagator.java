@@ -0,0 +1,273 @@
+package org.clafer.ir.analysis;
+
+import gnu.trove.iterator.TIntIterator;
+import java.util.Map;
+import org.clafer.collection.Triple;
+import org.clafer.ir.IrAdd;
+import org.clafer.ir.IrBoolExpr;
+import org.clafer.ir.IrBoolVar;
+import org.clafer.ir.IrCard;
+import org.clafer.ir.IrCompare;
+import org.clafer.ir.IrDomain;
+import org.clafer.ir.IrIntExpr;
+import org.clafer.ir.IrIntVar;
+import org.clafer.ir.IrJoinFunction;
+import org.clafer.ir.IrMember;
+import org.clafer.ir.IrModule;
+import org.clafer.ir.IrSetExpr;
+import org.clafer.ir.IrSetTest;
+import org.clafer.ir.IrSetVar;
+import org.clafer.ir.IrSubsetEq;
+import org.clafer.ir.IrUtil;
+import static org.clafer.ir.Irs.*;
+
+/**
+ * <p>
+ * Tightens the domains of the variables using the constraints in the module.
+ * Only the constraints at the top level of the module are used since they
+ * always hold.
+ * </p>
+ * <p>
+ * The rules are driven by the worklist of the {@link IncrementalCoalescer}.
+ * A tightened variable is replaced by a variable with the tighter domain, or by
+ * a constant if only one value is left, and only the constraints it appears in
+ * are revisited. Revisiting rebuilds those constraints, so expressions over
+ * constants are folded, entailed constraints are removed, and equalities that
+ * appear are coalesced.
+ * </p>
+ *
+ * @author jimmy
+ */
+public class BoundsPropagator {
+
+    private final Domains domains;
+
+    BoundsPropagator(Domains domains) {
+        this.domains = domains;
+    }
+
+    /**
+     * Propagate the domains in the module. Coalesces along the way, since
+     * each can enable the other.
+     *
+     * @param module the module
+     * @return the tightened integer variables, the tightened set variables, and
+     * the simplified module
+     * @see IncrementalCoalescer#coalesce(IrModule)
+     */
+    public static Triple<Map<IrIntVar, IrIntVar>, Map<IrSetVar, IrSetVar>, IrModule> propagate(IrModule module) {
+        return IncrementalCoalescer.coalesce(module);
+    }
+
+    /**
+     * Tighten the variables in the constraint.
+     *
+     * @param constraint the constraint
+     * @return {@code true} if and only if a variable was tightened
+     */
+    boolean propagate(IrBoolExpr constraint) {
+        if (constraint instanceof IrCompare) {
+            IrCompare compare = (IrCompare) constraint;
+            return propagateCompare(compare.getLeft(), compare.getOp(), compare.getRight());
+        }
+        if (constraint instanceof IrMember) {
+            IrMember member = (IrMember) constraint;
+            boolean changed = restrictInt(member.getElement(), getEnv(member.getSet()));
+            IrDomain element = getDomain(member.getElement());
+            if (element.size() == 1) {
+                changed |= restrictSet(member.getSet(),
+                        getEnv(member.getSet()), element, getCard(member.getSet()));
+            }
+            return changed;
+        }
+        if (constraint instanceof IrSubsetEq) {
+            IrSubsetEq subsetEq = (IrSubsetEq) constraint;
+            IrSetExpr sub = subsetEq.getSubset();
+            IrSetExpr sup = subsetEq.getSuperset();
+            return restrictSet(sub, getEnv(sup), EmptyDomain,
+                    bounded(0, getCard(sup).getHighBound()))
+                    | restrictSet(sup, getEnv(sup), getKer(sub),
+                    bounded(getCard(sub).getLowBound(), getCard(sup).getHighBound()));
+        }
+        if (constraint instanceof IrSetTest) {
+            IrSetTest test = (IrSetTest) constraint;
+            if (IrSetTest.Op.Equal.equals(test.getOp())) {
+                IrSetExpr left = test.getLeft();
+                IrSetExpr right = test.getRight();
+                return restrictSet(left, getEnv(right), getKer(right), getCard(right))
+                        | restrictSet(right, getEnv(left), getKer(left), getCard(left));
+            }
+        }
+        return false;
+    }
+
+    private boolean propagateCompare(IrIntExpr left, IrCompare.Op op, IrIntExpr right) {
+        IrDomain leftDomain = getDomain(left);
+        IrDomain rightDomain = getDomain(right);
+        switch (op) {
+            case Equal:
+                return restrictInt(left, rightDomain) | restrictInt(right, leftDomain);
+            case NotEqual:
+                if (rightDomain.size() == 1) {
+                    return restrictInt(left, IrUtil.difference(leftDomain, rightDomain));
+                }
+                if (leftDomain.size() == 1) {
+                    return restrictInt(right, IrUtil.difference(rightDomain, leftDomain));
+                }
+                return false;
+            case LessThan:
+                return restrictInt(left, bounded(leftDomain.getLowBound(), rightDomain.getHighBound() - 1))
+                        | restrictInt(right, bounded(leftDomain.getLowBound() + 1, rightDomain.getHighBound()));
+            case LessThanEqual:
+                return restrictInt(left, bounded(leftDomain.getLowBound(), rightDomain.getHighBound()))
+                        | restrictInt(right, bounded(leftDomain.getLowBound(), rightDomain.getHighBound()));
+            case GreaterThan:
+                return propagateCompare(right, IrCompare.Op.LessThan, left);
+            case GreaterThanEqual:
+                return propagateCompare(right, IrCompare.Op.LessThanEqual, left);
+            default:
+                throw new IllegalStateException();
+        }
+    }
+
+    /**
+     * Restrict the expression to take a value in the domain. Only variables
+     * are actually replaced, other expressions pass the restriction down to
+     * their children.
+     *
+     * @param expr the expression
+     * @param domain the values the expression can take
+     * @return {@code true} if and only if a variable was tightened
+     */
+    private boolean restrictInt(IrIntExpr expr, IrDomain domain) {
+        if (expr instanceof IrIntVar) {
+            IrIntVar var = domains.find((IrIntVar) expr);
+            if (IrUtil.isConstant(var)) {
+                return false;
+            }
+            IrDomain restricted = IrUtil.intersection(var.getDomain(), domain);
+            if (restricted.isEmpty()) {
+                // Model is unsatisfiable. Compile anyways?
+                return false;
+            }
+            if (restricted.size() == var.getDomain().size()) {
+                return false;
+            }
+            if (var instanceof IrBoolVar && restricted.size() != 1) {
+                // Booleans can only be replaced with booleans.
+                return false;
+            }
+            domains.tighten(var, domainInt(var.getName(), restricted));
+            return true;
+        }
+        if (expr instanceof IrAdd) {
+            IrIntExpr[] addends = ((IrAdd) expr).getAddends();
+            int low = 0;
+            int high = 0;
+            for (IrIntExpr addend : addends) {
+                IrDomain addendDomain = getDomain(addend);
+                low += addendDomain.getLowBound();
+                high += addendDomain.getHighBound();
+            }
+            boolean changed = false;
+            for (IrIntExpr addend : addends) {
+                IrDomain addendDomain = getDomain(addend);
+                // The rest of the addends sum between [low - addendLow, high - addendHigh].
+                changed |= restrictInt(addend, bounded(
+                        domain.getLowBound() - (high - addendDomain.getHighBound()),
+                        domain.getHighBound() - (low - addendDomain.getLowBound())));
+            }
+            return changed;
+        }
+        if (expr instanceof IrCard) {
+            IrSetExpr set = ((IrCard) expr).getSet();
+            return restrictSet(set, getEnv(set), EmptyDomain, domain);
+        }
+        return false;
+    }
+
+    /**
+     * Restrict the set expression to be a subset of env, superset of ker, and
+     * a cardinality in card.
+     *
+     * @return {@code true} if and only if a variable was tightened
+     */
+    private boolean restrictSet(IrSetExpr expr, IrDomain env, IrDomain ker, IrDomain card) {
+        if (expr instanceof IrSetVar) {
+            IrSetVar var = domains.find((IrSetVar) expr);
+            if (IrUtil.isConstant(var)) {
+                return false;
+            }
+            IrDomain restrictedEnv = IrUtil.intersection(var.getEnv(), env);
+            IrDomain restrictedKer = IrUtil.union(var.getKer(), ker);
+            IrDomain restrictedCard = IrUtil.intersection(var.getCard(), card);
+            restrictedCard = IrUtil.intersection(restrictedCard,
+                    bounded(restrictedKer.size(), restrictedEnv.size()));
+            if (restrictedCard.isEmpty() || !IrUtil.isSubsetOf(restrictedKer, restrictedEnv)) {
+                // Model is unsatisfiable. Compile anyways?
+                return false;
+            }
+            if (restrictedCard.getHighBound() == restrictedKer.size()) {
+                restrictedEnv = restrictedKer;
+            } else if (restrictedCard.getLowBound() == restrictedEnv.size()) {
+                restrictedKer = restrictedEnv;
+            }
+            if (restrictedEnv.size() == var.getEnv().size()
+                    && restrictedKer.size() == var.getKer().size()
+                    && restrictedCard.size() == var.getCard().size()) {
+                return false;
+            }
+            domains.tighten(var, set(var.getName(), restrictedEnv, restrictedKer, restrictedCard));
+            return true;
+        }
+        if (expr instanceof IrJoinFunction) {
+            IrJoinFunction join = (IrJoinFunction) expr;
+            IrIntExpr[] refs = join.getRefs();
+            boolean changed = false;
+            // Every taken element must reference something in env.
+            TIntIterator iter = getKer(join.getTake()).iterator();
+            while (iter.hasNext()) {
+                changed |= restrictInt(refs[iter.next()], env);
+            }
+            return changed;
+        }
+        return false;
+    }
+
+    private IrDomain getDomain(IrIntExpr expr) {
+        return expr instanceof IrIntVar ? domains.find((IrIntVar) expr).getDomain() : expr.getDomain();
+    }
+
+    private IrDomain getEnv(IrSetExpr expr) {
+        return expr instanceof IrSetVar ? domains.find((IrSetVar) expr).getEnv() : expr.getEnv();
+    }
+
+    private IrDomain getKer(IrSetExpr expr) {
+        return expr instanceof IrSetVar ? domains.find((IrSetVar) expr).getKer() : expr.getKer();
+    }
+
+    private IrDomain getCard(IrSetExpr expr) {
+        return expr instanceof IrSetVar ? domains.find((IrSetVar) expr).getCard() : expr.getCard();
+    }
+
+    private static IrDomain bounded(int low, int high) {
+        return low > high ? EmptyDomain : boundDomain(low, high);
+    }
+
+    /**
+     * The current variables, after every replacement so far.
+     */
+    interface Domains {
+
+        IrIntVar find(IrIntVar var);
+
+        IrSetVar find(IrSetVar var);
+
+        /**
+         * Replace the variable with one with a smaller domain.
+         */
+        void tighten(IrIntVar var, IrIntVar tightened);
+
+        void tighten(IrSetVar var, IrSetVar tightened);
+    }
+}
@@ -43,6 +43,10 @@ public class Canonicalizer {
         CanonicalRewriter rewriter = new CanonicalRewriter();
 
         IrModule optModule = rewriter.rewriteAndNonNops(module, null);
+        if (optModule == module) {
+            // Do not add constraints to the input module.
+            optModule = new IrModule().addConstraints(module.getConstraints());
+        }
         for (Entry<IrSetVar, IrIntVar> entry : rewriter.setVarCards.entrySet()) {
             optModule.addConstraint(equal(entry.getValue(), card(entry.getKey())));
         }
@@ -151,7 +155,9 @@ public class Canonicalizer {
                     }
                 }
             }
-            return compare(left, ir.getOp(), right);
+            return left == ir.getLeft() && right == ir.getRight()
+                    ? ir
+                    : compare(left, ir.getOp(), right);
         }
 
         @Override
@@ -171,7 +177,7 @@ public class Canonicalizer {
                 }
                 return card;
             }
-            return card(set);
+            return set == ir.getSet() ? ir : card(set);
         }
 
         @Override
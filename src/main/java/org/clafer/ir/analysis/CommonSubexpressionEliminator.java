@@ -0,0 +1,104 @@
+package org.clafer.ir.analysis;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import org.clafer.ir.IrBoolExpr;
+import org.clafer.ir.IrExpr;
+import org.clafer.ir.IrIntExpr;
+import org.clafer.ir.IrModule;
+import org.clafer.ir.IrRewriter;
+import org.clafer.ir.IrSetExpr;
+
+/**
+ * <p>
+ * Replaces structurally equal expressions with one shared instance. The ground
+ * instances of a constraint often repeat the same subexpressions, for example
+ * the same join under every instance of the context. After this pass, equal
+ * subexpressions are the same object so the compiler can compile each one to a
+ * single Choco variable.
+ * </p>
+ * <p>
+ * Duplicate constraints are also removed.
+ * </p>
+ *
+ * @author jimmy
+ */
+public class CommonSubexpressionEliminator {
+
+    private CommonSubexpressionEliminator() {
+    }
+
+    /**
+     * Share equal subexpressions in the module.
+     *
+     * @param module the module
+     * @return the module with shared subexpressions
+     */
+    public static IrModule eliminate(IrModule module) {
+        Interner interner = new Interner();
+        Set<IrBoolExpr> constraints = Collections.newSetFromMap(new IdentityHashMap<IrBoolExpr, Boolean>());
+        IrModule eliminated = new IrModule();
+        for (IrBoolExpr constraint : module.getConstraints()) {
+            IrBoolExpr shared = interner.rewrite(constraint, null);
+            if (constraints.add(shared)) {
+                eliminated.addConstraint(shared);
+            }
+        }
+        return eliminated;
+    }
+
+    /**
+     * Rewrites bottom up so that the children are already shared by the time
+     * their parent is looked up. Each distinct object is rewritten only once.
+     */
+    private static class Interner extends IrRewriter<Void> {
+
+        private final Map<IrExpr, IrExpr> canonical = new HashMap<IrExpr, IrExpr>();
+        private final Map<IrBoolExpr, IrBoolExpr> rewrittenBools = new IdentityHashMap<IrBoolExpr, IrBoolExpr>();
+        private final Map<IrIntExpr, IrIntExpr> rewrittenInts = new IdentityHashMap<IrIntExpr, IrIntExpr>();
+        private final Map<IrSetExpr, IrSetExpr> rewrittenSets = new IdentityHashMap<IrSetExpr, IrSetExpr>();
+
+        private <T extends IrExpr> T intern(T expr) {
+            @SuppressWarnings("unchecked")
+            T shared = (T) canonical.get(expr);
+            if (shared == null) {
+                canonical.put(expr, expr);
+                return expr;
+            }
+            return shared;
+        }
+
+        @Override
+        public IrBoolExpr rewrite(IrBoolExpr expr, Void a) {
+            IrBoolExpr rewritten = rewrittenBools.get(expr);
+            if (rewritten == null) {
+                rewritten = intern(super.rewrite(expr, a));
+                rewrittenBools.put(expr, rewritten);
+            }
+            return rewritten;
+        }
+
+        @Override
+        public IrIntExpr rewrite(IrIntExpr expr, Void a) {
+            IrIntExpr rewritten = rewrittenInts.get(expr);
+            if (rewritten == null) {
+                rewritten = intern(super.rewrite(expr, a));
+                rewrittenInts.put(expr, rewritten);
+            }
+            return rewritten;
+        }
+
+        @Override
+        public IrSetExpr rewrite(IrSetExpr expr, Void a) {
+            IrSetExpr rewritten = rewrittenSets.get(expr);
+            if (rewritten == null) {
+                rewritten = intern(super.rewrite(expr, a));
+                rewrittenSets.put(expr, rewritten);
+            }
+            return rewritten;
+        }
+    }
+}
@@ -0,0 +1,253 @@
+package org.clafer.ir.analysis;
+
+import gnu.trove.iterator.TIntIterator;
+import gnu.trove.list.array.TIntArrayList;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.clafer.ir.IrBoolDomain;
+import org.clafer.ir.IrBoolExpr;
+import org.clafer.ir.IrBoolVar;
+import org.clafer.ir.IrCompare;
+import org.clafer.ir.IrIfOnlyIf;
+import org.clafer.ir.IrIntExpr;
+import org.clafer.ir.IrIntNop;
+import org.clafer.ir.IrIntVar;
+import org.clafer.ir.IrModule;
+import org.clafer.ir.IrSetExpr;
+import org.clafer.ir.IrSetNop;
+import org.clafer.ir.IrSetTest;
+import org.clafer.ir.IrSetVar;
+import org.clafer.ir.IrUtil;
+import static org.clafer.ir.Irs.*;
+
+/**
+ * <p>
+ * Removes variables that cannot affect the live variables, along with the
+ * constraints that only exist to define them. The live variables are the ones
+ * read after solving, for example the ones in the solution map, the search
+ * strategies, and the objectives.
+ * </p>
+ * <p>
+ * A constraint is removed if it is
+ * <ul>
+ * <li>a nop over a dead variable, or</li>
+ * <li>an equality that defines a dead variable that appears nowhere else, and
+ * the domain of the variable allows every value the other side can take.</li>
+ * </ul>
+ * The other side must be defined for every value of its operands. Division,
+ * element, and join function constrain their operands, for example the
+ * divisor cannot be zero, so their definitions are kept.
+ * Such a constraint is always satisfiable no matter what values the other
+ * variables take, so removing it preserves the solutions over the live
+ * variables. Removing a constraint can leave another dead variable defined in
+ * only one place, so this is repeated until fixpoint.
+ * </p>
+ * <p>
+ * The removed variables are never posted to the solver, so their values are not
+ * available after solving.
+ * </p>
+ *
+ * @author jimmy
+ */
+public class DeadCodeEliminator {
+
+    private final Set<IrIntVar> liveInts;
+    private final Set<IrSetVar> liveSets;
+    private final List<IrBoolExpr> constraints = new ArrayList<IrBoolExpr>();
+    private final List<VariableCollector> variables = new ArrayList<VariableCollector>();
+    private final Map<IrIntVar, TIntArrayList> intIndex = new HashMap<IrIntVar, TIntArrayList>();
+    private final Map<IrSetVar, TIntArrayList> setIndex = new HashMap<IrSetVar, TIntArrayList>();
+    private final BitSet removed = new BitSet();
+    private final Deque<Integer> worklist = new ArrayDeque<Integer>();
+    private final BitSet queued = new BitSet();
+
+    private DeadCodeEliminator(Set<IrIntVar> liveInts, Set<IrSetVar> liveSets) {
+        this.liveInts = liveInts;
+        this.liveSets = liveSets;
+    }
+
+    /**
+     * Remove the dead variables and their definitions.
+     *
+     * @param module the module
+     * @param liveInts the integer variables read after solving
+     * @param liveSets the set variables read after solving
+     * @return the module without the dead variables
+     */
+    public static IrModule eliminate(IrModule module, Set<IrIntVar> liveInts, Set<IrSetVar> liveSets) {
+        DeadCodeEliminator eliminator = new DeadCodeEliminator(liveInts, liveSets);
+        for (IrBoolExpr constraint : module.getConstraints()) {
+            eliminator.add(constraint);
+        }
+        eliminator.fixpoint();
+
+        if (eliminator.removed.isEmpty()) {
+            return module;
+        }
+        IrModule eliminated = new IrModule();
+        for (int i = 0; i < eliminator.constraints.size(); i++) {
+            if (!eliminator.removed.get(i)) {
+                eliminated.addConstraint(eliminator.constraints.get(i));
+            }
+        }
+        return eliminated;
+    }
+
+    private void add(IrBoolExpr constraint) {
+        int id = constraints.size();
+        constraints.add(constraint);
+        VariableCollector collector = new VariableCollector();
+        collector.rewrite(constraint, null);
+        variables.add(collector);
+        for (IrIntVar var : collector.getInts()) {
+            index(intIndex, var).add(id);
+        }
+        for (IrSetVar var : collector.getSets()) {
+            index(setIndex, var).add(id);
+        }
+        enqueue(id);
+    }
+
+    private static <T> TIntArrayList index(Map<T, TIntArrayList> index, T var) {
+        TIntArrayList ids = index.get(var);
+        if (ids == null) {
+            ids = new TIntArrayList(2);
+            index.put(var, ids);
+        }
+        return ids;
+    }
+
+    private void enqueue(int id) {
+        if (!queued.get(id)) {
+            queued.set(id);
+            worklist.add(id);
+        }
+    }
+
+    private void fixpoint() {
+        while (!worklist.isEmpty()) {
+            int id = worklist.poll();
+            queued.clear(id);
+            if (!removed.get(id) && isDead(constraints.get(id))) {
+                removed.set(id);
+                // The other variables might now be defined in only one place.
+                VariableCollector collector = variables.get(id);
+                for (IrIntVar var : collector.getInts()) {
+                    revisit(intIndex.get(var));
+                }
+                for (IrSetVar var : collector.getSets()) {
+                    revisit(setIndex.get(var));
+                }
+            }
+        }
+    }
+
+    private void revisit(TIntArrayList ids) {
+        TIntIterator iter = ids.iterator();
+        while (iter.hasNext()) {
+            int id = iter.next();
+            if (removed.get(id)) {
+                iter.remove();
+            } else {
+                enqueue(id);
+            }
+        }
+    }
+
+    private boolean isDead(IrBoolExpr constraint) {
+        if (constraint instanceof IrIntNop) {
+            IrIntExpr expr = ((IrIntNop) constraint).getExpr();
+            return expr instanceof IrIntVar && !liveInts.contains(expr);
+        }
+        if (constraint instanceof IrSetNop) {
+            IrSetExpr expr = ((IrSetNop) constraint).getExpr();
+            return expr instanceof IrSetVar && !liveSets.contains(expr);
+        }
+        if (constraint instanceof IrCompare) {
+            IrCompare compare = (IrCompare) constraint;
+            return IrCompare.Op.Equal.equals(compare.getOp())
+                    && (isDefinition(compare.getLeft(), compare.getRight())
+                    || isDefinition(compare.getRight(), compare.getLeft()));
+        }
+        if (constraint instanceof IrIfOnlyIf) {
+            IrIfOnlyIf ifOnlyIf = (IrIfOnlyIf) constraint;
+            return isDefinition(ifOnlyIf.getLeft(), ifOnlyIf.getRight())
+                    || isDefinition(ifOnlyIf.getRight(), ifOnlyIf.getLeft());
+        }
+        if (constraint instanceof IrSetTest) {
+            IrSetTest test = (IrSetTest) constraint;
+            return IrSetTest.Op.Equal.equals(test.getOp())
+                    && (isDefinition(test.getLeft(), test.getRight())
+                    || isDefinition(test.getRight(), test.getLeft()));
+        }
+        return false;
+    }
+
+    /**
+     * Checks if {@code var = expr} can always be satisfied by choosing the
+     * value of var.
+     */
+    private boolean isDefinition(IrIntExpr var, IrIntExpr expr) {
+        if (!(var instanceof IrIntVar) || IrUtil.isConstant((IrIntVar) var)
+                || liveInts.contains(var) || !isOnlyOccurrence(intIndex.get(var))) {
+            return false;
+        }
+        VariableCollector collector = new VariableCollector();
+        collector.rewrite(expr, null);
+        if (collector.getInts().contains(var) || collector.isPartial()) {
+            return false;
+        }
+        if (var instanceof IrBoolVar) {
+            // Booleans can take every value of another boolean expression.
+            return IrBoolDomain.BoolDomain.equals(((IrBoolVar) var).getDomain())
+                    && expr instanceof IrBoolExpr;
+        }
+        /*
+         * The cardinality domain of a set variable is only enforced by the
+         * constraints over its cardinality, for example the ones added by the
+         * Canonicalizer. Expressions over sets might take values outside their
+         * domain if the constraint is removed.
+         */
+        return collector.getSets().isEmpty()
+                && IrUtil.isSubsetOf(expr.getDomain(), var.getDomain());
+    }
+
+    /**
+     * Checks if {@code var = expr} can always be satisfied by choosing the
+     * value of var.
+     */
+    private boolean isDefinition(IrSetExpr var, IrSetExpr expr) {
+        if (!(var instanceof IrSetVar) || IrUtil.isConstant(var)
+                || liveSets.contains(var) || !isOnlyOccurrence(setIndex.get(var))) {
+            return false;
+        }
+        VariableCollector collector = new VariableCollector();
+        collector.rewrite(expr, null);
+        if (collector.getSets().contains(var) || collector.isPartial()) {
+            return false;
+        }
+        // The envelope and kernel are always enforced, but not the cardinality.
+        return IrUtil.isSubsetOf(expr.getEnv(), var.getEnv())
+                && IrUtil.isSubsetOf(var.getKer(), expr.getKer())
+                && IrUtil.isSubsetOf(
+                        boundDomain(expr.getKer().size(), expr.getEnv().size()),
+                        var.getCard());
+    }
+
+    private boolean isOnlyOccurrence(TIntArrayList ids) {
+        int occurrences = 0;
+        TIntIterator iter = ids.iterator();
+        while (iter.hasNext()) {
+            if (!removed.get(iter.next())) {
+                occurrences++;
+            }
+        }
+        return occurrences == 1;
+    }
+}
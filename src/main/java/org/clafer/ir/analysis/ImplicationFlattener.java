@@ -1,8 +1,6 @@
 package org.clafer.ir.analysis;
 
 import org.clafer.ir.IrRewriter;
-import java.util.ArrayList;
-import java.util.List;
 import org.clafer.ir.IrAnd;
 import org.clafer.ir.IrBoolExpr;
 import org.clafer.ir.IrIfThenElse;
@@ -29,11 +27,7 @@ public class ImplicationFlattener {
      * @return the flattened module
      */
     public static IrModule flatten(IrModule module) {
-        List<IrBoolExpr> constraints = new ArrayList<IrBoolExpr>();
-        for (IrBoolExpr constraint : module.getConstraints()) {
-            constraints.add(flattener.rewrite(constraint, null));
-        }
-        return module.withConstraints(constraints);
+        return flattener.rewrite(module, null);
     }
     private static final IrRewriter<Void> flattener = new IrRewriter<Void>() {
         @Override
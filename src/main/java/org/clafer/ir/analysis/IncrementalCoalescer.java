@@ -0,0 +1,362 @@
+package org.clafer.ir.analysis;
+
+import gnu.trove.iterator.TIntIterator;
+import gnu.trove.list.array.TIntArrayList;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.clafer.collection.Pair;
+import org.clafer.collection.Triple;
+import org.clafer.ir.IrAnd;
+import org.clafer.ir.IrBoolDomain;
+import org.clafer.ir.IrBoolExpr;
+import org.clafer.ir.IrBoolVar;
+import org.clafer.ir.IrCompare;
+import org.clafer.ir.IrDomain;
+import org.clafer.ir.IrIfOnlyIf;
+import org.clafer.ir.IrIntExpr;
+import org.clafer.ir.IrIntVar;
+import org.clafer.ir.IrModule;
+import org.clafer.ir.IrNot;
+import org.clafer.ir.IrRewriter;
+import org.clafer.ir.IrSetExpr;
+import org.clafer.ir.IrSetTest;
+import org.clafer.ir.IrSetVar;
+import org.clafer.ir.IrUtil;
+import static org.clafer.ir.Irs.*;
+
+/**
+ * <p>
+ * Coalesces equal variables, propagates cardinalities, and propagates bounds
+ * with the {@link BoundsPropagator} to a fixpoint, without rewriting the whole
+ * module every round. Each can enable the others, for example a variable
+ * propagated to a constant turns a comparison into an equality between two
+ * variables, which is then coalesced.
+ * </p>
+ * <p>
+ * The variables are kept in a union-find and every variable remembers the
+ * constraints it appears in. When a variable is replaced, only the constraints
+ * it appears in are revisited.
+ * </p>
+ *
+ * @author jimmy
+ */
+public class IncrementalCoalescer {
+
+    private final List<IrBoolExpr> constraints = new ArrayList<IrBoolExpr>();
+    private final Map<IrIntVar, IrIntVar> coalescedInts = new HashMap<IrIntVar, IrIntVar>();
+    private final Map<IrSetVar, IrSetVar> coalescedSets = new HashMap<IrSetVar, IrSetVar>();
+    private final Map<IrIntVar, TIntArrayList> intIndex = new HashMap<IrIntVar, TIntArrayList>();
+    private final Map<IrSetVar, TIntArrayList> setIndex = new HashMap<IrSetVar, TIntArrayList>();
+    private final Deque<Integer> worklist = new ArrayDeque<Integer>();
+    private final BitSet queued = new BitSet();
+    private final IrRewriter<Void> substitute = new SubstituteRewriter();
+    private final BoundsPropagator bounds = new BoundsPropagator(new BoundsPropagator.Domains() {
+        @Override
+        public IrIntVar find(IrIntVar var) {
+            return IncrementalCoalescer.this.find(var);
+        }
+
+        @Override
+        public IrSetVar find(IrSetVar var) {
+            return IncrementalCoalescer.this.find(var);
+        }
+
+        @Override
+        public void tighten(IrIntVar var, IrIntVar tightened) {
+            replace(intIndex, coalescedInts, var, tightened);
+        }
+
+        @Override
+        public void tighten(IrSetVar var, IrSetVar tightened) {
+            replace(setIndex, coalescedSets, var, tightened);
+        }
+    });
+
+    private IncrementalCoalescer() {
+    }
+
+    /**
+     * Coalesce and propagate until fixpoint. The maps hold both the coalesced
+     * and the tightened variables.
+     *
+     * @param module the module
+     * @return the coalesced integer variables, the coalesced set variables,
+     * and the simplified module
+     */
+    public static Triple<Map<IrIntVar, IrIntVar>, Map<IrSetVar, IrSetVar>, IrModule> coalesce(IrModule module) {
+        IncrementalCoalescer coalescer = new IncrementalCoalescer();
+        for (IrBoolExpr constraint : module.getConstraints()) {
+            coalescer.add(constraint);
+        }
+        coalescer.fixpoint();
+
+        IrModule coalesced = new IrModule();
+        for (IrBoolExpr constraint : coalescer.constraints) {
+            if (constraint != null) {
+                coalesced.addConstraint(constraint);
+            }
+        }
+        Map<IrIntVar, IrIntVar> ints = new HashMap<IrIntVar, IrIntVar>(coalescer.coalescedInts.size());
+        for (IrIntVar var : coalescer.coalescedInts.keySet()) {
+            ints.put(var, coalescer.find(var));
+        }
+        Map<IrSetVar, IrSetVar> sets = new HashMap<IrSetVar, IrSetVar>(coalescer.coalescedSets.size());
+        for (IrSetVar var : coalescer.coalescedSets.keySet()) {
+            sets.put(var, coalescer.find(var));
+        }
+        return new Triple<Map<IrIntVar, IrIntVar>, Map<IrSetVar, IrSetVar>, IrModule>(ints, sets, coalesced);
+    }
+
+    /**
+     * Replace the variables in the module with the variables they were
+     * coalesced into.
+     *
+     * @param module the module to rewrite
+     * @param coalescedInts the coalesced integer variables
+     * @param coalescedSets the coalesced set variables
+     * @return the rewritten module
+     */
+    public static IrModule rewrite(IrModule module,
+            Map<IrIntVar, IrIntVar> coalescedInts, Map<IrSetVar, IrSetVar> coalescedSets) {
+        return new CoalesceRewriter(coalescedInts, coalescedSets).rewrite(module, null);
+    }
+
+    private void add(IrBoolExpr constraint) {
+        int id = constraints.size();
+        constraints.add(constraint);
+        VariableCollector collector = new VariableCollector();
+        collector.rewrite(constraint, null);
+        for (IrIntVar var : collector.getInts()) {
+            index(intIndex, var).add(id);
+        }
+        for (IrSetVar var : collector.getSets()) {
+            index(setIndex, var).add(id);
+        }
+        enqueue(id);
+    }
+
+    private static <T> TIntArrayList index(Map<T, TIntArrayList> index, T var) {
+        TIntArrayList ids = index.get(var);
+        if (ids == null) {
+            ids = new TIntArrayList(2);
+            index.put(var, ids);
+        }
+        return ids;
+    }
+
+    private void enqueue(int id) {
+        if (!queued.get(id)) {
+            queued.set(id);
+            worklist.add(id);
+        }
+    }
+
+    private void fixpoint() {
+        while (!worklist.isEmpty()) {
+            int id = worklist.poll();
+            queued.clear(id);
+            IrBoolExpr constraint = constraints.get(id);
+            if (constraint == null) {
+                continue;
+            }
+            IrBoolExpr rewritten = substitute.rewrite(constraint, null);
+            if (rewritten instanceof IrAnd) {
+                // The rewritten constraint is no longer indexed under its id.
+                constraints.set(id, null);
+                for (IrBoolExpr operand : ((IrAnd) rewritten).getOperands()) {
+                    add(operand);
+                }
+            } else if (IrUtil.isTrue(rewritten)) {
+                constraints.set(id, null);
+            } else {
+                constraints.set(id, rewritten);
+                simplify(rewritten);
+            }
+        }
+    }
+
+    private void simplify(IrBoolExpr constraint) {
+        if (constraint instanceof IrCompare) {
+            IrCompare compare = (IrCompare) constraint;
+            if (IrCompare.Op.Equal.equals(compare.getOp())
+                    && compare.getLeft() instanceof IrIntVar
+                    && compare.getRight() instanceof IrIntVar) {
+                mergeInts((IrIntVar) compare.getLeft(), (IrIntVar) compare.getRight());
+            }
+        } else if (constraint instanceof IrIfOnlyIf) {
+            IrIfOnlyIf ifOnlyIf = (IrIfOnlyIf) constraint;
+            if (ifOnlyIf.getLeft() instanceof IrBoolVar
+                    && ifOnlyIf.getRight() instanceof IrBoolVar) {
+                mergeInts((IrBoolVar) ifOnlyIf.getLeft(), (IrBoolVar) ifOnlyIf.getRight());
+            }
+        } else if (constraint instanceof IrBoolVar) {
+            IrBoolVar bool = (IrBoolVar) constraint;
+            if (IrBoolDomain.BoolDomain.equals(bool.getDomain())) {
+                mergeInts(bool, True);
+            }
+        } else if (constraint instanceof IrNot) {
+            IrNot not = (IrNot) constraint;
+            if (not.getExpr() instanceof IrBoolVar) {
+                IrBoolVar bool = (IrBoolVar) not.getExpr();
+                if (IrBoolDomain.BoolDomain.equals(bool.getDomain())) {
+                    mergeInts(bool, False);
+                }
+            }
+        } else if (constraint instanceof IrSetTest) {
+            IrSetTest test = (IrSetTest) constraint;
+            if (IrSetTest.Op.Equal.equals(test.getOp())
+                    && test.getLeft() instanceof IrSetVar
+                    && test.getRight() instanceof IrSetVar) {
+                mergeSets((IrSetVar) test.getLeft(), (IrSetVar) test.getRight());
+            }
+        }
+        Pair<IrIntExpr, IrSetVar> cardinality = AnalysisUtil.getAssignCardinality(constraint);
+        if (cardinality != null) {
+            IrSetVar set = cardinality.getSnd();
+            IrDomain card = IrUtil.intersection(cardinality.getFst().getDomain(), set.getCard());
+            if (card.isEmpty()) {
+                // Model is unsatisfiable. Compile anyways?
+            } else if (!card.equals(set.getCard()) && !IrUtil.isConstant(set)) {
+                IrSetVar propagated = IrUtil.asConstant(set.withCard(card));
+                replace(setIndex, coalescedSets, set, propagated);
+                IrBoolExpr nop = nop(propagated);
+                if (!IrUtil.isTrue(nop)) {
+                    add(nop);
+                }
+            }
+        }
+        bounds.propagate(constraint);
+    }
+
+    private void mergeInts(IrIntVar var1, IrIntVar var2) {
+        if (var1.equals(var2)) {
+            return;
+        }
+        IrDomain domain = IrUtil.intersection(var1.getDomain(), var2.getDomain());
+        if (domain.isEmpty()) {
+            // Model is unsatisfiable. Compile anyways?
+            return;
+        }
+        // Keep one of the names rather than joining them. Joined names grow with
+        // every merge, and the merged variables are in the coalesced maps anyways.
+        IrIntVar coalesced = domainInt(var1.getName(), domain);
+        if ((var1 instanceof IrBoolVar || var2 instanceof IrBoolVar)
+                && !(coalesced instanceof IrBoolVar)) {
+            // Booleans can only be replaced with booleans.
+            return;
+        }
+        replace(intIndex, coalescedInts, var1, coalesced);
+        replace(intIndex, coalescedInts, var2, coalesced);
+    }
+
+    private void mergeSets(IrSetVar var1, IrSetVar var2) {
+        if (var1.equals(var2)) {
+            return;
+        }
+        IrDomain env = IrUtil.intersection(var1.getEnv(), var2.getEnv());
+        IrDomain ker = IrUtil.union(var1.getKer(), var2.getKer());
+        IrDomain card = IrUtil.intersection(var1.getCard(), var2.getCard());
+        if (!IrUtil.isSubsetOf(ker, env)) {
+            // Model is unsatisfiable. Compile anyways?
+            return;
+        }
+        IrSetVar coalesced = set(var1.getName(), env, ker, card);
+        replace(setIndex, coalescedSets, var1, coalesced);
+        replace(setIndex, coalescedSets, var2, coalesced);
+    }
+
+    /**
+     * Replace a representative with a new variable and revisit every
+     * constraint the representative appears in. Constants are never replaced.
+     */
+    private <T> void replace(Map<T, TIntArrayList> index, Map<T, T> coalesced, T var, T replacement) {
+        if (var.equals(replacement)) {
+            return;
+        }
+        coalesced.put(var, replacement);
+        TIntArrayList ids = index.remove(var);
+        if (ids != null) {
+            index(index, replacement).addAll(ids);
+            TIntIterator iter = ids.iterator();
+            while (iter.hasNext()) {
+                enqueue(iter.next());
+            }
+        }
+    }
+
+    private IrIntVar find(IrIntVar var) {
+        IrIntVar parent = coalescedInts.get(var);
+        if (parent == null) {
+            return var;
+        }
+        IrIntVar root = find(parent);
+        if (root != parent) {
+            coalescedInts.put(var, root);
+        }
+        return root;
+    }
+
+    private IrSetVar find(IrSetVar var) {
+        IrSetVar parent = coalescedSets.get(var);
+        if (parent == null) {
+            return var;
+        }
+        IrSetVar root = find(parent);
+        if (root != parent) {
+            coalescedSets.put(var, root);
+        }
+        return root;
+    }
+
+    private class SubstituteRewriter extends IrRewriter<Void> {
+
+        @Override
+        public IrBoolExpr visit(IrBoolVar ir, Void a) {
+            return (IrBoolVar) find(ir);
+        }
+
+        @Override
+        public IrIntExpr visit(IrIntVar ir, Void a) {
+            return find(ir);
+        }
+
+        @Override
+        public IrSetExpr visit(IrSetVar ir, Void a) {
+            return find(ir);
+        }
+    }
+
+    private static class CoalesceRewriter extends IrRewriter<Void> {
+
+        private final Map<IrIntVar, IrIntVar> coalescedInts;
+        private final Map<IrSetVar, IrSetVar> coalescedSets;
+
+        CoalesceRewriter(Map<IrIntVar, IrIntVar> coalescedInts, Map<IrSetVar, IrSetVar> coalescedSets) {
+            this.coalescedInts = coalescedInts;
+            this.coalescedSets = coalescedSets;
+        }
+
+        @Override
+        public IrBoolExpr visit(IrBoolVar ir, Void a) {
+            IrBoolVar var = (IrBoolVar) coalescedInts.get(ir);
+            return var == null ? ir : var;
+        }
+
+        @Override
+        public IrIntExpr visit(IrIntVar ir, Void a) {
+            IrIntVar var = coalescedInts.get(ir);
+            return var == null ? ir : var;
+        }
+
+        @Override
+        public IrSetExpr visit(IrSetVar ir, Void a) {
+            IrSetVar var = coalescedSets.get(ir);
+            return var == null ? ir : var;
+        }
+    }
+}
@@ -62,7 +62,7 @@ public class Optimizer {
                     }
                 }
             }
-            return lone(operands);
+            return operands == ir.getOperands() ? ir : lone(operands);
         }
 
         @Override
@@ -92,7 +92,7 @@ public class Optimizer {
                     }
                 }
             }
-            return or(operands);
+            return operands == ir.getOperands() ? ir : or(operands);
         }
 
         @Override
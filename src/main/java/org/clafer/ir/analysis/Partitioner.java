@@ -0,0 +1,137 @@
+package org.clafer.ir.analysis;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.clafer.collection.Pair;
+import org.clafer.ir.IrAnd;
+import org.clafer.ir.IrBoolExpr;
+import org.clafer.ir.IrBoolVar;
+import org.clafer.ir.IrCompare;
+import org.clafer.ir.IrIfOnlyIf;
+import org.clafer.ir.IrIntVar;
+import org.clafer.ir.IrMember;
+import org.clafer.ir.IrModule;
+import org.clafer.ir.IrNot;
+import org.clafer.ir.IrSetTest;
+import org.clafer.ir.IrSetVar;
+import org.clafer.ir.IrSubsetEq;
+
+/**
+ * <p>
+ * Splits off the constraints that the whole-module passes cannot change. The
+ * {@link IncrementalCoalescer}, {@link BoundsPropagator}, and
+ * {@link DeadCodeEliminator} only act on a few kinds of constraints at the top
+ * level, for example equalities. Once they replace a variable, every
+ * constraint the variable appears in changes too, and might turn into one of
+ * those kinds.
+ * </p>
+ * <p>
+ * The constraints are grouped into components that share variables. A
+ * component without any constraint the passes act on is independent, none of
+ * its variables can ever be replaced. The independent constraints skip the
+ * passes, so the passes only rewrite the rest of the module. This saves time,
+ * not memory. The independent constraints are still held until the module is
+ * posted, since an optimized module is posted to many solvers.
+ * </p>
+ *
+ * @author jimmy
+ */
+public class Partitioner {
+
+    private Partitioner() {
+    }
+
+    /**
+     * Split the module.
+     *
+     * @param module the module
+     * @return the independent constraints and the rest
+     */
+    public static Pair<IrModule, IrModule> partition(IrModule module) {
+        List<IrBoolExpr> constraints = module.getConstraints();
+        int[] parent = new int[constraints.size()];
+        Map<IrIntVar, Integer> intOwners = new HashMap<IrIntVar, Integer>();
+        Map<IrSetVar, Integer> setOwners = new HashMap<IrSetVar, Integer>();
+        for (int i = 0; i < parent.length; i++) {
+            parent[i] = i;
+            VariableCollector collector = new VariableCollector();
+            collector.rewrite(constraints.get(i), null);
+            for (IrIntVar var : collector.getInts()) {
+                union(parent, i, owner(intOwners, var, i));
+            }
+            for (IrSetVar var : collector.getSets()) {
+                union(parent, i, owner(setOwners, var, i));
+            }
+        }
+        BitSet global = new BitSet(parent.length);
+        for (int i = 0; i < parent.length; i++) {
+            if (isGlobal(constraints.get(i))) {
+                global.set(find(parent, i));
+            }
+        }
+        IrModule independent = new IrModule();
+        IrModule rest = new IrModule();
+        for (int i = 0; i < parent.length; i++) {
+            if (global.get(find(parent, i))) {
+                rest.addConstraint(constraints.get(i));
+            } else {
+                independent.addConstraint(constraints.get(i));
+            }
+        }
+        if (independent.getConstraints().isEmpty()) {
+            return new Pair<IrModule, IrModule>(independent, module);
+        }
+        return new Pair<IrModule, IrModule>(independent, rest);
+    }
+
+    /**
+     * Checks if one of the whole-module passes might act on the constraint.
+     * Must be updated whenever a pass learns a new pattern. Nops are not
+     * included, removing a nop never changes the other constraints so the
+     * independent constraints can still go through dead code elimination.
+     */
+    private static boolean isGlobal(IrBoolExpr constraint) {
+        return constraint instanceof IrCompare
+                || constraint instanceof IrIfOnlyIf
+                || constraint instanceof IrBoolVar
+                || constraint instanceof IrNot
+                || constraint instanceof IrSetTest
+                || constraint instanceof IrMember
+                || constraint instanceof IrSubsetEq
+                || constraint instanceof IrAnd;
+    }
+
+    private static <T> int owner(Map<T, Integer> owners, T var, int id) {
+        Integer owner = owners.get(var);
+        if (owner == null) {
+            owners.put(var, id);
+            return id;
+        }
+        return owner.intValue();
+    }
+
+    private static int find(int[] parent, int i) {
+        int root = i;
+        while (parent[root] != root) {
+            root = parent[root];
+        }
+        // Path compression.
+        int cur = i;
+        while (parent[cur] != root) {
+            int next = parent[cur];
+            parent[cur] = root;
+            cur = next;
+        }
+        return root;
+    }
+
+    private static void union(int[] parent, int i, int j) {
+        int rootI = find(parent, i);
+        int rootJ = find(parent, j);
+        if (rootI != rootJ) {
+            parent[rootI] = rootJ;
+        }
+    }
+}
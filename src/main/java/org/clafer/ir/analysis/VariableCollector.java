@@ -0,0 +1,89 @@
+package org.clafer.ir.analysis;
+
+import java.util.HashSet;
+import java.util.Set;
+import org.clafer.ir.IrBoolExpr;
+import org.clafer.ir.IrBoolVar;
+import org.clafer.ir.IrDiv;
+import org.clafer.ir.IrElement;
+import org.clafer.ir.IrIntExpr;
+import org.clafer.ir.IrIntVar;
+import org.clafer.ir.IrJoinFunction;
+import org.clafer.ir.IrRewriter;
+import org.clafer.ir.IrSetExpr;
+import org.clafer.ir.IrSetVar;
+import org.clafer.ir.IrUtil;
+
+/**
+ * Collects the variables in the expressions it rewrites. Constants are not
+ * collected. The expressions are returned unchanged.
+ *
+ * @author jimmy
+ */
+class VariableCollector extends IrRewriter<Void> {
+
+    private final Set<IrIntVar> ints = new HashSet<IrIntVar>();
+    private final Set<IrSetVar> sets = new HashSet<IrSetVar>();
+    private boolean partial = false;
+
+    Set<IrIntVar> getInts() {
+        return ints;
+    }
+
+    Set<IrSetVar> getSets() {
+        return sets;
+    }
+
+    /**
+     * Returns {@code true} if any of the expressions is undefined for some
+     * values of its operands, for example division by zero or an element
+     * index out of bounds. Such an expression implicitly constrains its
+     * operands.
+     *
+     * @return {@code true} if a partial expression was collected, {@code false}
+     * otherwise
+     */
+    boolean isPartial() {
+        return partial;
+    }
+
+    @Override
+    public IrBoolExpr visit(IrBoolVar ir, Void a) {
+        visit((IrIntVar) ir, a);
+        return ir;
+    }
+
+    @Override
+    public IrIntExpr visit(IrIntVar ir, Void a) {
+        if (!IrUtil.isConstant(ir)) {
+            ints.add(ir);
+        }
+        return ir;
+    }
+
+    @Override
+    public IrSetExpr visit(IrSetVar ir, Void a) {
+        if (!IrUtil.isConstant(ir)) {
+            sets.add(ir);
+        }
+        return ir;
+    }
+
+    @Override
+    public IrIntExpr visit(IrDiv ir, Void a) {
+        partial = true;
+        return super.visit(ir, a);
+    }
+
+    @Override
+    public IrIntExpr visit(IrElement ir, Void a) {
+        partial = true;
+        return super.visit(ir, a);
+    }
+
+    @Override
+    public IrSetExpr visit(IrJoinFunction ir, Void a) {
+        partial = true;
+        return super.visit(ir, a);
+    }
+}
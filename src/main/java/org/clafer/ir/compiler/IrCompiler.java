@@ -17,10 +17,12 @@ import org.clafer.ir.IrSelectN;
 import org.clafer.ir.IrSetExpr;
 import java.util.Deque;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
+import java.util.Set;
 import org.clafer.ir.IrNot;
 import org.clafer.ir.IrSetTest;
 import org.clafer.ir.IrSingleton;
@@ -28,6 +30,7 @@ import org.clafer.ir.IrSortStrings;
 import org.clafer.ir.IrSetUnion;
 import org.clafer.ir.IrAnd;
 import org.clafer.common.Check;
+import org.clafer.common.Profile;
 import org.clafer.choco.constraint.Constraints;
 import org.clafer.collection.Pair;
 import org.clafer.collection.Triple;
@@ -56,6 +59,7 @@ import org.clafer.ir.IrIntNop;
 import org.clafer.ir.IrIntVar;
 import org.clafer.ir.IrLone;
 import org.clafer.ir.IrMinus;
+import org.clafer.ir.IrIdFactory;
 import org.clafer.ir.IrModule;
 import org.clafer.ir.IrMul;
 import org.clafer.ir.IrOffset;
@@ -72,12 +76,15 @@ import org.clafer.ir.IrSub;
 import org.clafer.ir.IrSubsetEq;
 import org.clafer.ir.IrTernary;
 import org.clafer.ir.IrUtil;
+import org.clafer.ir.IrVar;
 import org.clafer.ir.IrXor;
 import org.clafer.ir.analysis.AnalysisUtil;
 import org.clafer.ir.analysis.Canonicalizer;
-import org.clafer.ir.analysis.CardinalityPropagator;
-import org.clafer.ir.analysis.Coalescer;
+import org.clafer.ir.analysis.CommonSubexpressionEliminator;
+import org.clafer.ir.analysis.DeadCodeEliminator;
+import org.clafer.ir.analysis.IncrementalCoalescer;
 import org.clafer.ir.analysis.Optimizer;
+import org.clafer.ir.analysis.Partitioner;
 import solver.Solver;
 import solver.constraints.ICF;
 import solver.constraints.Operator;
@@ -94,51 +101,201 @@ import solver.variables.VF;
 public class IrCompiler {
 
     private final Solver solver;
+    // Null if the Choco variables have readable names. Otherwise, the variable
+    // named "_i" was compiled from the i'th origin.
+    private final List<Object> origins;
     private int varNum = 0;
 
-    private IrCompiler(Solver solver) {
+    private IrCompiler(Solver solver, boolean leanNames) {
         this.solver = Check.notNull(solver);
+        this.origins = leanNames ? new ArrayList<Object>() : null;
     }
 
     public static IrSolutionMap compile(IrModule in, Solver out) {
-        IrCompiler compiler = new IrCompiler(out);
-        return compiler.compile(in);
-    }
-
-    private IrSolutionMap compile(IrModule module) {
-        IrModule optModule = Optimizer.optimize(Canonicalizer.canonical(module));
-
-        Triple<Map<IrIntVar, IrIntVar>, Map<IrSetVar, IrSetVar>, IrModule> coalesceTriple = Coalescer.coalesce(optModule);
+        return compile(optimize(in), out);
+    }
+
+    /**
+     * Run the optimization passes without posting anything to Choco. The
+     * result can be posted to many solvers.
+     *
+     * @param in the module to optimize
+     * @return the optimized module
+     */
+    public static IrOptimizedModule optimize(IrModule in) {
+        return optimize(in, null, null);
+    }
+
+    /**
+     * Run the optimization passes without posting anything to Choco, and
+     * remove the variables that cannot affect the live variables. Only the
+     * live variables, and the variables in constraints added later, can be
+     * read after solving.
+     *
+     * @param in the module to optimize
+     * @param liveInts the integer variables read after solving
+     * @param liveSets the set variables read after solving
+     * @return the optimized module
+     */
+    public static IrOptimizedModule optimize(IrModule in, Set<IrIntVar> liveInts, Set<IrSetVar> liveSets) {
+        return optimize(in, liveInts, liveSets, new Profile());
+    }
+
+    /**
+     * Run the optimization passes, recording the time spent in each pass.
+     *
+     * @param in the module to optimize
+     * @param liveInts the integer variables read after solving, or
+     * {@code null} to keep every variable
+     * @param liveSets the set variables read after solving, or {@code null} to
+     * keep every variable
+     * @param profile the profile to record to
+     * @return the optimized module
+     */
+    public static IrOptimizedModule optimize(IrModule in, Set<IrIntVar> liveInts, Set<IrSetVar> liveSets, Profile profile) {
+        // The passes create variables for the module.
+        IrIdFactory previous = IrIdFactory.bind(in.getIdFactory());
+        try {
+            return doOptimize(in, liveInts, liveSets, profile);
+        } finally {
+            IrIdFactory.bind(previous);
+        }
+    }
+
+    private static IrOptimizedModule doOptimize(IrModule in, Set<IrIntVar> liveInts, Set<IrSetVar> liveSets, Profile profile) {
+        Profile.Timer timer = profile.start("Canonicalizer");
+        IrModule optModule = Canonicalizer.canonical(in);
+        timer.stop();
+
+        timer = profile.start("Optimizer");
+        optModule = Optimizer.optimize(optModule);
+        timer.stop();
+
+        // Only the rest of the module goes through the whole-module passes.
+        // The independent constraints are not posted yet, the optimized
+        // module can be cached and posted to other solvers later.
+        timer = profile.start("Partitioner");
+        Pair<IrModule, IrModule> partition = Partitioner.partition(optModule);
+        IrModule independent = partition.getFst();
+        optModule = partition.getSnd();
+        timer.stop();
+
+        timer = profile.start("IncrementalCoalescer");
+        Triple<Map<IrIntVar, IrIntVar>, Map<IrSetVar, IrSetVar>, IrModule> coalesceTriple = IncrementalCoalescer.coalesce(optModule);
         Map<IrIntVar, IrIntVar> coalescedIntVars = coalesceTriple.getFst();
         Map<IrSetVar, IrSetVar> coalescedSetVars = coalesceTriple.getSnd();
-        Pair<Map<IrSetVar, IrSetVar>, IrModule> propagatedPair = CardinalityPropagator.propagate(coalesceTriple.getThd());
-        coalescedSetVars = compose(coalescedSetVars, propagatedPair.getFst());
-        optModule = propagatedPair.getSnd();
-
-        while (!coalesceTriple.getFst().isEmpty()
-                || !coalesceTriple.getSnd().isEmpty()
-                || !propagatedPair.getFst().isEmpty()) {
-            coalesceTriple = Coalescer.coalesce(optModule);
-            coalescedIntVars = compose(coalescedIntVars, coalesceTriple.getFst());
-            coalescedSetVars = compose(coalescedSetVars, coalesceTriple.getSnd());
-            propagatedPair = CardinalityPropagator.propagate(coalesceTriple.getThd());
-            coalescedSetVars = compose(coalescedSetVars, propagatedPair.getFst());
-            optModule = propagatedPair.getSnd();
-        }
-
-        List<IrBoolExpr> constraints = new ArrayList<IrBoolExpr>(optModule.getConstraints().size());
-        for (IrBoolExpr constraint : optModule.getConstraints()) {
-            Pair<IrIntExpr, IrSetVar> cardinality = AnalysisUtil.getAssignCardinality(constraint);
-            if (cardinality != null) {
-                IntVar leftInt = compile(cardinality.getFst());
-                SetVar rightSet = getSetVar(cardinality.getSnd());
-
-                post(SCF.cardinality(rightSet, leftInt));
-                assert !setCardVars.containsKey(rightSet);
-                setCardVars.put(rightSet, leftInt);
-            } else {
-                constraints.add(constraint);
-            }
+        optModule = coalesceTriple.getThd();
+        timer.stop();
+
+        if (liveInts != null && liveSets != null) {
+            timer = profile.start("DeadCodeEliminator");
+            Set<IrIntVar> coalescedLiveInts = coalesce(liveInts, coalescedIntVars);
+            Set<IrSetVar> coalescedLiveSets = coalesce(liveSets, coalescedSetVars);
+            optModule = DeadCodeEliminator.eliminate(optModule, coalescedLiveInts, coalescedLiveSets);
+            independent = DeadCodeEliminator.eliminate(independent, coalescedLiveInts, coalescedLiveSets);
+            timer.stop();
+        }
+
+        timer = profile.start("CommonSubexpressionEliminator");
+        optModule = CommonSubexpressionEliminator.eliminate(
+                new IrModule().addConstraints(optModule.getConstraints())
+                .addConstraints(independent.getConstraints()));
+        timer.stop();
+
+        profile.count("IR constraints", optModule.getConstraints().size());
+        profile.count("IR coalesced variables", coalescedIntVars.size() + coalescedSetVars.size());
+        return new IrOptimizedModule(optModule, coalescedIntVars, coalescedSetVars, in.getIdFactory());
+    }
+
+    private static <T> Set<T> coalesce(Set<T> vars, Map<T, T> coalesced) {
+        Set<T> coalescedVars = new HashSet<T>(vars.size());
+        for (T var : vars) {
+            T coalescedVar = coalesced.get(var);
+            coalescedVars.add(coalescedVar == null ? var : coalescedVar);
+        }
+        return coalescedVars;
+    }
+
+    public static IrSolutionMap compile(IrOptimizedModule in, Solver out) {
+        return compile(in, new IrModule(in.getIdFactory().fork()), out);
+    }
+
+    /**
+     * Post an optimized module along with extra constraints. The extra
+     * constraints were not part of the module when it was optimized, so
+     * variables that have been coalesced away are replaced first. The
+     * variables of the extra constraints should be created from a
+     * {@link IrIdFactory#fork() fork} of the identifiers of the optimized
+     * module.
+     *
+     * @param in the optimized module
+     * @param layer the extra constraints
+     * @param out the solver
+     * @return the mapping from IR to Choco variables
+     */
+    public static IrSolutionMap compile(IrOptimizedModule in, IrModule layer, Solver out) {
+        return compile(in, layer, out, false);
+    }
+
+    /**
+     * Post an optimized module along with extra constraints.
+     *
+     * @param in the optimized module
+     * @param layer the extra constraints
+     * @param out the solver
+     * @param leanNames name the Choco variables by number rather than by the
+     * IR variables they were compiled from
+     * @return the mapping from IR to Choco variables
+     * @see IrSolutionMap#getDebugName
+     */
+    public static IrSolutionMap compile(IrOptimizedModule in, IrModule layer, Solver out, boolean leanNames) {
+        return compile(in, layer, out, leanNames, new Profile());
+    }
+
+    /**
+     * Post an optimized module along with extra constraints, recording the
+     * time spent posting and the size of the Choco model.
+     *
+     * @param in the optimized module
+     * @param layer the extra constraints
+     * @param out the solver
+     * @param leanNames name the Choco variables by number rather than by the
+     * IR variables they were compiled from
+     * @param profile the profile to record to
+     * @return the mapping from IR to Choco variables
+     */
+    public static IrSolutionMap compile(IrOptimizedModule in, IrModule layer, Solver out, boolean leanNames, Profile profile) {
+        Profile.Timer timer = profile.start("IrCompiler");
+        IrCompiler compiler = new IrCompiler(out, leanNames);
+        IrIdFactory previous = IrIdFactory.bind(layer.getIdFactory());
+        IrSolutionMap solution;
+        try {
+            solution = compiler.compile(in, layer);
+        } finally {
+            IrIdFactory.bind(previous);
+        }
+        timer.stop();
+
+        int propagators = 0;
+        for (Constraint constraint : out.getCstrs()) {
+            propagators += constraint.getPropagators().length;
+        }
+        profile.count("Choco variables", out.getNbVars());
+        profile.count("Choco constraints", out.getNbCstrs());
+        profile.count("Choco propagators", propagators);
+        return solution;
+    }
+
+    private IrSolutionMap compile(IrOptimizedModule optModule, IrModule layer) {
+        Map<IrIntVar, IrIntVar> coalescedIntVars = optModule.getCoalescedIntVars();
+        Map<IrSetVar, IrSetVar> coalescedSetVars = optModule.getCoalescedSetVars();
+
+        List<IrBoolExpr> constraints = new ArrayList<IrBoolExpr>(optModule.getModule().getConstraints().size());
+        addConstraints(optModule.getModule(), constraints);
+        if (!layer.getConstraints().isEmpty()) {
+            addConstraints(Optimizer.optimize(
+                    IncrementalCoalescer.rewrite(layer, coalescedIntVars, coalescedSetVars)),
+                    constraints);
         }
         for (IrBoolExpr constraint : constraints) {
             Constraint compiled = compileAsConstraint(constraint);
@@ -149,41 +306,66 @@ public class IrCompiler {
         return new IrSolutionMap(
                 solver,
                 coalescedIntVars, intVarMap,
-                coalescedSetVars, setVarMap);
+                coalescedSetVars, setVarMap,
+                setCardVars,
+                origins);
     }
 
-    private static <T> Map<T, T> compose(Map<T, T> f1, Map<T, T> f2) {
-        if (f2.isEmpty()) {
-            return f1;
-        }
-        Map<T, T> composed = new HashMap<T, T>(f2);
-        for (Entry<T, T> e : f1.entrySet()) {
-            T key = e.getKey();
-            T value = f2.get(e.getValue());
-            if (value == null) {
-                value = e.getValue();
+    /**
+     * Posts the cardinality assignments immediately and collects the rest.
+     */
+    private void addConstraints(IrModule module, List<IrBoolExpr> constraints) {
+        for (IrBoolExpr constraint : module.getConstraints()) {
+            Pair<IrIntExpr, IrSetVar> cardinality = AnalysisUtil.getAssignCardinality(constraint);
+            if (cardinality != null) {
+                IntVar leftInt = compile(cardinality.getFst());
+                SetVar rightSet = getSetVar(cardinality.getSnd());
+
+                post(SCF.cardinality(rightSet, leftInt));
+                assert !setCardVars.containsKey(rightSet);
+                setCardVars.put(rightSet, leftInt);
+            } else {
+                constraints.add(constraint);
             }
-            composed.put(key, value);
         }
-        return composed;
     }
 
     private void post(Constraint constraint) {
         solver.post(constraint);
     }
     
-    private BoolVar boolVar(String name, IrBoolDomain domain) {
+    /**
+     * Name a new Choco variable. The origin is either the IR variable it is
+     * compiled from, the set variable it is the cardinality of, or the kind of
+     * intermediate variable. In lean mode, only the origin is remembered and
+     * the readable name is built on demand.
+     */
+    private String name(Object origin) {
+        if (origins != null) {
+            origins.add(origin);
+            return "_" + (origins.size() - 1);
+        }
+        if (origin instanceof IrVar) {
+            return ((IrVar) origin).getName();
+        }
+        if (origin instanceof SetVar) {
+            return "|" + ((SetVar) origin).getName() + "|";
+        }
+        return origin + "#" + varNum++;
+    }
+
+    private BoolVar boolVar(Object origin, IrBoolDomain domain) {
         switch (domain) {
             case TrueDomain:
                 return VF.one(solver);
             case FalseDomain:
                 return VF.zero(solver);
             default:
-                return VF.bool(name, solver);
+                return VF.bool(name(origin), solver);
         }
     }
 
-    private IntVar intVar(String name, IrDomain domain) {
+    private IntVar intVar(Object origin, IrDomain domain) {
         if (domain.size() == 1) {
             int constant = domain.getLowBound();
             switch (domain.getLowBound()) {
@@ -196,25 +378,25 @@ public class IrCompiler {
             }
         }
         if (domain.getLowBound() == 0 && domain.getHighBound() == 1) {
-            return VF.bool(name, solver);
+            return VF.bool(name(origin), solver);
         }
         if (domain.isBounded()) {
-            return VF.enumerated(name, domain.getLowBound(), domain.getHighBound(), solver);
+            return VF.enumerated(name(origin), domain.getLowBound(), domain.getHighBound(), solver);
         }
-        return VF.enumerated(name, domain.getValues(), solver);
+        return VF.enumerated(name(origin), domain.getValues(), solver);
     }
 
-    private SetVar setVar(String name, IrDomain env, IrDomain ker) {
+    private SetVar setVar(Object origin, IrDomain env, IrDomain ker) {
         assert IrUtil.isSubsetOf(ker, env);
         if (env.size() == ker.size()) {
             int[] values = ker.getValues();
-            return VF.set(name, values, values, solver);
+            return VF.set(name(origin), values, values, solver);
         }
-        return VF.set(name, env.getValues(), ker.getValues(), solver);
+        return VF.set(name(origin), env.getValues(), ker.getValues(), solver);
     }
 
-    private CSet cset(String name, IrDomain env, IrDomain ker, IrDomain card) {
-        SetVar set = setVar(name, env, ker);
+    private CSet cset(Object origin, IrDomain env, IrDomain ker, IrDomain card) {
+        SetVar set = setVar(origin, env, ker);
         return new CSet(set, card);
     }
     private final Map<SetVar, IntVar> setCardVars = new HashMap<SetVar, IntVar>();
@@ -222,7 +404,7 @@ public class IrCompiler {
     private IntVar setCardVar(SetVar set, IrDomain card) {
         IntVar setCardVar = setCardVars.get(set);
         if (setCardVar == null) {
-            setCardVar = intVar("|" + set.getName() + "|", card);
+            setCardVar = intVar(set, card);
             if (!(set.instantiated() && card.size() == 1 && card.getLowBound() == set.getKernelSize())) {
                 post(SCF.cardinality(set, setCardVar));
             }
@@ -232,25 +414,25 @@ public class IrCompiler {
     }
 
     private BoolVar numBoolVar(String name) {
-        return boolVar(name + "#" + varNum++, IrBoolDomain.BoolDomain);
+        return boolVar(name, IrBoolDomain.BoolDomain);
     }
 
     private IntVar numIntVar(String name, IrDomain domain) {
-        return intVar(name + "#" + varNum++, domain);
+        return intVar(name, domain);
     }
 
     private SetVar numSetVar(String name, IrDomain env, IrDomain ker) {
-        return setVar(name + "#" + varNum++, env, ker);
+        return setVar(name, env, ker);
     }
 
     private CSet numCset(String name, IrDomain env, IrDomain ker, IrDomain card) {
-        return cset(name + "#" + varNum++, env, ker, card);
+        return cset(name, env, ker, card);
     }
 
     private BoolVar getBoolVar(IrBoolVar var) {
         BoolVar bool = (BoolVar) intVarMap.get(var);
         if (bool == null) {
-            bool = boolVar(var.getName(), var.getDomain());
+            bool = boolVar(var, var.getDomain());
             intVarMap.put(var, bool);
         }
         return bool;
@@ -259,7 +441,7 @@ public class IrCompiler {
     private IntVar getIntVar(IrIntVar var) {
         IntVar iint = intVarMap.get(var);
         if (iint == null) {
-            iint = intVar(var.getName(), var.getDomain());
+            iint = intVar(var, var.getDomain());
             intVarMap.put(var, iint);
         }
         return iint;
@@ -269,7 +451,7 @@ public class IrCompiler {
     private SetVar getSetVar(IrSetVar var) {
         SetVar set = setVarMap.get(var);
         if (set == null) {
-            set = setVar(var.getName(), var.getEnv(), var.getKer());
+            set = setVar(var, var.getEnv(), var.getKer());
             setVarMap.put(var, set);
         }
         return set;
@@ -288,8 +470,22 @@ public class IrCompiler {
     }
 
     private BoolVar compileAsBoolVar(IrBoolExpr expr) {
-        return asBoolVar(expr.accept(boolExprCompiler, BoolVarNoReify));
-    }
+        BoolVar var = boolExprCache.get(expr);
+        if (var == null) {
+            var = asBoolVar(expr.accept(boolExprCompiler, BoolVarNoReify));
+            boolExprCache.put(expr, var);
+        }
+        return var;
+    }
+    /*
+     * The common subexpression eliminator makes equal expressions the same
+     * object, so the caches only need to compare identity. Each shared
+     * expression is compiled to one variable no matter how many times it is
+     * used.
+     */
+    private final Map<IrBoolExpr, BoolVar> boolExprCache = new IdentityHashMap<IrBoolExpr, BoolVar>();
+    private final Map<IrIntExpr, IntVar> intExprCache = new IdentityHashMap<IrIntExpr, IntVar>();
+    private final Map<IrSetExpr, CSet> setExprCache = new IdentityHashMap<IrSetExpr, CSet>();
 
     private BoolVar[] compileAsBoolVars(IrBoolExpr[] exprs) {
         BoolVar[] vars = new BoolVar[exprs.length];
@@ -300,7 +496,7 @@ public class IrCompiler {
     }
 
     private IntVar compileAsIntVar(IrBoolExpr expr) {
-        return asBoolVar(expr.accept(boolExprCompiler, BoolVarNoReify));
+        return compileAsBoolVar(expr);
     }
 
     private IntVar[] compileAsIntVars(IrBoolExpr[] exprs) {
@@ -368,7 +564,12 @@ public class IrCompiler {
     }
 
     private IntVar compile(IrIntExpr expr) {
-        return (IntVar) expr.accept(intExprCompiler, null);
+        IntVar var = intExprCache.get(expr);
+        if (var == null) {
+            var = (IntVar) expr.accept(intExprCompiler, null);
+            intExprCache.put(expr, var);
+        }
+        return var;
     }
 
     private Object compile(IrIntExpr expr, IntVar reify) {
@@ -384,7 +585,12 @@ public class IrCompiler {
     }
 
     private CSet compile(IrSetExpr expr) {
-        return (CSet) expr.accept(setExprCompiler, null);
+        CSet set = setExprCache.get(expr);
+        if (set == null) {
+            set = (CSet) expr.accept(setExprCompiler, null);
+            setExprCache.put(expr, set);
+        }
+        return set;
     }
 
     private CSet[] compile(IrSetExpr[] exprs) {
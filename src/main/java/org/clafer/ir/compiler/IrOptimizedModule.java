@@ -0,0 +1,78 @@
+package org.clafer.ir.compiler;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.Map;
+import org.clafer.common.Check;
+import org.clafer.ir.IrIdFactory;
+import org.clafer.ir.IrIntVar;
+import org.clafer.ir.IrModule;
+import org.clafer.ir.IrSetVar;
+
+/**
+ * The result of running the IR optimization passes over a module, before
+ * anything is posted to Choco. The IR is immutable so the same optimized module
+ * can be posted to any number of solvers.
+ *
+ * @author jimmy
+ */
+public class IrOptimizedModule implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final IrModule module;
+    private final Map<IrIntVar, IrIntVar> coalescedIntVars;
+    private final Map<IrSetVar, IrSetVar> coalescedSetVars;
+    private final IrIdFactory idFactory;
+
+    IrOptimizedModule(IrModule module,
+            Map<IrIntVar, IrIntVar> coalescedIntVars,
+            Map<IrSetVar, IrSetVar> coalescedSetVars,
+            IrIdFactory idFactory) {
+        this.module = Check.notNull(module);
+        this.coalescedIntVars = Check.notNull(coalescedIntVars);
+        this.coalescedSetVars = Check.notNull(coalescedSetVars);
+        this.idFactory = Check.notNull(idFactory);
+    }
+
+    /**
+     * Returns the optimized module.
+     *
+     * @return the optimized module
+     */
+    public IrModule getModule() {
+        return module;
+    }
+
+    /**
+     * Returns the mapping from the original integer variables to the variables
+     * they were coalesced into.
+     *
+     * @return the coalesced integer variables
+     */
+    public Map<IrIntVar, IrIntVar> getCoalescedIntVars() {
+        return Collections.unmodifiableMap(coalescedIntVars);
+    }
+
+    /**
+     * Returns the mapping from the original set variables to the variables they
+     * were coalesced into.
+     *
+     * @return the coalesced set variables
+     */
+    public Map<IrSetVar, IrSetVar> getCoalescedSetVars() {
+        return Collections.unmodifiableMap(coalescedSetVars);
+    }
+
+    /**
+     * Returns the factory the variables of the module were created from.
+     * Constraints added when posting should create their variables from a
+     * {@link IrIdFactory#fork() fork}, so that every posting numbers its
+     * variables after the module.
+     *
+     * @return the identifier factory
+     */
+    public IrIdFactory getIdFactory() {
+        return idFactory;
+    }
+}
@@ -1,16 +1,20 @@
 package org.clafer.ir.compiler;
 
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import org.clafer.ir.IrBoolConstant;
+import java.util.Map.Entry;
 import org.clafer.ir.IrBoolVar;
-import org.clafer.ir.IrIntConstant;
+import org.clafer.ir.IrException;
 import org.clafer.ir.IrIntVar;
-import org.clafer.ir.IrSetConstant;
 import org.clafer.ir.IrSetVar;
+import org.clafer.ir.IrUtil;
+import org.clafer.ir.IrVar;
 import solver.Solver;
 import solver.variables.BoolVar;
 import solver.variables.IntVar;
 import solver.variables.SetVar;
+import solver.variables.Variable;
 
 /**
  * Maps IR non-constant variables to their translated Choco variables. The
@@ -22,44 +26,117 @@ import solver.variables.SetVar;
 public class IrSolutionMap {
 
     private final Solver solver;
-    public final Map<IrIntVar, IrIntVar> coalescedIntVars;
-    public final Map<IrIntVar, IntVar> intVars;
-    private final Map<IrSetVar, IrSetVar> coalescedSetVars;
-    private final Map<IrSetVar, SetVar> setVars;
+    private final Map<SetVar, IntVar> setCardVars;
+    // Null if the Choco variables have readable names.
+    private final List<Object> origins;
+    // The Choco variable or constant of every variable, with coalescing
+    // already resolved, so reading a value takes one array lookup.
+    private final IrVarTable<IrIntVar, Object> intTable;
+    private final IrVarTable<IrSetVar, Object> setTable;
 
     IrSolutionMap(
             Solver solver,
             Map<IrIntVar, IrIntVar> coalescedIntVars,
             Map<IrIntVar, IntVar> intVars,
             Map<IrSetVar, IrSetVar> coalescedSetVars,
-            Map<IrSetVar, SetVar> setVars) {
+            Map<IrSetVar, SetVar> setVars,
+            Map<SetVar, IntVar> setCardVars,
+            List<Object> origins) {
         this.solver = solver;
-        this.coalescedIntVars = coalescedIntVars;
-        this.intVars = intVars;
-        this.coalescedSetVars = coalescedSetVars;
-        this.setVars = setVars;
+        this.setCardVars = setCardVars;
+        this.origins = origins;
+        this.intTable = new IrVarTable<IrIntVar, Object>(resolveInts(coalescedIntVars, intVars));
+        this.setTable = new IrVarTable<IrSetVar, Object>(resolveSets(coalescedSetVars, setVars));
+    }
+
+    private static Map<IrIntVar, Object> resolveInts(
+            Map<IrIntVar, IrIntVar> coalescedIntVars, Map<IrIntVar, IntVar> intVars) {
+        Map<IrIntVar, Object> resolved = new HashMap<IrIntVar, Object>(intVars);
+        for (Entry<IrIntVar, IrIntVar> coalesced : coalescedIntVars.entrySet()) {
+            Integer constant = IrUtil.getConstant(coalesced.getValue());
+            Object value = constant != null ? constant : intVars.get(coalesced.getValue());
+            if (value != null) {
+                resolved.put(coalesced.getKey(), value);
+            }
+        }
+        return resolved;
+    }
+
+    private static Map<IrSetVar, Object> resolveSets(
+            Map<IrSetVar, IrSetVar> coalescedSetVars, Map<IrSetVar, SetVar> setVars) {
+        Map<IrSetVar, Object> resolved = new HashMap<IrSetVar, Object>(setVars);
+        for (Entry<IrSetVar, IrSetVar> coalesced : coalescedSetVars.entrySet()) {
+            int[] constant = IrUtil.getConstant(coalesced.getValue());
+            Object value = constant != null ? constant : setVars.get(coalesced.getValue());
+            if (value != null) {
+                resolved.put(coalesced.getKey(), value);
+            }
+        }
+        return resolved;
+    }
+
+    /**
+     * Returns the readable name of a Choco variable. If the model was compiled
+     * with lean names, the name is rebuilt from what the variable was compiled
+     * from. Otherwise this is the same as {@link Variable#getName()}.
+     *
+     * @param var the Choco variable
+     * @return the readable name of the variable
+     */
+    public String getDebugName(Variable var) {
+        String name = var.getName();
+        if (origins == null || !name.startsWith("_")) {
+            return name;
+        }
+        int id;
+        try {
+            id = Integer.parseInt(name.substring(1));
+        } catch (NumberFormatException e) {
+            return name;
+        }
+        if (id < 0 || id >= origins.size()) {
+            return name;
+        }
+        Object origin = origins.get(id);
+        if (origin instanceof IrVar) {
+            return ((IrVar) origin).getName();
+        }
+        if (origin instanceof Variable) {
+            return "|" + getDebugName((Variable) origin) + "|";
+        }
+        return origin + "#" + id;
+    }
+
+    /**
+     * @return the Choco variable or the constant value, or {@code null} if the
+     * variable was not compiled
+     */
+    private Object resolve(IrIntVar var) {
+        Object value = intTable.get(var);
+        // Variables can be replaced by any constant, including the boolean
+        // constants which are not IrIntConstants.
+        return value == null ? IrUtil.getConstant(var) : value;
+    }
+
+    private Object resolve(IrSetVar var) {
+        Object value = setTable.get(var);
+        return value == null ? IrUtil.getConstant(var) : value;
+    }
+
+    private static IrException notCompiled(IrVar var) {
+        return new IrException(var + " was not compiled.");
     }
 
     public BoolVar getBoolVar(IrBoolVar var) {
-        IrBoolVar boolVar = (IrBoolVar) coalescedIntVars.get(var);
-        if (boolVar == null) {
-            boolVar = var;
-        }
-        if (boolVar instanceof IrBoolConstant) {
-            return ((IrBoolConstant) boolVar).getValue() ? solver.ONE : solver.ZERO;
+        Object value = resolve(var);
+        if (value instanceof Integer) {
+            return ((Integer) value).intValue() != 0 ? solver.ONE : solver.ZERO;
         }
-        return (BoolVar) intVars.get(boolVar);
+        return (BoolVar) value;
     }
 
     public boolean getBoolValue(IrBoolVar var) {
-        IrBoolVar boolVar = (IrBoolVar) coalescedIntVars.get(var);
-        if (boolVar == null) {
-            boolVar = var;
-        }
-        if (boolVar instanceof IrBoolConstant) {
-            return ((IrBoolConstant) boolVar).getValue();
-        }
-        return intVars.get(boolVar).getValue() != 0;
+        return getIntValue(var) != 0;
     }
 
     public BoolVar[] getBoolVars(IrBoolVar... vars) {
@@ -79,22 +156,19 @@ public class IrSolutionMap {
     }
 
     public IntVar getIntVar(IrIntVar var) {
-        IrIntVar intVar = coalescedIntVars.get(var);
-        if (intVar == null) {
-            intVar = var;
-        }
-        return intVars.get(intVar);
+        Object value = intTable.get(var);
+        return value instanceof IntVar ? (IntVar) value : null;
     }
 
     public int getIntValue(IrIntVar var) {
-        IrIntVar intVar = coalescedIntVars.get(var);
-        if (intVar == null) {
-            intVar = var;
+        Object value = resolve(var);
+        if (value instanceof Integer) {
+            return ((Integer) value).intValue();
         }
-        if (intVar instanceof IrIntConstant) {
-            return ((IrIntConstant) intVar).getValue();
+        if (value == null) {
+            throw notCompiled(var);
         }
-        return intVars.get(intVar).getValue();
+        return ((IntVar) value).getValue();
     }
 
     public IntVar[] getIntVars(IrIntVar... vars) {
@@ -114,22 +188,31 @@ public class IrSolutionMap {
     }
 
     public SetVar getSetVar(IrSetVar var) {
-        IrSetVar setVar = coalescedSetVars.get(var);
-        if (setVar == null) {
-            setVar = var;
-        }
-        return setVars.get(setVar);
+        Object value = setTable.get(var);
+        return value instanceof SetVar ? (SetVar) value : null;
+    }
+
+    /**
+     * Returns the cardinality of a Choco set variable, if the cardinality was
+     * needed by a constraint.
+     *
+     * @param var the Choco set variable
+     * @return the cardinality, or {@code null} if the cardinality was not
+     * compiled
+     */
+    public IntVar getSetCardVar(SetVar var) {
+        return setCardVars.get(var);
     }
 
     public int[] getSetValue(IrSetVar var) {
-        IrSetVar setVar = coalescedSetVars.get(var);
-        if (setVar == null) {
-            setVar = var;
+        Object value = resolve(var);
+        if (value instanceof int[]) {
+            return (int[]) value;
         }
-        if (setVar instanceof IrSetConstant) {
-            return ((IrSetConstant) setVar).getValue();
+        if (value == null) {
+            throw notCompiled(var);
         }
-        return setVars.get(setVar).getValue();
+        return ((SetVar) value).getValue();
     }
 
     public SetVar[] getSetVars(IrSetVar... vars) {
@@ -0,0 +1,88 @@
+package org.clafer.ir.compiler;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import org.clafer.ir.IrVar;
+
+/**
+ * Maps variables to values with a single array lookup indexed by the
+ * identifier of the variable. The variables of one compilation have dense
+ * identifiers so the array is dense. If the array would be mostly empty, or two
+ * variables share an identifier, the table is a hash map instead.
+ *
+ * @param <K> the type of variables
+ * @param <V> the type of values
+ * @author jimmy
+ */
+class IrVarTable<K extends IrVar, V> {
+
+    // Give up on the array if it would be mostly empty.
+    private static final int MaxSparsity = 4;
+    private final int base;
+    // Null if the table is a hash map.
+    private final Object[] keys;
+    private final Object[] values;
+    // Null if the table is an array.
+    private final Map<K, V> map;
+
+    IrVarTable(Map<? extends K, ? extends V> map) {
+        int low = Integer.MAX_VALUE;
+        int high = Integer.MIN_VALUE;
+        for (K key : map.keySet()) {
+            low = Math.min(low, key.getId());
+            high = Math.max(high, key.getId());
+        }
+        long range = (long) high - low + 1;
+        Object[] keyTable = null;
+        Object[] valueTable = null;
+        if (!map.isEmpty() && range <= (long) MaxSparsity * map.size() + 1024) {
+            keyTable = new Object[(int) range];
+            valueTable = new Object[(int) range];
+            for (Entry<? extends K, ? extends V> entry : map.entrySet()) {
+                int index = entry.getKey().getId() - low;
+                if (keyTable[index] != null) {
+                    keyTable = null;
+                    valueTable = null;
+                    break;
+                }
+                keyTable[index] = entry.getKey();
+                valueTable[index] = entry.getValue();
+            }
+        }
+        this.base = low;
+        this.keys = keyTable;
+        this.values = valueTable;
+        this.map = keyTable == null ? new HashMap<K, V>(map) : null;
+    }
+
+    /**
+     * Checks if the variable is in the table.
+     *
+     * @param key the variable
+     * @return {@code true} if and only if the variable is in the table,
+     * {@code false} otherwise
+     */
+    boolean contains(K key) {
+        if (keys == null) {
+            return map.containsKey(key);
+        }
+        int index = key.getId() - base;
+        return index >= 0 && index < keys.length && keys[index] == key;
+    }
+
+    /**
+     * Returns the value of a variable.
+     *
+     * @param key the variable
+     * @return the value, or {@code null} if the variable is not in the table
+     */
+    @SuppressWarnings("unchecked")
+    V get(K key) {
+        if (keys == null) {
+            return map.get(key);
+        }
+        int index = key.getId() - base;
+        return index >= 0 && index < keys.length && keys[index] == key ? (V) values[index] : null;
+    }
+}
@@ -1,10 +1,13 @@
 package org.clafer.javascript;
 
 import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.Writer;
 import java.util.Set;
 import javax.script.Bindings;
 import javax.script.ScriptContext;
@@ -16,11 +19,19 @@ import org.clafer.ast.AstModel;
 import org.clafer.ast.AstUtil;
 import org.clafer.scope.Scope;
 import org.clafer.collection.Pair;
-import org.clafer.compiler.ClaferCompiler;
+import org.clafer.common.Profile;
+import org.clafer.compiler.ClaferBudget;
+import org.clafer.compiler.ClaferCompilerCache;
 import org.clafer.compiler.ClaferObjective;
+import org.clafer.compiler.ClaferOption;
+import org.clafer.compiler.ClaferResult;
+import org.clafer.compiler.ClaferRestartPolicy;
+import org.clafer.compiler.ClaferSearchStrategy;
 import org.clafer.compiler.ClaferSolver;
 import org.clafer.compiler.ClaferUnsat;
+import org.clafer.instance.FlatInstance;
 import org.clafer.instance.InstanceModel;
+import org.clafer.instance.InstanceVisitor;
 
 /**
  * The Javascript CLI.
@@ -40,6 +51,16 @@ public class JavascriptShell {
     private ClaferSolver solver;
     // The last file successfully loaded.
     private File modelFile;
+    // Compiled models shared between the different kinds of queries.
+    private final ClaferCompilerCache compilerCache = new ClaferCompilerCache();
+    // The time spent reading the last file successfully loaded.
+    private Profile.Phase loadPhase;
+    // The profile of the previous query. Null if no query yet.
+    private Profile profile;
+    // The options for every query, including the search strategy.
+    private ClaferOption option = ClaferOption.Default;
+    // The limits on every query.
+    private ClaferBudget budget = ClaferBudget.Unlimited;
 
     public void init() throws ScriptException {
         engine.put("rsc", this);
@@ -55,10 +76,15 @@ public class JavascriptShell {
                 + "load()           reload the model\n"
                 + "load(filename)   load a new model\n"
                 + "solve()          find the next solution\n"
+                + "all(limit, file) write up to limit solutions to file\n"
                 + "maximize(Clafer) find a solution where Clafer.ref is maximal\n"
                 + "minimize(Clafer) find a solution where Clafer.ref is minimal\n"
                 + "minUnsat()       find the smallest set of unsatisfiable constraints and a near-miss\n"
                 + "unsatCore()      find a small set of mutually unsatisfiable constraints\n"
+                + "strategy(name)   search with default, topDown, domOverWDeg, activity, or objectiveFirst\n"
+                + "restarts(name)   restart with luby, geometric, or none\n"
+                + "limits(ms, nodes, fails, solutions) limit every query, 0 for no limit\n"
+                + "profile()        display the time spent in each phase of the previous query\n"
                 + "exit()           stop the session");
     }
 
@@ -82,7 +108,7 @@ public class JavascriptShell {
             return "No model. Use \"load(filename)\" to load in a new model.";
         }
         if (initial) {
-            return ClaferCompiler.compile(model, scope).getInternalSolver().toString();
+            return compilerCache.compile(model, scope, option).getInternalSolver().toString();
         }
         if (solver == null) {
             return "Solve an instance first. Try \"solve()\".";
@@ -90,6 +116,22 @@ public class JavascriptShell {
         return solver.getInternalSolver().toString() + "\n" + solver.getInternalSolver().getMeasures();
     }
 
+    /**
+     * Returns the time spent loading the model and compiling the previous
+     * query, phase by phase, along with the size of the compiled CSP.
+     *
+     * @return information for profiling
+     */
+    public String profile() {
+        if (model == null) {
+            return "No model. Use \"load(filename)\" to load in a new model.";
+        }
+        if (profile == null) {
+            return "Run a query first. Try \"solve()\".";
+        }
+        return loadPhase + "\n" + profile;
+    }
+
     /**
      * Execute Javascript.
      *
@@ -139,10 +181,15 @@ public class JavascriptShell {
         model = null;
         scope = null;
         solver = null;
+        loadPhase = null;
+        profile = null;
+        compilerCache.clear();
         Bindings bindings = engine.getBindings(ScriptContext.ENGINE_SCOPE);
         try {
             engine.setBindings(engine.createBindings(), ScriptContext.ENGINE_SCOPE);
+            Profile.Timer timer = new Profile().start("Load (Rhino)");
             Pair<AstModel, Scope> pair = Javascript.readModel(file, engine);
+            loadPhase = timer.stop();
             model = pair.getFst();
             scope = pair.getSnd();
         } catch (FileNotFoundException e) {
@@ -160,32 +207,167 @@ public class JavascriptShell {
 
     /**
      * Find the first instance or next instances upon subsequent invocations.
+     * Under {@link #limits(long, long, long, long) limits}, returns whether
+     * the limits were hit along with the instance. A search cut off by the
+     * limits cannot be resumed, so the next call starts over.
      *
      * @return an instance
      */
-    public InstanceModel solve() {
+    public Object solve() {
         if (solver == null) {
             if (model == null) {
                 throw new JavascriptException("No model. Use \"load(filename)\" to load in a new model.");
             }
-            solver = ClaferCompiler.compile(model, scope);
+            solver = compilerCache.compile(model, scope, option);
+            profile = solver.getProfile();
+        }
+        if (!budget.isUnlimited()) {
+            ClaferResult<InstanceModel> result = solver.find(budget);
+            if (ClaferResult.Status.TimedOut.equals(result.getStatus())) {
+                // The search cannot be resumed, start over on the next call.
+                solver = null;
+            }
+            return result;
         }
         return solver.find() ? solver.instance() : null;
     }
 
+    /**
+     * Write every instance, up to the limit, to a file. The instances are
+     * written as they are solved, so there is no need to hold them all in
+     * memory. Does not affect {@link #solve()}.
+     *
+     * @param limit the most instances to write
+     * @param filename the name of the file
+     * @return a message
+     * @throws IOException an IO error occurred
+     */
+    public String all(int limit, String filename) throws IOException {
+        if (model == null) {
+            throw new JavascriptException("No model. Use \"load(filename)\" to load in a new model.");
+        }
+        ClaferSolver all = compilerCache.compile(model, scope, option);
+        profile = all.getProfile();
+        final Writer out = new BufferedWriter(new FileWriter(filename));
+        try {
+            final IOException[] error = new IOException[1];
+            int count = all.allInstances(limit, new InstanceVisitor() {
+                private int count = 0;
+
+                @Override
+                public boolean visit(FlatInstance instance) {
+                    try {
+                        out.append("=== Instance ").append(Integer.toString(++count)).append(" ===\n");
+                        instance.print(out);
+                        out.append('\n');
+                        return true;
+                    } catch (IOException e) {
+                        error[0] = e;
+                        return false;
+                    }
+                }
+            });
+            if (error[0] != null) {
+                throw error[0];
+            }
+            return "Wrote " + count + " instances to " + filename + ".";
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Search with a different strategy from the next query on. Starts
+     * {@link #solve()} over.
+     *
+     * @param name the name of the strategy
+     * @return a message
+     * @see ClaferSearchStrategy#forName(String)
+     */
+    public String strategy(String name) {
+        ClaferSearchStrategy strategy;
+        try {
+            strategy = ClaferSearchStrategy.forName(name);
+        } catch (IllegalArgumentException e) {
+            throw new JavascriptException(e.getMessage());
+        }
+        option = option.searchStrategy(strategy);
+        solver = null;
+        return "Searching with " + strategy + ".";
+    }
+
+    /**
+     * Restart the search from the next query on. Starts {@link #solve()} over.
+     *
+     * @param name "luby", "geometric", or "none"
+     * @return a message
+     */
+    public String restarts(String name) {
+        ClaferRestartPolicy policy;
+        if ("luby".equals(name)) {
+            policy = ClaferRestartPolicy.luby(100);
+        } else if ("geometric".equals(name)) {
+            policy = ClaferRestartPolicy.geometric(100, 1.5);
+        } else if ("none".equals(name)) {
+            policy = ClaferRestartPolicy.None;
+        } else {
+            throw new JavascriptException("Unknown restart policy \"" + name + "\".");
+        }
+        option = option.restartPolicy(policy);
+        solver = null;
+        return "Restarting with " + policy + ".";
+    }
+
+    /**
+     * Limit every query from the next one on. When a limit is hit, the query
+     * returns the best found so far and how far it could be from optimal.
+     * Starts {@link #solve()} over.
+     *
+     * @param timeMillis the time limit in milliseconds, 0 for no limit
+     * @param nodes the node limit, 0 for no limit
+     * @param fails the fail limit, 0 for no limit
+     * @param solutions the solution limit, 0 for no limit
+     * @return a message
+     */
+    public String limits(long timeMillis, long nodes, long fails, long solutions) {
+        ClaferBudget limits = ClaferBudget.Unlimited;
+        try {
+            if (timeMillis != 0) {
+                limits = limits.timeMillis(timeMillis);
+            }
+            if (nodes != 0) {
+                limits = limits.nodes(nodes);
+            }
+            if (fails != 0) {
+                limits = limits.fails(fails);
+            }
+            if (solutions != 0) {
+                limits = limits.solutions(solutions);
+            }
+        } catch (IllegalArgumentException e) {
+            throw new JavascriptException(e.getMessage());
+        }
+        budget = limits;
+        solver = null;
+        return "Searching with " + budget + " limits.";
+    }
+
     /**
      * Find an instance where the Clafer's value is maximal.
      *
      * @param clafer maximize this Clafer's value
      * @return the maximal value and the optimal instance
      */
-    public Pair<Integer, InstanceModel> maximize(AstClafer clafer) {
+    public Object maximize(AstClafer clafer) {
         if (!clafer.hasRef()) {
             throw new JavascriptException("Cannot maximize " + clafer + ".");
         }
-        ClaferObjective objective = ClaferCompiler.compileMaximize(model, scope, clafer.getRef());
+        ClaferObjective objective = compilerCache.compileMaximize(model, scope, clafer.getRef(), option);
+        profile = objective.getProfile();
+        if (!budget.isUnlimited()) {
+            return objective.optimal(budget);
+        }
         return objective.optimal();
-
     }
 
     /**
@@ -194,11 +376,15 @@ public class JavascriptShell {
      * @param clafer minimize this Clafer's value
      * @return the minimal value and the optimal instance
      */
-    public Pair<Integer, InstanceModel> minimize(AstClafer clafer) {
+    public Object minimize(AstClafer clafer) {
         if (!clafer.hasRef()) {
             throw new JavascriptException("Cannot minimize " + clafer + ".");
         }
-        ClaferObjective objective = ClaferCompiler.compileMinimize(model, scope, clafer.getRef());
+        ClaferObjective objective = compilerCache.compileMinimize(model, scope, clafer.getRef(), option);
+        profile = objective.getProfile();
+        if (!budget.isUnlimited()) {
+            return objective.optimal(budget);
+        }
         return objective.optimal();
     }
 
@@ -209,8 +395,12 @@ public class JavascriptShell {
      *
      * @return the Min-Unsat and near-miss example
      */
-    public Pair<Set<AstConstraint>, InstanceModel> minUnsat() {
-        ClaferUnsat unsat = ClaferCompiler.compileUnsat(model, scope);
+    public Object minUnsat() {
+        ClaferUnsat unsat = compilerCache.compileUnsat(model, scope, option);
+        profile = unsat.getProfile();
+        if (!budget.isUnlimited()) {
+            return unsat.minUnsat(budget);
+        }
         return unsat.minUnsat();
     }
 
@@ -220,7 +410,8 @@ public class JavascriptShell {
      * @return the Min-Unsat-Core
      */
     public Set<AstConstraint> unsatCore() {
-        ClaferUnsat unsat = ClaferCompiler.compileUnsat(model, scope);
+        ClaferUnsat unsat = compilerCache.compileUnsat(model, scope, option);
+        profile = unsat.getProfile();
         return unsat.unsatCore();
     }
 
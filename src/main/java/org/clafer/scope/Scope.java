@@ -1,5 +1,6 @@
 package org.clafer.scope;
 
+import java.io.Serializable;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -75,7 +76,9 @@ import solver.variables.VF;
  * @author jimmy
  * @see ScopeBuilder
  */
-public class Scope {
+public class Scope implements Serializable {
+
+    private static final long serialVersionUID = 1L;
 
     private final Map<AstClafer, Integer> scopes;
     private final int defaultScope;
@@ -202,6 +205,29 @@ public class Scope {
         return builder().intHigh(intHigh);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (obj instanceof Scope) {
+            Scope other = (Scope) obj;
+            return defaultScope == other.defaultScope
+                    && intLow == other.intLow
+                    && intHigh == other.intHigh
+                    && scopes.equals(other.scopes);
+        }
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int hashCode() {
+        return scopes.hashCode() ^ defaultScope ^ (intLow << 8) ^ (intHigh << 16);
+    }
+
     /**
      * {@inheritDoc}
      */
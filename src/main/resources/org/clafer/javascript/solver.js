@@ -1,9 +1,14 @@
 var load = rsc.load.bind(rsc);
 var solve = rsc.solve.bind(rsc);
+var all = rsc.all.bind(rsc);
 var maximize = rsc.maximize.bind(rsc);
 var minimize = rsc.minimize.bind(rsc);
 var minUnsat = rsc.minUnsat.bind(rsc);
 var unsatCore = rsc.unsatCore.bind(rsc);
+var strategy = rsc.strategy.bind(rsc);
+var restarts = rsc.restarts.bind(rsc);
+var limits = rsc.limits.bind(rsc);
+var profile = rsc.profile.bind(rsc);
 var exit = rsc.exit.bind(rsc);
 
 // Debugging
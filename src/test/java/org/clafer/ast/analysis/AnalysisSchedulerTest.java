@@ -0,0 +1,106 @@
+package org.clafer.ast.analysis;
+
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.clafer.ast.AstAbstractClafer;
+import org.clafer.ast.AstClafer;
+import org.clafer.ast.AstConcreteClafer;
+import org.clafer.ast.AstModel;
+import org.clafer.ast.Asts;
+import org.clafer.ast.compiler.AstCompiler;
+import org.clafer.scope.Scope;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author jimmy
+ */
+public class AnalysisSchedulerTest {
+
+    /**
+     * <pre>
+     * abstract Animal
+     *     Leg 2..4
+     * Cat : Animal 2
+     *     Tail
+     * Dog : Animal 0..3
+     * Owner *
+     *     Pet -> Animal 1..2
+     * </pre>
+     */
+    @Test(timeout = 60000)
+    public void testParallelMatchesSequential() {
+        AstModel model = Asts.newModel();
+
+        AstAbstractClafer animal = model.addAbstract("Animal");
+        animal.addChild("Leg").withCard(2, 4);
+        AstConcreteClafer cat = model.addChild("Cat").extending(animal).withCard(2, 2);
+        cat.addChild("Tail").withCard(1, 1);
+        model.addChild("Dog").extending(animal).withCard(0, 3);
+        AstConcreteClafer owner = model.addChild("Owner");
+        owner.addChild("Pet").refTo(animal).withCard(1, 2);
+
+        Scope scope = Scope.defaultScope(5).toScope();
+
+        Analysis sequential = Analysis.analyze(model, scope, AstCompiler.DefaultAnalyzers);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            Analysis parallel = Analysis.analyze(model, scope, executor, AstCompiler.DefaultAnalyzers);
+            assertEquals(sequential.getClafers(), parallel.getClafers());
+            for (AstClafer clafer : sequential.getClafers()) {
+                assertEquals(sequential.getScope(clafer), parallel.getScope(clafer));
+                assertEquals(sequential.getGlobalCard(clafer), parallel.getGlobalCard(clafer));
+                assertEquals(sequential.getFormat(clafer), parallel.getFormat(clafer));
+                assertArrayEquals(sequential.getBreakableChildren(clafer), parallel.getBreakableChildren(clafer));
+            }
+            for (AstConcreteClafer clafer : sequential.getConcreteClafers()) {
+                assertEquals(sequential.getCard(clafer), parallel.getCard(clafer));
+            }
+            assertEquals(sequential.getConstraints().size(), parallel.getConstraints().size());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testSkipUnchanged() {
+        AstModel model = Asts.newModel();
+
+        model.addAbstract("Animal");
+
+        Scope scope = Scope.defaultScope(1).toScope();
+
+        CountingAnalyzer counter = new CountingAnalyzer();
+        Analysis.analyze(model, scope, counter, new GlobalCardAnalyzer(), counter);
+        assertEquals(1, counter.count);
+
+        counter = new CountingAnalyzer();
+        Analysis.analyze(model, scope, counter, new TypeHierarchyDepthAnalyzer(), counter);
+        assertEquals(2, counter.count);
+    }
+
+    private static class CountingAnalyzer implements Analyzer {
+
+        int count = 0;
+
+        @Override
+        public Set<AnalysisKey> reads() {
+            return EnumSet.of(AnalysisKey.Clafers);
+        }
+
+        @Override
+        public Set<AnalysisKey> writes() {
+            return EnumSet.of(AnalysisKey.Offsets);
+        }
+
+        @Override
+        public Analysis analyze(Analysis analysis) {
+            count++;
+            return analysis.setOffsetMap(new HashMap<AstAbstractClafer, Offsets>());
+        }
+    }
+}
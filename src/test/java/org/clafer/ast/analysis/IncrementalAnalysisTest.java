@@ -0,0 +1,101 @@
+package org.clafer.ast.analysis;
+
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Set;
+import org.clafer.ast.AstAbstractClafer;
+import org.clafer.ast.AstClafer;
+import org.clafer.ast.AstConcreteClafer;
+import org.clafer.ast.AstModel;
+import org.clafer.ast.Asts;
+import org.clafer.ast.compiler.AstCompiler;
+import org.clafer.scope.Scope;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author jimmy
+ */
+public class IncrementalAnalysisTest {
+
+    /**
+     * <pre>
+     * A 0..2
+     *     B *
+     * C *
+     * </pre>
+     */
+    @Test
+    public void testMatchesFullAnalysis() {
+        AstModel model = Asts.newModel();
+
+        AstConcreteClafer a = model.addChild("A").withCard(0, 2);
+        a.addChild("B");
+        model.addChild("C");
+
+        IncrementalAnalysis incremental = new IncrementalAnalysis(model, AstCompiler.DefaultAnalyzers);
+        for (int c = 1; c <= 3; c++) {
+            Scope scope = Scope.set(a, 2).defaultScope(c).toScope();
+            Analysis expected = Analysis.analyze(model, scope, AstCompiler.DefaultAnalyzers);
+            Analysis analysis = incremental.analyze(scope);
+            for (AstClafer clafer : expected.getClafers()) {
+                assertEquals(expected.getScope(clafer), analysis.getScope(clafer));
+                assertEquals(expected.getGlobalCard(clafer), analysis.getGlobalCard(clafer));
+                assertEquals(expected.getFormat(clafer), analysis.getFormat(clafer));
+            }
+        }
+    }
+
+    /**
+     * <pre>
+     * A 0..2
+     * </pre>
+     */
+    @Test
+    public void testReuseWhenScopeExceedsCard() {
+        AstModel model = Asts.newModel();
+
+        AstConcreteClafer a = model.addChild("A").withCard(0, 2);
+
+        IncrementalAnalysis incremental = new IncrementalAnalysis(model, AstCompiler.DefaultAnalyzers);
+        Analysis analysis = incremental.analyze(Scope.set(a, 2).toScope());
+        assertSame(analysis, incremental.analyze(Scope.set(a, 3).toScope()));
+        assertNotSame(analysis, incremental.analyze(Scope.set(a, 1).toScope()));
+    }
+
+    @Test
+    public void testSkipUnchanged() {
+        AstModel model = Asts.newModel();
+
+        AstAbstractClafer animal = model.addAbstract("Animal");
+
+        CountingAnalyzer counter = new CountingAnalyzer();
+        IncrementalAnalysis incremental = new IncrementalAnalysis(model, counter);
+        incremental.analyze(Scope.defaultScope(1).toScope());
+        incremental.analyze(Scope.defaultScope(2).toScope());
+        incremental.analyze(Scope.set(animal, 3).toScope());
+        assertEquals(1, counter.count);
+    }
+
+    private static class CountingAnalyzer implements Analyzer {
+
+        int count = 0;
+
+        @Override
+        public Set<AnalysisKey> reads() {
+            return EnumSet.of(AnalysisKey.Clafers);
+        }
+
+        @Override
+        public Set<AnalysisKey> writes() {
+            return EnumSet.of(AnalysisKey.Offsets);
+        }
+
+        @Override
+        public Analysis analyze(Analysis analysis) {
+            count++;
+            return analysis.setOffsetMap(new HashMap<AstAbstractClafer, Offsets>());
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package org.clafer.ast.analysis;
+
+import org.clafer.ast.AstConcreteClafer;
+import org.clafer.ast.AstConstraint;
+import org.clafer.ast.AstLocal;
+import org.clafer.ast.AstModel;
+import static org.clafer.ast.Asts.*;
+import org.clafer.compiler.ClaferCompiler;
+import org.clafer.compiler.ClaferOption;
+import org.clafer.scope.Scope;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author jimmy
+ */
+public class SizeEstimateTest {
+
+    /**
+     * <pre>
+     * Person *
+     * [all disj a;b;c : Person | a != b]
+     * </pre>
+     */
+    @Test
+    public void testQuantifierDominates() {
+        AstModel model = newModel();
+
+        AstConcreteClafer person = model.addChild("Person");
+        AstLocal a = local("a");
+        AstLocal b = local("b");
+        AstLocal c = local("c");
+        AstConstraint constraint = model.addConstraint(
+                all(disjDecl(new AstLocal[]{a, b, c}, global(person)), notEqual(a, b)));
+
+        SizeEstimate small = ClaferCompiler.estimate(model, Scope.defaultScope(5).toScope());
+        SizeEstimate large = ClaferCompiler.estimate(model, Scope.defaultScope(50).toScope());
+        assertTrue(large.getConstraints() > 50 * 49 * 48);
+        assertTrue(large.getConstraints() > small.getConstraints());
+        assertSame(constraint, large.getCosts().get(0).getSource());
+    }
+
+    /**
+     * <pre>
+     * Person *
+     * [all disj a;b;c : Person | a != b]
+     * </pre>
+     */
+    @Test(expected = SizeLimitException.class)
+    public void testLimit() {
+        AstModel model = newModel();
+
+        AstConcreteClafer person = model.addChild("Person");
+        AstLocal a = local("a");
+        AstLocal b = local("b");
+        AstLocal c = local("c");
+        model.addConstraint(
+                all(disjDecl(new AstLocal[]{a, b, c}, global(person)), notEqual(a, b)));
+
+        ClaferCompiler.compile(model, Scope.defaultScope(1000).toScope(),
+                ClaferOption.Default.maxConstraints(1000000));
+    }
+}
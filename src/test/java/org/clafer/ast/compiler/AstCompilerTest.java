@@ -0,0 +1,55 @@
+package org.clafer.ast.compiler;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.clafer.ast.AstConcreteClafer;
+import org.clafer.ast.AstLocal;
+import org.clafer.ast.AstModel;
+import static org.clafer.ast.Asts.*;
+import org.clafer.ir.IrModule;
+import org.clafer.scope.Scope;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author jimmy
+ */
+public class AstCompilerTest {
+
+    /**
+     * <pre>
+     * Person *
+     *     Age -> integer
+     *     Friend -> Person *
+     *     [this.Age.ref &gt;= 0]
+     *     (all f : this.Friend | f.ref.Age.ref &lt; 5)
+     * </pre>
+     */
+    @Test(timeout = 60000)
+    public void testParallelGroundingIsDeterministic() {
+        AstModel model = newModel();
+
+        AstConcreteClafer person = model.addChild("Person");
+        AstConcreteClafer age = person.addChild("Age").withCard(1, 1).refTo(IntType);
+        AstConcreteClafer friend = person.addChild("Friend").refTo(person);
+        AstLocal f = local("f");
+        person.addConstraint(greaterThanEqual(joinRef(join($this(), age)), constant(0)));
+        person.addConstraint(all(decl(f, join($this(), friend)),
+                lessThan(joinRef(join(joinRef(f), age)), constant(5))));
+
+        Scope scope = Scope.defaultScope(40).intLow(-2).intHigh(6).toScope();
+
+        IrModule sequential = new IrModule();
+        AstCompiler.compile(model, scope, sequential);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            IrModule parallel = new IrModule();
+            AstCompiler.compile(model, scope, parallel, AstCompiler.DefaultAnalyzers, executor);
+            assertEquals(sequential.toString(), parallel.toString());
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package org.clafer.compiler;
+
+import java.util.Set;
+import org.clafer.ast.AstConcreteClafer;
+import org.clafer.ast.AstConstraint;
+import org.clafer.ast.AstModel;
+import static org.clafer.ast.Asts.*;
+import org.clafer.collection.Pair;
+import org.clafer.instance.InstanceModel;
+import org.clafer.scope.Scope;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author jimmy
+ */
+public class ClaferBudgetTest {
+
+    /**
+     * <pre>
+     * Cost -> integer 0..3
+     * [this.ref < 3]
+     * </pre>
+     */
+    @Test(timeout = 60000)
+    public void testUnlimitedOptimal() {
+        AstModel model = newModel();
+
+        AstConcreteClafer cost = model.addChild("Cost").withCard(0, 3).refTo(IntType);
+        cost.addConstraint(lessThan(joinRef($this()), constant(3)));
+
+        Scope scope = Scope.defaultScope(3).intLow(-2).intHigh(5).toScope();
+        ClaferResult<InstanceModel> result = ClaferCompiler.compileMaximize(model, scope,
+                cost.getRef()).optimal(ClaferBudget.Unlimited);
+        assertEquals(ClaferResult.Status.Optimal, result.getStatus());
+        assertTrue(result.isProven());
+        assertEquals(6, result.getScore().intValue());
+        assertEquals(0, result.getGap().intValue());
+        assertEquals(3, result.getValue().getTopClafers().length);
+    }
+
+    /**
+     * <pre>
+     * Cost -> integer 0..3
+     * [this.ref < 3]
+     * </pre>
+     */
+    @Test(timeout = 60000)
+    public void testBestFound() {
+        AstModel model = newModel();
+
+        AstConcreteClafer cost = model.addChild("Cost").withCard(0, 3).refTo(IntType);
+        cost.addConstraint(lessThan(joinRef($this()), constant(3)));
+
+        Scope scope = Scope.defaultScope(3).intLow(-2).intHigh(5).toScope();
+        ClaferResult<InstanceModel> result = ClaferCompiler.compileMinimize(model, scope,
+                cost.getRef()).optimal(ClaferBudget.Unlimited.solutions(1));
+        assertTrue(result.hasValue());
+        assertTrue(result.getScore() >= -6);
+        if (ClaferResult.Status.BestFound.equals(result.getStatus())) {
+            assertFalse(result.isProven());
+            assertTrue(result.getBound() <= -6);
+            assertTrue(result.getGap() > 0);
+        } else {
+            assertEquals(ClaferResult.Status.Optimal, result.getStatus());
+            assertEquals(-6, result.getScore().intValue());
+        }
+    }
+
+    /**
+     * <pre>
+     * A 0..3
+     * B 0..2
+     * [#A = #B]
+     * </pre>
+     */
+    @Test(timeout = 60000)
+    public void testFind() {
+        AstModel model = newModel();
+
+        AstConcreteClafer a = model.addChild("A").withCard(0, 3);
+        AstConcreteClafer b = model.addChild("B").withCard(0, 2);
+        model.addConstraint(equal(card(global(a)), card(global(b))));
+
+        Scope scope = Scope.defaultScope(3).toScope();
+        ClaferSolver solver = ClaferCompiler.compile(model, scope);
+        int count = 0;
+        ClaferResult<InstanceModel> result;
+        while ((result = solver.find(ClaferBudget.Unlimited)).hasValue()) {
+            assertEquals(ClaferResult.Status.Optimal, result.getStatus());
+            assertNull(result.getScore());
+            count++;
+        }
+        assertEquals(ClaferResult.Status.Unsatisfiable, result.getStatus());
+        assertEquals(3, count);
+    }
+
+    /**
+     * <pre>
+     * A 0..3
+     * B 0..2
+     * [#A = #B]
+     * </pre>
+     */
+    @Test(timeout = 60000)
+    public void testFindLimited() {
+        AstModel model = newModel();
+
+        AstConcreteClafer a = model.addChild("A").withCard(0, 3);
+        AstConcreteClafer b = model.addChild("B").withCard(0, 2);
+        model.addConstraint(equal(card(global(a)), card(global(b))));
+
+        Scope scope = Scope.defaultScope(3).toScope();
+        ClaferSolver solver = ClaferCompiler.compile(model, scope);
+        ClaferResult<InstanceModel> result = solver.find(ClaferBudget.Unlimited.nodes(1));
+        if (ClaferResult.Status.TimedOut.equals(result.getStatus())) {
+            assertFalse(result.hasValue());
+            // The search cannot be resumed.
+            assertFalse(solver.find());
+        } else {
+            assertEquals(ClaferResult.Status.Optimal, result.getStatus());
+            assertTrue(result.hasValue());
+        }
+    }
+
+    /**
+     * <pre>
+     * A 0..3
+     * B 0..2
+     * [#A = #B]
+     * </pre>
+     */
+    @Test(timeout = 60000)
+    public void testFindAfterTimeout() {
+        AstModel model = newModel();
+
+        AstConcreteClafer a = model.addChild("A").withCard(0, 3);
+        AstConcreteClafer b = model.addChild("B").withCard(0, 2);
+        model.addConstraint(equal(card(global(a)), card(global(b))));
+
+        Scope scope = Scope.defaultScope(3).toScope();
+        ClaferSolver solver = ClaferCompiler.compile(model, scope);
+        ClaferResult<InstanceModel> result;
+        while ((result = solver.find(ClaferBudget.Unlimited.nodes(1))).hasValue()) {
+            assertEquals(ClaferResult.Status.Optimal, result.getStatus());
+        }
+        if (ClaferResult.Status.TimedOut.equals(result.getStatus())) {
+            // Cut off, not proven unsatisfiable.
+            assertEquals(ClaferResult.Status.TimedOut, solver.find(ClaferBudget.Unlimited).getStatus());
+            assertEquals(ClaferResult.Status.TimedOut, solver.find(ClaferBudget.Unlimited.nodes(1)).getStatus());
+        } else {
+            assertEquals(ClaferResult.Status.Unsatisfiable, result.getStatus());
+        }
+    }
+
+    /**
+     * <pre>
+     * A 0..1
+     * [#A = 2]
+     * [#A = 0]
+     * </pre>
+     */
+    @Test(timeout = 60000)
+    public void testMinUnsat() {
+        AstModel model = newModel();
+
+        AstConcreteClafer a = model.addChild("A").withCard(0, 1);
+        model.addConstraint(equal(card(global(a)), constant(2)));
+        model.addConstraint(equal(card(global(a)), constant(0)));
+
+        Scope scope = Scope.defaultScope(3).toScope();
+        ClaferResult<Pair<Set<AstConstraint>, InstanceModel>> result =
+                ClaferCompiler.compileUnsat(model, scope).minUnsat(ClaferBudget.Unlimited.timeMillis(60000));
+        assertEquals(ClaferResult.Status.Optimal, result.getStatus());
+        assertEquals(1, result.getValue().getFst().size());
+        assertEquals(0, result.getGap().intValue());
+    }
+
+    @Test
+    public void testToString() {
+        assertEquals("unlimited", ClaferBudget.Unlimited.toString());
+        assertEquals("time 2000ms, fails 10", ClaferBudget.Unlimited.fails(10).timeMillis(2000).toString());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBadLimit() {
+        ClaferBudget.Unlimited.nodes(0);
+    }
+}
@@ -0,0 +1,112 @@
+package org.clafer.compiler;
+
+import org.clafer.ast.AstConcreteClafer;
+import org.clafer.ast.AstModel;
+import static org.clafer.ast.Asts.*;
+import org.clafer.ast.analysis.SizeLimitException;
+import org.clafer.scope.Scope;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author jimmy
+ */
+public class ClaferCompilerCacheTest {
+
+    /**
+     * <pre>
+     * Cost 0..2 -> integer
+     *     [this.ref &lt; 5]
+     * </pre>
+     */
+    @Test(timeout = 60000)
+    public void testQueriesShareCompilation() {
+        AstModel model = newModel();
+
+        AstConcreteClafer cost = model.addChild("Cost").withCard(0, 2).refTo(IntType);
+        cost.addConstraint(lessThan(joinRef($this()), constant(5)));
+
+        ClaferCompilerCache cache = new ClaferCompilerCache();
+        Scope scope = Scope.defaultScope(2).intLow(-3).intHigh(8).toScope();
+
+        assertEquals(ClaferCompiler.compile(model, scope).allInstances().length,
+                cache.compile(model, scope).allInstances().length);
+        assertEquals(8, cache.compileMaximize(model, scope, cost.getRef()).optimal().getFst().intValue());
+        assertEquals(-6, cache.compileMinimize(model, scope, cost.getRef()).optimal().getFst().intValue());
+        assertEquals(1, cache.size());
+
+        cache.compileUnsat(model, scope).minUnsat();
+        assertEquals(2, cache.size());
+    }
+
+    @Test(timeout = 60000)
+    public void testModifiedModelRecompiles() {
+        AstModel model = newModel();
+
+        model.addChild("A").withCard(0, 1);
+
+        ClaferCompilerCache cache = new ClaferCompilerCache();
+        Scope scope = Scope.defaultScope(1).toScope();
+
+        assertEquals(2, cache.compile(model, scope).allInstances().length);
+        model.addChild("B").withCard(0, 1);
+        assertEquals(4, cache.compile(model, scope).allInstances().length);
+        assertEquals(4, cache.compile(model, Scope.defaultScope(1)).allInstances().length);
+    }
+
+    /**
+     * <pre>
+     * A 0..2
+     *     B 0..1
+     * </pre>
+     */
+    @Test(timeout = 60000)
+    public void testScopeSweep() {
+        AstModel model = newModel();
+
+        AstConcreteClafer a = model.addChild("A").withCard(0, 2);
+        AstConcreteClafer b = a.addChild("B").withCard(0, 1);
+
+        ClaferCompilerCache cache = new ClaferCompilerCache();
+        for (int i = 1; i <= 3; i++) {
+            Scope scope = Scope.set(a, i).set(b, 2).toScope();
+            assertEquals(ClaferCompiler.compile(model, scope).allInstances().length,
+                    cache.compile(model, scope).allInstances().length);
+        }
+    }
+
+    @Test
+    public void testFingerprintIncludesScope() {
+        AstModel model = newModel();
+
+        AstConcreteClafer a = model.addChild("A").withCard(0, 3);
+
+        assertEquals(
+                ClaferCompilerCache.fingerprint(model, Scope.defaultScope(2).toScope()),
+                ClaferCompilerCache.fingerprint(model, Scope.set(a, 2).defaultScope(2).toScope()));
+        assertFalse(ClaferCompilerCache.fingerprint(model, Scope.defaultScope(2).toScope()).equals(
+                ClaferCompilerCache.fingerprint(model, Scope.set(a, 3).defaultScope(2).toScope())));
+    }
+
+    /**
+     * <pre>
+     * A 0..2
+     *     B 0..1
+     * </pre>
+     */
+    @Test(timeout = 60000, expected = SizeLimitException.class)
+    public void testSizeLimit() {
+        AstModel model = newModel();
+
+        model.addChild("A").withCard(0, 2).addChild("B").withCard(0, 1);
+
+        ClaferCompilerCache cache = new ClaferCompilerCache();
+        Scope scope = Scope.defaultScope(2).toScope();
+
+        assertEquals(ClaferCompiler.compile(model, scope).allInstances().length,
+                cache.compile(model, scope).allInstances().length);
+        // Shares the compilation above, but still checks the limit.
+        cache.compile(model, scope, ClaferOption.Default.maxVariables(1));
+    }
+}
@@ -0,0 +1,240 @@
+package org.clafer.compiler;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import org.clafer.ast.AstAbstractClafer;
+import org.clafer.ast.AstConcreteClafer;
+import org.clafer.ast.AstModel;
+import static org.clafer.ast.Asts.*;
+import org.clafer.common.Profile;
+import org.clafer.instance.FlatInstance;
+import org.clafer.instance.InstanceModel;
+import org.clafer.instance.InstanceVisitor;
+import org.clafer.ir.IrSetVar;
+import org.clafer.ir.compiler.IrSolutionMap;
+import org.clafer.scope.Scope;
+import static org.junit.Assert.*;
+import org.junit.Test;
+import solver.variables.SetVar;
+
+/**
+ *
+ * @author jimmy
+ */
+public class ClaferCompilerTest {
+
+    /**
+     * <pre>
+     * A *
+     *     B 0..2
+     * </pre>
+     */
+    @Test(timeout = 60000)
+    public void testLeanNames() {
+        AstModel model = newModel();
+
+        AstConcreteClafer a = model.addChild("A");
+        a.addChild("B").withCard(0, 2);
+
+        Scope scope = Scope.defaultScope(2).toScope();
+        ClaferSolver solver = ClaferCompiler.compile(model, scope, ClaferOption.Default.leanNames(true));
+
+        assertEquals(ClaferCompiler.compile(model, scope).allInstances().length,
+                solver.allInstances().length);
+
+        IrSolutionMap irSolution = solver.getSolutionMap().getIrSolution();
+        for (IrSetVar var : solver.getSolutionMap().getAstSolution().getSiblingVars(a)) {
+            SetVar set = irSolution.getSetVar(var);
+            if (set != null) {
+                assertTrue(set.getName().startsWith("_"));
+                assertFalse(irSolution.getDebugName(set).startsWith("_"));
+            }
+        }
+    }
+
+    /**
+     * <pre>
+     * A *
+     *     B 0..2
+     * </pre>
+     */
+    @Test(timeout = 60000)
+    public void testProfile() {
+        AstModel model = newModel();
+
+        AstConcreteClafer a = model.addChild("A");
+        a.addChild("B").withCard(0, 2);
+
+        Profile profile = ClaferCompiler.compile(model, Scope.defaultScope(2)).getProfile();
+        Set<String> phases = new HashSet<String>();
+        for (Profile.Phase phase : profile.getPhases()) {
+            phases.add(phase.getName());
+        }
+        assertTrue(phases.contains("ScopeAnalyzer"));
+        assertTrue(phases.contains("AstCompiler"));
+        assertTrue(phases.contains("IncrementalCoalescer"));
+        assertTrue(phases.contains("IrCompiler"));
+        assertTrue(profile.getCounts().get("Choco variables") > 0);
+    }
+
+    /**
+     * <pre>
+     * abstract Feature
+     *     Cost -> integer
+     * Backup : Feature 1..2
+     * Firewall : Feature ?
+     * Target -> Feature
+     * </pre>
+     */
+    @Test(timeout = 60000)
+    public void testCompactSolutionMap() {
+        AstModel model = newModel();
+
+        AstAbstractClafer feature = model.addAbstract("Feature");
+        feature.addChild("Cost").withCard(1, 1).refTo(IntType);
+        model.addChild("Backup").withCard(1, 2).extending(feature);
+        model.addChild("Firewall").withCard(0, 1).extending(feature);
+        model.addChild("Target").withCard(1, 1).refTo(feature);
+
+        Scope scope = Scope.defaultScope(3).intLow(0).intHigh(1).toScope();
+        ClaferSolver solver = ClaferCompiler.compile(model, scope, ClaferOption.Default.compactSolutionMap(true));
+        assertTrue(solver.getSolutionMap().isCompact());
+
+        ClaferSolver expected = ClaferCompiler.compile(model, scope);
+        while (expected.find()) {
+            assertTrue(solver.find());
+            assertEquals(expected.instance().toString(), solver.instance().toString());
+        }
+        assertFalse(solver.find());
+    }
+
+    /**
+     * <pre>
+     * abstract Feature
+     *     Cost -> integer
+     * Backup : Feature 1..2
+     * Firewall : Feature ?
+     * Target -> Feature
+     * </pre>
+     */
+    @Test
+    public void testFlatInstance() {
+        AstModel model = newModel();
+
+        AstAbstractClafer feature = model.addAbstract("Feature");
+        AstConcreteClafer cost = feature.addChild("Cost").withCard(1, 1).refTo(IntType);
+        model.addChild("Backup").withCard(1, 2).extending(feature);
+        model.addChild("Firewall").withCard(0, 1).extending(feature);
+        model.addChild("Target").withCard(1, 1).refTo(feature);
+
+        ClaferSolver solver = ClaferCompiler.compile(model,
+                Scope.defaultScope(3).intLow(0).intHigh(1).toScope());
+        FlatInstance buffer = new FlatInstance(1);
+        int count = 0;
+        while (solver.find()) {
+            InstanceModel instance = solver.instance();
+            // Build the trees and print them instead of printing the view.
+            String expected = new InstanceModel(instance.getTopClafers()).toString();
+            assertEquals(expected, solver.instance(buffer).toString());
+            assertEquals(expected, new InstanceModel(buffer.copy().toTopClafers()).toString());
+            assertEquals(buffer.getCount(cost), instance.getFlatInstance().getCount(cost));
+            count++;
+        }
+        assertTrue(count > 0);
+    }
+
+    /**
+     * <pre>
+     * A *
+     * B *
+     * </pre>
+     */
+    @Test
+    public void testStreamInstances() {
+        AstModel model = newModel();
+
+        model.addChild("A");
+        model.addChild("B");
+
+        Scope scope = Scope.defaultScope(2).toScope();
+        int all = ClaferCompiler.compile(model, scope).allInstances().length;
+
+        ClaferSolver solver = ClaferCompiler.compile(model, scope);
+        assertEquals(2, solver.allInstances(2, new InstanceVisitor() {
+            @Override
+            public boolean visit(FlatInstance instance) {
+                return true;
+            }
+        }));
+        assertEquals(1, solver.allInstances(new InstanceVisitor() {
+            @Override
+            public boolean visit(FlatInstance instance) {
+                return false;
+            }
+        }));
+        // Continues where the visitor stopped.
+        int rest = 0;
+        Iterator<InstanceModel> iter = solver.instances();
+        while (iter.hasNext()) {
+            iter.next();
+            rest++;
+        }
+        assertEquals(all, 3 + rest);
+        assertFalse(solver.find());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testCompactSolutionMapReleasesIr() {
+        AstModel model = newModel();
+
+        model.addChild("A").withCard(0, 1);
+
+        ClaferSolver solver = ClaferCompiler.compile(model, Scope.defaultScope(1).toScope(),
+                ClaferOption.Default.compactSolutionMap(true));
+        solver.getSolutionMap().getIrSolution();
+    }
+
+    /**
+     * <pre>
+     * A 0..2
+     *     B -> integer ?
+     * </pre>
+     */
+    @Test(timeout = 60000)
+    public void testPartialCompactSolutionMap() {
+        AstModel model = newModel();
+
+        AstConcreteClafer a = model.addChild("A").withCard(0, 2);
+        a.addChild("B").withCard(0, 1).refTo(IntType);
+
+        Scope scope = Scope.defaultScope(2).intLow(0).intHigh(2).toScope();
+        ClaferSolver solver = ClaferCompiler.compilePartial(model, scope,
+                ClaferOption.Default.compactSolutionMap(true), a);
+        assertTrue(solver.getSolutionMap().isCompact());
+        // Only the number of A matters, 0, 1, or 2.
+        assertEquals(3, solver.allInstances().length);
+    }
+
+    /**
+     * <pre>
+     * A 0..2
+     *     B ?
+     * C 0..1
+     * [#C = 1]
+     * </pre>
+     */
+    @Test(timeout = 60000)
+    public void testPartialConstant() {
+        AstModel model = newModel();
+
+        AstConcreteClafer a = model.addChild("A").withCard(0, 2);
+        a.addChild("B").withCard(0, 1);
+        AstConcreteClafer c = model.addChild("C").withCard(0, 1);
+        model.addConstraint(equal(card(global(c)), constant(1)));
+
+        Scope scope = Scope.defaultScope(2).toScope();
+        // The sibling set of C is optimized into a constant.
+        assertEquals(3, ClaferCompiler.compilePartial(model, scope, a, c).allInstances().length);
+    }
+}
@@ -0,0 +1,127 @@
+package org.clafer.compiler;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.clafer.ast.AstConcreteClafer;
+import org.clafer.ast.AstModel;
+import static org.clafer.ast.Asts.*;
+import org.clafer.instance.FlatInstance;
+import org.clafer.instance.InstanceModel;
+import org.clafer.instance.InstanceVisitor;
+import org.clafer.scope.Scope;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author jimmy
+ */
+public class ClaferParallelSolverTest {
+
+    /**
+     * <pre>
+     * A 0..3
+     *     B -> integer 0..2
+     * C ?
+     * </pre>
+     */
+    private static AstModel model() {
+        AstModel model = newModel();
+
+        AstConcreteClafer a = model.addChild("A").withCard(0, 3);
+        a.addChild("B").withCard(0, 2).refTo(IntType);
+        model.addChild("C").withCard(0, 1);
+        return model;
+    }
+
+    private static Scope scope() {
+        return Scope.defaultScope(3).intLow(0).intHigh(2).toScope();
+    }
+
+    @Test(timeout = 60000)
+    public void testAllInstances() {
+        Set<String> expected = new HashSet<String>();
+        for (InstanceModel instance : ClaferCompiler.compile(model(), scope()).allInstances()) {
+            expected.add(instance.toString());
+        }
+
+        ClaferParallelSolver solver = ClaferCompiler.compileParallel(model(), scope(), 4, 3);
+        assertEquals(8, solver.getCubeCount());
+        InstanceModel[] instances = solver.allInstances();
+        Set<String> actual = new HashSet<String>();
+        for (InstanceModel instance : instances) {
+            assertTrue("Duplicate " + instance, actual.add(instance.toString()));
+        }
+        assertEquals(expected, actual);
+    }
+
+    @Test(timeout = 60000)
+    public void testOrdered() {
+        List<String> first = enumerateOrdered(1);
+        assertEquals(first, enumerateOrdered(2));
+        assertEquals(first, enumerateOrdered(5));
+    }
+
+    @Test(timeout = 60000)
+    public void testOrderedLimit() {
+        List<String> first = enumerateOrdered(1).subList(0, 5);
+        assertEquals(first, enumerateOrdered(2, 5));
+        assertEquals(first, enumerateOrdered(8, 5));
+    }
+
+    private static List<String> enumerateOrdered(int threads) {
+        return enumerateOrdered(threads, Integer.MAX_VALUE);
+    }
+
+    private static List<String> enumerateOrdered(int threads, int limit) {
+        final List<String> instances = new ArrayList<String>();
+        ClaferCompiler.compileParallel(model(), scope(), threads).allInstances(limit, true,
+                new InstanceVisitor() {
+                    @Override
+                    public boolean visit(FlatInstance instance) {
+                        instances.add(instance.toString());
+                        return true;
+                    }
+                });
+        return instances;
+    }
+
+    @Test(timeout = 60000)
+    public void testLimit() {
+        ClaferParallelSolver solver = ClaferCompiler.compileParallel(model(), scope(), 3);
+        final int[] visited = new int[1];
+        assertEquals(5, solver.allInstances(5, false, new InstanceVisitor() {
+            @Override
+            public boolean visit(FlatInstance instance) {
+                visited[0]++;
+                return true;
+            }
+        }));
+        assertEquals(5, visited[0]);
+        assertEquals(1, solver.allInstances(new InstanceVisitor() {
+            @Override
+            public boolean visit(FlatInstance instance) {
+                return false;
+            }
+        }));
+    }
+
+    /**
+     * <pre>
+     * A
+     * [no A]
+     * </pre>
+     */
+    @Test(timeout = 60000)
+    public void testNoInstances() {
+        AstModel model = newModel();
+
+        AstConcreteClafer a = model.addChild("A").withCard(1, 1);
+        model.addConstraint(none(a));
+
+        assertEquals(0, ClaferCompiler.compileParallel(model, Scope.defaultScope(1).toScope(), 2)
+                .allInstances().length);
+    }
+}
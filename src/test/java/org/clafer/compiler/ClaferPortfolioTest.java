@@ -0,0 +1,68 @@
+package org.clafer.compiler;
+
+import java.util.Collections;
+import org.clafer.ast.AstConcreteClafer;
+import org.clafer.ast.AstConstraint;
+import org.clafer.ast.AstModel;
+import static org.clafer.ast.Asts.*;
+import org.clafer.scope.Scope;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author jimmy
+ */
+public class ClaferPortfolioTest {
+
+    /**
+     * <pre>
+     * Cost -> integer 0..2
+     * [this.ref < 5]
+     * </pre>
+     */
+    @Test(timeout = 60000)
+    public void testOptimal() {
+        AstModel model = newModel();
+
+        AstConcreteClafer cost = model.addChild("Cost").withCard(0, 2).refTo(IntType);
+        cost.addConstraint(lessThan(joinRef($this()), constant(5)));
+
+        Scope scope = Scope.defaultScope(2).intLow(-3).intHigh(8).toScope();
+        assertNotNull(ClaferCompiler.compilePortfolio(model, scope, 4).find());
+        assertEquals(8, ClaferCompiler.compileMaximizePortfolio(model, scope, cost.getRef(), 4)
+                .optimal().getFst().intValue());
+        assertEquals(-6, ClaferCompiler.compileMinimizePortfolio(model, scope, cost.getRef(), 4)
+                .optimal().getFst().intValue());
+    }
+
+    /**
+     * <pre>
+     * A
+     * [no A]
+     * </pre>
+     */
+    @Test(timeout = 60000)
+    public void testUnsat() {
+        AstModel model = newModel();
+
+        AstConcreteClafer a = model.addChild("A").withCard(1, 1);
+        AstConstraint none = model.addConstraint(none(a));
+
+        assertNull(ClaferCompiler.compilePortfolio(model, Scope.defaultScope(1).toScope(), 3).find());
+        assertEquals(Collections.singleton(none),
+                ClaferCompiler.compileUnsatPortfolio(model, Scope.defaultScope(1).toScope(), 3)
+                .minUnsat().getFst());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testOnlyOnce() {
+        AstModel model = newModel();
+
+        model.addChild("A").withCard(0, 1);
+
+        ClaferPortfolio portfolio = ClaferCompiler.compilePortfolio(model, Scope.defaultScope(1).toScope(), 2);
+        portfolio.find();
+        portfolio.find();
+    }
+}
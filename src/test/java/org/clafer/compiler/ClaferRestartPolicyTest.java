@@ -0,0 +1,127 @@
+package org.clafer.compiler;
+
+import java.util.HashSet;
+import java.util.Set;
+import org.clafer.ast.AstConcreteClafer;
+import org.clafer.ast.AstModel;
+import static org.clafer.ast.Asts.*;
+import org.clafer.instance.InstanceModel;
+import org.clafer.scope.Scope;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author jimmy
+ */
+public class ClaferRestartPolicyTest {
+
+    private static final ClaferRestartPolicy[] Policies = {
+        ClaferRestartPolicy.luby(1),
+        ClaferRestartPolicy.luby(1).randomize(false),
+        ClaferRestartPolicy.luby(1).nogoods(false).seed(3),
+        ClaferRestartPolicy.geometric(1, 1.2)
+    };
+
+    /**
+     * <pre>
+     * A 0..3
+     *     B -> integer ?
+     * C 0..2
+     * [#A.B = #C]
+     * </pre>
+     */
+    private static AstModel model() {
+        AstModel model = newModel();
+
+        AstConcreteClafer a = model.addChild("A").withCard(0, 3);
+        AstConcreteClafer b = a.addChild("B").withCard(0, 1).refTo(IntType);
+        AstConcreteClafer c = model.addChild("C").withCard(0, 2);
+        model.addConstraint(equal(card(join(global(a), b)), card(global(c))));
+        return model;
+    }
+
+    @Test(timeout = 60000)
+    public void testSameInstances() {
+        Scope scope = Scope.defaultScope(3).intLow(-1).intHigh(1).toScope();
+        Set<String> expected = new HashSet<String>();
+        for (InstanceModel instance : ClaferCompiler.compile(model(), scope).allInstances()) {
+            expected.add(instance.toString());
+        }
+        for (ClaferRestartPolicy policy : Policies) {
+            for (ClaferSearchStrategy strategy : new ClaferSearchStrategy[]{
+                ClaferSearchStrategy.Default, ClaferSearchStrategy.domOverWDeg(0)}) {
+                Set<String> actual = new HashSet<String>();
+                for (InstanceModel instance : ClaferCompiler.compile(model(), scope,
+                        ClaferOption.Default.restartPolicy(policy).searchStrategy(strategy)).allInstances()) {
+                    assertTrue(policy + " repeated " + instance, actual.add(instance.toString()));
+                }
+                assertEquals(policy.toString(), expected, actual);
+            }
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void testCompact() {
+        Scope scope = Scope.defaultScope(3).intLow(-1).intHigh(1).toScope();
+        Set<String> expected = new HashSet<String>();
+        for (InstanceModel instance : ClaferCompiler.compile(model(), scope).allInstances()) {
+            expected.add(instance.toString());
+        }
+        ClaferSolver solver = ClaferCompiler.compile(model(), scope, ClaferOption.Default
+                .restartPolicy(ClaferRestartPolicy.luby(1)).compactSolutionMap(true));
+        assertTrue(solver.getSolutionMap().isCompact());
+        Set<String> actual = new HashSet<String>();
+        for (InstanceModel instance : solver.allInstances()) {
+            assertTrue("Repeated " + instance, actual.add(instance.toString()));
+        }
+        assertEquals(expected, actual);
+    }
+
+    /**
+     * <pre>
+     * Cost -> integer 0..3
+     * [this.ref < 3]
+     * </pre>
+     */
+    @Test(timeout = 60000)
+    public void testOptimal() {
+        AstModel model = newModel();
+
+        AstConcreteClafer cost = model.addChild("Cost").withCard(0, 3).refTo(IntType);
+        cost.addConstraint(lessThan(joinRef($this()), constant(3)));
+
+        Scope scope = Scope.defaultScope(3).intLow(-2).intHigh(5).toScope();
+        for (ClaferRestartPolicy policy : Policies) {
+            ClaferOption option = ClaferOption.Default.restartPolicy(policy);
+            assertEquals(policy.toString(), 6, ClaferCompiler.compileMaximize(model, scope,
+                    cost.getRef(), option).optimal().getFst().intValue());
+            assertEquals(policy.toString(), -6, ClaferCompiler.compileMinimize(model, scope,
+                    cost.getRef(), option).optimal().getFst().intValue());
+        }
+    }
+
+    /**
+     * <pre>
+     * A 0..2
+     *     B -> integer ?
+     * </pre>
+     */
+    @Test(timeout = 60000)
+    public void testPartial() {
+        AstModel model = newModel();
+
+        AstConcreteClafer a = model.addChild("A").withCard(0, 2);
+        a.addChild("B").withCard(0, 1).refTo(IntType);
+
+        Scope scope = Scope.defaultScope(2).intLow(0).intHigh(2).toScope();
+        // Only the number of A matters, 0, 1, or 2.
+        assertEquals(3, ClaferCompiler.compilePartial(model, scope,
+                ClaferOption.Default.restartPolicy(ClaferRestartPolicy.luby(1)), a).allInstances().length);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBadGrowth() {
+        ClaferRestartPolicy.geometric(10, 1);
+    }
+}
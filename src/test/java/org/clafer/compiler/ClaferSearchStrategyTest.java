@@ -0,0 +1,87 @@
+package org.clafer.compiler;
+
+import org.clafer.ast.AstConcreteClafer;
+import org.clafer.ast.AstModel;
+import static org.clafer.ast.Asts.*;
+import org.clafer.scope.Scope;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author jimmy
+ */
+public class ClaferSearchStrategyTest {
+
+    private static final ClaferSearchStrategy[] Strategies = {
+        ClaferSearchStrategy.Default,
+        ClaferSearchStrategy.topDown(),
+        ClaferSearchStrategy.domOverWDeg(0),
+        ClaferSearchStrategy.activity(0),
+        ClaferSearchStrategy.objectiveFirst()
+    };
+
+    /**
+     * <pre>
+     * A 0..2
+     *     B 0..2
+     *         C -> integer ?
+     * D ?
+     *     E -> integer
+     * [this.E.ref < 2]
+     * </pre>
+     */
+    @Test(timeout = 60000)
+    public void testSameInstances() {
+        AstModel model = newModel();
+
+        AstConcreteClafer a = model.addChild("A").withCard(0, 2);
+        AstConcreteClafer b = a.addChild("B").withCard(0, 2);
+        b.addChild("C").withCard(0, 1).refTo(IntType);
+        AstConcreteClafer d = model.addChild("D").withCard(0, 1);
+        AstConcreteClafer e = d.addChild("E").withCard(1, 1).refTo(IntType);
+        d.addConstraint(lessThan(joinRef(join($this(), e)), constant(2)));
+
+        Scope scope = Scope.defaultScope(3).intLow(0).intHigh(2).toScope();
+        int expected = ClaferCompiler.compile(model, scope).allInstances().length;
+        for (ClaferSearchStrategy strategy : Strategies) {
+            assertEquals(strategy.getName(), expected, ClaferCompiler.compile(model, scope,
+                    ClaferOption.Default.searchStrategy(strategy)).allInstances().length);
+        }
+    }
+
+    /**
+     * <pre>
+     * Cost -> integer 0..3
+     * [this.ref < 3]
+     * </pre>
+     */
+    @Test(timeout = 60000)
+    public void testSameOptimal() {
+        AstModel model = newModel();
+
+        AstConcreteClafer cost = model.addChild("Cost").withCard(0, 3).refTo(IntType);
+        cost.addConstraint(lessThan(joinRef($this()), constant(3)));
+
+        Scope scope = Scope.defaultScope(3).intLow(-2).intHigh(5).toScope();
+        for (ClaferSearchStrategy strategy : Strategies) {
+            ClaferOption option = ClaferOption.Default.searchStrategy(strategy);
+            assertEquals(strategy.getName(), 6, ClaferCompiler.compileMaximize(model, scope,
+                    cost.getRef(), option).optimal().getFst().intValue());
+            assertEquals(strategy.getName(), -6, ClaferCompiler.compileMinimize(model, scope,
+                    cost.getRef(), option).optimal().getFst().intValue());
+        }
+    }
+
+    @Test
+    public void testForName() {
+        for (ClaferSearchStrategy strategy : Strategies) {
+            assertEquals(strategy.getName(), ClaferSearchStrategy.forName(strategy.getName()).getName());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownName() {
+        ClaferSearchStrategy.forName("bogus");
+    }
+}
@@ -0,0 +1,85 @@
+package org.clafer.compiler;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import org.clafer.ast.AstConcreteClafer;
+import org.clafer.ast.AstConstraint;
+import org.clafer.ast.AstModel;
+import org.clafer.ast.AstUtil;
+import static org.clafer.ast.Asts.*;
+import org.clafer.scope.Scope;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author jimmy
+ */
+public class ClaferSnapshotTest {
+
+    private static ClaferSnapshot roundTrip(ClaferSnapshot snapshot) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        snapshot.write(out);
+        return ClaferSnapshot.read(new ByteArrayInputStream(out.toByteArray()));
+    }
+
+    /**
+     * <pre>
+     * Cost 0..2 -> integer
+     *     [this.ref &lt; 5]
+     * </pre>
+     */
+    @Test(timeout = 60000)
+    public void testRoundTrip() throws IOException {
+        AstModel model = newModel();
+
+        AstConcreteClafer cost = model.addChild("Cost").withCard(0, 2).refTo(IntType);
+        cost.addConstraint(lessThan(joinRef($this()), constant(5)));
+
+        Scope scope = Scope.defaultScope(2).intLow(-3).intHigh(8).toScope();
+        ClaferSnapshot snapshot = roundTrip(ClaferSnapshot.snapshot(model, scope));
+
+        assertEquals(ClaferCompiler.compile(model, scope).allInstances().length,
+                snapshot.compile().allInstances().length);
+        assertEquals(scope.getIntHigh(), snapshot.getScope().getIntHigh());
+
+        AstConcreteClafer loadedCost = snapshot.getModel().getChildren().get(0);
+        assertEquals(8, snapshot.compileMaximize(loadedCost.getRef()).optimal().getFst().intValue());
+        assertEquals(-6, snapshot.compileMinimize(loadedCost.getRef()).optimal().getFst().intValue());
+    }
+
+    @Test(timeout = 60000)
+    public void testRoundTripUnsat() throws IOException {
+        AstModel model = newModel();
+
+        AstConcreteClafer a = model.addChild("A").withCard(1, 1);
+        model.addConstraint(none(a));
+
+        ClaferSnapshot snapshot = roundTrip(ClaferSnapshot.snapshotUnsat(model, Scope.defaultScope(1)));
+
+        assertTrue(snapshot.isUnsat());
+        assertNotNull(snapshot.compileUnsat().minUnsat());
+    }
+
+    @Test(timeout = 60000)
+    public void testNewConstraintAfterRead() throws IOException {
+        AstModel model = newModel();
+
+        AstConcreteClafer a = model.addChild("A").withCard(0, 2);
+        model.addConstraint(some(a));
+
+        ClaferSnapshot snapshot = roundTrip(ClaferSnapshot.snapshot(model, Scope.defaultScope(2)));
+        AstModel loaded = snapshot.getModel();
+        loaded.addConstraint(lone(loaded.getChildren().get(0)));
+
+        List<AstConstraint> constraints = AstUtil.getNestedConstraints(loaded);
+        assertEquals(constraints.size(), AstUtil.getConstraintMap(loaded).size());
+    }
+
+    @Test(expected = IOException.class)
+    public void testReadGarbage() throws IOException {
+        ClaferSnapshot.read(new ByteArrayInputStream(new byte[]{1, 2, 3, 4, 5, 6, 7, 8}));
+    }
+}
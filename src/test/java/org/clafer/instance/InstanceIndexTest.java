@@ -0,0 +1,81 @@
+package org.clafer.instance;
+
+import java.util.SortedMap;
+import java.util.TreeMap;
+import org.clafer.ast.AstAbstractClafer;
+import org.clafer.ast.AstConcreteClafer;
+import org.clafer.ast.AstModel;
+import static org.clafer.ast.Asts.*;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author jimmy
+ */
+public class InstanceIndexTest {
+
+    /**
+     * <pre>
+     * abstract Feature
+     *     Cost -> integer
+     * Backup : Feature ?
+     * Firewall : Feature ?
+     * </pre>
+     */
+    @Test
+    public void testQuery() {
+        AstModel model = newModel();
+
+        AstAbstractClafer feature = model.addAbstract("Feature");
+        AstConcreteClafer cost = feature.addChild("Cost").withCard(1, 1).refTo(IntType);
+        AstConcreteClafer backup = model.addChild("Backup").withCard(0, 1).extending(feature);
+        AstConcreteClafer firewall = model.addChild("Firewall").withCard(0, 1).extending(feature);
+
+        InstanceIndex index = new InstanceIndex();
+        // Nothing.
+        index.add(new InstanceModel());
+        // Backup with cost 3.
+        index.add(new InstanceModel(
+                new InstanceClafer(backup, 0, null,
+                new InstanceClafer(cost, 0, new InstanceRef(IntType, 3)))));
+        // Firewall with cost 5.
+        FlatInstance flat = new FlatInstance();
+        int top = flat.add(firewall, 0, -1);
+        int child = flat.add(cost, 0, top);
+        flat.setRef(child, IntType, 5);
+        flat.end(top);
+        index.add(flat);
+        // Backup with cost 3 and firewall with cost 4.
+        flat.clear();
+        top = flat.add(backup, 0, -1);
+        child = flat.add(cost, 0, top);
+        flat.setRef(child, IntType, 3);
+        flat.end(top);
+        top = flat.add(firewall, 0, -1);
+        child = flat.add(cost, 1, top);
+        flat.setRef(child, IntType, 4);
+        flat.end(top);
+        assertTrue(index.visit(flat));
+
+        assertEquals(4, index.size());
+        assertEquals(4, index.select().count());
+        assertEquals(2, index.select().with(backup).count());
+        assertEquals(1, index.select().with(firewall).without(backup).count());
+        assertEquals(3, index.select().with(feature).count());
+        assertEquals(1, index.select().without(feature).count());
+        assertEquals(3, index.select().with(backup).or(index.select().with(firewall)).count());
+
+        assertEquals(4, index.select().count(cost.getRef()));
+        assertEquals(15, index.select().sum(cost.getRef()));
+        assertEquals(3, index.select().min(cost.getRef()));
+        assertEquals(5, index.select().with(firewall).max(cost.getRef()));
+        assertEquals(7, index.select().with(backup).with(firewall).sum(cost.getRef()));
+
+        SortedMap<Integer, Integer> histogram = new TreeMap<Integer, Integer>();
+        histogram.put(3, 2);
+        histogram.put(4, 1);
+        histogram.put(5, 1);
+        assertEquals(histogram, index.select().histogram(cost.getRef()));
+    }
+}
@@ -0,0 +1,116 @@
+package org.clafer.instance;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import org.clafer.ast.AstAbstractClafer;
+import org.clafer.ast.AstModel;
+import static org.clafer.ast.Asts.*;
+import org.clafer.compiler.ClaferCompiler;
+import org.clafer.compiler.ClaferSolver;
+import org.clafer.scope.Scope;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author jimmy
+ */
+public class InstanceReaderTest {
+
+    /**
+     * <pre>
+     * abstract Feature
+     *     Cost -> integer
+     * Backup : Feature 1..2
+     * Firewall : Feature ?
+     * Target -> Feature
+     * </pre>
+     */
+    private static AstModel newFeatureModel() {
+        AstModel model = newModel();
+
+        AstAbstractClafer feature = model.addAbstract("Feature");
+        feature.addChild("Cost").withCard(1, 1).refTo(IntType);
+        model.addChild("Backup").withCard(1, 2).extending(feature);
+        model.addChild("Firewall").withCard(0, 1).extending(feature);
+        model.addChild("Target").withCard(1, 1).refTo(feature);
+        return model;
+    }
+
+    private static void testRoundTrip(boolean delta) throws IOException {
+        AstModel model = newFeatureModel();
+        ClaferSolver solver = ClaferCompiler.compile(model,
+                Scope.defaultScope(3).intLow(-2).intHigh(2).toScope());
+
+        List<String> expected = new ArrayList<String>();
+        File file = File.createTempFile("instances", ".bin");
+        try {
+            InstanceWriter writer = new InstanceWriter(file, model, delta);
+            try {
+                while (solver.find()) {
+                    InstanceModel instance = solver.instance();
+                    expected.add(instance.toString());
+                    writer.write(instance);
+                }
+            } finally {
+                writer.close();
+            }
+            // Enough instances to span several keyframes.
+            assertTrue(expected.size() > 128);
+
+            InstanceReader reader = new InstanceReader(file, model);
+            try {
+                assertEquals(expected.size(), reader.size());
+                assertEquals(delta, reader.isDelta());
+                FlatInstance buffer = new FlatInstance();
+                for (int i = 0; i < expected.size(); i++) {
+                    assertEquals(expected.get(i), reader.read(i, buffer).toString());
+                }
+                // Random access, backwards and across keyframes.
+                for (int i = expected.size() - 1; i >= 0; i -= 37) {
+                    assertEquals(expected.get(i), reader.get(i).toString());
+                    assertEquals(expected.get(i),
+                            new InstanceModel(reader.get(i).getTopClafers()).toString());
+                }
+            } finally {
+                reader.close();
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        testRoundTrip(false);
+    }
+
+    @Test
+    public void testRoundTripDelta() throws IOException {
+        testRoundTrip(true);
+    }
+
+    @Test(expected = IOException.class)
+    public void testIncomplete() throws IOException {
+        AstModel model = newFeatureModel();
+        File file = File.createTempFile("instances", ".bin");
+        try {
+            InstanceWriter writer = new InstanceWriter(file, model, true);
+            writer.write(new FlatInstance());
+            writer.close();
+            // Cut off the footer.
+            RandomAccessFile truncate = new RandomAccessFile(file, "rw");
+            try {
+                truncate.setLength(truncate.length() - 1);
+            } finally {
+                truncate.close();
+            }
+            new InstanceReader(file, model).close();
+        } finally {
+            file.delete();
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package org.clafer.ir;
+
+import static org.clafer.ir.Irs.*;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author jimmy
+ */
+public class IrIdFactoryTest {
+
+    @Test
+    public void testBind() {
+        // Create the constants of Irs outside of the module.
+        assertNotNull(True);
+        IrModule module = new IrModule();
+        IrIdFactory previous = IrIdFactory.bind(module.getIdFactory());
+        try {
+            assertEquals(0, boundInt("a", 0, 3).getId());
+            // Variables created elsewhere do not leave gaps.
+            Thread other = new Thread() {
+                @Override
+                public void run() {
+                    boundInt("elsewhere", 0, 3);
+                }
+            };
+            other.start();
+            other.join();
+            assertEquals(1, set("b", 0, 3).getId());
+        } catch (InterruptedException e) {
+            fail();
+        } finally {
+            IrIdFactory.bind(previous);
+        }
+        assertEquals(2, module.getIdFactory().getCount());
+    }
+
+    @Test
+    public void testFork() {
+        IrIdFactory factory = new IrIdFactory();
+        factory.newId();
+        IrIdFactory fork1 = factory.fork();
+        IrIdFactory fork2 = factory.fork();
+        assertEquals(1, fork1.newId());
+        assertEquals(1, fork2.newId());
+        assertEquals(1, factory.getCount());
+    }
+
+    @Test
+    public void testSplit() {
+        IrIdFactory factory = new IrIdFactory();
+        factory.newId();
+        IrIdFactory[] parts = factory.split(3);
+        // The identifiers do not depend on the order the parts are used.
+        int[] ids = new int[10];
+        for (int i = ids.length - 1; i >= 0; i--) {
+            ids[i] = parts[2].newId();
+        }
+        assertEquals(1, parts[0].newId());
+        assertEquals(17, ids[ids.length - 1]);
+        assertEquals(24, ids[ids.length - 8]);
+        assertEquals(41, ids[1]);
+        assertEquals(42, ids[0]);
+        factory.join(parts);
+        assertEquals(43, factory.newId());
+    }
+
+    @Test
+    public void testJoinUnused() {
+        IrIdFactory factory = new IrIdFactory();
+        IrIdFactory[] parts = factory.split(3);
+        parts[0].newId();
+        factory.join(parts);
+        assertEquals(1, factory.getCount());
+    }
+}
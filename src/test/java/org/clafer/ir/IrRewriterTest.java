@@ -0,0 +1,50 @@
+package org.clafer.ir;
+
+import static org.clafer.ir.Irs.*;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author jimmy
+ */
+public class IrRewriterTest {
+
+    private static final IrRewriter<Void> identity = new IrRewriter<Void>() {
+    };
+
+    @Test
+    public void testUnchangedModuleIsSame() {
+        IrModule module = new IrModule();
+        IrIntVar var1 = boundInt("var1", 0, 3);
+        IrIntVar var2 = boundInt("var2", 0, 3);
+        IrSetVar set = set("set", boundDomain(0, 3));
+        module.addConstraint(or(lessThan(var1, var2), member(var1, set)));
+        module.addConstraint(allDifferent(new IrIntExpr[]{var1, var2, constant(4)}));
+
+        assertSame(module, identity.rewrite(module, null));
+        assertSame(module, identity.rewriteAndNonNops(module, null));
+    }
+
+    @Test
+    public void testOnlyChangedPathIsRebuilt() {
+        final IrIntVar var1 = boundInt("var1", 0, 3);
+        final IrIntVar var2 = boundInt("var2", 0, 3);
+        final IrIntVar var3 = boundInt("var3", 0, 3);
+        IrBoolExpr unchanged = lessThan(var3, var1);
+        IrOr or = (IrOr) or(unchanged, lessThan(var2, var3));
+        IrModule module = new IrModule().addConstraint(or);
+
+        IrRewriter<Void> rename = new IrRewriter<Void>() {
+            @Override
+            public IrIntExpr visit(IrIntVar ir, Void a) {
+                return ir == var2 ? var1 : ir;
+            }
+        };
+        IrModule rewritten = rename.rewrite(module, null);
+        assertNotSame(module, rewritten);
+        IrOr rewrittenOr = (IrOr) rewritten.getConstraints().get(0);
+        assertSame(unchanged, rewrittenOr.getOperands()[0]);
+        assertNotSame(or.getOperands(), rewrittenOr.getOperands());
+    }
+}
@@ -0,0 +1,57 @@
+package org.clafer.ir.compiler;
+
+import java.util.HashMap;
+import java.util.Map;
+import org.clafer.ir.IrIntVar;
+import static org.clafer.ir.Irs.*;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author jimmy
+ */
+public class IrVarTableTest {
+
+    @Test
+    public void testLookup() {
+        IrIntVar a = boundInt("a", 0, 3);
+        IrIntVar b = boundInt("b", 0, 3);
+        IrIntVar c = boundInt("c", 0, 3);
+        Map<IrIntVar, String> map = new HashMap<IrIntVar, String>();
+        map.put(a, "A");
+        map.put(c, "C");
+
+        IrVarTable<IrIntVar, String> table = new IrVarTable<IrIntVar, String>(map);
+        assertTrue(table.contains(a));
+        assertEquals("A", table.get(a));
+        assertFalse(table.contains(b));
+        assertTrue(table.contains(c));
+        assertEquals("C", table.get(c));
+    }
+
+    @Test
+    public void testEmpty() {
+        IrVarTable<IrIntVar, String> table = new IrVarTable<IrIntVar, String>(new HashMap<IrIntVar, String>());
+        assertFalse(table.contains(boundInt("a", 0, 3)));
+    }
+
+    @Test
+    public void testSparse() {
+        IrIntVar a = boundInt("a", 0, 3);
+        for (int i = 0; i < 5000; i++) {
+            boundInt("filler", 0, 3);
+        }
+        IrIntVar b = boundInt("b", 0, 3);
+        Map<IrIntVar, String> map = new HashMap<IrIntVar, String>();
+        map.put(a, "A");
+        map.put(b, "B");
+
+        IrVarTable<IrIntVar, String> table = new IrVarTable<IrIntVar, String>(map);
+        assertTrue(table.contains(a));
+        assertEquals("A", table.get(a));
+        assertTrue(table.contains(b));
+        assertEquals("B", table.get(b));
+        assertNull(table.get(boundInt("c", 0, 3)));
+    }
+}
@@ -0,0 +1,65 @@
+package org.clafer.ir.compiler.analysis;
+
+import java.util.Map;
+import org.clafer.collection.Triple;
+import org.clafer.ir.IrIntVar;
+import org.clafer.ir.IrModule;
+import org.clafer.ir.IrSetVar;
+import org.clafer.ir.IrUtil;
+import static org.clafer.ir.Irs.*;
+import org.clafer.ir.analysis.BoundsPropagator;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author jimmy
+ */
+public class BoundsPropagatorTest {
+
+    @Test
+    public void testPropagateLessThanChain() {
+        IrModule module = new IrModule();
+        IrIntVar var1 = boundInt("var1", 0, 5);
+        IrIntVar var2 = boundInt("var2", 0, 5);
+        IrIntVar var3 = boundInt("var3", 0, 2);
+        module.addConstraint(lessThan(var1, var2));
+        module.addConstraint(lessThan(var2, var3));
+
+        Triple<Map<IrIntVar, IrIntVar>, Map<IrSetVar, IrSetVar>, IrModule> propagate =
+                BoundsPropagator.propagate(module);
+        assertEquals(Integer.valueOf(0), IrUtil.getConstant(propagate.getFst().get(var1)));
+        assertEquals(Integer.valueOf(1), IrUtil.getConstant(propagate.getFst().get(var2)));
+        assertEquals(Integer.valueOf(2), IrUtil.getConstant(propagate.getFst().get(var3)));
+        assertTrue(propagate.getThd().getConstraints().isEmpty());
+    }
+
+    @Test
+    public void testPropagateAdd() {
+        IrModule module = new IrModule();
+        IrIntVar var1 = boundInt("var1", 0, 5);
+        IrIntVar var2 = boundInt("var2", 0, 5);
+        module.addConstraint(equal(add(var1, var2), constant(9)));
+
+        Triple<Map<IrIntVar, IrIntVar>, Map<IrSetVar, IrSetVar>, IrModule> propagate =
+                BoundsPropagator.propagate(module);
+        assertEquals(boundDomain(4, 5), propagate.getFst().get(var1).getDomain());
+        assertEquals(boundDomain(4, 5), propagate.getFst().get(var2).getDomain());
+    }
+
+    @Test
+    public void testPropagateSubsetEqAndCard() {
+        IrModule module = new IrModule();
+        IrSetVar sub = set("sub", boundDomain(0, 5));
+        IrSetVar sup = set("sup", boundDomain(2, 3));
+        IrIntVar card = boundInt("card", 2, 6);
+        module.addConstraint(subsetEq(sub, sup));
+        module.addConstraint(equal(card, card(sub)));
+
+        Triple<Map<IrIntVar, IrIntVar>, Map<IrSetVar, IrSetVar>, IrModule> propagate =
+                BoundsPropagator.propagate(module);
+        assertArrayEquals(new int[]{2, 3}, IrUtil.getConstant(propagate.getSnd().get(sub)));
+        assertArrayEquals(new int[]{2, 3}, IrUtil.getConstant(propagate.getSnd().get(sup)));
+        assertEquals(Integer.valueOf(2), IrUtil.getConstant(propagate.getFst().get(card)));
+    }
+}
@@ -0,0 +1,58 @@
+package org.clafer.ir.compiler.analysis;
+
+import org.clafer.ir.IrBoolExpr;
+import org.clafer.ir.IrCompare;
+import org.clafer.ir.IrIntVar;
+import org.clafer.ir.IrModule;
+import static org.clafer.ir.Irs.*;
+import org.clafer.ir.analysis.CommonSubexpressionEliminator;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author jimmy
+ */
+public class CommonSubexpressionEliminatorTest {
+
+    @Test
+    public void testShareSubexpressions() {
+        IrIntVar x = boundInt("x", 0, 10);
+        IrIntVar y = boundInt("y", 0, 10);
+        IrIntVar z = boundInt("z", 0, 10);
+        IrIntVar w = boundInt("w", 0, 10);
+
+        IrModule module = new IrModule();
+        module.addConstraint(lessThan(add(x, y), z));
+        module.addConstraint(lessThan(add(x, y), w));
+
+        IrModule eliminated = CommonSubexpressionEliminator.eliminate(module);
+        assertEquals(2, eliminated.getConstraints().size());
+        IrCompare c1 = (IrCompare) eliminated.getConstraints().get(0);
+        IrCompare c2 = (IrCompare) eliminated.getConstraints().get(1);
+        assertSame(c1.getLeft(), c2.getLeft());
+    }
+
+    @Test
+    public void testRemoveDuplicateConstraints() {
+        IrIntVar x = boundInt("x", 0, 10);
+        IrIntVar y = boundInt("y", 0, 10);
+
+        IrModule module = new IrModule();
+        module.addConstraint(lessThan(x, y));
+        module.addConstraint(lessThan(x, y));
+
+        assertEquals(1, CommonSubexpressionEliminator.eliminate(module).getConstraints().size());
+    }
+
+    @Test
+    public void testMirroredHashCode() {
+        IrIntVar x = boundInt("x", 0, 10);
+        IrIntVar y = boundInt("y", 0, 10);
+
+        IrBoolExpr xy = lessThan(x, y);
+        IrBoolExpr yx = lessThan(y, x);
+        assertFalse(xy.equals(yx));
+        assertFalse(xy.hashCode() == yx.hashCode());
+    }
+}
@@ -0,0 +1,75 @@
+package org.clafer.ir.compiler.analysis;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import org.clafer.ir.IrIntVar;
+import org.clafer.ir.IrModule;
+import org.clafer.ir.IrSetVar;
+import static org.clafer.ir.Irs.*;
+import org.clafer.ir.analysis.DeadCodeEliminator;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author jimmy
+ */
+public class DeadCodeEliminatorTest {
+
+    @Test
+    public void testEliminateChainOfDefinitions() {
+        IrModule module = new IrModule();
+        IrIntVar live = boundInt("live", 0, 3);
+        IrIntVar dead1 = boundInt("dead1", 0, 10);
+        IrIntVar dead2 = boundInt("dead2", 0, 20);
+        module.addConstraint(equal(dead1, add(live, constant(2))));
+        module.addConstraint(equal(dead2, add(dead1, live)));
+        module.addConstraint(nop(dead2));
+        module.addConstraint(nop(live));
+
+        IrModule eliminated = DeadCodeEliminator.eliminate(module,
+                Collections.singleton(live), Collections.<IrSetVar>emptySet());
+        assertEquals(1, eliminated.getConstraints().size());
+    }
+
+    @Test
+    public void testKeepRestrictingDefinition() {
+        IrModule module = new IrModule();
+        IrIntVar live = boundInt("live", 0, 3);
+        IrIntVar dead = boundInt("dead", 0, 3);
+        // dead is too small for live + 2, so this constraint restricts live.
+        module.addConstraint(equal(dead, add(live, constant(2))));
+
+        IrModule eliminated = DeadCodeEliminator.eliminate(module,
+                Collections.singleton(live), Collections.<IrSetVar>emptySet());
+        assertSame(module, eliminated);
+    }
+
+    @Test
+    public void testKeepPartialDefinition() {
+        IrModule module = new IrModule();
+        IrIntVar live = boundInt("live", 0, 3);
+        IrIntVar divisor = boundInt("divisor", 0, 2);
+        IrIntVar dead = boundInt("dead", -10, 10);
+        // Forbids the divisor from being 0.
+        module.addConstraint(equal(dead, div(live, divisor)));
+
+        IrModule eliminated = DeadCodeEliminator.eliminate(module,
+                new HashSet<IrIntVar>(Arrays.asList(live, divisor)), Collections.<IrSetVar>emptySet());
+        assertSame(module, eliminated);
+    }
+
+    @Test
+    public void testKeepSetCardinality() {
+        IrModule module = new IrModule();
+        IrSetVar live = set("live", boundDomain(0, 3), EmptyDomain, boundDomain(1, 2));
+        IrIntVar card = boundInt("|live|", 1, 2);
+        // Enforces the cardinality of the set.
+        module.addConstraint(equal(card, card(live)));
+
+        IrModule eliminated = DeadCodeEliminator.eliminate(module,
+                Collections.<IrIntVar>emptySet(), Collections.singleton(live));
+        assertSame(module, eliminated);
+    }
+}
@@ -0,0 +1,100 @@
+package org.clafer.ir.compiler.analysis;
+
+import java.util.Map;
+import org.clafer.collection.Triple;
+import org.clafer.ir.IrBoolVar;
+import org.clafer.ir.IrIntVar;
+import org.clafer.ir.IrModule;
+import org.clafer.ir.IrSetVar;
+import org.clafer.ir.IrUtil;
+import static org.clafer.ir.Irs.*;
+import org.clafer.ir.analysis.IncrementalCoalescer;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author jimmy
+ */
+public class IncrementalCoalescerTest {
+
+    @Test
+    public void testCoalesceChain() {
+        IrModule module = new IrModule();
+        IrIntVar var1 = boundInt("var1", 0, 10);
+        IrIntVar var2 = boundInt("var2", 2, 12);
+        IrIntVar var3 = boundInt("var3", -5, 5);
+        module.addConstraint(equal(var1, var2));
+        module.addConstraint(equal(var2, var3));
+
+        Triple<Map<IrIntVar, IrIntVar>, Map<IrSetVar, IrSetVar>, IrModule> coalesce =
+                IncrementalCoalescer.coalesce(module);
+        IrIntVar coalesced = coalesce.getFst().get(var1);
+        assertSame(coalesced, coalesce.getFst().get(var2));
+        assertSame(coalesced, coalesce.getFst().get(var3));
+        assertEquals(boundDomain(2, 5), coalesced.getDomain());
+        assertTrue(coalesce.getThd().getConstraints().isEmpty());
+    }
+
+    @Test
+    public void testCoalesceSingleIntConstant() {
+        IrModule module = new IrModule();
+        IrIntVar var = boundInt("var", 0, 10);
+        module.addConstraint(equal(var, constant(3)));
+
+        IrIntVar coalesced = IncrementalCoalescer.coalesce(module).getFst().get(var);
+        assertEquals(Integer.valueOf(3), IrUtil.getConstant(coalesced));
+    }
+
+    @Test
+    public void testCoalesceIntConstant() {
+        IrModule module = new IrModule();
+        IrIntVar var1 = boundInt("var1", 0, 10);
+        IrIntVar var2 = boundInt("var2", 0, 10);
+        module.addConstraint(lessThan(var1, var2));
+        module.addConstraint(equal(var2, constant(3)));
+
+        Triple<Map<IrIntVar, IrIntVar>, Map<IrSetVar, IrSetVar>, IrModule> coalesce =
+                IncrementalCoalescer.coalesce(module);
+        assertEquals(Integer.valueOf(3), IrUtil.getConstant(coalesce.getFst().get(var2)));
+        assertEquals(boundDomain(0, 2), coalesce.getFst().get(var1).getDomain());
+        // var1 < 3 is entailed by the propagated domain of var1.
+        assertTrue(coalesce.getThd().getConstraints().isEmpty());
+    }
+
+    @Test
+    public void testCoalesceAfterPropagate() {
+        IrModule module = new IrModule();
+        IrIntVar var1 = boundInt("var1", 0, 5);
+        IrIntVar var2 = boundInt("var2", 0, 5);
+        IrIntVar var3 = boundInt("var3", 0, 5);
+        module.addConstraint(equal(var1, add(var2, var3)));
+        module.addConstraint(lessThanEqual(var3, constant(0)));
+
+        Triple<Map<IrIntVar, IrIntVar>, Map<IrSetVar, IrSetVar>, IrModule> coalesce =
+                IncrementalCoalescer.coalesce(module);
+        assertEquals(Integer.valueOf(0), IrUtil.getConstant(coalesce.getFst().get(var3)));
+        // Propagating var3 turns the sum into an equality between var1 and var2.
+        assertNotNull(coalesce.getFst().get(var1));
+        assertSame(coalesce.getFst().get(var1), coalesce.getFst().get(var2));
+        assertTrue(coalesce.getThd().getConstraints().isEmpty());
+    }
+
+    @Test
+    public void testPropagateCardinalityAfterCoalesce() {
+        IrModule module = new IrModule();
+        IrBoolVar bool = bool("bool");
+        IrIntVar var = boundInt("var", 0, 3);
+        IrSetVar set = set("set", boundDomain(0, 3));
+        module.addConstraint(bool);
+        module.addConstraint(ifOnlyIf(bool, equal(var, constant(2))));
+        module.addConstraint(equal(card(set), var));
+
+        Triple<Map<IrIntVar, IrIntVar>, Map<IrSetVar, IrSetVar>, IrModule> coalesce =
+                IncrementalCoalescer.coalesce(module);
+        assertEquals(True, coalesce.getFst().get(bool));
+        IrSetVar propagated = coalesce.getSnd().get(set);
+        assertNotNull(propagated);
+        assertEquals(constantDomain(2), propagated.getCard());
+    }
+}
@@ -0,0 +1,55 @@
+package org.clafer.ir.compiler.analysis;
+
+import org.clafer.collection.Pair;
+import org.clafer.ir.IrBoolExpr;
+import org.clafer.ir.IrBoolVar;
+import org.clafer.ir.IrIntVar;
+import org.clafer.ir.IrModule;
+import static org.clafer.ir.Irs.*;
+import org.clafer.ir.analysis.Partitioner;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author jimmy
+ */
+public class PartitionerTest {
+
+    @Test
+    public void testPartition() {
+        IrModule module = new IrModule();
+        IrBoolVar a = bool("a");
+        IrBoolVar b = bool("b");
+        IrBoolVar c = bool("c");
+        IrIntVar x = boundInt("x", 0, 3);
+        IrIntVar y = boundInt("y", 0, 3);
+        IrIntVar z = boundInt("z", 0, 3);
+        IrBoolExpr independent = or(a, b);
+        IrBoolExpr implies = implies(c, equal(x, y));
+        IrBoolExpr equal = equal(y, z);
+        module.addConstraint(independent);
+        module.addConstraint(implies);
+        module.addConstraint(equal);
+
+        Pair<IrModule, IrModule> partition = Partitioner.partition(module);
+        assertEquals(1, partition.getFst().getConstraints().size());
+        assertTrue(partition.getFst().getConstraints().contains(independent));
+        // The implication shares y with the equality, so x might be coalesced.
+        assertEquals(2, partition.getSnd().getConstraints().size());
+        assertTrue(partition.getSnd().getConstraints().contains(implies));
+        assertTrue(partition.getSnd().getConstraints().contains(equal));
+    }
+
+    @Test
+    public void testNothingIndependent() {
+        IrModule module = new IrModule();
+        IrIntVar x = boundInt("x", 0, 3);
+        IrIntVar y = boundInt("y", 0, 3);
+        module.addConstraint(equal(x, y));
+
+        Pair<IrModule, IrModule> partition = Partitioner.partition(module);
+        assertTrue(partition.getFst().getConstraints().isEmpty());
+        assertSame(module, partition.getSnd());
+    }
+}